@@ -0,0 +1,68 @@
+package com.crawljax.browser;
+
+import javax.annotation.concurrent.Immutable;
+
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.Point;
+
+import com.google.common.base.Objects;
+
+/**
+ * The rectangle an element takes up on the page, like {@link org.openqa.selenium.WebElement}
+ * reports it with {@link org.openqa.selenium.WebElement#getLocation()} and
+ * {@link org.openqa.selenium.WebElement#getSize()}.
+ */
+@Immutable
+public final class BoundingBox {
+
+	private final Point location;
+	private final Dimension size;
+
+	/**
+	 * @param location
+	 *            The offset of the element to the top left of the document.
+	 * @param size
+	 *            The size of the element.
+	 */
+	public BoundingBox(Point location, Dimension size) {
+		this.location = location;
+		this.size = size;
+	}
+
+	/**
+	 * @return The offset of the element to the top left of the document.
+	 */
+	public Point getLocation() {
+		return location;
+	}
+
+	/**
+	 * @return The size of the element.
+	 */
+	public Dimension getSize() {
+		return size;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(location, size);
+	}
+
+	@Override
+	public boolean equals(Object object) {
+		if (object instanceof BoundingBox) {
+			BoundingBox that = (BoundingBox) object;
+			return Objects.equal(this.location, that.location)
+			        && Objects.equal(this.size, that.size);
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return Objects.toStringHelper(this)
+		        .add("location", location)
+		        .add("size", size)
+		        .toString();
+	}
+}
@@ -0,0 +1,307 @@
+package com.crawljax.browser;
+
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.openqa.selenium.remote.SessionNotFoundException;
+import org.openqa.selenium.remote.UnreachableBrowserException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.crawljax.core.configuration.BrowserConfiguration;
+import com.crawljax.core.exception.BrowserConnectionException;
+import com.crawljax.di.ConfigurationModule.NewBrowser;
+import com.crawljax.metrics.MetricsModule;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Hands out the browsers of the crawl. All browsers are started concurrently when the crawl
+ * starts, together with the configured number of {@link BrowserConfiguration#getWarmSpares()
+ * spares}. The browsers that are handed out replace themselves with a spare when they exceed one
+ * of the recycle limits of the {@link BrowserConfiguration} or when the connection to the browser
+ * is lost, so a single crashed browser does not take its {@link com.crawljax.core.CrawlTaskConsumer}
+ * down with it.
+ * <p>
+ * A browser is only recycled when it is reset by {@link EmbeddedBrowser#goToUrl(java.net.URI)} or
+ * when it is handed a new task through {@link #recycleIfNeeded(EmbeddedBrowser)}, because those
+ * are the only moments the crawler does not depend on the state of the browser.
+ * </p>
+ */
+@Singleton
+@ThreadSafe
+public class BrowserPool implements Provider<EmbeddedBrowser> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BrowserPool.class);
+
+	private static final long BYTES_PER_MB = 1024 * 1024;
+
+	private final Provider<EmbeddedBrowser> factory;
+	private final BrowserConfiguration config;
+	private final ExecutorService starter;
+	private final BlockingDeque<Future<StartedBrowser>> spares;
+	private final Set<Integer> claimedProcesses;
+	private final Object processLock = new Object();
+	private final Timer startupTimer;
+	private final Counter recycledCount;
+	private final Counter replacedCount;
+
+	@Inject
+	BrowserPool(@NewBrowser Provider<EmbeddedBrowser> factory, BrowserConfiguration config,
+	        MetricRegistry registry) {
+		this.factory = factory;
+		this.config = config;
+		this.starter =
+		        Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+		                .setNameFormat("crawljax-browser-starter-%d")
+		                .setDaemon(true)
+		                .build());
+		this.spares = new LinkedBlockingDeque<>();
+		this.claimedProcesses = Sets.newConcurrentHashSet();
+		this.startupTimer = registry.timer(MetricsModule.BROWSER_PREFIX + "startup");
+		this.recycledCount = registry.counter(MetricsModule.BROWSER_PREFIX + "recycled");
+		this.replacedCount = registry.counter(MetricsModule.BROWSER_PREFIX + "replaced");
+		registry.register(MetricsModule.BROWSER_PREFIX + "spares", new Gauge<Integer>() {
+
+			@Override
+			public Integer getValue() {
+				return spares.size();
+			}
+		});
+	}
+
+	/**
+	 * Starts all the browsers of the crawl and the spares in the background. Calling this method is
+	 * optional. Browsers that are not started yet when they are needed are started by
+	 * {@link #get()}.
+	 */
+	public void warmUp() {
+		int total = config.getNumberOfBrowsers() + config.getWarmSpares();
+		LOG.debug("Starting {} browsers", total);
+		for (int i = spares.size(); i < total; i++) {
+			startSpare();
+		}
+	}
+
+	/**
+	 * @return A browser that replaces itself with a fresh one when it has to be recycled.
+	 */
+	@Override
+	public EmbeddedBrowser get() {
+		return new PooledBrowser(this, acquire());
+	}
+
+	/**
+	 * Recycles a browser that was handed out by a pool when it exceeded one of the recycle limits.
+	 * This should be called when the browser gets a new task, so a browser that keeps getting tasks
+	 * without being reset is recycled as well.
+	 * 
+	 * @param browser
+	 *            The browser that gets a new task.
+	 * @return <code>true</code> if the browser was recycled, in which case it has to be reset
+	 *         before it is used.
+	 */
+	public static boolean recycleIfNeeded(EmbeddedBrowser browser) {
+		return browser instanceof PooledBrowser && ((PooledBrowser) browser).recycleIfNeeded();
+	}
+
+	/**
+	 * Closes the spares that have not been used. The browsers that were handed out are closed by
+	 * their users.
+	 */
+	public void shutDown() {
+		LOG.debug("Closing {} spare browsers", spares.size());
+		Future<StartedBrowser> spare = spares.poll();
+		while (spare != null) {
+			try {
+				close(Uninterruptibles.getUninterruptibly(spare));
+			} catch (ExecutionException e) {
+				LOG.debug("Spare browser never started: {}", e.getMessage());
+			}
+			spare = spares.poll();
+		}
+		starter.shutdown();
+	}
+
+	StartedBrowser acquire() {
+		Future<StartedBrowser> next = spares.poll();
+		StartedBrowser browser;
+		if (next == null) {
+			browser = start();
+		} else {
+			try {
+				browser = Uninterruptibles.getUninterruptibly(next);
+			} catch (ExecutionException e) {
+				throw Throwables.propagate(e.getCause());
+			}
+		}
+		if (spares.size() < config.getWarmSpares()) {
+			startSpare();
+		}
+		return browser;
+	}
+
+	/**
+	 * @return <code>true</code> if the browser exceeded one of the recycle limits.
+	 */
+	boolean shouldRecycle(StartedBrowser browser, int actions, int resets) {
+		if (config.getRecycleAfterActions() > 0 && actions >= config.getRecycleAfterActions()) {
+			LOG.debug("Browser fired {} events and will be recycled", actions);
+			return true;
+		} else if (config.getRecycleAfterResets() > 0
+		        && resets >= config.getRecycleAfterResets()) {
+			LOG.debug("Browser was reset {} times and will be recycled", resets);
+			return true;
+		} else if (config.getRecycleAboveRssMb() > 0 && !browser.processes.isEmpty()) {
+			long rss = ProcessTree.residentSetSize(browser.processes);
+			if (rss > config.getRecycleAboveRssMb() * BYTES_PER_MB) {
+				LOG.debug("Browser uses {} MB and will be recycled", rss / BYTES_PER_MB);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return A fresh browser that replaces the recycled one. The old browser is closed in the
+	 *         background once the fresh one is there, so it is kept open when none can be started.
+	 */
+	StartedBrowser recycle(StartedBrowser old) {
+		StartedBrowser fresh = acquire();
+		recycledCount.inc();
+		closeInBackground(old);
+		return fresh;
+	}
+
+	/**
+	 * @return A fresh browser that replaces a browser that was lost. The lost browser is closed
+	 *         in the background once the fresh one is there, so it is kept open when none can be
+	 *         started.
+	 */
+	StartedBrowser replace(StartedBrowser lost) {
+		LOG.warn("Lost the connection to a browser. Replacing it with a new one");
+		StartedBrowser fresh = acquire();
+		replacedCount.inc();
+		closeInBackground(lost);
+		return fresh;
+	}
+
+	/**
+	 * @return <code>true</code> if the exception means the browser crashed or can no longer be
+	 *         reached.
+	 */
+	static boolean isConnectionLost(Throwable exception) {
+		for (Throwable cause : Throwables.getCausalChain(exception)) {
+			if (cause instanceof BrowserConnectionException
+			        || cause instanceof UnreachableBrowserException
+			        || cause instanceof SessionNotFoundException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	void close(StartedBrowser browser) {
+		try {
+			browser.browser.close();
+		} catch (RuntimeException e) {
+			LOG.debug("Could not close browser: {}", e.getMessage());
+		} finally {
+			claimedProcesses.removeAll(browser.processes);
+		}
+	}
+
+	private void closeInBackground(final StartedBrowser browser) {
+		if (starter.isShutdown()) {
+			close(browser);
+			return;
+		}
+		starter.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				close(browser);
+			}
+		});
+	}
+
+	private void startSpare() {
+		spares.add(starter.submit(new Callable<StartedBrowser>() {
+
+			@Override
+			public StartedBrowser call() {
+				return start();
+			}
+		}));
+	}
+
+	private StartedBrowser start() {
+		Timer.Context timer = startupTimer.time();
+		try {
+			if (config.getRecycleAboveRssMb() > 0) {
+				// The processes of a browser can only be told apart when they start one at a time.
+				synchronized (processLock) {
+					Set<Integer> before = ProcessTree.descendantsOfThisJvm();
+					EmbeddedBrowser browser = startWithRetries();
+					ImmutableSet<Integer> processes =
+					        ProcessTree.startedSince(before, claimedProcesses);
+					claimedProcesses.addAll(processes);
+					LOG.debug("Browser started with processes {}", processes);
+					return new StartedBrowser(browser, processes);
+				}
+			}
+			return new StartedBrowser(startWithRetries(), ImmutableSet.<Integer> of());
+		} finally {
+			timer.stop();
+		}
+	}
+
+	private EmbeddedBrowser startWithRetries() {
+		for (int attempt = 1;; attempt++) {
+			try {
+				return factory.get();
+			} catch (RuntimeException e) {
+				if (attempt > BrowserConfiguration.BROWSER_START_RETRIES) {
+					throw e;
+				}
+				LOG.warn("Could not start browser. Retrying in {} ms: {}",
+				        BrowserConfiguration.BROWSER_SLEEP_FAILURE, e.getMessage());
+				Uninterruptibles.sleepUninterruptibly(BrowserConfiguration.BROWSER_SLEEP_FAILURE,
+				        TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/**
+	 * A browser together with the operating system processes it started.
+	 */
+	static final class StartedBrowser {
+
+		final EmbeddedBrowser browser;
+		final ImmutableSet<Integer> processes;
+
+		StartedBrowser(EmbeddedBrowser browser, ImmutableSet<Integer> processes) {
+			this.browser = browser;
+			this.processes = processes;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package com.crawljax.browser;
+
+import java.util.Map;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.w3c.dom.Document;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.metrics.MetricsModule;
+import com.google.common.collect.Maps;
+
+/**
+ * The DOMs of the page the browser is on, read at most once per epoch. A new epoch starts every
+ * time the browser might have changed the page: when an event is fired, a URL is loaded or
+ * JavaScript is executed. Until then every caller gets the same strings and documents.
+ * <p>
+ * The cached {@link Document}s are shared by all callers and must not be changed.
+ * </p>
+ */
+@NotThreadSafe
+final class DomSnapshot {
+
+	private Counter hits;
+	private Counter misses;
+
+	private long epoch;
+	private String pageSource;
+	private String strippedDom;
+	private String strippedDomWithoutIframeContent;
+	private Document strippedDocument;
+	private Document strippedDocumentWithoutIframeContent;
+	private final Map<String, String> frameDoms = Maps.newHashMap();
+
+	DomSnapshot() {
+		this.hits = new Counter();
+		this.misses = new Counter();
+	}
+
+	/**
+	 * Reports the hits and misses to the given registry from now on.
+	 */
+	void registerMetrics(MetricRegistry registry) {
+		hits = registry.counter(MetricsModule.BROWSER_PREFIX + "dom_cache_hits");
+		misses = registry.counter(MetricsModule.BROWSER_PREFIX + "dom_cache_misses");
+	}
+
+	/**
+	 * Forgets all DOMs and starts a new epoch.
+	 */
+	void invalidate() {
+		epoch++;
+		pageSource = null;
+		strippedDom = null;
+		strippedDomWithoutIframeContent = null;
+		strippedDocument = null;
+		strippedDocumentWithoutIframeContent = null;
+		frameDoms.clear();
+	}
+
+	long getEpoch() {
+		return epoch;
+	}
+
+	String getPageSource() {
+		return count(pageSource);
+	}
+
+	void setPageSource(String pageSource) {
+		this.pageSource = pageSource;
+	}
+
+	String getStrippedDom() {
+		return count(strippedDom);
+	}
+
+	void setStrippedDom(String strippedDom) {
+		this.strippedDom = strippedDom;
+	}
+
+	String getStrippedDomWithoutIframeContent() {
+		return count(strippedDomWithoutIframeContent);
+	}
+
+	void setStrippedDomWithoutIframeContent(String dom) {
+		this.strippedDomWithoutIframeContent = dom;
+	}
+
+	Document getStrippedDocument() {
+		return count(strippedDocument);
+	}
+
+	void setStrippedDocument(Document document) {
+		this.strippedDocument = document;
+	}
+
+	Document getStrippedDocumentWithoutIframeContent() {
+		return count(strippedDocumentWithoutIframeContent);
+	}
+
+	void setStrippedDocumentWithoutIframeContent(Document document) {
+		this.strippedDocumentWithoutIframeContent = document;
+	}
+
+	String getFrameDom(String frameIdentification) {
+		return count(frameDoms.get(frameIdentification));
+	}
+
+	void setFrameDom(String frameIdentification, String dom) {
+		frameDoms.put(frameIdentification, dom);
+	}
+
+	private <T> T count(T cached) {
+		if (cached == null) {
+			misses.inc();
+		} else {
+			hits.inc();
+		}
+		return cached;
+	}
+}
@@ -2,15 +2,18 @@ package com.crawljax.browser;
 
 import java.io.File;
 import java.net.URI;
+import java.util.Collection;
 
 import com.crawljax.core.CrawljaxException;
 import com.crawljax.core.configuration.PreCrawlConfiguration;
 import com.crawljax.core.state.Eventable;
 import com.crawljax.core.state.Identification;
 import com.crawljax.forms.FormInput;
+import com.google.common.collect.ImmutableMap;
 import org.openqa.selenium.ElementNotVisibleException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
+import org.w3c.dom.Document;
 
 /**
  * Browser interface used by Crawjax.
@@ -69,6 +72,26 @@ public interface EmbeddedBrowser {
 	 */
 	String getStrippedDomWithoutIframeContent();
 
+	/**
+	 * The document is read at most once until the browser changes the page and is shared by all
+	 * callers, so it must not be changed.
+	 * 
+	 * @return The parsed {@link #getStrippedDom()}.
+	 * @throws CrawljaxException
+	 *             if the DOM cannot be parsed.
+	 */
+	Document getStrippedDocument() throws CrawljaxException;
+
+	/**
+	 * The document is read at most once until the browser changes the page and is shared by all
+	 * callers, so it must not be changed.
+	 * 
+	 * @return The parsed {@link #getStrippedDomWithoutIframeContent()}.
+	 * @throws CrawljaxException
+	 *             if the DOM cannot be parsed.
+	 */
+	Document getStrippedDocumentWithoutIframeContent() throws CrawljaxException;
+
 	/**
 	 * Closes the browser.
 	 */
@@ -106,6 +129,19 @@ public interface EmbeddedBrowser {
 	 */
 	Object executeJavaScript(String script) throws CrawljaxException;
 
+	/**
+	 * Execute JavaScript that only reads from the page. Unlike
+	 * {@link #executeJavaScript(String)} it keeps the DOM the browser cached, so the script must
+	 * not change the page.
+	 * 
+	 * @param script
+	 *            The script to execute.
+	 * @return The JavaScript return object.
+	 * @throws CrawljaxException
+	 *             On error.
+	 */
+	Object queryJavaScript(String script) throws CrawljaxException;
+
 	/**
 	 * Checks if an element is visible.
 	 * 
@@ -148,6 +184,18 @@ public interface EmbeddedBrowser {
 	 */
 	WebElement getWebElement(Identification identification);
 
+	/**
+	 * Looks up where many elements are on the page at once, instead of finding every element and
+	 * asking for its location and size separately. Looking them up doesn't change the page.
+	 *
+	 * @param identifications
+	 *            the identifications of the elements.
+	 * @return the bounding box of every element that was found, by its identification. Elements
+	 *         that can't be found are left out.
+	 */
+	ImmutableMap<Identification, BoundingBox> getBoundingBoxes(
+	        Collection<Identification> identifications);
+
 	/**
 	 * @param file
 	 *            the file to write the screenshot to (png).
@@ -0,0 +1,292 @@
+package com.crawljax.browser;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Collection;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.openqa.selenium.ElementNotVisibleException;
+import org.openqa.selenium.WebElement;
+import org.w3c.dom.Document;
+
+import com.crawljax.browser.BrowserPool.StartedBrowser;
+import com.crawljax.core.CrawljaxException;
+import com.crawljax.core.state.Eventable;
+import com.crawljax.core.state.Identification;
+import com.crawljax.forms.FormInput;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * An {@link EmbeddedBrowser} handed out by the {@link BrowserPool}. It delegates to the browser it
+ * got from the pool and swaps that browser for a fresh one when it has to be recycled or when the
+ * connection to it is lost. When the connection is lost the exception is still thrown so the
+ * crawler knows the state of the browser is gone, but the next call goes to the new browser.
+ */
+@NotThreadSafe
+class PooledBrowser implements EmbeddedBrowser {
+
+	private final BrowserPool pool;
+	private StartedBrowser current;
+	private int actions;
+	private int resets;
+
+	PooledBrowser(BrowserPool pool, StartedBrowser browser) {
+		this.pool = pool;
+		this.current = browser;
+	}
+
+	@Override
+	public void goToUrl(URI url) {
+		recycleIfNeeded();
+		resets++;
+		try {
+			current.browser.goToUrl(url);
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public boolean fireEventAndWait(Eventable event) throws ElementNotVisibleException,
+	        InterruptedException {
+		actions++;
+		try {
+			return current.browser.fireEventAndWait(event);
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public String getStrippedDom() {
+		try {
+			return current.browser.getStrippedDom();
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public String getUnStrippedDom() {
+		try {
+			return current.browser.getUnStrippedDom();
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	@Deprecated
+	public String getDom() {
+		return getStrippedDom();
+	}
+
+	@Override
+	public String getStrippedDomWithoutIframeContent() {
+		try {
+			return current.browser.getStrippedDomWithoutIframeContent();
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public Document getStrippedDocument() throws CrawljaxException {
+		try {
+			return current.browser.getStrippedDocument();
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public Document getStrippedDocumentWithoutIframeContent() throws CrawljaxException {
+		try {
+			return current.browser.getStrippedDocumentWithoutIframeContent();
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		pool.close(current);
+	}
+
+	@Override
+	public void closeOtherWindows() {
+		try {
+			current.browser.closeOtherWindows();
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public void goBack() {
+		try {
+			current.browser.goBack();
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public boolean input(Identification identification, String text) throws CrawljaxException {
+		try {
+			return current.browser.input(identification, text);
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public Object executeJavaScript(String script) throws CrawljaxException {
+		try {
+			return current.browser.executeJavaScript(script);
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public Object queryJavaScript(String script) throws CrawljaxException {
+		try {
+			return current.browser.queryJavaScript(script);
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public boolean isVisible(Identification identification) {
+		try {
+			return current.browser.isVisible(identification);
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public String getCurrentUrl() {
+		try {
+			return current.browser.getCurrentUrl();
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public FormInput getInputWithRandomValue(FormInput inputForm) {
+		try {
+			return current.browser.getInputWithRandomValue(inputForm);
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public String getFrameDom(String iframeIdentification) {
+		try {
+			return current.browser.getFrameDom(iframeIdentification);
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public boolean elementExists(Identification identification) {
+		try {
+			return current.browser.elementExists(identification);
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public WebElement getWebElement(Identification identification) {
+		try {
+			return current.browser.getWebElement(identification);
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public ImmutableMap<Identification, BoundingBox> getBoundingBoxes(
+	        Collection<Identification> identifications) {
+		try {
+			return current.browser.getBoundingBoxes(identifications);
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public void saveScreenShot(File file) throws CrawljaxException {
+		try {
+			current.browser.saveScreenShot(file);
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	@Override
+	public byte[] getScreenShot() throws CrawljaxException {
+		try {
+			return current.browser.getScreenShot();
+		} catch (RuntimeException e) {
+			throw lost(e);
+		}
+	}
+
+	/**
+	 * @return The browser that currently does the work. Only for testing.
+	 */
+	EmbeddedBrowser getDelegate() {
+		return current.browser;
+	}
+
+	/**
+	 * Replaces the browser when the exception means the connection was lost. When no new browser
+	 * can be started, the lost one is kept, so the next call tries again, and the failure is added
+	 * to the exception as a suppressed exception.
+	 *
+	 * @return the exception so it can be rethrown.
+	 */
+	private RuntimeException lost(RuntimeException exception) {
+		if (BrowserPool.isConnectionLost(exception)) {
+			try {
+				swap(pool.replace(current));
+			} catch (RuntimeException replacementFailed) {
+				exception.addSuppressed(replacementFailed);
+			}
+		}
+		return exception;
+	}
+
+	/**
+	 * Swaps the browser for a fresh one when it exceeded one of the recycle limits.
+	 * 
+	 * @return <code>true</code> if the browser was swapped.
+	 */
+	boolean recycleIfNeeded() {
+		if (resets > 0 && pool.shouldRecycle(current, actions, resets)) {
+			swap(pool.recycle(current));
+			return true;
+		}
+		return false;
+	}
+
+	private void swap(StartedBrowser fresh) {
+		current = fresh;
+		actions = 0;
+		resets = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "Pooled " + current.browser;
+	}
+}
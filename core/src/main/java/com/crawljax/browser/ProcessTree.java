@@ -0,0 +1,151 @@
+package com.crawljax.browser;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.io.Files;
+import com.google.common.primitives.Ints;
+
+/**
+ * Reads the processes started by this JVM and their memory usage from <code>/proc</code>. On
+ * systems without <code>/proc</code> no processes are found and the memory usage is always 0.
+ */
+final class ProcessTree {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ProcessTree.class);
+
+	private static final File PROC = new File("/proc");
+
+	private ProcessTree() {
+	}
+
+	/**
+	 * @return The ids of all processes that were started by this JVM or by its children.
+	 */
+	static ImmutableSet<Integer> descendantsOfThisJvm() {
+		Integer self = currentPid();
+		if (self == null) {
+			return ImmutableSet.of();
+		}
+		return descendantsOf(ImmutableSet.of(self), false);
+	}
+
+	/**
+	 * @param pids
+	 *            The processes to sum.
+	 * @return The resident set size in bytes of the processes and all their children.
+	 */
+	static long residentSetSize(Collection<Integer> pids) {
+		long total = 0;
+		for (Integer pid : descendantsOf(pids, true)) {
+			total += residentSetSizeOf(pid);
+		}
+		return total;
+	}
+
+	private static ImmutableSet<Integer> descendantsOf(Collection<Integer> roots,
+	        boolean includeRoots) {
+		ListMultimap<Integer, Integer> children = childrenByParent();
+		ImmutableSet.Builder<Integer> result = ImmutableSet.builder();
+		Deque<Integer> todo = new ArrayDeque<>(roots);
+		if (includeRoots) {
+			result.addAll(roots);
+		}
+		while (!todo.isEmpty()) {
+			List<Integer> direct = children.get(todo.poll());
+			result.addAll(direct);
+			todo.addAll(direct);
+		}
+		return result.build();
+	}
+
+	private static ListMultimap<Integer, Integer> childrenByParent() {
+		ListMultimap<Integer, Integer> children = ArrayListMultimap.create();
+		File[] processes = PROC.listFiles();
+		if (processes == null) {
+			return children;
+		}
+		for (File process : processes) {
+			Integer pid = Ints.tryParse(process.getName());
+			if (pid != null) {
+				Integer parent = parentOf(process);
+				if (parent != null) {
+					children.put(parent, pid);
+				}
+			}
+		}
+		return children;
+	}
+
+	private static Integer parentOf(File process) {
+		String stat = read(new File(process, "stat"));
+		if (stat == null) {
+			return null;
+		}
+		// The name between brackets can contain spaces, so the fields are counted after it.
+		List<String> fields = Splitter.on(' ').splitToList(stat.substring(stat.lastIndexOf(')') + 2));
+		return fields.size() > 1 ? Ints.tryParse(fields.get(1)) : null;
+	}
+
+	private static long residentSetSizeOf(int pid) {
+		String status = read(new File(PROC, pid + "/status"));
+		if (status == null) {
+			return 0;
+		}
+		for (String line : Splitter.on('\n').split(status)) {
+			if (line.startsWith("VmRSS:")) {
+				List<String> parts =
+				        Splitter.on(' ').omitEmptyStrings().splitToList(line.substring(6));
+				Integer kiloBytes = Ints.tryParse(parts.get(0));
+				return kiloBytes == null ? 0 : kiloBytes * 1024L;
+			}
+		}
+		return 0;
+	}
+
+	private static String read(File file) {
+		try {
+			return Files.toString(file, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			// The process stopped in the mean time.
+			LOG.trace("Could not read {}", file);
+			return null;
+		}
+	}
+
+	private static Integer currentPid() {
+		String name = ManagementFactory.getRuntimeMXBean().getName();
+		return Ints.tryParse(name.substring(0, Math.max(name.indexOf('@'), 0)));
+	}
+
+	/**
+	 * @param before
+	 *            The processes before the browser was started.
+	 * @param claimed
+	 *            The processes that already belong to another browser.
+	 * @return The new processes that were started since <code>before</code>.
+	 */
+	static ImmutableSet<Integer> startedSince(Set<Integer> before, Set<Integer> claimed) {
+		ImmutableSet.Builder<Integer> started = ImmutableSet.builder();
+		for (Integer pid : descendantsOfThisJvm()) {
+			if (!before.contains(pid) && !claimed.contains(pid)) {
+				started.add(pid);
+			}
+		}
+		return started.build();
+	}
+}
@@ -0,0 +1,202 @@
+package com.crawljax.browser;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.condition.browserwaiter.WaitConditionChecker;
+import com.crawljax.core.exception.BrowserConnectionException;
+import com.crawljax.metrics.MetricsModule;
+import com.google.common.base.Stopwatch;
+
+/**
+ * Waits for a page to settle after an event or a reload instead of sleeping for a fixed time. A
+ * page has settled when it is loaded, has no pending XHR or fetch requests, its DOM has not changed
+ * for the quiet period and all {@link WaitConditionChecker wait conditions} are satisfied. The
+ * fixed wait is used as the maximum time to wait for the page to become quiet. Each wait condition
+ * is waited for up to its own time out.
+ * <p>
+ * The DOM changes and requests are tracked by a small script that is installed in the page the
+ * first time it is polled. When the script can not be run the waiter falls back to the fixed wait.
+ * </p>
+ */
+@ThreadSafe
+public class SettleWaiter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SettleWaiter.class);
+
+	/**
+	 * Installs the tracker if it is not in the page yet and returns
+	 * <code>[readyState, pending requests, milliseconds since the last change]</code>.
+	 */
+	static final String STATUS_SCRIPT = "var w = window, s = w.__crawljaxSettle;"
+	        + "if (!s) {"
+	        + "  s = w.__crawljaxSettle = {pending: 0, last: new Date().getTime()};"
+	        + "  var touch = function() { s.last = new Date().getTime(); };"
+	        + "  var done = function() { s.pending--; touch(); };"
+	        + "  if (w.MutationObserver) {"
+	        + "    new MutationObserver(touch).observe(document, {childList: true,"
+	        + "      subtree: true, attributes: true, characterData: true});"
+	        + "  }"
+	        + "  if (w.XMLHttpRequest) {"
+	        + "    var send = XMLHttpRequest.prototype.send;"
+	        + "    XMLHttpRequest.prototype.send = function() {"
+	        + "      s.pending++; touch();"
+	        + "      this.addEventListener('loadend', done);"
+	        + "      return send.apply(this, arguments);"
+	        + "    };"
+	        + "  }"
+	        + "  if (w.fetch) {"
+	        + "    var fetch = w.fetch;"
+	        + "    w.fetch = function() {"
+	        + "      s.pending++; touch();"
+	        + "      return fetch.apply(this, arguments).then("
+	        + "        function(r) { done(); return r; }, function(e) { done(); throw e; });"
+	        + "    };"
+	        + "  }"
+	        + "}"
+	        + "return [document.readyState, s.pending, new Date().getTime() - s.last];";
+
+	private static final long MIN_POLL_INTERVAL = 10;
+	private static final long MAX_POLL_INTERVAL = 100;
+
+	private final long quietPeriod;
+	private final long pollInterval;
+	private final WaitConditionChecker waitConditions;
+	private final Histogram eventSettleTime;
+	private final Histogram reloadSettleTime;
+
+	/**
+	 * @param quietPeriod
+	 *            The time in milliseconds the DOM must not change.
+	 * @param waitConditions
+	 *            The conditions that must be satisfied as well.
+	 * @param registry
+	 *            The registry the settle times are reported to.
+	 */
+	public SettleWaiter(long quietPeriod, WaitConditionChecker waitConditions,
+	        MetricRegistry registry) {
+		this.quietPeriod = quietPeriod;
+		this.pollInterval = Math.min(Math.max(quietPeriod / 2, MIN_POLL_INTERVAL),
+		        MAX_POLL_INTERVAL);
+		this.waitConditions = waitConditions;
+		this.eventSettleTime =
+		        registry.histogram(MetricsModule.BROWSER_PREFIX + "settle_time_event");
+		this.reloadSettleTime =
+		        registry.histogram(MetricsModule.BROWSER_PREFIX + "settle_time_reload");
+	}
+
+	/**
+	 * Installs the tracker before an event is fired so requests started by the event are counted.
+	 *
+	 * @param browser
+	 *            The browser to prepare.
+	 */
+	public void prepare(EmbeddedBrowser browser) {
+		status(browser);
+	}
+
+	/**
+	 * @param browser
+	 *            The browser that fired the event.
+	 * @param maximum
+	 *            The maximum time to wait in milliseconds.
+	 * @return The time waited in milliseconds.
+	 * @throws InterruptedException
+	 *             when interrupted during the wait.
+	 */
+	public long afterEvent(EmbeddedBrowser browser, long maximum) throws InterruptedException {
+		long waited = settle(browser, maximum);
+		eventSettleTime.update(waited);
+		return waited;
+	}
+
+	/**
+	 * @param browser
+	 *            The browser that loaded a URL.
+	 * @param maximum
+	 *            The maximum time to wait in milliseconds.
+	 * @return The time waited in milliseconds.
+	 * @throws InterruptedException
+	 *             when interrupted during the wait.
+	 */
+	public long afterReload(EmbeddedBrowser browser, long maximum) throws InterruptedException {
+		long waited = settle(browser, maximum);
+		reloadSettleTime.update(waited);
+		return waited;
+	}
+
+	/**
+	 * @return <code>true</code> if the browser is a {@link WebDriverBackedEmbeddedBrowser}, or a
+	 *         pooled one, that settles with a {@link SettleWaiter}, which also checks the wait
+	 *         conditions.
+	 */
+	public static boolean isInstalledIn(EmbeddedBrowser browser) {
+		EmbeddedBrowser target = browser;
+		if (target instanceof PooledBrowser) {
+			target = ((PooledBrowser) target).getDelegate();
+		}
+		return target instanceof WebDriverBackedEmbeddedBrowser
+		        && ((WebDriverBackedEmbeddedBrowser) target).getSettleWaiter() != null;
+	}
+
+	private long settle(EmbeddedBrowser browser, long maximum) throws InterruptedException {
+		Stopwatch stopwatch = Stopwatch.createStarted();
+		boolean waitingForQuiet = true;
+		while (true) {
+			long remaining = maximum - stopwatch.elapsed(TimeUnit.MILLISECONDS);
+			boolean quiet = !waitingForQuiet;
+			if (waitingForQuiet && remaining <= 0) {
+				LOG.debug("The page did not settle within {} ms", maximum);
+				waitingForQuiet = false;
+				quiet = true;
+			} else if (waitingForQuiet) {
+				List<?> status = status(browser);
+				if (status == null) {
+					LOG.debug("Could not track the page. Waiting the full {} ms", maximum);
+					Thread.sleep(remaining);
+					waitingForQuiet = false;
+					quiet = true;
+				} else {
+					quiet = isQuiet(status);
+				}
+			}
+			if (quiet
+			        && waitConditions.isSatisfied(browser,
+			                stopwatch.elapsed(TimeUnit.MILLISECONDS))) {
+				break;
+			}
+			Thread.sleep(waitingForQuiet ? Math.min(pollInterval, remaining) : pollInterval);
+		}
+		long waited = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+		LOG.debug("The page settled after {} ms", waited);
+		return waited;
+	}
+
+	private boolean isQuiet(List<?> status) {
+		return "complete".equals(status.get(0))
+		        && ((Number) status.get(1)).longValue() <= 0
+		        && ((Number) status.get(2)).longValue() >= quietPeriod;
+	}
+
+	private List<?> status(EmbeddedBrowser browser) {
+		try {
+			Object result = browser.queryJavaScript(STATUS_SCRIPT);
+			if (result instanceof List && ((List<?>) result).size() == 3) {
+				return (List<?>) result;
+			}
+			LOG.debug("Unexpected result from the settle script: {}", result);
+		} catch (BrowserConnectionException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			LOG.debug("Could not run the settle script: {}", e.getMessage());
+		}
+		return null;
+	}
+}
@@ -6,31 +6,42 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.codahale.metrics.MetricRegistry;
 import com.crawljax.core.CrawljaxException;
 import com.crawljax.core.configuration.AcceptAllFramesChecker;
 import com.crawljax.core.configuration.IgnoreFrameChecker;
 import com.crawljax.core.exception.BrowserConnectionException;
 import com.crawljax.core.state.Eventable;
 import com.crawljax.core.state.Identification;
+import com.crawljax.core.state.Identification.How;
 import com.crawljax.forms.FormHandler;
 import com.crawljax.forms.FormInput;
 import com.crawljax.forms.InputValue;
 import com.crawljax.forms.RandomInputValueGenerator;
 import com.crawljax.util.DomUtils;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.io.Files;
+import org.openqa.selenium.Dimension;
 import org.openqa.selenium.ElementNotVisibleException;
 import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.NoSuchFrameException;
 import org.openqa.selenium.OutputType;
+import org.openqa.selenium.Point;
 import org.openqa.selenium.Platform;
 import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.UnhandledAlertException;
@@ -55,6 +66,46 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 	private static final Logger LOGGER = LoggerFactory
 	        .getLogger(WebDriverBackedEmbeddedBrowser.class);
 
+	/**
+	 * The ways of identifying an element the browser can look up in
+	 * {@link #GET_BOUNDING_BOXES}. The others are found through the driver.
+	 */
+	private static final ImmutableSet<How> HOWS_IN_SCRIPT = Sets.immutableEnumSet(How.xpath,
+	        How.id, How.name, How.tag);
+
+	/**
+	 * Takes the ways and values of identifying the elements as its arguments and returns the
+	 * rectangle <code>[x, y, width, height]</code> of every element relative to the document, or
+	 * <code>null</code> if it can't be found.
+	 */
+	private static final String GET_BOUNDING_BOXES = "var hows = arguments[0];"
+	        + "var values = arguments[1];"
+	        + "var boxes = [];"
+	        + "for (var i = 0; i < hows.length; i++) {"
+	        + "var element = null;"
+	        + "try {"
+	        + "if (hows[i] == 'xpath') {"
+	        + "element = document.evaluate(values[i], document, null, "
+	        + "XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;"
+	        + "} else if (hows[i] == 'id') {"
+	        + "element = document.getElementById(values[i]);"
+	        + "} else if (hows[i] == 'name') {"
+	        + "element = document.getElementsByName(values[i])[0];"
+	        + "} else if (hows[i] == 'tag') {"
+	        + "element = document.getElementsByTagName(values[i])[0];"
+	        + "}"
+	        + "} catch (e) {}"
+	        + "if (element && element.getBoundingClientRect) {"
+	        + "var rect = element.getBoundingClientRect();"
+	        + "boxes.push([Math.round(rect.left + window.pageXOffset), "
+	        + "Math.round(rect.top + window.pageYOffset), "
+	        + "Math.round(rect.width), Math.round(rect.height)]);"
+	        + "} else {"
+	        + "boxes.push(null);"
+	        + "}"
+	        + "}"
+	        + "return boxes;";
+
 	/**
 	 * Create a RemoteWebDriver backed EmbeddedBrowser.
 	 * 
@@ -187,6 +238,8 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 	private long crawlWaitEvent;
 	private long crawlWaitReload;
 	private IgnoreFrameChecker ignoreFrameChecker = new AcceptAllFramesChecker();
+	private SettleWaiter settleWaiter;
+	private final DomSnapshot snapshot = new DomSnapshot();
 
 	/**
 	 * Constructor without configuration values.
@@ -257,9 +310,14 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 	 */
 	@Override
 	public void goToUrl(URI url) {
+		snapshot.invalidate();
 		try {
 			browser.navigate().to(url.toString());
-			Thread.sleep(this.crawlWaitReload);
+			if (settleWaiter == null) {
+				Thread.sleep(this.crawlWaitReload);
+			} else {
+				settleWaiter.afterReload(this, this.crawlWaitReload);
+			}
 			handlePopups();
 		} catch (WebDriverException e) {
 			throwIfConnectionException(e);
@@ -300,6 +358,9 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 		switch (eventable.getEventType()) {
 			case click:
 				try {
+					if (settleWaiter != null) {
+						settleWaiter.prepare(this);
+					}
 					webElement.click();
 				} catch (ElementNotVisibleException e) {
 					throw e;
@@ -316,7 +377,11 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 				return false;
 		}
 
-		Thread.sleep(this.crawlWaitEvent);
+		if (settleWaiter == null) {
+			Thread.sleep(this.crawlWaitEvent);
+		} else {
+			settleWaiter.afterEvent(this, this.crawlWaitEvent);
+		}
 		return true;
 	}
 
@@ -345,10 +410,14 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 
 	@Override
 	public String getStrippedDom() {
-
+		String cached = snapshot.getStrippedDom();
+		if (cached != null) {
+			return cached;
+		}
 		try {
 			String dom = toUniformDOM(DomUtils.getDocumentToString(getDomTreeWithFrames()));
 			LOGGER.trace(dom);
+			snapshot.setStrippedDom(dom);
 			return dom;
 		} catch (WebDriverException | CrawljaxException e) {
 			LOGGER.warn("Could not get the dom", e);
@@ -358,7 +427,40 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 
 	@Override
 	public String getUnStrippedDom() {
-		return browser.getPageSource();
+		String cached = snapshot.getPageSource();
+		if (cached == null) {
+			cached = browser.getPageSource();
+			snapshot.setPageSource(cached);
+		}
+		return cached;
+	}
+
+	@Override
+	public Document getStrippedDocument() throws CrawljaxException {
+		Document cached = snapshot.getStrippedDocument();
+		if (cached == null) {
+			cached = parse(getStrippedDom());
+			snapshot.setStrippedDocument(cached);
+		}
+		return cached;
+	}
+
+	@Override
+	public Document getStrippedDocumentWithoutIframeContent() throws CrawljaxException {
+		Document cached = snapshot.getStrippedDocumentWithoutIframeContent();
+		if (cached == null) {
+			cached = parse(getStrippedDomWithoutIframeContent());
+			snapshot.setStrippedDocumentWithoutIframeContent(cached);
+		}
+		return cached;
+	}
+
+	private Document parse(String dom) {
+		try {
+			return DomUtils.asDocument(dom);
+		} catch (IOException e) {
+			throw new CrawljaxException(e.getMessage(), e);
+		}
 	}
 
 	/**
@@ -402,6 +504,7 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 
 	@Override
 	public void goBack() {
+		snapshot.invalidate();
 		try {
 			browser.navigate().back();
 		} catch (WebDriverException e) {
@@ -418,6 +521,7 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 	 */
 	@Override
 	public boolean input(Identification identification, String text) {
+		snapshot.invalidate();
 		try {
 			WebElement field = browser.findElement(identification.getWebDriverBy());
 			if (field != null) {
@@ -446,6 +550,7 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 	public synchronized boolean fireEventAndWait(Eventable eventable)
 	        throws ElementNotVisibleException,
 	        NoSuchElementException, InterruptedException {
+		snapshot.invalidate();
 		try {
 
 			boolean handleChanged = false;
@@ -497,6 +602,25 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 	 */
 	@Override
 	public Object executeJavaScript(String code) throws CrawljaxException {
+		snapshot.invalidate();
+		return execute(code);
+	}
+
+	/**
+	 * Execute JavaScript that only reads from the page, without dropping the cached DOM.
+	 * 
+	 * @param code
+	 *            The code to execute.
+	 * @return The return value of the JavaScript.
+	 * @throws CrawljaxException
+	 *             when javascript execution failed.
+	 */
+	@Override
+	public Object queryJavaScript(String code) throws CrawljaxException {
+		return execute(code);
+	}
+
+	private Object execute(String code) {
 		try {
 			JavascriptExecutor js = (JavascriptExecutor) browser;
 			return js.executeScript(code);
@@ -542,6 +666,7 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 
 	@Override
 	public void closeOtherWindows() {
+		snapshot.invalidate();
 		try {
 			String current = browser.getWindowHandle();
 			for (String handle : browser.getWindowHandles()) {
@@ -567,7 +692,7 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 	private Document getDomTreeWithFrames() throws CrawljaxException {
 
 		try {
-			Document document = DomUtils.asDocument(browser.getPageSource());
+			Document document = DomUtils.asDocument(getUnStrippedDom());
 			appendFrameContent(document.getDocumentElement(), document, "");
 			return document;
 		} catch (IOException e) {
@@ -667,9 +792,13 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 	 */
 	@Override
 	public String getStrippedDomWithoutIframeContent() {
+		String cached = snapshot.getStrippedDomWithoutIframeContent();
+		if (cached != null) {
+			return cached;
+		}
 		try {
-			String dom = browser.getPageSource();
-			String result = toUniformDOM(dom);
+			String result = toUniformDOM(getUnStrippedDom());
+			snapshot.setStrippedDomWithoutIframeContent(result);
 			return result;
 		} catch (WebDriverException e) {
 			throwIfConnectionException(e);
@@ -737,6 +866,10 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 
 	@Override
 	public String getFrameDom(String iframeIdentification) {
+		String cached = snapshot.getFrameDom(iframeIdentification);
+		if (cached != null) {
+			return cached;
+		}
 		try {
 
 			switchToFrame(iframeIdentification);
@@ -746,6 +879,7 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 
 			browser.switchTo().defaultContent();
 
+			snapshot.setFrameDom(iframeIdentification, frameDom);
 			return frameDom;
 		} catch (WebDriverException e) {
 			throwIfConnectionException(e);
@@ -779,6 +913,8 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 	 */
 	@Override
 	public WebElement getWebElement(Identification identification) {
+		// The caller can change the page through the element.
+		snapshot.invalidate();
 		try {
 			return browser.findElement(identification.getWebDriverBy());
 		} catch (WebDriverException e) {
@@ -786,6 +922,105 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 		}
 	}
 
+	/**
+	 * Looks up the elements identified by XPath, id, name or tag in one script, so the browser is
+	 * only asked once for all of them. The others are found one by one.
+	 *
+	 * @param identifications
+	 *            the identifications of the elements.
+	 * @return the bounding box of every element that was found, by its identification.
+	 */
+	@Override
+	public ImmutableMap<Identification, BoundingBox> getBoundingBoxes(
+	        Collection<Identification> identifications) {
+		Map<Identification, BoundingBox> boxes = Maps.newLinkedHashMap();
+		List<Identification> inScript = new ArrayList<>(identifications.size());
+		List<String> hows = new ArrayList<>(identifications.size());
+		List<String> values = new ArrayList<>(identifications.size());
+		for (Identification identification : identifications) {
+			if (HOWS_IN_SCRIPT.contains(identification.getHow())) {
+				inScript.add(identification);
+				hows.add(identification.getHow().name());
+				values.add(identification.getValue());
+			} else {
+				BoundingBox box = findBoundingBox(identification);
+				if (box != null) {
+					boxes.put(identification, box);
+				}
+			}
+		}
+		if (!inScript.isEmpty()) {
+			List<?> found = getBoundingBoxesInScript(hows, values);
+			for (int i = 0; i < inScript.size() && i < found.size(); i++) {
+				if (found.get(i) instanceof List) {
+					boxes.put(inScript.get(i), toBoundingBox((List<?>) found.get(i)));
+				}
+			}
+		}
+		return ImmutableMap.copyOf(boxes);
+	}
+
+	private List<?> getBoundingBoxesInScript(List<String> hows, List<String> values) {
+		try {
+			Object found =
+			        ((JavascriptExecutor) browser).executeScript(GET_BOUNDING_BOXES, hows,
+			                values);
+			return found instanceof List ? (List<?>) found : Collections.emptyList();
+		} catch (WebDriverException e) {
+			throwIfConnectionException(e);
+			throw new CrawljaxException(e);
+		}
+	}
+
+	private static BoundingBox toBoundingBox(List<?> rect) {
+		return new BoundingBox(new Point(intAt(rect, 0), intAt(rect, 1)), new Dimension(intAt(
+		        rect, 2), intAt(rect, 3)));
+	}
+
+	private static int intAt(List<?> numbers, int index) {
+		Object number = numbers.get(index);
+		return number instanceof Number ? ((Number) number).intValue() : 0;
+	}
+
+	private BoundingBox findBoundingBox(Identification identification) {
+		try {
+			WebElement element = browser.findElement(identification.getWebDriverBy());
+			return new BoundingBox(element.getLocation(), element.getSize());
+		} catch (WebDriverException e) {
+			throwIfConnectionException(e);
+			LOGGER.debug("Could not find {} for its bounding box", identification);
+			return null;
+		}
+	}
+
+	/**
+	 * @param settleWaiter
+	 *            Waits for the page to settle after an event or reload, using the fixed waits as
+	 *            the maximum. When <code>null</code> the browser always waits the fixed time.
+	 */
+	public void setSettleWaiter(SettleWaiter settleWaiter) {
+		this.settleWaiter = settleWaiter;
+	}
+
+	SettleWaiter getSettleWaiter() {
+		return settleWaiter;
+	}
+
+	/**
+	 * @param registry
+	 *            The registry the hits and misses of the DOM cache are reported to.
+	 */
+	public void registerMetrics(MetricRegistry registry) {
+		snapshot.registerMetrics(registry);
+	}
+
+	/**
+	 * @return The number of times the DOM cache was cleared because the page might have changed.
+	 */
+	public long getDomEpoch() {
+		return snapshot.getEpoch();
+	}
+
 	/**
 	 * @return the period to wait after an event.
 	 */
@@ -864,6 +1099,8 @@ public final class WebDriverBackedEmbeddedBrowser implements EmbeddedBrowser {
 	 * @return the WebDriver used as an EmbeddedBrowser.
 	 */
 	public WebDriver getBrowser() {
+		// The caller can change the page through the driver.
+		snapshot.invalidate();
 		return browser;
 	}
 
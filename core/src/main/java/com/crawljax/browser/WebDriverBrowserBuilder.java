@@ -3,6 +3,9 @@ package com.crawljax.browser;
 import javax.inject.Inject;
 import javax.inject.Provider;
 
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.condition.browserwaiter.WaitConditionChecker;
+import com.crawljax.core.configuration.CrawlRules;
 import com.crawljax.core.configuration.CrawljaxConfiguration;
 import com.crawljax.core.configuration.ProxyConfiguration;
 import com.crawljax.core.configuration.ProxyConfiguration.ProxyType;
@@ -28,11 +31,23 @@ public class WebDriverBrowserBuilder implements Provider<EmbeddedBrowser> {
 	private static final Logger LOGGER = LoggerFactory.getLogger(WebDriverBrowserBuilder.class);
 	private final CrawljaxConfiguration configuration;
 	private final Plugins plugins;
+	private final SettleWaiter settleWaiter;
+	private final MetricRegistry registry;
 
 	@Inject
-	public WebDriverBrowserBuilder(CrawljaxConfiguration configuration, Plugins plugins) {
+	public WebDriverBrowserBuilder(CrawljaxConfiguration configuration, Plugins plugins,
+	        MetricRegistry registry) {
 		this.configuration = configuration;
 		this.plugins = plugins;
+		this.registry = registry;
+		CrawlRules rules = configuration.getCrawlRules();
+		if (rules.isWaitingForQuietDom()) {
+			this.settleWaiter =
+			        new SettleWaiter(rules.getQuietPeriod(), new WaitConditionChecker(rules),
+			                registry);
+		} else {
+			this.settleWaiter = null;
+		}
 	}
 
 	/**
@@ -50,7 +65,7 @@ public class WebDriverBrowserBuilder implements Provider<EmbeddedBrowser> {
 		long crawlWaitEvent = configuration.getCrawlRules().getWaitAfterEvent();
 
 		// Determine the requested browser type
-		EmbeddedBrowser browser = null;
+		WebDriverBackedEmbeddedBrowser browser = null;
 		EmbeddedBrowser.BrowserType browserType = configuration.getBrowserConfig().getBrowsertype();
 		try {
 			switch (browserType) {
@@ -85,11 +100,13 @@ public class WebDriverBrowserBuilder implements Provider<EmbeddedBrowser> {
 			LOGGER.error("Crawling with {} failed: " + e.getMessage(), browserType.toString());
 			throw e;
 		}
+		browser.setSettleWaiter(settleWaiter);
+		browser.registerMetrics(registry);
 		plugins.runOnBrowserCreatedPlugins(browser);
 		return browser;
 	}
 
-	private EmbeddedBrowser newFireFoxBrowser(ImmutableSortedSet<String> filterAttributes,
+	private WebDriverBackedEmbeddedBrowser newFireFoxBrowser(ImmutableSortedSet<String> filterAttributes,
 	        long crawlWaitReload, long crawlWaitEvent) {
 		if (configuration.getProxyConfiguration() != null) {
 			FirefoxProfile profile = new FirefoxProfile();
@@ -115,7 +132,7 @@ public class WebDriverBrowserBuilder implements Provider<EmbeddedBrowser> {
 		        crawlWaitEvent, crawlWaitReload);
 	}
 
-	private EmbeddedBrowser newChromeBrowser(ImmutableSortedSet<String> filterAttributes,
+	private WebDriverBackedEmbeddedBrowser newChromeBrowser(ImmutableSortedSet<String> filterAttributes,
 	        long crawlWaitReload, long crawlWaitEvent) {
 		ChromeDriver driverChrome;
 		if (configuration.getProxyConfiguration() != null
@@ -137,7 +154,7 @@ public class WebDriverBrowserBuilder implements Provider<EmbeddedBrowser> {
 		        crawlWaitEvent, crawlWaitReload);
 	}
 
-	private EmbeddedBrowser newPhantomJSDriver(ImmutableSortedSet<String> filterAttributes,
+	private WebDriverBackedEmbeddedBrowser newPhantomJSDriver(ImmutableSortedSet<String> filterAttributes,
 	        long crawlWaitReload, long crawlWaitEvent) {
 
 		DesiredCapabilities caps = new DesiredCapabilities();
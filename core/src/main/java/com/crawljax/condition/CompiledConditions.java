@@ -0,0 +1,203 @@
+package com.crawljax.condition;
+
+import java.util.List;
+import java.util.Map;
+
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.NotThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.crawljax.browser.EmbeddedBrowser;
+import com.crawljax.core.CrawljaxException;
+import com.crawljax.metrics.MetricsModule;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Conditions prepared to be checked together on one page. The {@link ScriptCondition}s are
+ * merged into one script, which runs the first time one of them is checked. Every expression is
+ * compiled on its own in that script, so one that doesn't compile is checked with
+ * {@link Condition#check(EmbeddedBrowser)} instead of failing the others. The
+ * {@link DomCondition}s share one {@link PageSnapshot}, so they are checked in Java on the same
+ * DOM. All other conditions are checked with {@link Condition#check(EmbeddedBrowser)}.
+ */
+@Immutable
+public final class CompiledConditions {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CompiledConditions.class);
+
+	private final ImmutableMap<Condition, Integer> scripted;
+	private final String script;
+	private final Timer scriptTimer;
+
+	/**
+	 * @param conditions
+	 *            The conditions that will be checked.
+	 */
+	public CompiledConditions(Iterable<? extends Condition> conditions) {
+		this(conditions, new Timer());
+	}
+
+	/**
+	 * @param conditions
+	 *            The conditions that will be checked.
+	 * @param registry
+	 *            The registry the time the scripts take is reported to.
+	 */
+	public CompiledConditions(Iterable<? extends Condition> conditions, MetricRegistry registry) {
+		this(conditions, registry.timer(MetricsModule.CONDITIONS_PREFIX + "scripts"));
+	}
+
+	private CompiledConditions(Iterable<? extends Condition> conditions, Timer scriptTimer) {
+		this.scriptTimer = scriptTimer;
+		Map<Condition, Integer> indexes = Maps.newLinkedHashMap();
+		StringBuilder js = new StringBuilder("var results = [];"
+		        + "function check(source){var f;"
+		        + "try{f=new Function(source);}catch(e){return null;}"
+		        + "try{return !!f();}catch(e){return false;}}");
+		for (Condition condition : conditions) {
+			if (condition instanceof ScriptCondition && !indexes.containsKey(condition)) {
+				String expression = ((ScriptCondition) condition).getScript();
+				if (expression != null) {
+					indexes.put(condition, indexes.size());
+					js.append("results.push(check(").append(quote("return (" + expression + ");"))
+					        .append("));");
+				}
+			}
+		}
+		scripted = ImmutableMap.copyOf(indexes);
+		script = js.append("return results;").toString();
+	}
+
+	private static String quote(String source) {
+		StringBuilder quoted = new StringBuilder(source.length() + 2).append('"');
+		for (int i = 0; i < source.length(); i++) {
+			char c = source.charAt(i);
+			switch (c) {
+				case '"':
+				case '\\':
+					quoted.append('\\').append(c);
+					break;
+				case '\n':
+					quoted.append("\\n");
+					break;
+				case '\r':
+					quoted.append("\\r");
+					break;
+				case '\u2028':
+				case '\u2029':
+					quoted.append(String.format("\\u%04x", (int) c));
+					break;
+				default:
+					quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	/**
+	 * @return The number of conditions that are checked in one script.
+	 */
+	public int getScriptedConditions() {
+		return scripted.size();
+	}
+
+	/**
+	 * @param browser
+	 *            The browser on the page to check the conditions on.
+	 * @return A new check of the conditions on the current page of the browser. The script and
+	 *         the DOM are only asked for once per check.
+	 */
+	public Evaluation evaluate(EmbeddedBrowser browser) {
+		return new Evaluation(browser);
+	}
+
+	/**
+	 * The conditions checked on one page.
+	 */
+	@NotThreadSafe
+	public final class Evaluation {
+
+		private final EmbeddedBrowser browser;
+		private final PageSnapshot page;
+		private Boolean[] results;
+
+		private Evaluation(EmbeddedBrowser browser) {
+			this.browser = browser;
+			this.page = new PageSnapshot(browser);
+		}
+
+		/**
+		 * @param condition
+		 *            The condition, which need not be one of the compiled ones.
+		 * @return whether the condition is satisfied.
+		 */
+		public boolean check(Condition condition) {
+			Integer index = scripted.get(condition);
+			if (index != null) {
+				Boolean result = scriptResults()[index];
+				return result != null ? result : condition.check(browser);
+			} else if (condition instanceof DomCondition) {
+				return ((DomCondition) condition).check(page);
+			} else {
+				return condition.check(browser);
+			}
+		}
+
+		/**
+		 * Runs the merged script now in stead of when the first scripted condition is checked,
+		 * so its time is not counted as part of that check.
+		 */
+		public void runScript() {
+			if (!scripted.isEmpty()) {
+				scriptResults();
+			}
+		}
+
+		/**
+		 * @param conditions
+		 *            The conditions.
+		 * @return whether all conditions are satisfied.
+		 */
+		public boolean checkAll(Iterable<? extends Condition> conditions) {
+			for (Condition condition : conditions) {
+				if (!check(condition)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * @return The result of every scripted condition, or <code>null</code> for the ones that
+		 *         have to be checked on their own. The script only reads the page, so it doesn't
+		 *         drop the DOM the browser keeps.
+		 */
+		private Boolean[] scriptResults() {
+			if (results == null) {
+				results = new Boolean[scripted.size()];
+				Timer.Context time = scriptTimer.time();
+				try {
+					Object returned = browser.queryJavaScript(script);
+					if (returned instanceof List) {
+						List<?> values = (List<?>) returned;
+						for (int i = 0; i < results.length && i < values.size(); i++) {
+							Object value = values.get(i);
+							results[i] = value == null ? null : Boolean.TRUE.equals(value);
+						}
+					}
+				} catch (CrawljaxException e) {
+					LOG.debug("Could not check the conditions in the browser because {}",
+					        e.getMessage());
+				} finally {
+					time.stop();
+				}
+			}
+			return results;
+		}
+	}
+}
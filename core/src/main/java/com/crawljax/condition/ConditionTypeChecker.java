@@ -1,17 +1,33 @@
 package com.crawljax.condition;
 
+import java.util.List;
+
 import javax.annotation.concurrent.ThreadSafe;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.crawljax.browser.EmbeddedBrowser;
+import com.crawljax.condition.CompiledConditions.Evaluation;
+import com.crawljax.metrics.MetricsModule;
+import com.google.common.base.CaseFormat;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 
 /**
- * Controller class for the invariants.
+ * Controller class for the invariants. The conditions that are checked for every invariant are
+ * compiled into {@link CompiledConditions}, so checking them costs one script and one read of the
+ * DOM. Those are the first precondition of an invariant, or its condition when it has no
+ * preconditions. The other conditions are only checked when the preconditions before them hold,
+ * as they would be without compiling.
+ * <p>
+ * The merged script runs before the invariants are checked and is timed as
+ * <code>conditions.scripts</code>. The time every invariant takes after that is reported to a
+ * timer named after its type, its position in the list and its description, like
+ * <code>invariant.2.no_errors</code>.
  */
 @ThreadSafe
 public class ConditionTypeChecker<T extends ConditionType> {
@@ -19,6 +35,8 @@ public class ConditionTypeChecker<T extends ConditionType> {
 	private static final Logger LOGGER = LoggerFactory.getLogger(ConditionTypeChecker.class);
 
 	private final ImmutableList<T> invariants;
+	private final CompiledConditions compiled;
+	private final ImmutableList<Timer> timers;
 
 	/**
 	 * Constructor with invariant list.
@@ -27,8 +45,43 @@ public class ConditionTypeChecker<T extends ConditionType> {
 	 *            The invariant list.
 	 */
 	public ConditionTypeChecker(ImmutableList<T> invariants) {
+		this(invariants, new MetricRegistry());
+	}
+
+	/**
+	 * @param invariants
+	 *            The invariant list.
+	 * @param registry
+	 *            The registry the time of every check is reported to.
+	 */
+	public ConditionTypeChecker(ImmutableList<T> invariants, MetricRegistry registry) {
 		Preconditions.checkNotNull(invariants);
 		this.invariants = invariants;
+		ImmutableList.Builder<Condition> conditions = ImmutableList.builder();
+		ImmutableList.Builder<Timer> timers = ImmutableList.builder();
+		for (int i = 0; i < invariants.size(); i++) {
+			T invariant = invariants.get(i);
+			List<Condition> preConditions = invariant.getPreConditions();
+			conditions.add(preConditions.isEmpty() ? invariant.getCondition() : preConditions
+			        .get(0));
+			timers.add(registry.timer(timerName(invariant, i)));
+		}
+		this.compiled = new CompiledConditions(conditions.build(), registry);
+		this.timers = timers.build();
+	}
+
+	/**
+	 * @return The name of the timer of an invariant. The position keeps invariants with the same
+	 *         description, or none, apart. The type keeps them apart from the invariants of another
+	 *         checker that reports to the same registry.
+	 */
+	private static String timerName(ConditionType invariant, int position) {
+		String type =
+		        CaseFormat.UPPER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, invariant.getClass()
+		                .getSimpleName());
+		String name = MetricsModule.CONDITIONS_PREFIX + type + '.' + position;
+		return invariant.getDescription() == null ? name : name + '.'
+		        + invariant.getDescription();
 	}
 
 	/**
@@ -40,22 +93,30 @@ public class ConditionTypeChecker<T extends ConditionType> {
 	public ImmutableList<T> getFailedConditions(EmbeddedBrowser browser) {
 		LOGGER.debug("Checking {} ConditionTypes", invariants.size());
 		ImmutableList.Builder<T> builder = ImmutableList.builder();
-		for (T invariant : invariants) {
-			if (preConditionsHold(browser, invariant)) {
-				Condition invariantCondition = invariant.getCondition();
-				LOGGER.debug("Checking ConditionType: {}", invariant.getDescription());
-				if (!invariantCondition.check(browser)) {
-					LOGGER.debug("ConditionType '{}' failed", invariant.getDescription());
-					builder.add(invariant);
+		Evaluation evaluation = compiled.evaluate(browser);
+		evaluation.runScript();
+		for (int i = 0; i < invariants.size(); i++) {
+			T invariant = invariants.get(i);
+			Timer.Context time = timers.get(i).time();
+			try {
+				if (preConditionsHold(evaluation, invariant)) {
+					Condition invariantCondition = invariant.getCondition();
+					LOGGER.debug("Checking ConditionType: {}", invariant.getDescription());
+					if (!evaluation.check(invariantCondition)) {
+						LOGGER.debug("ConditionType '{}' failed", invariant.getDescription());
+						builder.add(invariant);
+					}
 				}
+			} finally {
+				time.stop();
 			}
 		}
 		return builder.build();
 	}
 
-	private boolean preConditionsHold(EmbeddedBrowser browser, T invariant) {
+	private boolean preConditionsHold(Evaluation evaluation, T invariant) {
 		for (Condition condition : invariant.getPreConditions()) {
-			if (!condition.check(browser)) {
+			if (!evaluation.check(condition)) {
 				LOGGER.debug("Precondition failed for ConditionType: {} - PreCondition: {} : ",
 				        invariant.getDescription(), condition);
 				return false;
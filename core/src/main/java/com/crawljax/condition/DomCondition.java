@@ -0,0 +1,19 @@
+package com.crawljax.condition;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * A condition that only looks at the URL and the DOM of the page, so it is checked in Java
+ * without asking the browser anything else.
+ */
+@ThreadSafe
+public interface DomCondition extends Condition {
+
+	/**
+	 * @param page
+	 *            The page.
+	 * @return whether the evaluated condition is satisfied
+	 */
+	boolean check(PageSnapshot page);
+
+}
@@ -11,7 +11,7 @@ import com.google.common.base.Objects;
  * true.
  */
 @Immutable
-public class JavaScriptCondition implements Condition {
+public class JavaScriptCondition implements ScriptCondition {
 
 	private final String expression;
 
@@ -39,7 +39,7 @@ public class JavaScriptCondition implements Condition {
 		        "try{ if(" + expression + "){return '1';}else{" + "return '0';}}catch(e){"
 		                + " return '0';}";
 		try {
-			Object object = browser.executeJavaScript(js);
+			Object object = browser.queryJavaScript(js);
 			if (object == null) {
 				return false;
 			}
@@ -50,6 +50,11 @@ public class JavaScriptCondition implements Condition {
 		}
 	}
 
+	@Override
+	public String getScript() {
+		return expression;
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hashCode(getClass(), expression);
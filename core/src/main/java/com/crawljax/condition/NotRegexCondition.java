@@ -11,7 +11,7 @@ import com.google.common.base.Objects;
  * @author dannyroest@gmail.com (Danny Roest)
  */
 @Immutable
-public class NotRegexCondition implements Condition {
+public class NotRegexCondition implements DomCondition {
 
 	private final RegexCondition regexCondition;
 
@@ -28,6 +28,11 @@ public class NotRegexCondition implements Condition {
 		return Logic.not(regexCondition).check(browser);
 	}
 
+	@Override
+	public boolean check(PageSnapshot page) {
+		return !regexCondition.check(page);
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hashCode(getClass(), regexCondition);
@@ -12,7 +12,7 @@ import com.google.common.base.Objects;
  * @author dannyroest@gmail.com (Danny Roest)
  */
 @Immutable
-public class NotUrlCondition implements Condition {
+public class NotUrlCondition implements DomCondition {
 
 	private final UrlCondition urlCondition;
 
@@ -29,6 +29,11 @@ public class NotUrlCondition implements Condition {
 		return Logic.not(urlCondition).check(browser);
 	}
 
+	@Override
+	public boolean check(PageSnapshot page) {
+		return !urlCondition.check(page);
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hashCode(getClass(), urlCondition);
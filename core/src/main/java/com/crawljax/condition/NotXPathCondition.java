@@ -11,7 +11,7 @@ import com.google.common.base.Objects;
  * @author dannyroest@gmail.com (Danny Roest)
  */
 @Immutable
-public class NotXPathCondition implements Condition {
+public class NotXPathCondition implements DomCondition {
 
 	private final XPathCondition xpathCondition;
 
@@ -28,6 +28,11 @@ public class NotXPathCondition implements Condition {
 		return Logic.not(xpathCondition).check(browser);
 	}
 
+	@Override
+	public boolean check(PageSnapshot page) {
+		return !xpathCondition.check(page);
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hashCode(getClass(), xpathCondition);
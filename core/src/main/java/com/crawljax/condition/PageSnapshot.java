@@ -0,0 +1,66 @@
+package com.crawljax.condition;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.w3c.dom.Document;
+
+import com.crawljax.browser.EmbeddedBrowser;
+import com.crawljax.core.CrawljaxException;
+
+/**
+ * The URL and the DOM of the page a browser is on. Each is asked from the browser once, the first
+ * time a {@link DomCondition} needs it, so checking many conditions on the same page costs no
+ * more round trips than checking one.
+ */
+@NotThreadSafe
+public final class PageSnapshot {
+
+	private final EmbeddedBrowser browser;
+
+	private String url;
+	private String strippedDom;
+	private Document strippedDocument;
+
+	/**
+	 * @param browser
+	 *            The browser on the page.
+	 */
+	public PageSnapshot(EmbeddedBrowser browser) {
+		this.browser = browser;
+	}
+
+	/**
+	 * @return The URL of the page.
+	 * @see EmbeddedBrowser#getCurrentUrl()
+	 */
+	public String getUrl() {
+		if (url == null) {
+			url = browser.getCurrentUrl();
+		}
+		return url;
+	}
+
+	/**
+	 * @return The stripped DOM of the page.
+	 * @see EmbeddedBrowser#getStrippedDom()
+	 */
+	public String getStrippedDom() {
+		if (strippedDom == null) {
+			strippedDom = browser.getStrippedDom();
+		}
+		return strippedDom;
+	}
+
+	/**
+	 * @return The parsed stripped DOM of the page, which must not be changed.
+	 * @throws CrawljaxException
+	 *             if the DOM cannot be parsed.
+	 * @see EmbeddedBrowser#getStrippedDocument()
+	 */
+	public Document getStrippedDocument() throws CrawljaxException {
+		if (strippedDocument == null) {
+			strippedDocument = browser.getStrippedDocument();
+		}
+		return strippedDocument;
+	}
+}
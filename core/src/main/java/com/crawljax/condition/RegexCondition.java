@@ -14,7 +14,7 @@ import com.google.common.base.Objects;
  * Condition that returns true iff experssion occurs in the dom.
  */
 @Immutable
-public class RegexCondition implements Condition {
+public class RegexCondition implements DomCondition {
 
 	private static final Logger LOG = LoggerFactory.getLogger(RegexCondition.class);
 	private final String expression;
@@ -31,7 +31,12 @@ public class RegexCondition implements Condition {
 
 	@Override
 	public boolean check(EmbeddedBrowser browser) {
-		String dom = browser.getStrippedDom();
+		return check(new PageSnapshot(browser));
+	}
+
+	@Override
+	public boolean check(PageSnapshot page) {
+		String dom = page.getStrippedDom();
 		boolean found = pattern.matcher(dom).find();
 		if (found) {
 			LOG.trace("Found expression {} in DOM {}", expression, dom);
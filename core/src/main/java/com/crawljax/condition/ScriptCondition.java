@@ -0,0 +1,19 @@
+package com.crawljax.condition;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * A condition that is checked with JavaScript in the browser. {@link CompiledConditions} checks
+ * all of them in one script instead of running a script for each.
+ */
+@ThreadSafe
+public interface ScriptCondition extends Condition {
+
+	/**
+	 * @return A JavaScript expression that is true when the condition is satisfied, or
+	 *         <code>null</code> if this condition can't be written as one and must be checked
+	 *         with {@link #check(com.crawljax.browser.EmbeddedBrowser)}.
+	 */
+	String getScript();
+
+}
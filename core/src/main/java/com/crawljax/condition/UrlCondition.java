@@ -11,7 +11,7 @@ import com.google.common.base.Objects;
  * @author dannyroest@gmail.com (Danny Roest)
  */
 @Immutable
-public class UrlCondition implements Condition {
+public class UrlCondition implements DomCondition {
 
 	private final String url;
 
@@ -25,7 +25,12 @@ public class UrlCondition implements Condition {
 
 	@Override
 	public boolean check(EmbeddedBrowser browser) {
-		return browser.getCurrentUrl().toLowerCase().contains(url);
+		return check(new PageSnapshot(browser));
+	}
+
+	@Override
+	public boolean check(PageSnapshot page) {
+		return page.getUrl().toLowerCase().contains(url);
 	}
 
 	@Override
@@ -1,7 +1,5 @@
 package com.crawljax.condition;
 
-import java.io.IOException;
-
 import javax.xml.xpath.XPathExpressionException;
 
 import net.jcip.annotations.Immutable;
@@ -10,7 +8,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
 
 import com.crawljax.browser.EmbeddedBrowser;
-import com.crawljax.util.DomUtils;
+import com.crawljax.core.CrawljaxException;
 import com.crawljax.util.XPathHelper;
 import com.google.common.base.Objects;
 
@@ -19,7 +17,7 @@ import com.google.common.base.Objects;
  * element names must be in upper case and attributes in lower case.
  */
 @Immutable
-public class XPathCondition implements Condition {
+public class XPathCondition implements DomCondition {
 
 	private final String expression;
 
@@ -35,15 +33,16 @@ public class XPathCondition implements Condition {
 
 	@Override
 	public boolean check(EmbeddedBrowser browser) {
-		return checkXPathExpression(browser);
+		return check(new PageSnapshot(browser));
 	}
 
-	private boolean checkXPathExpression(EmbeddedBrowser browser) {
+	@Override
+	public boolean check(PageSnapshot page) {
 		try {
-			Document document = DomUtils.asDocument(browser.getStrippedDom());
+			Document document = page.getStrippedDocument();
 			NodeList nodeList = XPathHelper.evaluateXpathExpression(document, expression);
 			return nodeList.getLength() > 0;
-		} catch (XPathExpressionException | IOException e) {
+		} catch (XPathExpressionException | CrawljaxException e) {
 			// Exception is caught, check failed so return false;
 			return false;
 		}
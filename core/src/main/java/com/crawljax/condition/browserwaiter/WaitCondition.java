@@ -119,6 +119,35 @@ public class WaitCondition {
 
 	}
 
+	/**
+	 * Tests all the conditions once without waiting.
+	 * 
+	 * @param browser
+	 *            The browser to use.
+	 * @return <code>true</code> if the browser does not match the url or all conditions are
+	 *         satisfied.
+	 */
+	public boolean isSatisfied(EmbeddedBrowser browser) {
+		if (expectedConditions.isEmpty()
+		        || !browser.getCurrentUrl().toLowerCase().contains(this.url.toLowerCase())) {
+			return true;
+		}
+		for (ExpectedCondition condition : expectedConditions) {
+			if (!condition.isSatisfied(browser)) {
+				LOGGER.debug("Still waiting for: " + condition);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the time to wait in milliseconds
+	 */
+	protected int getTimeOut() {
+		return timeOut;
+	}
+
 	/**
 	 * @return the url
 	 */
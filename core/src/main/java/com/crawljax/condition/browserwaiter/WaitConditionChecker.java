@@ -10,6 +10,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.crawljax.browser.EmbeddedBrowser;
+import com.crawljax.browser.SettleWaiter;
 import com.crawljax.core.configuration.CrawlRules;
 import com.google.common.collect.ImmutableList;
 
@@ -37,11 +38,14 @@ public class WaitConditionChecker {
 	}
 
 	/**
+	 * Waits for the conditions, unless the browser already checks them while it settles, see
+	 * {@link SettleWaiter}.
+	 * 
 	 * @param browser
 	 *            The browser to use.
 	 */
 	public void wait(EmbeddedBrowser browser) {
-		if (waitConditions == null) {
+		if (waitConditions == null || SettleWaiter.isInstalledIn(browser)) {
 			return;
 		}
 		for (WaitCondition waitCondition : waitConditions) {
@@ -50,4 +54,24 @@ public class WaitConditionChecker {
 		}
 	}
 
+	/**
+	 * @param browser
+	 *            The browser to use.
+	 * @param waited
+	 *            The time in milliseconds that was waited for the conditions so far.
+	 * @return <code>true</code> if all wait conditions are satisfied right now or were waited for
+	 *         longer than their own time out.
+	 */
+	public boolean isSatisfied(EmbeddedBrowser browser, long waited) {
+		if (waitConditions == null) {
+			return true;
+		}
+		for (WaitCondition waitCondition : waitConditions) {
+			if (waited < waitCondition.getTimeOut() && !waitCondition.isSatisfied(browser)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 }
@@ -3,7 +3,9 @@ package com.crawljax.condition.eventablecondition;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.codahale.metrics.MetricRegistry;
 import com.crawljax.browser.EmbeddedBrowser;
+import com.crawljax.condition.CompiledConditions;
 import com.crawljax.condition.Condition;
 import com.crawljax.core.state.Eventable;
 import com.crawljax.util.XPathHelper;
@@ -11,7 +13,7 @@ import com.crawljax.util.XPathHelper;
 /**
  * An EventableCondition specifies properties of an {@link Eventable} which should be satisfied in
  * order to crawl the element. The user does not need this class when using the API. Only for use
- * with properties files .
+ * with properties files . The conditions are compiled once and compiled again when they change.
  */
 public class EventableCondition {
 
@@ -20,6 +22,10 @@ public class EventableCondition {
 	private String inXPath;
 	private List<String> linkedInputFields = new ArrayList<String>();
 
+	private CompiledConditions compiled;
+	private List<Condition> compiledConditions;
+	private MetricRegistry compiledRegistry;
+
 	/**
 	 * @param id
 	 *            Identifier.
@@ -55,15 +61,37 @@ public class EventableCondition {
 	/**
 	 * @param browser
 	 *            The browser.
-	 * @return true iff all the conditions are satisfied.
+	 * @return true iff all the conditions are satisfied. The time the scripts take is not
+	 *         reported.
 	 */
 	public boolean checkAllConditionsSatisfied(EmbeddedBrowser browser) {
-		for (Condition condition : getConditions()) {
-			if (!condition.check(browser)) {
-				return false;
-			}
+		return checkAllConditionsSatisfied(browser, null);
+	}
+
+	/**
+	 * @param browser
+	 *            The browser.
+	 * @param registry
+	 *            The registry the time the scripts take is reported to, or <code>null</code>
+	 *            to not report it.
+	 * @return true iff all the conditions are satisfied.
+	 */
+	public boolean checkAllConditionsSatisfied(EmbeddedBrowser browser,
+	        MetricRegistry registry) {
+		List<Condition> conditions = getConditions();
+		return compile(conditions, registry).evaluate(browser).checkAll(conditions);
+	}
+
+	private synchronized CompiledConditions compile(List<Condition> conditions,
+	        MetricRegistry registry) {
+		if (compiled == null || registry != compiledRegistry
+		        || !conditions.equals(compiledConditions)) {
+			compiled = registry == null ? new CompiledConditions(conditions)
+			        : new CompiledConditions(conditions, registry);
+			compiledConditions = new ArrayList<Condition>(conditions);
+			compiledRegistry = registry;
 		}
-		return true;
+		return compiled;
 	}
 
 	/**
@@ -4,12 +4,12 @@ import java.util.List;
 
 import org.w3c.dom.Element;
 
+import com.codahale.metrics.MetricRegistry;
 import com.crawljax.browser.EmbeddedBrowser;
 import com.crawljax.condition.eventablecondition.EventableCondition;
 import com.crawljax.core.state.Eventable;
 import com.crawljax.core.state.Identification;
 import com.crawljax.forms.FormInput;
-import com.crawljax.util.DomUtils;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -17,12 +17,23 @@ import com.google.common.collect.ImmutableSet;
 /**
  * Candidate element for crawling. It is possible to link this {@link Eventable} to form inputs, so
  * that Crawljax knows which values to set for this elements before it is clicked.
+ * <p>
+ * The DOM {@link Element} is only kept until the candidate is queued to be crawled, so the queue
+ * and the {@link com.crawljax.core.state.StateFlowGraph} don't keep whole documents alive. After
+ * that only the {@link #getElementDescriptor() descriptor} of the element is left. Plugins that
+ * run on the crawler's thread see the candidates before they are queued.
+ * {@link com.crawljax.core.plugin.AsyncPlugin}s run later and get a {@link #copy()} that keeps
+ * its element.
+ * </p>
  */
 public class CandidateElement {
 
+	private static final ImmutableSet<String> EXCLUDED_ATTRIBUTES = ImmutableSet.of("atusa");
+
 	private final Identification identification;
 
-	private final Element element;
+	private volatile Element element;
+	private volatile com.crawljax.core.state.Element descriptor;
 
 	private final ImmutableList<FormInput> formInputs;
 	private final String relatedFrame;
@@ -64,19 +75,56 @@ public class CandidateElement {
 		this(sourceElement, identification, relatedFrame, ImmutableList.<FormInput> of());
 	}
 
+	private CandidateElement(CandidateElement original) {
+		this.identification = original.identification;
+		this.element = original.element;
+		this.descriptor = original.getElementDescriptor();
+		this.relatedFrame = original.relatedFrame;
+		this.formInputs = original.formInputs;
+		this.eventableCondition = original.eventableCondition;
+	}
+
+	private CandidateElement(com.crawljax.core.state.Element descriptor,
+	        Identification identification, String relatedFrame, List<FormInput> formInputs,
+	        EventableCondition eventableCondition) {
+		this.identification = identification;
+		this.descriptor = descriptor;
+		this.relatedFrame = relatedFrame;
+		this.formInputs = ImmutableList.copyOf(formInputs);
+		this.eventableCondition = eventableCondition;
+	}
+
+	/**
+	 * @return A candidate that was queued before, for example by a crawl that is resumed from a
+	 *         checkpoint. It only has the descriptor of its element.
+	 */
+	static CandidateElement restored(com.crawljax.core.state.Element descriptor,
+	        Identification identification, String relatedFrame, List<FormInput> formInputs,
+	        EventableCondition eventableCondition) {
+		return new CandidateElement(descriptor, identification, relatedFrame, formInputs,
+		        eventableCondition);
+	}
+
+	/**
+	 * @return A copy of this candidate with its own reference to the element, so the copy still
+	 *         has its element after this candidate is queued. The descriptor is read before the
+	 *         copy is made. Changes to the copy have no effect on this candidate.
+	 */
+	public CandidateElement copy() {
+		return new CandidateElement(this);
+	}
+
 	/**
 	 * @return unique string without atusa attribute
 	 */
 	public String getGeneralString() {
-		ImmutableSet<String> exclude = ImmutableSet.of("atusa");
-
+		com.crawljax.core.state.Element descriptor = getElementDescriptor();
 		StringBuilder result = new StringBuilder();
-		if (element != null) {
-			result.append(this.element.getNodeName()).append(": ");
-
+		if (descriptor != null) {
+			result.append(descriptor.getTag()).append(": ")
+			        .append(descriptor.attributesToString(EXCLUDED_ATTRIBUTES));
 		}
-		result.append(DomUtils.getElementAttributes(this.element, exclude)).append(' ')
-		        .append(this.identification).append(' ').append(relatedFrame);
+		result.append(' ').append(this.identification).append(' ').append(relatedFrame);
 
 		return result.toString();
 	}
@@ -86,12 +134,13 @@ public class CandidateElement {
 	 */
 	public String getUniqueString() {
 
+		com.crawljax.core.state.Element descriptor = getElementDescriptor();
 		String result = "";
 
-		if (element != null) {
+		if (descriptor != null) {
 			result +=
-			        this.element.getNodeName() + ": "
-			                + DomUtils.getAllElementAttributes(this.element) + " ";
+			        descriptor.getTag() + ": "
+			                + descriptor.attributesToString(ImmutableSet.<String> of()) + " ";
 		}
 
 		result += this.identification + " " + relatedFrame;
@@ -100,12 +149,39 @@ public class CandidateElement {
 	}
 
 	/**
-	 * @return the element
+	 * @return the element, or <code>null</code> once the candidate is queued to be crawled.
+	 * @see #getElementDescriptor()
 	 */
 	public Element getElement() {
 		return element;
 	}
 
+	/**
+	 * @return The tag, attributes and text of the element, read the first time they are needed.
+	 *         Unlike the {@link #getElement() element} this is kept for as long as the candidate
+	 *         is. Two threads that ask for it at the same time may both read it, which gives equal
+	 *         descriptors.
+	 */
+	public com.crawljax.core.state.Element getElementDescriptor() {
+		if (descriptor == null) {
+			Element attached = element;
+			if (attached != null) {
+				descriptor = new com.crawljax.core.state.Element(attached);
+			}
+		}
+		return descriptor;
+	}
+
+	/**
+	 * Lets go of the DOM element, so its document can be collected. Called when the candidate is
+	 * queued, after the plugins on the crawler's thread have seen it. Copies made before for
+	 * {@link com.crawljax.core.plugin.AsyncPlugin}s keep their element.
+	 */
+	void detach() {
+		getElementDescriptor();
+		element = null;
+	}
+
 	/**
 	 * @return list with related formInputs
 	 */
@@ -121,6 +197,10 @@ public class CandidateElement {
 		this.eventableCondition = eventableCondition;
 	}
 
+	EventableCondition getEventableCondition() {
+		return eventableCondition;
+	}
+
 	/**
 	 * @return the identification object.
 	 */
@@ -152,11 +232,28 @@ public class CandidateElement {
 		return true;
 	}
 
+	/**
+	 * Check all eventable Condition for correctness.
+	 * 
+	 * @see EventableCondition#checkAllConditionsSatisfied(EmbeddedBrowser, MetricRegistry)
+	 * @param browser
+	 *            the current browser instance that contains the current dom
+	 * @param registry
+	 *            The registry the time the scripts take is reported to.
+	 * @return true if all conditions are satisfied or no conditions are specified
+	 */
+	public boolean allConditionsSatisfied(EmbeddedBrowser browser, MetricRegistry registry) {
+		if (eventableCondition != null) {
+			return eventableCondition.checkAllConditionsSatisfied(browser, registry);
+		}
+		return true;
+	}
+
 	@Override
 	public String toString() {
 		return Objects.toStringHelper(this)
 		        .add("identification", identification)
-		        .add("element", element)
+		        .add("element", getElementDescriptor())
 		        .add("formInputs", formInputs)
 		        .add("eventableCondition", eventableCondition)
 		        .add("relatedFrame", relatedFrame)
@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -16,12 +17,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import com.crawljax.browser.EmbeddedBrowser;
 import com.crawljax.condition.eventablecondition.EventableCondition;
-import com.crawljax.condition.eventablecondition.EventableConditionChecker;
+import com.crawljax.core.CrawlRuleIndex.Rule;
 import com.crawljax.core.configuration.CrawlElement;
 import com.crawljax.core.configuration.CrawlRules;
 import com.crawljax.core.configuration.CrawljaxConfiguration;
@@ -31,11 +31,11 @@ import com.crawljax.core.state.StateVertex;
 import com.crawljax.forms.FormHandler;
 import com.crawljax.util.DomUtils;
 import com.crawljax.util.XPathHelper;
+import com.crawljax.util.XPathIndex;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableList.Builder;
-import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Maps;
 import com.google.inject.assistedinject.Assisted;
 
 /**
@@ -51,8 +51,7 @@ public class CandidateElementExtractor {
 
 	private final FormHandler formHandler;
 	private final boolean crawlFrames;
-	private final ImmutableMultimap<String, CrawlElement> excludeCrawlElements;
-	private final ImmutableList<CrawlElement> includedCrawlElements;
+	private final CrawlRuleIndex ruleIndex;
 
 	private final boolean clickOnce;
 	private final boolean randomizeElementsOrder;
@@ -84,11 +83,11 @@ public class CandidateElementExtractor {
 		this.formHandler = formHandler;
 		CrawlRules rules = config.getCrawlRules();
 		PreCrawlConfiguration preCrawlConfig = rules.getPreCrawlConfig();
-		this.excludeCrawlElements = asMultiMap(preCrawlConfig.getExcludedElements());
-		this.includedCrawlElements = ImmutableList.<CrawlElement> builder()
+		this.ruleIndex = new CrawlRuleIndex(ImmutableList.<CrawlElement> builder()
 		        .addAll(preCrawlConfig.getIncludedElements())
 		        .addAll(rules.getInputSpecification().getCrawlElements())
-		        .build();
+		        .build(), preCrawlConfig.getExcludedElements(),
+		        checker.getEventableConditionChecker());
 		crawlFrames = rules.shouldCrawlFrames();
 		clickOnce = rules.isClickOnce();
 		randomizeElementsOrder = rules.isRandomizeCandidateElements();
@@ -97,15 +96,6 @@ public class CandidateElementExtractor {
 		siteHostName = config.getUrl().getHost();
 	}
 
-	private ImmutableMultimap<String, CrawlElement> asMultiMap(
-	        ImmutableList<CrawlElement> elements) {
-		ImmutableMultimap.Builder<String, CrawlElement> builder = ImmutableMultimap.builder();
-		for (CrawlElement elem : elements) {
-			builder.put(elem.getTagName(), elem);
-		}
-		return builder.build();
-	}
-
 	/**
 	 * This method extracts candidate elements from the current DOM tree in the browser, based on
 	 * the crawl tags defined by the user.
@@ -126,13 +116,8 @@ public class CandidateElementExtractor {
 		}
 		LOG.debug("Looking in state: {} for candidate elements", currentState.getName());
 
-		try {
-			Document dom = DomUtils.asDocument(browser.getStrippedDomWithoutIframeContent());
-			extractElements(dom, results, "");
-		} catch (IOException e) {
-			LOG.error(e.getMessage(), e);
-			throw new CrawljaxException(e);
-		}
+		Document dom = browser.getStrippedDocumentWithoutIframeContent();
+		extractElements(dom, results, "");
 		if (randomizeElementsOrder) {
 			Collections.shuffle(results);
 		}
@@ -141,32 +126,82 @@ public class CandidateElementExtractor {
 		return ImmutableList.copyOf(results);
 	}
 
+	/**
+	 * Walks the document once. Every element is matched against the rules for its tag and the
+	 * frames are collected on the way, so every frame is visited once. The candidates in frames
+	 * come first, followed by the candidates of every rule in the order the rules were configured.
+	 */
 	private void extractElements(Document dom, List<CandidateElement> results,
 	        String relatedFrame) {
 		LOG.debug("Extracting elements for related frame '{}'", relatedFrame);
-		for (CrawlElement tag : includedCrawlElements) {
-			LOG.debug("Extracting TAG: {}", tag);
-
-			NodeList frameNodes = dom.getElementsByTagName("FRAME");
-			addFramesCandidates(dom, results, relatedFrame, frameNodes);
-
-			NodeList iFrameNodes = dom.getElementsByTagName("IFRAME");
-			addFramesCandidates(dom, results, relatedFrame, iFrameNodes);
+		ImmutableList<Rule> includes = ruleIndex.getIncludes();
+		if (includes.isEmpty()) {
+			return;
+		}
+		DocumentXPaths xpaths = new DocumentXPaths(dom, ruleIndex.getExcludes());
+		List<List<Element>> matchesByRule = new ArrayList<>(includes.size());
+		for (int i = 0; i < includes.size(); i++) {
+			matchesByRule.add(new ArrayList<Element>());
+		}
+		List<Element> frames = new ArrayList<>();
+		List<Element> iFrames = new ArrayList<>();
+
+		NodeList elements = dom.getElementsByTagName(CrawlRuleIndex.ANY_TAG);
+		for (int i = 0; i < elements.getLength(); i++) {
+			Element element = (Element) elements.item(i);
+			String tagName = element.getNodeName();
+			if ("FRAME".equals(tagName)) {
+				frames.add(element);
+			} else if ("IFRAME".equals(tagName)) {
+				iFrames.add(element);
+			}
+			ImmutableList<Rule> matching = ruleIndex.includesFor(tagName);
+			if (!matching.isEmpty()) {
+				matchElement(element, matching, matchesByRule, xpaths);
+			}
+		}
 
-			evaluateElements(dom, tag, results, relatedFrame);
+		addFramesCandidates(results, relatedFrame, frames);
+		addFramesCandidates(results, relatedFrame, iFrames);
+		for (Rule rule : includes) {
+			for (Element sourceElement : matchesByRule.get(rule.getPosition())) {
+				evaluateElement(results, relatedFrame, rule, sourceElement, xpaths);
+			}
 		}
 	}
 
-	private void addFramesCandidates(Document dom, List<CandidateElement> results,
-	        String relatedFrame, NodeList frameNodes) {
-
-		if (frameNodes == null) {
-			return;
+	private void matchElement(Element element, ImmutableList<Rule> matching,
+	        List<List<Element>> matchesByRule, DocumentXPaths xpaths) {
+		/*
+		 * TODO Stefan This is a possible Thread-Interleaving problem, as / isChecked can return
+		 * false and when needed to add it can return true. / check if element is a candidate
+		 */
+		String id = null;
+		Boolean excluded = null;
+		for (Rule rule : matching) {
+			boolean matchesXpath = elementMatchesXpath(rule, xpaths, element);
+			LOG.debug("Element {} matches Xpath={}", DomUtils.getElementString(element),
+			        matchesXpath);
+			if (matchesXpath && id == null) {
+				id = element.getNodeName() + ": " + DomUtils.getAllElementAttributes(element);
+			}
+			if (matchesXpath && !checkedElements.isChecked(id)) {
+				if (excluded == null) {
+					excluded = isExcluded(element, xpaths);
+				}
+				if (!excluded) {
+					addElement(element, matchesByRule.get(rule.getPosition()),
+					        rule.getCrawlElement());
+					continue;
+				}
+			}
+			LOG.debug("Element {} was not added", element);
 		}
+	}
 
-		for (int i = 0; i < frameNodes.getLength(); i++) {
-
-			Element frameElement = (Element) frameNodes.item(i);
+	private void addFramesCandidates(List<CandidateElement> results, String relatedFrame,
+	        List<Element> frameElements) {
+		for (Element frameElement : frameElements) {
 
 			String nameId = DomUtils.getFrameIdentification(frameElement);
 
@@ -214,74 +249,13 @@ public class CandidateElementExtractor {
 		}
 	}
 
-	private void evaluateElements(Document dom, CrawlElement crawl,
-	        List<CandidateElement> results, String relatedFrame) {
-		try {
-			List<Element> nodeListForCrawlElement =
-			        getNodeListForTagElement(dom, crawl,
-			                checkedElements.getEventableConditionChecker());
-
-			for (Element sourceElement : nodeListForCrawlElement) {
-				evaluateElement(results, relatedFrame, crawl, sourceElement);
-			}
-		} catch (CrawljaxException e) {
-			LOG.warn("Catched exception during NodeList For Tag Element retrieval", e);
-		}
-	}
-
-	/**
-	 * Returns a list of Elements form the DOM tree, matching the tag element.
-	 */
-	private ImmutableList<Element> getNodeListForTagElement(Document dom,
-	        CrawlElement crawlElement,
-	        EventableConditionChecker eventableConditionChecker) {
-
-		Builder<Element> result = ImmutableList.builder();
-
-		if (crawlElement.getTagName() == null) {
-			return result.build();
-		}
-
-		EventableCondition eventableCondition =
-		        eventableConditionChecker.getEventableCondition(crawlElement.getId());
-		// TODO Stefan; this part of the code should be re-factored, Hack-ed it this way to prevent
-		// performance problems.
-		ImmutableList<String> expressions = getFullXpathForGivenXpath(dom, eventableCondition);
-
-		NodeList nodeList = dom.getElementsByTagName(crawlElement.getTagName());
-
-		for (int k = 0; k < nodeList.getLength(); k++) {
-
-			Element element = (Element) nodeList.item(k);
-			boolean matchesXpath =
-			        elementMatchesXpath(eventableConditionChecker, eventableCondition,
-			                expressions, element);
-			LOG.debug("Element {} matches Xpath={}", DomUtils.getElementString(element),
-			        matchesXpath);
-			/*
-			 * TODO Stefan This is a possible Thread-Interleaving problem, as / isChecked can return
-			 * false and when needed to add it can return true. / check if element is a candidate
-			 */
-			String id = element.getNodeName() + ": " + DomUtils.getAllElementAttributes(element);
-			if (matchesXpath && !checkedElements.isChecked(id)
-			        && !isExcluded(dom, element, eventableConditionChecker)) {
-				addElement(element, result, crawlElement);
-			} else {
-				LOG.debug("Element {} was not added", element);
-			}
-		}
-		return result.build();
-	}
-
-	private boolean elementMatchesXpath(EventableConditionChecker eventableConditionChecker,
-	        EventableCondition eventableCondition, ImmutableList<String> expressions,
-	        Element element) {
+	private boolean elementMatchesXpath(Rule rule, DocumentXPaths xpaths, Element element) {
 		boolean matchesXpath = true;
-		if (eventableCondition != null && eventableCondition.getInXPath() != null) {
+		if (rule.getInXPath() != null) {
 			try {
 				matchesXpath =
-				        eventableConditionChecker.checkXPathUnderXPaths(
-				                XPathHelper.getXPathExpression(element), expressions);
+				        checkedElements.getEventableConditionChecker().checkXPathUnderXPaths(
+				                xpaths.xpathOf(element), xpaths.resolve(rule.getInXPath()));
 			} catch (RuntimeException e) {
 				matchesXpath = false;
 			}
@@ -289,28 +263,11 @@ public class CandidateElementExtractor {
 		return matchesXpath;
 	}
 
-	private ImmutableList<String> getFullXpathForGivenXpath(Document dom,
-	        EventableCondition eventableCondition) {
-		if (eventableCondition != null && eventableCondition.getInXPath() != null) {
-			try {
-				ImmutableList<String> result =
-				        XPathHelper.getXpathForXPathExpressions(dom,
-				                eventableCondition.getInXPath());
-				LOG.debug("Xpath {} resolved to xpaths in document: {}",
-				        eventableCondition.getInXPath(), result);
-				return result;
-			} catch (XPathExpressionException e) {
-				LOG.debug("Could not load XPath expressions for {}", eventableCondition, e);
-			}
-		}
-		return ImmutableList.<String> of();
-	}
-
-	private void addElement(Element element, Builder<Element> builder, CrawlElement crawlElement) {
+	private void addElement(Element element, List<Element> matches, CrawlElement crawlElement) {
 		if ("A".equalsIgnoreCase(crawlElement.getTagName()) && hrefShouldBeIgnored(element)) {
 			return;
 		}
-		builder.add(element);
+		matches.add(element);
 		LOG.debug("Adding element {}", element);
 		checkedElements.increaseElementsCounter();
 	}
@@ -351,11 +308,9 @@ public class CandidateElementExtractor {
 	}
 
 	private void evaluateElement(List<CandidateElement> results, String relatedFrame,
-	        CrawlElement crawl, Element sourceElement) {
-		EventableCondition eventableCondition =
-		        checkedElements.getEventableConditionChecker().getEventableCondition(
-		                crawl.getId());
-		String xpath = XPathHelper.getXPathExpression(sourceElement);
+	        Rule rule, Element sourceElement, DocumentXPaths xpaths) {
+		EventableCondition eventableCondition = rule.getCondition();
+		String xpath = xpaths.xpathOf(sourceElement);
 		// get multiple candidate elements when there are input
 		// fields connected to this element
 
@@ -392,42 +347,65 @@ public class CandidateElementExtractor {
 	 *         marked for exclusion, which allows for recursive exclusion of elements from
 	 *         candidates.
 	 */
-	private boolean isExcluded(Document dom, Element element,
-	        EventableConditionChecker eventableConditionChecker) {
+	private boolean isExcluded(Element element, DocumentXPaths xpaths) {
+		return xpaths.getExcludedSubtrees().contains(element);
+	}
 
-		Node parent = element.getParentNode();
+	public boolean checkCrawlCondition() {
+		return checkedElements.checkCrawlCondition(browser);
+	}
 
-		if (parent instanceof Element
-		        && isExcluded(dom, (Element) parent, eventableConditionChecker)) {
-			return true;
+	/**
+	 * The XPaths of the elements of one document, the elements the XPath expressions of the
+	 * rules select in it and the elements that are excluded. Every expression is evaluated at
+	 * most once per document.
+	 */
+	private static final class DocumentXPaths {
+
+		private final Document dom;
+		private final XPathIndex index;
+		private final List<Rule> excludes;
+		private final Map<String, ImmutableList<String>> resolved = Maps.newHashMap();
+		private ExcludedSubtrees excludedSubtrees;
+
+		DocumentXPaths(Document dom, List<Rule> excludes) {
+			this.dom = dom;
+			this.index = XPathIndex.of(dom);
+			this.excludes = excludes;
 		}
 
-		for (CrawlElement crawlElem : excludeCrawlElements
-		        .get(element.getTagName().toUpperCase())) {
-			boolean matchesXPath = false;
-			EventableCondition eventableCondition =
-			        eventableConditionChecker.getEventableCondition(crawlElem.getId());
-			try {
-				String asXpath = XPathHelper.getXPathExpression(element);
-				matchesXPath =
-				        eventableConditionChecker.checkXpathStartsWithXpathEventableCondition(
-				                dom, eventableCondition, asXpath);
-			} catch (CrawljaxException | XPathExpressionException e) {
-				LOG.debug("Could not check exclusion by Xpath for element because {}",
-				        e.getMessage());
-				matchesXPath = false;
-			}
-
-			if (matchesXPath) {
-				LOG.info("Excluded element because of xpath: " + element);
-				return true;
+		/**
+		 * @return The excluded elements, which are found the first time they are asked for.
+		 */
+		ExcludedSubtrees getExcludedSubtrees() {
+			if (excludedSubtrees == null) {
+				excludedSubtrees = new ExcludedSubtrees(dom, excludes);
 			}
+			return excludedSubtrees;
 		}
 
-		return false;
-	}
+		String xpathOf(Element element) {
+			String xpath = index.getXPath(element);
+			return xpath == null ? XPathHelper.getXPathExpression(element) : xpath;
+		}
 
-	public boolean checkCrawlCondition() {
-		return checkedElements.checkCrawlCondition(browser);
+		/**
+		 * @return The XPaths of the elements the expression selects, or an empty list if the
+		 *         expression is invalid.
+		 */
+		ImmutableList<String> resolve(String expression) {
+			ImmutableList<String> xpaths = resolved.get(expression);
+			if (xpaths == null) {
+				try {
+					xpaths = XPathHelper.getXpathForXPathExpressions(dom, expression);
+					LOG.debug("Xpath {} resolved to xpaths in document: {}", expression, xpaths);
+				} catch (XPathExpressionException e) {
+					LOG.debug("Could not load XPath expressions for {}", expression, e);
+					xpaths = ImmutableList.of();
+				}
+				resolved.put(expression, xpaths);
+			}
+			return xpaths;
+		}
 	}
 }
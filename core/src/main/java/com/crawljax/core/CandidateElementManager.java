@@ -1,22 +1,27 @@
 package com.crawljax.core;
 
-import java.util.Collection;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
-import net.jcip.annotations.GuardedBy;
-
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.crawljax.browser.EmbeddedBrowser;
 import com.crawljax.condition.ConditionTypeChecker;
 import com.crawljax.condition.crawlcondition.CrawlCondition;
 import com.crawljax.condition.eventablecondition.EventableConditionChecker;
+import com.crawljax.core.configuration.CrawljaxConfiguration;
+import com.crawljax.metrics.MetricsModule;
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashCode;
 
 /**
  * The class is a ExtractorManager for the CandidateElements. It basically implements the
- * ExtractorManager.
+ * ExtractorManager. There is one per crawl, so all browsers share the checked elements.
  */
+@Singleton
 public class CandidateElementManager implements ExtractorManager {
 	/**
 	 * Use the AtomicInteger to prevent Problems when increasing.
@@ -24,10 +29,14 @@ public class CandidateElementManager implements ExtractorManager {
 	private final AtomicInteger counter = new AtomicInteger();
 
 	/**
-	 * Use the ConcurrentLinkedQueue to prevent Thread problems when checking and storing
-	 * checkedElements.
+	 * The digests of the checked elements, which can be looked up without locking.
+	 */
+	private final CheckedElements elements;
+
+	/**
+	 * The number of elements that were not marked because they were checked before.
 	 */
-	private final Collection<String> elements = new ConcurrentLinkedQueue<String>();
+	private final Counter rejected;
 
 	/**
 	 * The eventableConditionChecker where to load the eventableconditions from into the new
@@ -42,23 +51,61 @@ public class CandidateElementManager implements ExtractorManager {
 	private final ConditionTypeChecker<CrawlCondition> crawlConditionChecker;
 
 	/**
-	 * Used to lock the elements when adding multiple elements.
+	 * Create a new CandidateElementManager that keeps the checked elements exactly.
+	 * 
+	 * @param eventableConditionChecker
+	 *            the EventableConditionChecker to use
+	 * @param crawlConditionChecker
+	 *            the CrawlConditionChecker to use
 	 */
-	private final Object elementsLock = new Object();
+	public CandidateElementManager(EventableConditionChecker eventableConditionChecker,
+	        ConditionTypeChecker<CrawlCondition> crawlConditionChecker) {
+		this.eventableConditionChecker = eventableConditionChecker;
+		this.crawlConditionChecker = crawlConditionChecker;
+		this.elements = new CheckedElementDigests();
+		this.rejected = new Counter();
+	}
 
 	/**
-	 * Create a new CandidateElementManager.
+	 * Create a new CandidateElementManager that keeps the checked elements like the
+	 * configuration says and reports them to the registry.
 	 * 
 	 * @param eventableConditionChecker
 	 *            the EventableConditionChecker to use
 	 * @param crawlConditionChecker
 	 *            the CrawlConditionChecker to use
+	 * @param config
+	 *            The configuration.
+	 * @param registry
+	 *            The registry of the metrics.
 	 */
 	@Inject
 	public CandidateElementManager(EventableConditionChecker eventableConditionChecker,
-	        ConditionTypeChecker<CrawlCondition> crawlConditionChecker) {
+	        ConditionTypeChecker<CrawlCondition> crawlConditionChecker,
+	        CrawljaxConfiguration config, MetricRegistry registry) {
 		this.eventableConditionChecker = eventableConditionChecker;
 		this.crawlConditionChecker = crawlConditionChecker;
+		if (config.getCheckedElementsFilterSize() > 0) {
+			this.elements =
+			        new CheckedElementFilter(config.getCheckedElementsFilterSize(),
+			                config.getCheckedElementsFalsePositiveRate());
+		} else {
+			this.elements = new CheckedElementDigests();
+		}
+		this.rejected = registry.counter(MetricsModule.ELEMENTS_PREFIX + "checked_rejected");
+		registry.register(MetricsModule.ELEMENTS_PREFIX + "checked_digests", new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return elements.size();
+			}
+		});
+		registry.register(MetricsModule.ELEMENTS_PREFIX + "checked_false_positive_rate",
+		        new Gauge<Double>() {
+			        @Override
+			        public Double getValue() {
+				        return elements.falsePositiveRate();
+			        }
+		        });
 	}
 
 	/**
@@ -73,8 +120,8 @@ public class CandidateElementManager implements ExtractorManager {
 	}
 
 	/**
-	 * Check if a given element is already checked, preventing duplicate work. This is implemented
-	 * in a ConcurrentLinkedQueue to support thread-safety
+	 * Check if a given element is already checked, preventing duplicate work. Only the digest of
+	 * the element is looked up, so this is thread safe without locking.
 	 * 
 	 * @param element
 	 *            the to search for if its already checked
@@ -82,7 +129,7 @@ public class CandidateElementManager implements ExtractorManager {
 	 */
 	@Override
 	public boolean isChecked(String element) {
-		return elements.contains(element);
+		return elements.contains(digest(element));
 	}
 
 	/**
@@ -93,20 +140,26 @@ public class CandidateElementManager implements ExtractorManager {
 	 *            the element that is checked
 	 * @return true if !contains(element.uniqueString)
 	 */
-	@GuardedBy("elementsLock")
 	@Override
 	public boolean markChecked(CandidateElement element) {
-		String generalString = element.getGeneralString();
-		String uniqueString = element.getUniqueString();
-		synchronized (elementsLock) {
-			if (elements.contains(uniqueString)) {
-				return false;
-			} else {
-				elements.add(generalString);
-				elements.add(uniqueString);
-				return true;
-			}
+		boolean added =
+		        elements.add(digest(element.getGeneralString()),
+		                digest(element.getUniqueString()));
+		if (!added) {
+			rejected.inc();
 		}
+		return added;
+	}
+
+	private static HashCode digest(String element) {
+		return CheckedElements.DIGESTS.hashString(element, Charsets.UTF_8);
+	}
+
+	/**
+	 * @return The digests of the checked elements, for example to write them to a checkpoint.
+	 */
+	CheckedElements getCheckedElements() {
+		return elements;
 	}
 
 	/**
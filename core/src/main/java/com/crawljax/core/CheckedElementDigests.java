@@ -0,0 +1,97 @@
+package com.crawljax.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.jcip.annotations.GuardedBy;
+
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+
+/**
+ * Keeps every digest in a concurrent hash set, so a lookup takes constant time and doesn't lock.
+ * Two elements are only mistaken for each other when their {@value CheckedElements#DIGEST_BITS} bit digests
+ * collide. The digests are also kept in the order they were added so checkpoints only write the
+ * new ones.
+ */
+@ThreadSafe
+final class CheckedElementDigests implements CheckedElements {
+
+	private static final int DIGEST_BYTES = DIGEST_BITS / Byte.SIZE;
+
+	private final Set<HashCode> digests = Sets.newConcurrentHashSet();
+
+	@GuardedBy("added")
+	private final List<HashCode> added = new ArrayList<>();
+
+	@Override
+	public boolean contains(HashCode digest) {
+		return digests.contains(digest);
+	}
+
+	@Override
+	public boolean add(HashCode general, HashCode unique) {
+		if (!digests.add(unique)) {
+			return false;
+		}
+		boolean newGeneral = digests.add(general);
+		synchronized (added) {
+			added.add(unique);
+			if (newGeneral) {
+				added.add(general);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int size() {
+		synchronized (added) {
+			return added.size();
+		}
+	}
+
+	@Override
+	public double falsePositiveRate() {
+		return 0;
+	}
+
+	@Override
+	public void write(DataOutputStream out, int from, int to) throws IOException {
+		List<HashCode> written;
+		synchronized (added) {
+			written = new ArrayList<>(added.subList(from, to));
+		}
+		out.writeByte(DIGEST_RECORD);
+		out.writeInt(written.size());
+		for (HashCode digest : written) {
+			out.write(digest.asBytes());
+		}
+	}
+
+	@Override
+	public void read(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		if (type != DIGEST_RECORD) {
+			throw new CrawljaxException("The checked elements were written with a Bloom filter. "
+			        + "Configure the same filter to restore them.");
+		}
+		int size = in.readInt();
+		for (int i = 0; i < size; i++) {
+			byte[] bytes = new byte[DIGEST_BYTES];
+			in.readFully(bytes);
+			HashCode digest = HashCode.fromBytes(bytes);
+			if (digests.add(digest)) {
+				synchronized (added) {
+					added.add(digest);
+				}
+			}
+		}
+	}
+}
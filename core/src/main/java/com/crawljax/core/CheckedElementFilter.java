@@ -0,0 +1,212 @@
+package com.crawljax.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.jcip.annotations.GuardedBy;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.PrimitiveSink;
+
+/**
+ * Keeps the digests in a {@link BloomFilter}, which uses a fixed amount of memory however many
+ * elements are checked. In return an element that was never checked is taken for a checked one
+ * with the configured false positive rate, and is then not clicked. The rate rises above the
+ * configured one when more elements are checked than the filter was sized for.
+ * <p>
+ * The first checkpoint contains the whole filter. Later checkpoints only contain the digests
+ * that were added since the previous one, unless writing those is larger than writing the filter
+ * again.
+ * </p>
+ */
+@ThreadSafe
+final class CheckedElementFilter implements CheckedElements {
+
+	/**
+	 * Puts the bytes of a digest into the filter.
+	 */
+	private enum DigestFunnel implements Funnel<HashCode> {
+		INSTANCE;
+
+		@Override
+		public void funnel(HashCode from, PrimitiveSink into) {
+			into.putBytes(from.asBytes());
+		}
+	}
+
+	@GuardedBy("this")
+	private BloomFilter<HashCode> filter;
+
+	@GuardedBy("this")
+	private int size;
+
+	/**
+	 * The most digests that are kept for the next checkpoint. Writing more is larger than writing
+	 * the filter.
+	 */
+	private final int maxUnwritten;
+
+	/**
+	 * The digests added since the last checkpoint, two longs per digest, or <code>null</code> if
+	 * there were too many and the next checkpoint writes the whole filter.
+	 */
+	@GuardedBy("this")
+	private long[] unwritten = new long[16];
+	@GuardedBy("this")
+	private int unwrittenCount;
+	/**
+	 * The {@link #size()} before the first of the unwritten digests was added.
+	 */
+	@GuardedBy("this")
+	private int unwrittenFrom;
+
+	/**
+	 * @param expectedElements
+	 *            The number of elements the filter is sized for.
+	 * @param falsePositiveRate
+	 *            The false positive rate when that number of elements is checked.
+	 */
+	CheckedElementFilter(int expectedElements, double falsePositiveRate) {
+		filter = BloomFilter.create(DigestFunnel.INSTANCE, expectedElements, falsePositiveRate);
+		double bits = -expectedElements * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+		maxUnwritten = (int) Math.min(Integer.MAX_VALUE / 2, bits / DIGEST_BITS);
+	}
+
+	@Override
+	public synchronized boolean contains(HashCode digest) {
+		return filter.mightContain(digest);
+	}
+
+	@Override
+	public synchronized boolean add(HashCode general, HashCode unique) {
+		if (filter.mightContain(unique)) {
+			return false;
+		}
+		filter.put(unique);
+		size++;
+		keepUnwritten(unique);
+		if (filter.put(general)) {
+			size++;
+			keepUnwritten(general);
+		}
+		return true;
+	}
+
+	@GuardedBy("this")
+	private void keepUnwritten(HashCode digest) {
+		if (unwritten == null) {
+			return;
+		}
+		if (unwrittenCount >= maxUnwritten) {
+			unwritten = null;
+			return;
+		}
+		if (2 * unwrittenCount == unwritten.length) {
+			unwritten = Arrays.copyOf(unwritten, unwritten.length * 2);
+		}
+		ByteBuffer bytes = ByteBuffer.wrap(digest.asBytes());
+		unwritten[2 * unwrittenCount] = bytes.getLong();
+		unwritten[2 * unwrittenCount + 1] = bytes.getLong();
+		unwrittenCount++;
+	}
+
+	@GuardedBy("this")
+	private void clearUnwritten() {
+		unwritten = new long[16];
+		unwrittenCount = 0;
+		unwrittenFrom = size;
+	}
+
+	@Override
+	public synchronized int size() {
+		return size;
+	}
+
+	@Override
+	public synchronized double falsePositiveRate() {
+		return filter.expectedFpp();
+	}
+
+	@Override
+	public void write(DataOutputStream out, int from, int to) throws IOException {
+		long[] digests = null;
+		BloomFilter<HashCode> copy = null;
+		int written;
+		synchronized (this) {
+			if (from > 0 && unwritten != null && from == unwrittenFrom
+			        && to - from <= unwrittenCount) {
+				written = to - from;
+				digests = Arrays.copyOf(unwritten, 2 * written);
+				unwrittenCount -= written;
+				System.arraycopy(unwritten, 2 * written, unwritten, 0, 2 * unwrittenCount);
+				unwrittenFrom = to;
+			} else {
+				copy = filter.copy();
+				written = size;
+				clearUnwritten();
+			}
+		}
+		if (digests != null) {
+			out.writeByte(DIGEST_RECORD);
+			out.writeInt(written);
+			for (long half : digests) {
+				out.writeLong(half);
+			}
+			return;
+		}
+		out.writeByte(FILTER_RECORD);
+		out.writeInt(written);
+		ObjectOutputStream objects = new ObjectOutputStream(out);
+		objects.writeObject(copy);
+		objects.flush();
+	}
+
+	@Override
+	public void read(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		int count = in.readInt();
+		if (type == DIGEST_RECORD) {
+			byte[] bytes = new byte[DIGEST_BITS / Byte.SIZE];
+			for (int i = 0; i < count; i++) {
+				in.readFully(bytes);
+				synchronized (this) {
+					if (filter.put(HashCode.fromBytes(bytes))) {
+						size++;
+					}
+				}
+			}
+		} else {
+			BloomFilter<HashCode> read = readFilter(in);
+			synchronized (this) {
+				if (!filter.isCompatible(read)) {
+					throw new CrawljaxException(
+					        "The checked elements were written with a Bloom filter of another size");
+				}
+				filter.putAll(read);
+				size = Math.max(size, count);
+			}
+		}
+		synchronized (this) {
+			// What was read is in a checkpoint already.
+			clearUnwritten();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static BloomFilter<HashCode> readFilter(DataInputStream in) throws IOException {
+		try {
+			return (BloomFilter<HashCode>) new ObjectInputStream(in).readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Could not read the Bloom filter", e);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.crawljax.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * The digests of the elements the {@link CandidateElementManager} checked. Elements are kept as
+ * {@value #DIGEST_BITS} bit digests of their {@link CandidateElement#getGeneralString()} and
+ * {@link CandidateElement#getUniqueString()} in stead of the strings themselves. Implementations
+ * must be thread safe.
+ */
+interface CheckedElements {
+
+	/**
+	 * The number of bits of a digest.
+	 */
+	int DIGEST_BITS = 128;
+
+	/**
+	 * The hash function that computes the digests.
+	 */
+	HashFunction DIGESTS = Hashing.murmur3_128();
+
+	/**
+	 * The first byte of a checkpoint that contains digests.
+	 */
+	byte DIGEST_RECORD = 1;
+
+	/**
+	 * The first byte of a checkpoint that contains a Bloom filter.
+	 */
+	byte FILTER_RECORD = 2;
+
+	/**
+	 * @param digest
+	 *            The digest of an element.
+	 * @return Whether the element was checked before.
+	 */
+	boolean contains(HashCode digest);
+
+	/**
+	 * Adds both digests of an element, unless its unique digest was added before.
+	 * 
+	 * @param general
+	 *            The digest of {@link CandidateElement#getGeneralString()}.
+	 * @param unique
+	 *            The digest of {@link CandidateElement#getUniqueString()}.
+	 * @return <code>true</code> if the element was not checked before.
+	 */
+	boolean add(HashCode general, HashCode unique);
+
+	/**
+	 * @return The number of digests that were added, which only grows.
+	 */
+	int size();
+
+	/**
+	 * @return The probability that {@link #contains(HashCode)} is wrong for an element that was
+	 *         not added.
+	 */
+	double falsePositiveRate();
+
+	/**
+	 * Writes the digests that were added after the first given number of digests, for a
+	 * {@link Checkpointer}.
+	 * 
+	 * @param out
+	 *            The output.
+	 * @param from
+	 *            The number of digests that were written before.
+	 * @param to
+	 *            The {@link #size()} at the time of the checkpoint.
+	 * @throws IOException
+	 *             When the output can't be written.
+	 */
+	void write(DataOutputStream out, int from, int to) throws IOException;
+
+	/**
+	 * Adds the digests {@link #write(DataOutputStream, int, int)} wrote.
+	 * 
+	 * @param in
+	 *            The input.
+	 * @throws IOException
+	 *             When the input can't be read.
+	 * @throws CrawljaxException
+	 *             When the digests can't be restored into this kind of set.
+	 */
+	void read(DataInputStream in) throws IOException;
+}
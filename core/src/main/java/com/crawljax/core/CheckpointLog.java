@@ -0,0 +1,149 @@
+package com.crawljax.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only file of records. Every record has a type, a length, a payload and a CRC32 of the
+ * payload. A {@link #COMMIT} record ends a checkpoint: when the file is read, only the records up
+ * to the last commit count and anything after it, like a checkpoint that was cut off by a crash,
+ * is truncated.
+ */
+@NotThreadSafe
+final class CheckpointLog implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CheckpointLog.class);
+
+	static final String FILE_NAME = "crawl.checkpoint";
+
+	static final byte STATE = 1;
+	static final byte EDGE = 2;
+	static final byte CHECKED = 3;
+	static final byte PATH = 4;
+	static final byte FRONTIER = 5;
+	static final byte COMMIT = 6;
+	static final byte ACTIONS = 7;
+	static final byte EXPANDED = 8;
+
+	/**
+	 * The type and the length of a record.
+	 */
+	private static final int HEADER = 1 + 4;
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private final FileOutputStream file;
+	private final DataOutputStream out;
+
+	/**
+	 * Opens the log to append to it. Call {@link #readCommitted(File)} first if the log might end
+	 * with a torn checkpoint.
+	 */
+	CheckpointLog(File file) throws IOException {
+		this.file = new FileOutputStream(file, true);
+		this.out = new DataOutputStream(new BufferedOutputStream(this.file, 64 * 1024));
+	}
+
+	void append(byte type, byte[] payload) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		out.writeByte(type);
+		out.writeInt(payload.length);
+		out.write(payload);
+		out.writeInt((int) crc.getValue());
+	}
+
+	/**
+	 * Ends the checkpoint and makes sure it is on disk.
+	 */
+	void commit() throws IOException {
+		append(COMMIT, EMPTY);
+		out.flush();
+		file.getFD().sync();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	/**
+	 * @return The records of all complete checkpoints in the file, without the commit records.
+	 *         The file is truncated after the last commit.
+	 */
+	static List<Record> readCommitted(File file) throws IOException {
+		List<Record> committed = new ArrayList<>();
+		if (!file.exists()) {
+			return committed;
+		}
+		List<Record> pending = new ArrayList<>();
+		long fileLength = file.length();
+		long committedLength = 0;
+		long position = 0;
+		try (DataInputStream in =
+		        new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			while (true) {
+				byte type = in.readByte();
+				int length = in.readInt();
+				if (length < 0 || position + HEADER + length + 4 > fileLength) {
+					break;
+				}
+				byte[] payload = new byte[length];
+				in.readFully(payload);
+				CRC32 crc = new CRC32();
+				crc.update(payload);
+				if (in.readInt() != (int) crc.getValue()) {
+					break;
+				}
+				position += HEADER + length + 4;
+				if (type == COMMIT) {
+					committed.addAll(pending);
+					pending.clear();
+					committedLength = position;
+				} else {
+					pending.add(new Record(type, payload));
+				}
+			}
+		} catch (EOFException e) {
+			LOG.debug("Reached the end of the checkpoint log");
+		}
+		if (committedLength < fileLength) {
+			LOG.warn("Dropping {} bytes of an incomplete checkpoint", fileLength - committedLength);
+			try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+				truncated.setLength(committedLength);
+			}
+		}
+		return committed;
+	}
+
+	/**
+	 * A record read from the log.
+	 */
+	static final class Record {
+
+		final byte type;
+		final byte[] payload;
+
+		Record(byte type, byte[] payload) {
+			this.type = type;
+			this.payload = payload;
+		}
+	}
+}
@@ -0,0 +1,866 @@
+package com.crawljax.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.crawljax.condition.eventablecondition.EventableCondition;
+import com.crawljax.condition.eventablecondition.EventableConditionChecker;
+import com.crawljax.core.CheckpointLog.Record;
+import com.crawljax.core.configuration.CrawljaxConfiguration;
+import com.crawljax.core.state.AbstractStateFlowGraph;
+import com.crawljax.core.state.CrawlPath;
+import com.crawljax.core.state.Element;
+import com.crawljax.core.state.Eventable;
+import com.crawljax.core.state.Eventable.EventType;
+import com.crawljax.core.state.EventableCodec;
+import com.crawljax.core.state.Identification;
+import com.crawljax.core.state.StateFlowGraphListener;
+import com.crawljax.core.state.StateVertex;
+import com.crawljax.core.state.StateVertexFactory;
+import com.crawljax.di.CrawlSessionProvider;
+import com.crawljax.forms.FormInput;
+import com.crawljax.metrics.MetricsModule;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Writes checkpoints of a crawl and restores a crawl from them. A checkpoint contains the states
+ * and edges of the {@link AbstractStateFlowGraph}, the {@link CrawlFrontier}, the elements the
+ * {@link CandidateElementManager} checked and the crawl paths of the {@link CrawlSession}.
+ * <p>
+ * Checkpoints are appended to a {@link CheckpointLog} and only contain what changed since the
+ * previous checkpoint. The graph and the frontier tell the checkpointer about the states and
+ * edges that are added and the actions that are queued, fired or purged, in the order it
+ * happens. A checkpoint takes what was told since the previous one, so the {@link Crawler}s never
+ * wait for it. Actions are numbered, so a fired action is written as its number. Every
+ * {@value #COMPACTION_INTERVAL} checkpoints all actions that are still queued are written as a
+ * whole, so a resumed crawl does not have to replay all changes since the start. Writing the
+ * checkpoint happens on a background thread.
+ * </p>
+ * <p>
+ * Actions that were being fired when the checkpoint was taken are fired again when the crawl is
+ * resumed. A state that was added, but whose candidate elements were not queued yet, is expanded
+ * again when the crawl is resumed.
+ * </p>
+ * Enable it using
+ * {@link com.crawljax.core.configuration.CrawljaxConfiguration.CrawljaxConfigurationBuilder#setCheckpoints(File, int)}
+ * .
+ */
+@Singleton
+@ThreadSafe
+public class Checkpointer {
+
+	private static final Logger LOG = LoggerFactory.getLogger(Checkpointer.class);
+
+	/**
+	 * How many checkpoints there are between the checkpoints that write all queued actions.
+	 */
+	static final int COMPACTION_INTERVAL = 16;
+
+	/**
+	 * How long the last checkpoint waits for the one that is being written.
+	 */
+	private static final long MAXIMUM_WAIT_SECONDS = 30;
+
+	/**
+	 * The kinds of changes in an {@link CheckpointLog#ACTIONS} record.
+	 */
+	private static final byte ADDED = 0;
+	private static final byte REMOVED = 1;
+
+	private final File file;
+	private final int interval;
+	private final AbstractStateFlowGraph graph;
+	private final CrawlFrontier frontier;
+	private final CandidateElementManager checkedElements;
+	private final CrawlSessionProvider sessionProvider;
+	private final StateVertexFactory vertexFactory;
+	private final EventableConditionChecker eventableConditions;
+
+	private final AtomicInteger newStates = new AtomicInteger();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private final AtomicBoolean pending = new AtomicBoolean();
+	private final Queue<Change> changes = new ConcurrentLinkedQueue<>();
+	private final ExecutorService writer;
+
+	private final Timer snapshotTime;
+	private final Timer writeTime;
+	private final Counter bytesWritten;
+
+	@GuardedBy("this")
+	private final BitSet writtenStates = new BitSet();
+	/**
+	 * Edges are found by equality and not by identity, because a
+	 * {@link com.crawljax.core.state.DiskBackedStateFlowGraph} can hand out another instance of an
+	 * edge that was evicted.
+	 */
+	@GuardedBy("this")
+	private final Map<Eventable, Integer> edgeNumbers = new HashMap<>();
+	/**
+	 * The states a restored state was a clone of, by the id of the restored state.
+	 */
+	@GuardedBy("this")
+	private final Map<Integer, StateVertex> restoredClones = new HashMap<>();
+	/**
+	 * The actions that were written and not fired or purged yet. Keyed by identity.
+	 */
+	@GuardedBy("this")
+	private final Map<CandidateCrawlAction, QueuedAction> queuedActions = new IdentityHashMap<>();
+	@GuardedBy("this")
+	private int nextActionNumber;
+	@GuardedBy("this")
+	private int checkpointsWritten;
+	@GuardedBy("this")
+	private int writtenCheckedElements;
+	@GuardedBy("this")
+	private int writtenPaths;
+	@GuardedBy("this")
+	private CheckpointLog log;
+	@GuardedBy("this")
+	private boolean failed;
+
+	@Inject
+	Checkpointer(CrawljaxConfiguration config, AbstractStateFlowGraph graph,
+	        CrawlFrontier frontier, CandidateElementManager checkedElements,
+	        CrawlSessionProvider sessionProvider, StateVertexFactory vertexFactory,
+	        EventableConditionChecker eventableConditions, MetricRegistry registry) {
+		File directory = config.getCheckpointDirectory();
+		this.file = directory == null ? null : new File(directory, CheckpointLog.FILE_NAME);
+		this.interval = config.getCheckpointInterval();
+		this.graph = graph;
+		this.frontier = frontier;
+		this.checkedElements = checkedElements;
+		this.sessionProvider = sessionProvider;
+		this.vertexFactory = vertexFactory;
+		this.eventableConditions = eventableConditions;
+		this.writer =
+		        Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true)
+		                .setNameFormat("crawljax-checkpoint-%d").build());
+		snapshotTime = registry.timer(MetricsModule.CHECKPOINTS_PREFIX + "snapshot_time");
+		writeTime = registry.timer(MetricsModule.CHECKPOINTS_PREFIX + "write_time");
+		bytesWritten = registry.counter(MetricsModule.CHECKPOINTS_PREFIX + "bytes_written");
+		if (isEnabled()) {
+			graph.addListener(new StateFlowGraphListener() {
+
+				@Override
+				public void stateAdded(StateVertex state) {
+					changes.add(new Change(Change.STATE, state.getId()));
+				}
+
+				@Override
+				public void edgeAdded(Eventable edge) {
+					Change change = new Change(Change.EDGE, 0);
+					change.edge = edge;
+					changes.add(change);
+				}
+			});
+			frontier.addListener(new CrawlFrontierListener() {
+
+				@Override
+				public void actionsAdded(Collection<CandidateCrawlAction> actions,
+				        StateVertex state) {
+					Change change = new Change(Change.ACTIONS_ADDED, state.getId());
+					change.actions = ImmutableList.copyOf(actions);
+					changes.add(change);
+				}
+
+				@Override
+				public void actionsRemoved(Collection<CandidateCrawlAction> actions) {
+					Change change = new Change(Change.ACTIONS_REMOVED, 0);
+					change.actions = ImmutableList.copyOf(actions);
+					changes.add(change);
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return Whether checkpoints are written.
+	 */
+	public boolean isEnabled() {
+		return file != null;
+	}
+
+	/**
+	 * Marks a state as expanded: its candidate elements are queued, or it is not crawled any
+	 * further. A state that is not expanded when the crawl is resumed is expanded again.
+	 */
+	void stateExpanded(StateVertex state) {
+		if (isEnabled()) {
+			changes.add(new Change(Change.EXPANDED, state.getId()));
+		}
+	}
+
+	/**
+	 * Counts a new state and schedules a checkpoint if enough new states were found since the last
+	 * one. When a checkpoint is being written, the next one is written right after it.
+	 */
+	void stateAdded() {
+		if (isEnabled() && newStates.incrementAndGet() % interval == 0) {
+			pending.set(true);
+			scheduleIfIdle();
+		}
+	}
+
+	private void scheduleIfIdle() {
+		if (!scheduled.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			writer.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						while (pending.getAndSet(false)) {
+							checkpointLogged();
+						}
+					} finally {
+						scheduled.set(false);
+					}
+					// A checkpoint might have been asked for after the last check but before the
+					// flag was cleared.
+					if (pending.get()) {
+						scheduleIfIdle();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// The crawl is finishing, which writes a last checkpoint.
+			scheduled.set(false);
+		}
+	}
+
+	private void checkpointLogged() {
+		try {
+			checkpoint();
+		} catch (RuntimeException e) {
+			LOG.error("Could not write a checkpoint: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Writes a last checkpoint once the crawl is stopped and closes the log.
+	 */
+	void finish() {
+		if (!isEnabled()) {
+			return;
+		}
+		writer.shutdown();
+		try {
+			writer.awaitTermination(MAXIMUM_WAIT_SECONDS, TimeUnit.SECONDS);
+			checkpoint();
+		} catch (InterruptedException e) {
+			LOG.warn("Interrupted before the last checkpoint was written");
+			Thread.currentThread().interrupt();
+		} finally {
+			closeLog();
+		}
+	}
+
+	private synchronized void closeLog() {
+		if (log != null) {
+			try {
+				log.close();
+			} catch (IOException e) {
+				LOG.warn("Could not close the checkpoint log: " + e.getMessage(), e);
+			}
+			log = null;
+		}
+	}
+
+	/**
+	 * Appends a checkpoint to the log.
+	 *
+	 * @return Whether the checkpoint was written.
+	 */
+	synchronized boolean checkpoint() {
+		if (!isEnabled() || failed || graph.getInitialState() == null) {
+			return false;
+		}
+		List<Change> taken = takeChanges();
+		Timer.Context timer = writeTime.time();
+		try {
+			write(taken);
+			return true;
+		} catch (IOException e) {
+			// The log might end with part of a checkpoint, so it can't be appended to.
+			failed = true;
+			LOG.error("Could not write a checkpoint. No more checkpoints will be written: "
+			        + e.getMessage(), e);
+			closeLog();
+			return false;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	/**
+	 * @return The changes since the last checkpoint, in the order they happened.
+	 */
+	private List<Change> takeChanges() {
+		Timer.Context timer = snapshotTime.time();
+		try {
+			List<Change> taken = new ArrayList<>();
+			for (Change change = changes.poll(); change != null; change = changes.poll()) {
+				taken.add(change);
+			}
+			return taken;
+		} finally {
+			timer.stop();
+		}
+	}
+
+	@GuardedBy("this")
+	private void write(List<Change> taken) throws IOException {
+		if (log == null) {
+			file.getParentFile().mkdirs();
+			log = new CheckpointLog(file);
+		}
+		List<Integer> states = new ArrayList<>();
+		List<Eventable> edges = new ArrayList<>();
+		List<Integer> expanded = new ArrayList<>();
+		Payload actions = new Payload(true);
+		for (Change change : taken) {
+			switch (change.type) {
+				case Change.STATE:
+					states.add(change.state);
+					break;
+				case Change.EDGE:
+					edges.add(change.edge);
+					break;
+				case Change.ACTIONS_ADDED:
+					encodeAdded(actions.output(), change);
+					break;
+				case Change.ACTIONS_REMOVED:
+					encodeRemoved(actions.output(), change.actions);
+					break;
+				case Change.EXPANDED:
+					expanded.add(change.state);
+					break;
+				default:
+					throw new IllegalStateException("Unknown change " + change.type);
+			}
+		}
+		for (Integer id : states) {
+			if (!writtenStates.get(id)) {
+				append(CheckpointLog.STATE, encodeState(graph.getById(id)));
+			}
+		}
+		Map<Eventable, Integer> numbered = new HashMap<>();
+		for (Eventable edge : edges) {
+			if (!edgeNumbers.containsKey(edge) && !numbered.containsKey(edge)) {
+				numbered.put(edge, edgeNumbers.size() + numbered.size());
+				append(CheckpointLog.EDGE, encodeEdge(edge));
+			}
+		}
+		int checked = checkedElements.getCheckedElements().size();
+		if (checked > writtenCheckedElements) {
+			append(CheckpointLog.CHECKED, encodeChecked(checked));
+		}
+		List<List<Eventable>> paths =
+		        Lists.newArrayList(Iterables.skip(sessionProvider.get().getCrawlPaths(),
+		                writtenPaths));
+		for (List<Eventable> path : paths) {
+			append(CheckpointLog.PATH, encodePath(path, numbered));
+		}
+		if (!actions.isEmpty()) {
+			append(CheckpointLog.ACTIONS, actions.bytes());
+		}
+		if (!expanded.isEmpty()) {
+			append(CheckpointLog.EXPANDED, encodeExpanded(expanded));
+		}
+		checkpointsWritten++;
+		if (checkpointsWritten % COMPACTION_INTERVAL == 0) {
+			append(CheckpointLog.FRONTIER, encodeQueuedActions());
+		}
+		log.commit();
+
+		for (Integer id : states) {
+			writtenStates.set(id);
+		}
+		edgeNumbers.putAll(numbered);
+		writtenCheckedElements = checked;
+		writtenPaths += paths.size();
+		LOG.debug("Wrote a checkpoint with {} new states and {} new edges", states.size(),
+		        edges.size());
+	}
+
+	@GuardedBy("this")
+	private void append(byte type, byte[] payload) throws IOException {
+		log.append(type, payload);
+		bytesWritten.inc(payload.length);
+	}
+
+	/**
+	 * Restores the crawl from the last complete checkpoint. The index is set up in the
+	 * {@link CrawlSessionProvider} and the actions that were not fired yet are queued again. New
+	 * checkpoints are appended to the same log.
+	 *
+	 * @return The restored states that were not expanded, which have to be expanded again.
+	 * @throws CrawljaxException
+	 *             if there is no checkpoint to restore.
+	 */
+	synchronized List<StateVertex> restore() {
+		if (!isEnabled()) {
+			throw new CrawljaxException("No checkpoint directory is configured");
+		}
+		try {
+			List<Record> records = CheckpointLog.readCommitted(file);
+			if (records.isEmpty()) {
+				throw new CrawljaxException("There is no checkpoint in " + file);
+			}
+			Map<Integer, QueuedAction> actions = new LinkedHashMap<>();
+			BitSet expanded = new BitSet();
+			List<Eventable> edges = new ArrayList<>();
+			for (Record record : records) {
+				switch (record.type) {
+					case CheckpointLog.STATE:
+						restoreState(input(record.payload));
+						break;
+					case CheckpointLog.EDGE:
+						edges.add(restoreEdge(input(record.payload)));
+						break;
+					case CheckpointLog.CHECKED:
+						checkedElements.getCheckedElements().read(input(record.payload));
+						break;
+					case CheckpointLog.PATH:
+						sessionProvider.get().addCrawlPath(
+						        decodePath(input(record.payload), edges));
+						writtenPaths++;
+						break;
+					case CheckpointLog.ACTIONS:
+						restoreActionChanges(compressedInput(record.payload), actions, expanded);
+						break;
+					case CheckpointLog.EXPANDED:
+						restoreExpanded(input(record.payload), expanded);
+						break;
+					case CheckpointLog.FRONTIER:
+						actions.clear();
+						restoreQueuedActions(compressedInput(record.payload), actions);
+						break;
+					default:
+						throw new CrawljaxException("Unknown checkpoint record " + record.type);
+				}
+			}
+			for (int i = 0; i < edges.size(); i++) {
+				edgeNumbers.put(edges.get(i), i);
+			}
+			writtenCheckedElements = checkedElements.getCheckedElements().size();
+			queueRestored(actions.values());
+			// The restored states, edges and actions are in the log already.
+			changes.clear();
+			List<StateVertex> unexpanded = unexpanded(expanded);
+			LOG.info("Restored {} states, {} edges and {} actions from {}",
+			        writtenStates.cardinality(), edges.size(), queuedActions.size(), file);
+			log = new CheckpointLog(file);
+			return unexpanded;
+		} catch (IOException e) {
+			throw new CrawljaxException("Could not restore the checkpoint in " + file, e);
+		}
+	}
+
+	@GuardedBy("this")
+	private void restoreState(DataInputStream in) throws IOException {
+		int id = in.readInt();
+		String name = EventableCodec.readString(in);
+		String url = EventableCodec.readString(in);
+		String dom = EventableCodec.readString(in);
+		String strippedDom = EventableCodec.readString(in);
+		StateVertex state = vertexFactory.newStateVertex(id, url, name, dom, strippedDom);
+		if (id == StateVertex.INDEX_ID) {
+			sessionProvider.setup(state);
+		} else {
+			StateVertex clone = graph.putRestored(state);
+			if (clone != null) {
+				LOG.warn("Restored state {} is a clone of state {}", name, clone.getName());
+				restoredClones.put(id, clone);
+			}
+		}
+		writtenStates.set(id);
+	}
+
+	/**
+	 * @return The state with the id in the checkpoint, which is the state it is a clone of if it
+	 *         was not added to the graph.
+	 */
+	@GuardedBy("this")
+	private StateVertex restoredState(int id) {
+		StateVertex clone = restoredClones.get(id);
+		return clone == null ? graph.getById(id) : clone;
+	}
+
+	@GuardedBy("this")
+	private Eventable restoreEdge(DataInputStream in) throws IOException {
+		StateVertex source = restoredState(in.readInt());
+		StateVertex target = restoredState(in.readInt());
+		Eventable edge = EventableCodec.readEventable(in);
+		graph.addEdge(source, target, edge);
+		return edge;
+	}
+
+	/**
+	 * Replays the actions that were added and removed. A state that got actions was expanded.
+	 */
+	@GuardedBy("this")
+	private void restoreActionChanges(DataInputStream in, Map<Integer, QueuedAction> actions,
+	        BitSet expanded) throws IOException {
+		for (int change = in.read(); change != -1; change = in.read()) {
+			if (change == ADDED) {
+				int state = in.readInt();
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					int number = in.readInt();
+					actions.put(number, restoredAction(in, number, state));
+				}
+				expanded.set(state);
+			} else {
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					actions.remove(in.readInt());
+				}
+			}
+		}
+	}
+
+	@GuardedBy("this")
+	private void restoreQueuedActions(DataInputStream in, Map<Integer, QueuedAction> actions)
+	        throws IOException {
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			int number = in.readInt();
+			int state = in.readInt();
+			actions.put(number, restoredAction(in, number, state));
+		}
+	}
+
+	@GuardedBy("this")
+	private QueuedAction restoredAction(DataInputStream in, int number, int state)
+	        throws IOException {
+		nextActionNumber = Math.max(nextActionNumber, number + 1);
+		EventType eventType = EventType.valueOf(EventableCodec.readString(in));
+		Identification identification = EventableCodec.readIdentification(in);
+		String relatedFrame = EventableCodec.readString(in);
+		Element element = EventableCodec.readElement(in);
+		List<FormInput> formInputs = EventableCodec.readFormInputs(in);
+		EventableCondition condition =
+		        eventableConditions.getEventableCondition(EventableCodec.readString(in));
+		CandidateCrawlAction action =
+		        new CandidateCrawlAction(CandidateElement.restored(element, identification,
+		                relatedFrame, formInputs, condition), eventType);
+		return new QueuedAction(action, number, state);
+	}
+
+	private static void restoreExpanded(DataInputStream in, BitSet expanded) throws IOException {
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			expanded.set(in.readInt());
+		}
+	}
+
+	/**
+	 * Queues the restored actions in the frontier. Actions of a restored clone are queued for the
+	 * state it is a clone of.
+	 */
+	@GuardedBy("this")
+	private void queueRestored(Collection<QueuedAction> actions) {
+		ListMultimap<Integer, QueuedAction> byState = LinkedListMultimap.create();
+		for (QueuedAction action : actions) {
+			byState.put(action.state, action);
+		}
+		for (Integer id : byState.keySet()) {
+			List<QueuedAction> ofState = byState.get(id);
+			StateVertex state = restoredState(id);
+			if (state == null) {
+				LOG.warn("Dropping {} actions of an unknown state", ofState.size());
+				continue;
+			}
+			List<CandidateCrawlAction> queued = new ArrayList<>(ofState.size());
+			for (QueuedAction action : ofState) {
+				queuedActions.put(action.action,
+				        new QueuedAction(action.action, action.number, state.getId()));
+				queued.add(action.action);
+			}
+			frontier.addActions(queued, state);
+		}
+	}
+
+	/**
+	 * @return The restored states that are in the graph but were not expanded.
+	 */
+	@GuardedBy("this")
+	private List<StateVertex> unexpanded(BitSet expanded) {
+		List<StateVertex> unexpanded = new ArrayList<>();
+		for (int id = writtenStates.nextSetBit(0); id >= 0; id = writtenStates.nextSetBit(id + 1)) {
+			if (!expanded.get(id) && !restoredClones.containsKey(id)) {
+				unexpanded.add(graph.getById(id));
+			}
+		}
+		return unexpanded;
+	}
+
+	private byte[] encodeState(StateVertex state) throws IOException {
+		Payload payload = new Payload();
+		DataOutputStream out = payload.output();
+		out.writeInt(state.getId());
+		EventableCodec.writeString(out, state.getName());
+		EventableCodec.writeString(out, state.getUrl());
+		EventableCodec.writeString(out, state.getDom());
+		EventableCodec.writeString(out, state.getStrippedDom());
+		return payload.bytes();
+	}
+
+	private byte[] encodeEdge(Eventable edge) throws IOException {
+		Payload payload = new Payload();
+		DataOutputStream out = payload.output();
+		out.writeInt(edge.getSourceStateVertex().getId());
+		out.writeInt(edge.getTargetStateVertex().getId());
+		EventableCodec.writeEventable(out, edge);
+		return payload.bytes();
+	}
+
+	/**
+	 * Events of the path that are edges in the graph are written as the number of the edge. Other
+	 * events are written as they are.
+	 */
+	@GuardedBy("this")
+	private byte[] encodePath(List<Eventable> path, Map<Eventable, Integer> numbered)
+	        throws IOException {
+		Payload payload = new Payload();
+		DataOutputStream out = payload.output();
+		out.writeInt(path.size());
+		for (Eventable event : path) {
+			Integer number = edgeNumbers.get(event);
+			if (number == null) {
+				number = numbered.get(event);
+			}
+			if (number == null) {
+				out.writeInt(-1);
+				EventableCodec.writeEventable(out, event);
+			} else {
+				out.writeInt(number);
+			}
+		}
+		return payload.bytes();
+	}
+
+	private List<Eventable> decodePath(DataInputStream in, List<Eventable> edges)
+	        throws IOException {
+		int size = in.readInt();
+		List<Eventable> path = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			int number = in.readInt();
+			path.add(number < 0 ? EventableCodec.readEventable(in) : edges.get(number));
+		}
+		return CrawlPath.copyOf(path).immutableCopy();
+	}
+
+	@GuardedBy("this")
+	private byte[] encodeChecked(int checked) throws IOException {
+		Payload payload = new Payload();
+		checkedElements.getCheckedElements().write(payload.output(), writtenCheckedElements,
+		        checked);
+		return payload.bytes();
+	}
+
+	/**
+	 * Numbers the added actions that were not added before and writes them. An action that was
+	 * polled and put back keeps its number.
+	 */
+	@GuardedBy("this")
+	private void encodeAdded(DataOutputStream out, Change change) throws IOException {
+		List<CandidateCrawlAction> added = new ArrayList<>(change.actions.size());
+		for (CandidateCrawlAction action : change.actions) {
+			if (!queuedActions.containsKey(action)) {
+				queuedActions.put(action, new QueuedAction(action, nextActionNumber++,
+				        change.state));
+				added.add(action);
+			}
+		}
+		if (added.isEmpty()) {
+			return;
+		}
+		out.writeByte(ADDED);
+		out.writeInt(change.state);
+		out.writeInt(added.size());
+		for (CandidateCrawlAction action : added) {
+			out.writeInt(queuedActions.get(action).number);
+			encodeAction(out, action);
+		}
+	}
+
+	@GuardedBy("this")
+	private void encodeRemoved(DataOutputStream out, List<CandidateCrawlAction> actions)
+	        throws IOException {
+		List<Integer> numbers = new ArrayList<>(actions.size());
+		for (CandidateCrawlAction action : actions) {
+			QueuedAction queued = queuedActions.remove(action);
+			if (queued != null) {
+				numbers.add(queued.number);
+			}
+		}
+		if (numbers.isEmpty()) {
+			return;
+		}
+		out.writeByte(REMOVED);
+		out.writeInt(numbers.size());
+		for (Integer number : numbers) {
+			out.writeInt(number);
+		}
+	}
+
+	private static byte[] encodeExpanded(List<Integer> states) throws IOException {
+		Payload payload = new Payload();
+		DataOutputStream out = payload.output();
+		out.writeInt(states.size());
+		for (Integer state : states) {
+			out.writeInt(state);
+		}
+		return payload.bytes();
+	}
+
+	/**
+	 * @return All actions that were written and not removed yet, with their numbers. Those are the
+	 *         actions in the frontier as of the changes that were written, so no copy of the
+	 *         frontier itself is needed.
+	 */
+	@GuardedBy("this")
+	private byte[] encodeQueuedActions() throws IOException {
+		Payload payload = new Payload(true);
+		DataOutputStream out = payload.output();
+		out.writeInt(queuedActions.size());
+		for (QueuedAction queued : queuedActions.values()) {
+			out.writeInt(queued.number);
+			out.writeInt(queued.state);
+			encodeAction(out, queued.action);
+		}
+		return payload.bytes();
+	}
+
+	private static void encodeAction(DataOutputStream out, CandidateCrawlAction action)
+	        throws IOException {
+		CandidateElement candidate = action.getCandidateElement();
+		EventableCodec.writeString(out, action.getEventType().name());
+		EventableCodec.writeIdentification(out, candidate.getIdentification());
+		EventableCodec.writeString(out, candidate.getRelatedFrame());
+		EventableCodec.writeElement(out, candidate.getElementDescriptor());
+		EventableCodec.writeFormInputs(out, candidate.getFormInputs());
+		EventableCondition condition = candidate.getEventableCondition();
+		EventableCodec.writeString(out, condition == null ? null : condition.getId());
+	}
+
+	private static DataInputStream input(byte[] payload) {
+		return new DataInputStream(new ByteArrayInputStream(payload));
+	}
+
+	private static DataInputStream compressedInput(byte[] payload) {
+		return new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(payload)));
+	}
+
+	/**
+	 * The payload of a single record. Records with actions are compressed, because the elements of
+	 * a state have a lot in common.
+	 */
+	private static final class Payload {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out;
+
+		Payload() {
+			this(false);
+		}
+
+		Payload(boolean compressed) {
+			out = new DataOutputStream(compressed ? new DeflaterOutputStream(bytes) : bytes);
+		}
+
+		DataOutputStream output() {
+			return out;
+		}
+
+		boolean isEmpty() {
+			return out.size() == 0;
+		}
+
+		byte[] bytes() throws IOException {
+			out.close();
+			return bytes.toByteArray();
+		}
+	}
+
+	/**
+	 * Something the graph or the frontier told the checkpointer about.
+	 */
+	private static final class Change {
+
+		static final byte STATE = 0;
+		static final byte EDGE = 1;
+		static final byte ACTIONS_ADDED = 2;
+		static final byte ACTIONS_REMOVED = 3;
+		static final byte EXPANDED = 4;
+
+		private final byte type;
+		private final int state;
+		private Eventable edge;
+		private List<CandidateCrawlAction> actions;
+
+		Change(byte type, int state) {
+			this.type = type;
+			this.state = state;
+		}
+	}
+
+	/**
+	 * An action with its number in the log and the id of its state.
+	 */
+	private static final class QueuedAction {
+
+		private final CandidateCrawlAction action;
+		private final int number;
+		private final int state;
+
+		QueuedAction(CandidateCrawlAction action, int number, int state) {
+			this.action = action;
+			this.number = number;
+			this.state = state;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package com.crawljax.core;
 
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -11,6 +12,7 @@ import javax.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.crawljax.browser.BrowserPool;
 import com.crawljax.core.ExitNotifier.ExitStatus;
 import com.crawljax.core.configuration.CrawljaxConfiguration;
 import com.crawljax.core.plugin.Plugins;
@@ -33,35 +35,43 @@ public class CrawlController implements Callable<CrawlSession> {
 
 	private final Plugins plugins;
 
+	private final BrowserPool browserPool;
+
 	private final long maximumCrawlTime;
 
 	private final ExitNotifier exitNotifier;
 
+	private final Checkpointer checkpointer;
+
 	private ExitStatus exitReason;
 
 	@Inject
 	CrawlController(ExecutorService executor, Provider<CrawlTaskConsumer> consumerFactory,
 	        CrawljaxConfiguration config, ExitNotifier exitNotifier,
 	        CrawlSessionProvider crawlSessionProvider,
-	        Plugins plugins) {
+	        Plugins plugins, BrowserPool browserPool, Checkpointer checkpointer) {
 		this.executor = executor;
 		this.consumerFactory = consumerFactory;
 		this.exitNotifier = exitNotifier;
 		this.config = config;
 		this.plugins = plugins;
+		this.browserPool = browserPool;
 		this.crawlSessionProvider = crawlSessionProvider;
+		this.checkpointer = checkpointer;
 		this.maximumCrawlTime = config.getMaximumRuntime();
 	}
 
 	/**
 	 * Run the configured crawl. This method blocks until the crawl is done.
 	 * 
-	 * @return the CrawlSession once the crawl is done.
+	 * @return the CrawlSession once the crawl is done. {@link CrawlSession#close() Close} it when
+	 *         you are done with it.
 	 */
 	@Override
 	public CrawlSession call() {
 		setMaximumCrawlTimeIfNeeded();
 		plugins.runPreCrawlingPlugins(config);
+		browserPool.warmUp();
 		CrawlTaskConsumer firstConsumer = consumerFactory.get();
 		StateVertex firstState = firstConsumer.crawlIndex();
 		crawlSessionProvider.setup(firstState);
@@ -70,6 +80,32 @@ public class CrawlController implements Callable<CrawlSession> {
 		return crawlSessionProvider.get();
 	}
 
+	/**
+	 * Continues the crawl from its last checkpoint. The states, edges and crawl paths of the
+	 * checkpoint are restored and the actions that were not fired yet are crawled. States whose
+	 * candidate elements were not queued yet are expanded first. The plugins are only called for
+	 * what happens after the crawl is resumed. This method blocks until the crawl is done.
+	 * 
+	 * @return the CrawlSession once the crawl is done. {@link CrawlSession#close() Close} it when
+	 *         you are done with it.
+	 * @throws CrawljaxException
+	 *             if checkpoints are not configured or there is no checkpoint to resume from.
+	 * @see com.crawljax.core.configuration.CrawljaxConfiguration.CrawljaxConfigurationBuilder#setCheckpoints(java.io.File,
+	 *      int)
+	 */
+	public CrawlSession resume() {
+		List<StateVertex> unexpanded = checkpointer.restore();
+		setMaximumCrawlTimeIfNeeded();
+		plugins.runPreCrawlingPlugins(config);
+		browserPool.warmUp();
+		CrawlTaskConsumer firstConsumer = consumerFactory.get();
+		for (StateVertex state : unexpanded) {
+			firstConsumer.expand(state);
+		}
+		executeConsumers(firstConsumer);
+		return crawlSessionProvider.get();
+	}
+
 	/**
 	 * @return Same as {@link #call()}
 	 * @see #call().
@@ -121,6 +157,7 @@ public class CrawlController implements Callable<CrawlSession> {
 			exitReason = ExitStatus.ERROR;
 		} finally {
 			shutDown();
+			checkpointer.finish();
 			plugins.runPostCrawlingPlugins(crawlSessionProvider.get(), exitReason);
 			LOG.info("Shutdown process complete");
 		}
@@ -136,6 +173,8 @@ public class CrawlController implements Callable<CrawlSession> {
 			LOG.warn("Interrupted before being able to shut down executor pool", e);
 			exitReason = ExitStatus.ERROR;
 		}
+		browserPool.shutDown();
+		plugins.awaitAsyncPlugins();
 		LOG.debug("terminated");
 	}
 
@@ -0,0 +1,135 @@
+package com.crawljax.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.crawljax.core.state.Eventable.EventType;
+import com.crawljax.core.state.StateVertex;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+
+/**
+ * Contains all the {@link CandidateCrawlAction}s that still have to be fired to get a result and
+ * hands out the states that have them to the {@link CrawlTaskConsumer}s. The default frontier is
+ * the {@link UnfiredCandidateActions}. The {@link WorkStealingCandidateActions} can be used in
+ * stead.
+ * <p>
+ * This is an abstract class in stead of an interface so the methods that are only used by the
+ * {@link Crawler} and the {@link Checkpointer} stay package private.
+ * </p>
+ */
+public abstract class CrawlFrontier {
+
+	private final List<CrawlFrontierListener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Queues the candidates and lets go of their DOM elements.
+	 *
+	 * @param extract
+	 *            The actions you want to add to a state.
+	 * @param currentState
+	 *            The state you are in.
+	 * @see CandidateElement#detach()
+	 */
+	public void addActions(ImmutableList<CandidateElement> extract, StateVertex currentState) {
+		List<CandidateCrawlAction> actions = new ArrayList<>(extract.size());
+		for (CandidateElement candidateElement : extract) {
+			actions.add(new CandidateCrawlAction(candidateElement, EventType.click));
+		}
+		addActions(actions, currentState);
+		for (CandidateElement candidateElement : extract) {
+			candidateElement.detach();
+		}
+	}
+
+	/**
+	 * @param actions
+	 *            The actions you want to add to a state.
+	 * @param state
+	 *            The state name. This should be unique per state.
+	 */
+	abstract void addActions(Collection<CandidateCrawlAction> actions, StateVertex state);
+
+	/**
+	 * @param state
+	 *            The state you want to poll an {@link CandidateCrawlAction} for.
+	 * @return The next to-be-crawled action or <code>null</code> if none available.
+	 */
+	abstract CandidateCrawlAction pollActionOrNull(StateVertex state);
+
+	/**
+	 * Marks a polled action as done. Until then it is part of the {@link #snapshot()}, so it is
+	 * fired again when a crawl is resumed from a checkpoint.
+	 */
+	abstract void fired(CandidateCrawlAction action);
+
+	/**
+	 * @return All actions that still have to be fired by the id of their state, including the
+	 *         ones that were polled but not fired yet. Only consistent with the
+	 *         {@link com.crawljax.core.state.StateFlowGraph} if no actions are added in the
+	 *         meantime.
+	 */
+	abstract ListMultimap<Integer, CandidateCrawlAction> snapshot();
+
+	/**
+	 * @param listener
+	 *            Is told about the actions that are added to and removed from the frontier.
+	 */
+	void addListener(CrawlFrontierListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Tells the listeners about actions that are added. Called before they can be polled.
+	 */
+	final void notifyActionsAdded(Collection<CandidateCrawlAction> actions, StateVertex state) {
+		for (CrawlFrontierListener listener : listeners) {
+			listener.actionsAdded(actions, state);
+		}
+	}
+
+	/**
+	 * Tells the listeners about actions that were fired or purged. Called after they are removed.
+	 */
+	final void notifyActionsRemoved(Collection<CandidateCrawlAction> actions) {
+		for (CrawlFrontierListener listener : listeners) {
+			listener.actionsRemoved(actions);
+		}
+	}
+
+	/**
+	 * @return If there are any pending actions to be crawled. This method is not threadsafe and
+	 *         might return a stale value.
+	 */
+	public abstract boolean isEmpty();
+
+	/**
+	 * @return A new crawl task as soon as one is ready. Until then, it blocks.
+	 * @throws InterruptedException
+	 *             when waiting for a task is interrupted.
+	 */
+	public abstract StateVertex awaitNewTask() throws InterruptedException;
+
+	/**
+	 * Like {@link #awaitNewTask()} but prefers a task the browser can start on without reloading
+	 * the index and replaying the path to the state. That is the state the browser is in, or else a
+	 * state that is one event away from it.
+	 *
+	 * @param current
+	 *            The state the browser of the caller is in, or <code>null</code> if unknown.
+	 * @return A new crawl task as soon as one is ready. Until then, it blocks.
+	 * @throws InterruptedException
+	 *             when waiting for a task is interrupted.
+	 */
+	public abstract StateVertex awaitNewTask(StateVertex current) throws InterruptedException;
+
+	/**
+	 * Removes the actions of a state the crawler could not get to.
+	 *
+	 * @param crawlTask
+	 *            The state the crawler lost.
+	 */
+	public abstract void purgeActionsForState(StateVertex crawlTask);
+}
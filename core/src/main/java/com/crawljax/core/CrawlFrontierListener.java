@@ -0,0 +1,29 @@
+package com.crawljax.core;
+
+import java.util.Collection;
+
+import com.crawljax.core.state.StateVertex;
+
+/**
+ * Is told about the actions that are added to and removed from a {@link CrawlFrontier}. It is
+ * called by the crawlers while they change the frontier, so it should return quickly.
+ * 
+ * @see CrawlFrontier#addListener(CrawlFrontierListener)
+ */
+interface CrawlFrontierListener {
+
+	/**
+	 * @param actions
+	 *            The actions that are about to be queued. An action that was polled but not fired
+	 *            can be added again.
+	 * @param state
+	 *            The state of the actions.
+	 */
+	void actionsAdded(Collection<CandidateCrawlAction> actions, StateVertex state);
+
+	/**
+	 * @param actions
+	 *            The actions that were fired, or were still queued when their state was purged.
+	 */
+	void actionsRemoved(Collection<CandidateCrawlAction> actions);
+}
@@ -0,0 +1,152 @@
+package com.crawljax.core;
+
+import java.util.List;
+
+import javax.annotation.concurrent.Immutable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.crawljax.condition.eventablecondition.EventableCondition;
+import com.crawljax.condition.eventablecondition.EventableConditionChecker;
+import com.crawljax.core.configuration.CrawlElement;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+
+/**
+ * The {@link CrawlElement}s to click, indexed by tag name, and the ones not to click. The
+ * {@link EventableCondition} of every {@link CrawlElement} is looked up once, so matching an
+ * element of the DOM only costs a lookup of its tag.
+ */
+@Immutable
+final class CrawlRuleIndex {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CrawlRuleIndex.class);
+
+	/**
+	 * The tag name that matches every element, like in
+	 * {@link org.w3c.dom.Document#getElementsByTagName(String)}.
+	 */
+	static final String ANY_TAG = "*";
+
+	private final ImmutableList<Rule> includes;
+	private final ImmutableListMultimap<String, Rule> includesByTag;
+	private final ImmutableList<Rule> excludes;
+	private final boolean includesAnyTag;
+
+	/**
+	 * @param included
+	 *            The elements to click, in the order their candidates should be found.
+	 * @param excluded
+	 *            The elements not to click.
+	 * @param checker
+	 *            The checker that knows the {@link EventableCondition}s.
+	 */
+	CrawlRuleIndex(List<CrawlElement> included, List<CrawlElement> excluded,
+	        EventableConditionChecker checker) {
+		ImmutableList.Builder<Rule> rules = ImmutableList.builder();
+		ImmutableListMultimap.Builder<String, Rule> byTag = ImmutableListMultimap.builder();
+		int position = 0;
+		for (CrawlElement element : included) {
+			if (element.getTagName() != null) {
+				Rule rule = new Rule(element, checker.getEventableCondition(element.getId()),
+				        position++);
+				rules.add(rule);
+				byTag.put(element.getTagName(), rule);
+			}
+		}
+		includes = rules.build();
+		includesByTag = byTag.build();
+		includesAnyTag = includesByTag.containsKey(ANY_TAG);
+
+		ImmutableList.Builder<Rule> subtrees = ImmutableList.builder();
+		for (CrawlElement element : excluded) {
+			Rule rule = new Rule(element, checker.getEventableCondition(element.getId()), -1);
+			if (rule.getInXPath() == null) {
+				LOG.debug("{} never excludes an element because it has no XPath", element);
+			} else {
+				subtrees.add(rule);
+			}
+		}
+		excludes = subtrees.build();
+	}
+
+	/**
+	 * @return All rules of elements to click, in the order they were configured.
+	 */
+	ImmutableList<Rule> getIncludes() {
+		return includes;
+	}
+
+	/**
+	 * @param tagName
+	 *            The name of an element as it is in the DOM.
+	 * @return The rules of elements to click that match the tag.
+	 */
+	ImmutableList<Rule> includesFor(String tagName) {
+		if (includesAnyTag) {
+			return ImmutableList.<Rule> builder().addAll(includesByTag.get(tagName))
+			        .addAll(includesByTag.get(ANY_TAG)).build();
+		}
+		return includesByTag.get(tagName);
+	}
+
+	/**
+	 * @return The rules of elements not to click. Only rules with an XPath are kept, because an
+	 *         element is excluded when its tag matches and it is under that XPath.
+	 */
+	ImmutableList<Rule> getExcludes() {
+		return excludes;
+	}
+
+	/**
+	 * A {@link CrawlElement} with its {@link EventableCondition}.
+	 */
+	@Immutable
+	static final class Rule {
+
+		private final CrawlElement crawlElement;
+		private final EventableCondition condition;
+		private final int position;
+
+		private Rule(CrawlElement crawlElement, EventableCondition condition, int position) {
+			this.crawlElement = crawlElement;
+			this.condition = condition;
+			this.position = position;
+		}
+
+		CrawlElement getCrawlElement() {
+			return crawlElement;
+		}
+
+		/**
+		 * @return The condition or <code>null</code> if the {@link CrawlElement} has none.
+		 */
+		EventableCondition getCondition() {
+			return condition;
+		}
+
+		/**
+		 * @return The XPath the element should be under or <code>null</code> if there is none.
+		 */
+		String getInXPath() {
+			return condition == null ? null : condition.getInXPath();
+		}
+
+		/**
+		 * @return The position of the rule in {@link CrawlRuleIndex#getIncludes()}.
+		 */
+		int getPosition() {
+			return position;
+		}
+
+		@Override
+		public String toString() {
+			return Objects.toStringHelper(this)
+			        .add("crawlElement", crawlElement)
+			        .add("condition", condition)
+			        .toString();
+		}
+	}
+}
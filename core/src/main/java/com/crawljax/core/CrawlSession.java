@@ -1,5 +1,6 @@
 package com.crawljax.core;
 
+import java.io.Closeable;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -17,10 +18,11 @@ import com.crawljax.core.state.StateVertex;
 
 /**
  * Contains all data concerned with this crawl. There is one {@link CrawlSession} per crawl. Even if
- * there are multiple {@link EmbeddedBrowser}s configured.
+ * there are multiple {@link EmbeddedBrowser}s configured. {@link #close() Close} it when you are
+ * done reading the crawled states.
  */
 @Singleton
-public class CrawlSession {
+public class CrawlSession implements Closeable {
 
 	private final StateFlowGraph stateFlowGraph;
 
@@ -102,4 +104,15 @@ public class CrawlSession {
 	public MetricRegistry getRegistry() {
 		return registry;
 	}
+
+	/**
+	 * Releases the files the {@link StateFlowGraph} keeps its states in. The states that were
+	 * moved to disk can not be read after this. Does nothing when the graph is kept in memory.
+	 * 
+	 * @see StateFlowGraph#close()
+	 */
+	@Override
+	public void close() {
+		stateFlowGraph.close();
+	}
 }
@@ -10,7 +10,7 @@ import com.crawljax.core.state.StateVertex;
 import com.google.inject.Inject;
 
 /**
- * Consumes {@link StateVertex}s it gets from the {@link UnfiredCandidateActions}. It delegates the
+ * Consumes {@link StateVertex}s it gets from the {@link CrawlFrontier}. It delegates the
  * actual browser interactions to a {@link Crawler} whom it has a 1 to 1 relation with.
  */
 public class CrawlTaskConsumer implements Callable<Void> {
@@ -21,12 +21,12 @@ public class CrawlTaskConsumer implements Callable<Void> {
 
 	private final Crawler crawler;
 
-	private final UnfiredCandidateActions candidates;
+	private final CrawlFrontier candidates;
 
 	private final ExitNotifier exitNotifier;
 
 	@Inject
-	CrawlTaskConsumer(UnfiredCandidateActions candidates,
+	CrawlTaskConsumer(CrawlFrontier candidates,
 	        ExitNotifier exitNotifier, Crawler crawler) {
 		this.candidates = candidates;
 		this.exitNotifier = exitNotifier;
@@ -61,7 +61,7 @@ public class CrawlTaskConsumer implements Callable<Void> {
 	private void pollAndHandleCrawlTasks() throws InterruptedException {
 		try {
 			LOG.debug("Awaiting task");
-			StateVertex crawlTask = candidates.awaitNewTask();
+			StateVertex crawlTask = candidates.awaitNewTask(crawler.getCurrentState());
 			int activeConsumers = runningConsumers.incrementAndGet();
 			LOG.debug("There are {} active consumers", activeConsumers);
 			handleTask(crawlTask);
@@ -85,6 +85,17 @@ public class CrawlTaskConsumer implements Callable<Void> {
 		return crawler.crawlIndex();
 	}
 
+	/**
+	 * Expands a state that was restored from a checkpoint. Call it before the consumer is started.
+	 * 
+	 * @param state
+	 *            The restored state.
+	 * @see Crawler#expand(StateVertex)
+	 */
+	public void expand(StateVertex state) {
+		crawler.expand(state);
+	}
+
 	public CrawlerContext getContext() {
 		return crawler.getContext();
 	}
@@ -4,6 +4,7 @@ import javax.inject.Inject;
 import javax.inject.Provider;
 
 import java.net.URI;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
@@ -11,17 +12,19 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.codahale.metrics.Counter;
+import com.crawljax.browser.BrowserPool;
 import com.crawljax.browser.EmbeddedBrowser;
 import com.crawljax.condition.browserwaiter.WaitConditionChecker;
 import com.crawljax.core.configuration.CrawlRules;
 import com.crawljax.core.configuration.CrawljaxConfiguration;
 import com.crawljax.core.plugin.Plugins;
+import com.crawljax.core.state.AbstractStateFlowGraph;
 import com.crawljax.core.state.CrawlPath;
 import com.crawljax.core.state.Element;
 import com.crawljax.core.state.Eventable;
 import com.crawljax.core.state.Eventable.EventType;
 import com.crawljax.core.state.Identification;
-import com.crawljax.core.state.InMemoryStateFlowGraph;
 import com.crawljax.core.state.StateFlowGraph;
 import com.crawljax.core.state.StateMachine;
 import com.crawljax.core.state.StateVertex;
@@ -30,6 +33,7 @@ import com.crawljax.di.CoreModule.CandidateElementExtractorFactory;
 import com.crawljax.di.CoreModule.FormHandlerFactory;
 import com.crawljax.forms.FormHandler;
 import com.crawljax.forms.FormInput;
+import com.crawljax.metrics.MetricsModule;
 import com.crawljax.oraclecomparator.StateComparator;
 import com.crawljax.util.ElementResolver;
 import com.crawljax.util.UrlUtils;
@@ -55,24 +59,33 @@ public class Crawler {
 	private final CrawlRules crawlRules;
 	private final WaitConditionChecker waitConditionChecker;
 	private final CandidateElementExtractor candidateExtractor;
-	private final UnfiredCandidateActions candidateActionCache;
-	private final Provider<InMemoryStateFlowGraph> graphProvider;
+	private final CrawlFrontier candidateActionCache;
+	private final Provider<AbstractStateFlowGraph> graphProvider;
 	private final StateVertexFactory vertexFactory;
+	private final Counter resetsSkipped;
+	private final Checkpointer checkpointer;
 
 	private CrawlPath crawlpath;
 	private StateMachine stateMachine;
 
+	/**
+	 * Whether the browser is known to be in the current state of the {@link StateMachine}. This is
+	 * only the case after the actions of a state were crawled without problems.
+	 */
+	private boolean inSync;
+
 	@Inject
 	Crawler(CrawlerContext context, CrawljaxConfiguration config,
-	        StateComparator stateComparator, UnfiredCandidateActions candidateActionCache,
+	        StateComparator stateComparator, CrawlFrontier candidateActionCache,
 	        FormHandlerFactory formHandlerFactory,
 	        WaitConditionChecker waitConditionChecker,
 	        CandidateElementExtractorFactory elementExtractor,
-	        Provider<InMemoryStateFlowGraph> graphProvider,
-	        Plugins plugins, StateVertexFactory vertexFactory) {
+	        Provider<AbstractStateFlowGraph> graphProvider,
+	        Plugins plugins, StateVertexFactory vertexFactory, Checkpointer checkpointer) {
 		this.context = context;
 		this.graphProvider = graphProvider;
 		this.vertexFactory = vertexFactory;
+		this.checkpointer = checkpointer;
 		this.browser = context.getBrowser();
 		this.url = config.getUrl();
 		this.plugins = plugins;
@@ -83,6 +96,8 @@ public class Crawler {
 		this.waitConditionChecker = waitConditionChecker;
 		this.candidateExtractor = elementExtractor.newExtractor(browser);
 		this.formHandler = formHandlerFactory.newFormHandler(browser);
+		this.resetsSkipped =
+		        context.getRegistry().counter(MetricsModule.EVENTS_PREFIX + "resets_skipped");
 	}
 
 	/**
@@ -102,7 +117,8 @@ public class Crawler {
 		}
 		stateMachine =
 		        new StateMachine(graphProvider.get(),
-		                crawlRules.getInvariants(), plugins, stateComparator);
+		                crawlRules.getInvariants(), plugins, stateComparator,
+		                context.getRegistry());
 		context.setStateMachine(stateMachine);
 		crawlpath = new CrawlPath();
 		context.setCrawlPath(crawlpath);
@@ -112,16 +128,37 @@ public class Crawler {
 	}
 
 	/**
+	 * Goes to the given state and crawls its actions. If the browser is already on the path to the
+	 * state or one event away from it, it continues from where it is. Otherwise, or when the
+	 * browser had to be recycled, the crawler is {@link #reset()} and follows the shortest path
+	 * from the index.
+	 * 
 	 * @param crawlTask
 	 *            The {@link StateVertex} this {@link Crawler} should visit to crawl.
 	 */
 	public void execute(StateVertex crawlTask) {
-		LOG.debug("Resetting the crawler and going to state {}", crawlTask.getName());
-		reset();
+		if (BrowserPool.recycleIfNeeded(browser)) {
+			LOG.debug("The browser was recycled and has to be reset");
+			inSync = false;
+		}
 		ImmutableList<Eventable> eventables = shortestPathTo(crawlTask);
+		List<Eventable> route = routeFromCurrentState(crawlTask, eventables);
+		if (route == null) {
+			LOG.debug("Resetting the crawler and going to state {}", crawlTask.getName());
+			reset();
+			route = eventables;
+		} else {
+			LOG.debug("Going to state {} from state {} without resetting", crawlTask.getName(),
+			        stateMachine.getCurrentState().getName());
+			crawlDepth.set(eventables.size() - route.size());
+			resetsSkipped.inc();
+			startPathAt(stateMachine.getCurrentState());
+		}
+		inSync = false;
 		try {
-			follow(CrawlPath.copyOf(eventables), crawlTask);
+			follow(CrawlPath.copyOf(route), crawlTask);
 			crawlThroughActions();
+			inSync = true;
 		} catch (StateUnreachableException ex) {
 			LOG.info(ex.getMessage());
 			LOG.debug(ex.getMessage(), ex);
@@ -132,14 +169,94 @@ public class Crawler {
 		}
 	}
 
+	/**
+	 * Goes to a state that was restored from a checkpoint before its candidate elements were
+	 * queued, and queues them.
+	 * 
+	 * @param state
+	 *            The restored state to expand.
+	 */
+	public void expand(StateVertex state) {
+		ImmutableList<Eventable> path = shortestPathTo(state);
+		reset();
+		inSync = false;
+		try {
+			follow(CrawlPath.copyOf(path), state);
+			if (maxDepth == crawlDepth.get()) {
+				LOG.debug("State {} is at the maximum depth. Not expanding it", state.getName());
+			} else {
+				parseCurrentPageForCandidateElements();
+			}
+			checkpointer.stateExpanded(state);
+		} catch (StateUnreachableException | CrawlerLeftDomainException e) {
+			LOG.warn("Could not expand restored state {}: {}", state.getName(), e.getMessage());
+		}
+	}
+
+	/**
+	 * Starts a new crawl path for a task that continues from the current state, as if the crawler
+	 * was reset and followed the shortest path to that state.
+	 */
+	private void startPathAt(StateVertex current) {
+		if (crawlpath != null) {
+			context.getSession().addCrawlPath(crawlpath);
+		}
+		crawlpath = CrawlPath.copyOf(shortestPathTo(current));
+		context.setCrawlPath(crawlpath);
+	}
+
 	private ImmutableList<Eventable> shortestPathTo(StateVertex crawlTask) {
 		StateFlowGraph graph = context.getSession().getStateFlowGraph();
 		return graph.getShortestPath(graph.getInitialState(), crawlTask);
 	}
 
+	/**
+	 * @param target
+	 *            The state to go to.
+	 * @param fromIndex
+	 *            The shortest path from the index to the target.
+	 * @return The events to fire to get from the current state of the browser to the target, or
+	 *         <code>null</code> if the browser has to be reset.
+	 */
+	private List<Eventable> routeFromCurrentState(StateVertex target,
+	        ImmutableList<Eventable> fromIndex) {
+		if (!inSync) {
+			return null;
+		}
+		StateVertex current = stateMachine.getCurrentState();
+		List<Eventable> route = null;
+		if (current.getId() == context.getSession().getInitialState().getId()) {
+			route = fromIndex;
+		}
+		for (int i = 0; i < fromIndex.size(); i++) {
+			if (fromIndex.get(i).getTargetStateVertex().getId() == current.getId()) {
+				route = fromIndex.subList(i + 1, fromIndex.size());
+			}
+		}
+		if (route == null) {
+			StateFlowGraph graph = context.getSession().getStateFlowGraph();
+			for (Eventable event : graph.getOutgoingClickables(current)) {
+				if (event.getTargetStateVertex().getId() == target.getId()) {
+					route = ImmutableList.of(event);
+					break;
+				}
+			}
+		}
+		if (route != null && !browserIsIn(current)) {
+			LOG.debug("The browser is not in state {} anymore", current.getName());
+			return null;
+		}
+		return route;
+	}
+
+	private boolean browserIsIn(StateVertex state) {
+		return !crawlerLeftDomain()
+		        && state.getStrippedDom().equals(stateComparator.getStrippedDom(browser));
+	}
+
 	private void follow(CrawlPath path, StateVertex targetState)
 	        throws StateUnreachableException, CrawljaxException {
-		StateVertex curState = context.getSession().getInitialState();
+		StateVertex curState = stateMachine.getCurrentState();
 
 		for (Eventable clickable : path) {
 			checkCrawlConditions(targetState);
@@ -304,20 +421,10 @@ public class Crawler {
 		CandidateCrawlAction action =
 		        candidateActionCache.pollActionOrNull(stateMachine.getCurrentState());
 		while (action != null && !interrupted) {
-			CandidateElement element = action.getCandidateElement();
-			if (element.allConditionsSatisfied(browser)) {
-				Eventable event = new Eventable(element, action.getEventType());
-				handleInputElements(event);
-				waitForRefreshTagIfAny(event);
-
-				boolean fired = fireEvent(event);
-				if (fired) {
-					inspectNewState(event);
-				}
-			} else {
-				LOG.info(
-				        "Element {} not clicked because not all crawl conditions where satisfied",
-				        element);
+			try {
+				fire(action);
+			} finally {
+				candidateActionCache.fired(action);
 			}
 			// We have to check if we are still in the same state.
 			action = candidateActionCache.pollActionOrNull(stateMachine.getCurrentState());
@@ -340,6 +447,23 @@ public class Crawler {
 		}
 	}
 
+	private void fire(CandidateCrawlAction action) {
+		CandidateElement element = action.getCandidateElement();
+		if (element.allConditionsSatisfied(browser, context.getRegistry())) {
+			Eventable event = new Eventable(element, action.getEventType());
+			handleInputElements(event);
+			waitForRefreshTagIfAny(event);
+
+			boolean fired = fireEvent(event);
+			if (fired) {
+				inspectNewState(event);
+			}
+		} else {
+			LOG.info("Element {} not clicked because not all crawl conditions where satisfied",
+			        element);
+		}
+	}
+
 	private void inspectNewState(Eventable event) {
 		if (crawlerLeftDomain()) {
 			LOG.debug("The browser left the domain. Going back one state...");
@@ -362,8 +486,7 @@ public class Crawler {
 	private void inspectNewDom(Eventable event, StateVertex newState) {
 		LOG.debug("The DOM has changed. Event added to the crawl path");
 		crawlpath.add(event);
-		boolean isNewState =
-		        stateMachine.swithToStateAndCheckIfClone(event, newState, context);
+		boolean isNewState = stateMachine.swithToStateAndCheckIfClone(event, newState, context);
 		if (isNewState) {
 			int depth = crawlDepth.incrementAndGet();
 			LOG.info("New DOM is a new state! crawl depth is now {}", depth);
@@ -372,6 +495,8 @@ public class Crawler {
 			} else {
 				parseCurrentPageForCandidateElements();
 			}
+			checkpointer.stateExpanded(stateMachine.getCurrentState());
+			checkpointer.stateAdded();
 		} else {
 			LOG.debug("New DOM is a clone state. Continuing in that state.");
 			context.getSession().addCrawlPath(crawlpath.immutableCopy());
@@ -450,6 +575,7 @@ public class Crawler {
 		plugins.runPreStateCrawlingPlugins(context, extract, index);
 
 		candidateActionCache.addActions(extract, index);
+		checkpointer.stateExpanded(index);
 
 		return index;
 
@@ -458,4 +584,11 @@ public class Crawler {
 	public CrawlerContext getContext() {
 		return context;
 	}
+
+	/**
+	 * @return The state the browser is in or <code>null</code> if that is not known.
+	 */
+	public StateVertex getCurrentState() {
+		return inSync ? stateMachine.getCurrentState() : null;
+	}
 }
@@ -102,4 +102,56 @@ public class CrawlerContext {
 		return crawlpath.immutableCopy();
 	}
 
+	/**
+	 * @return A copy of this context that keeps the current {@link StateVertex},
+	 *         {@link CrawlPath} and {@link CrawlSession} of this moment, for a {@link Plugin} that
+	 *         runs after the {@link Crawler} has moved on.
+	 */
+	public CrawlerContext snapshot() {
+		return new Snapshot(this);
+	}
+
+	private static final class Snapshot extends CrawlerContext {
+
+		private final StateVertex currentState;
+		private final CrawlPath crawlPath;
+		private final CrawlSession session;
+
+		Snapshot(CrawlerContext context) {
+			super(context.browser, context.config, context.sessionProvider,
+			        context.exitNotifier, context.registry);
+			this.currentState = context.getCurrentState();
+			this.crawlPath = context.crawlpath == null ? null : context.crawlpath.immutableCopy();
+			this.session = sessionOf(context);
+		}
+
+		private static CrawlSession sessionOf(CrawlerContext context) {
+			try {
+				return context.getSession();
+			} catch (CrawlSessionNotSetupYetException e) {
+				return null;
+			}
+		}
+
+		@Override
+		public CrawlSession getSession() {
+			return session == null ? super.getSession() : session;
+		}
+
+		@Override
+		public StateVertex getCurrentState() {
+			return currentState;
+		}
+
+		@Override
+		public CrawlPath getCrawlPath() {
+			return crawlPath;
+		}
+
+		@Override
+		public CrawlerContext snapshot() {
+			return this;
+		}
+	}
+
 }
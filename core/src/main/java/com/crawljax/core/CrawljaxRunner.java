@@ -13,7 +13,7 @@ import com.google.inject.Injector;
 
 /**
  * Runs crawljax given a certain {@link CrawljaxConfiguration}. Run {@link #call()} to start a
- * crawl.
+ * crawl or {@link #resume()} to continue one from its last checkpoint.
  */
 public class CrawljaxRunner implements Callable<CrawlSession> {
 
@@ -28,7 +28,8 @@ public class CrawljaxRunner implements Callable<CrawlSession> {
 	/**
 	 * Runs Crawljax with the given configuration.
 	 * 
-	 * @return The {@link CrawlSession} once the Crawl is done.
+	 * @return The {@link CrawlSession} once the Crawl is done. {@link CrawlSession#close()
+	 *         Close} it when you are done with it.
 	 */
 	@Override
 	public CrawlSession call() {
@@ -39,6 +40,22 @@ public class CrawljaxRunner implements Callable<CrawlSession> {
 		return session;
 	}
 
+	/**
+	 * Continues the crawl of the configured checkpoint directory from its last checkpoint.
+	 * 
+	 * @return The {@link CrawlSession} once the Crawl is done. {@link CrawlSession#close()
+	 *         Close} it when you are done with it.
+	 * @see com.crawljax.core.configuration.CrawljaxConfiguration.CrawljaxConfigurationBuilder#setCheckpoints(java.io.File,
+	 *      int)
+	 */
+	public CrawlSession resume() {
+		Injector injector = Guice.createInjector(new CoreModule(config));
+		controller = injector.getInstance(CrawlController.class);
+		CrawlSession session = controller.resume();
+		reason = controller.getReason();
+		return session;
+	}
+
 	/**
 	 * Stops Crawljax. It will try to shutdown gracefully and run the {@link PostCrawlingPlugin}s.
 	 */
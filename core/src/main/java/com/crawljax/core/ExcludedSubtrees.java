@@ -0,0 +1,144 @@
+package com.crawljax.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.concurrent.Immutable;
+import javax.xml.xpath.XPathExpressionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.crawljax.core.CrawlRuleIndex.Rule;
+import com.crawljax.util.XPathEngine;
+
+/**
+ * The elements of one document that must not be clicked. An element is excluded when the tag of
+ * a rule not to click matches it and it is in the subtree of an element the XPath of that rule
+ * selects, or when one of its ancestors is excluded.
+ * <p>
+ * The document is walked once from the root. Every element inherits which rules' subtrees it is
+ * in from its parent, and the whole subtree of an excluded element is excluded without looking at
+ * the rules again, so checking an element afterwards is a lookup.
+ * </p>
+ */
+@Immutable
+final class ExcludedSubtrees {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ExcludedSubtrees.class);
+
+	private final Set<Node> excluded = newIdentitySet();
+
+	/**
+	 * @param dom
+	 *            The document.
+	 * @param rules
+	 *            The rules of elements not to click, which all have an XPath.
+	 */
+	ExcludedSubtrees(Document dom, List<Rule> rules) {
+		Element root = dom.getDocumentElement();
+		if (rules.isEmpty() || root == null) {
+			return;
+		}
+		List<Set<Node>> selected = select(dom, rules);
+		Deque<Element> elements = new ArrayDeque<>();
+		Deque<boolean[]> insides = new ArrayDeque<>();
+		elements.push(root);
+		insides.push(new boolean[rules.size()]);
+		while (!elements.isEmpty()) {
+			Element element = elements.pop();
+			boolean[] inside = enter(element, insides.pop(), selected);
+			if (matches(element, inside, rules)) {
+				exclude(element);
+				continue;
+			}
+			for (Node child = element.getFirstChild(); child != null; child =
+			        child.getNextSibling()) {
+				if (child instanceof Element) {
+					elements.push((Element) child);
+					insides.push(inside);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The elements every rule's XPath selects, or none if the XPath is invalid.
+	 */
+	private static List<Set<Node>> select(Document dom, List<Rule> rules) {
+		List<Set<Node>> selected = new ArrayList<>(rules.size());
+		for (Rule rule : rules) {
+			Set<Node> nodes = newIdentitySet();
+			try {
+				NodeList list = XPathEngine.getDefault().evaluate(dom, rule.getInXPath());
+				for (int i = 0; i < list.getLength(); i++) {
+					nodes.add(list.item(i));
+				}
+			} catch (XPathExpressionException e) {
+				LOG.debug("Could not check exclusion by Xpath {} because {}",
+				        rule.getInXPath(), e.getMessage());
+			}
+			selected.add(nodes);
+		}
+		return selected;
+	}
+
+	/**
+	 * @return Which rules' subtrees the element is in. The array of the parent is only copied
+	 *         when the element starts a new subtree.
+	 */
+	private static boolean[] enter(Element element, boolean[] parent, List<Set<Node>> selected) {
+		boolean[] inside = parent;
+		for (int i = 0; i < parent.length; i++) {
+			if (!parent[i] && selected.get(i).contains(element)) {
+				if (inside == parent) {
+					inside = parent.clone();
+				}
+				inside[i] = true;
+			}
+		}
+		return inside;
+	}
+
+	private static boolean matches(Element element, boolean[] inside, List<Rule> rules) {
+		String tagName = element.getTagName().toUpperCase();
+		for (int i = 0; i < inside.length; i++) {
+			if (inside[i] && tagName.equals(rules.get(i).getCrawlElement().getTagName())) {
+				LOG.debug("Excluded element {} because of xpath {}", element,
+				        rules.get(i).getInXPath());
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void exclude(Element element) {
+		excluded.add(element);
+		NodeList descendants = element.getElementsByTagName("*");
+		for (int i = 0; i < descendants.getLength(); i++) {
+			excluded.add(descendants.item(i));
+		}
+	}
+
+	/**
+	 * @param element
+	 *            An element of the document.
+	 * @return <code>true</code> if the element must not be clicked.
+	 */
+	boolean contains(Element element) {
+		return excluded.contains(element);
+	}
+
+	private static Set<Node> newIdentitySet() {
+		return Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+	}
+}
@@ -0,0 +1,143 @@
+package com.crawljax.core;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Provider;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.core.state.StateFlowGraph;
+import com.crawljax.core.state.StateVertex;
+import com.crawljax.core.strategy.CrawlStrategy;
+import com.crawljax.metrics.MetricsModule;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * The bookkeeping every {@link CrawlFrontier} does, whatever way it queues its states: the actions
+ * that were polled but not fired yet, the order and priorities the {@link CrawlStrategy} gives and
+ * the metrics of the frontier.
+ */
+final class FrontierBookkeeper {
+
+	private final Provider<StateFlowGraph> sfg;
+	private final CrawlStrategy strategy;
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicLong firstActionsAdded = new AtomicLong();
+
+	/**
+	 * The actions that were polled but not fired yet, with the id of their state. Keyed by
+	 * identity.
+	 */
+	private final ConcurrentMap<CandidateCrawlAction, Integer> inFlight = Maps
+	        .newConcurrentMap();
+	private final Counter crawlerLostCount;
+	private final Counter unfiredActionsCount;
+	private final Counter affinityHitsCount;
+
+	FrontierBookkeeper(Provider<StateFlowGraph> sfg, MetricRegistry registry,
+	        CrawlStrategy strategy) {
+		this.sfg = sfg;
+		this.strategy = strategy;
+		crawlerLostCount =
+		        registry.register(MetricsModule.EVENTS_PREFIX + "crawler_lost", new Counter());
+		unfiredActionsCount =
+		        registry.register(MetricsModule.EVENTS_PREFIX + "unfired_actions", new Counter());
+		affinityHitsCount =
+		        registry.register(MetricsModule.EVENTS_PREFIX + "task_affinity_hits",
+		                new Counter());
+		registry.register(MetricsModule.STRATEGY_PREFIX + strategy.getClass().getSimpleName()
+		        + ".states_per_minute", new Gauge<Double>() {
+
+			@Override
+			public Double getValue() {
+				return statesPerMinute();
+			}
+		});
+	}
+
+	private double statesPerMinute() {
+		long start = firstActionsAdded.get();
+		if (start == 0) {
+			return 0.0;
+		}
+		double minutes = (System.nanoTime() - start) / (double) TimeUnit.MINUTES.toNanos(1);
+		return minutes == 0 ? 0.0 : sfg.get().getNumberOfStates() / minutes;
+	}
+
+	/**
+	 * @return The actions in the order the {@link CrawlStrategy} wants them fired.
+	 */
+	ImmutableList<CandidateCrawlAction> orderActions(StateVertex state,
+	        Collection<CandidateCrawlAction> actions) {
+		return strategy.orderActions(state, ImmutableList.copyOf(actions));
+	}
+
+	/**
+	 * @return The priority the {@link CrawlStrategy} gives the state. Also starts the clock for the
+	 *         states per minute metric.
+	 */
+	long priorityOf(StateVertex state, long seq) {
+		firstActionsAdded.compareAndSet(0, System.nanoTime());
+		return strategy.statePriority(state, sfg.get(), seq);
+	}
+
+	long nextSequence() {
+		return sequence.incrementAndGet();
+	}
+
+	/**
+	 * Calls {@link CrawlStrategy#onActionPolled(CandidateCrawlAction)} if an action was polled and
+	 * keeps it in flight until it is {@link #fired(CandidateCrawlAction)}.
+	 */
+	CandidateCrawlAction polled(CandidateCrawlAction action, int stateId) {
+		if (action != null) {
+			inFlight.put(action, stateId);
+			strategy.onActionPolled(action);
+		}
+		return action;
+	}
+
+	void fired(CandidateCrawlAction action) {
+		inFlight.remove(action);
+	}
+
+	/**
+	 * @param queued
+	 *            A copy of the queued actions of the frontier. The actions in flight are added to
+	 *            it.
+	 * @return The queued actions and the ones that were polled but not fired yet.
+	 */
+	ListMultimap<Integer, CandidateCrawlAction> snapshot(
+	        ListMultimap<Integer, CandidateCrawlAction> queued) {
+		// Actions that are put back after an interruption are queued and in flight.
+		Set<CandidateCrawlAction> seen = Sets.newIdentityHashSet();
+		seen.addAll(queued.values());
+		for (Map.Entry<CandidateCrawlAction, Integer> polled : inFlight.entrySet()) {
+			if (!seen.contains(polled.getKey())) {
+				queued.put(polled.getValue(), polled.getKey());
+			}
+		}
+		return queued;
+	}
+
+	void affinityHit() {
+		affinityHitsCount.inc();
+	}
+
+	/**
+	 * Counts a state the crawler lost and the actions of it that are not fired.
+	 */
+	void crawlerLost(int unfiredActions) {
+		unfiredActionsCount.inc(unfiredActions);
+		crawlerLostCount.inc();
+	}
+}
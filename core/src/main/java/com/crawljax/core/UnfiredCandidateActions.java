@@ -1,11 +1,10 @@
 package com.crawljax.core;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.locks.Lock;
 
 import javax.inject.Inject;
@@ -15,46 +14,81 @@ import javax.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.crawljax.core.configuration.BrowserConfiguration;
-import com.crawljax.core.state.Eventable.EventType;
 import com.crawljax.core.state.StateFlowGraph;
 import com.crawljax.core.state.StateVertex;
-import com.crawljax.metrics.MetricsModule;
+import com.crawljax.core.strategy.BreadthFirstStrategy;
+import com.crawljax.core.strategy.CrawlStrategy;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Queues;
+import com.google.common.primitives.Longs;
 import com.google.common.util.concurrent.Striped;
 
 /**
- * Contains all the {@link CandidateCrawlAction}s that still have to be fired to get a result.
+ * Contains all the {@link CandidateCrawlAction}s that still have to be fired to get a result. The
+ * order in which states are handed out and actions are fired is decided by the configured
+ * {@link CrawlStrategy}.
  */
 @Singleton
-public class UnfiredCandidateActions {
+public class UnfiredCandidateActions extends CrawlFrontier {
 
 	private static final Logger LOG = LoggerFactory.getLogger(UnfiredCandidateActions.class);
 
 	private final Map<Integer, Queue<CandidateCrawlAction>> cache;
-	private final BlockingQueue<Integer> statesWithCandidates;
+	private final BlockingQueue<QueuedState> statesWithCandidates;
 	private final Striped<Lock> locks;
 	private final Provider<StateFlowGraph> sfg;
-	private final Counter crawlerLostCount;
-	private final Counter unfiredActionsCount;
+	private final FrontierBookkeeper bookkeeper;
 
-	@Inject
 	UnfiredCandidateActions(BrowserConfiguration config, Provider<StateFlowGraph> sfg,
 	        MetricRegistry registry) {
+		this(config, sfg, registry, new BreadthFirstStrategy());
+	}
+
+	@Inject
+	UnfiredCandidateActions(BrowserConfiguration config, Provider<StateFlowGraph> sfg,
+	        MetricRegistry registry, CrawlStrategy strategy) {
 		this.sfg = sfg;
+		this.bookkeeper = new FrontierBookkeeper(sfg, registry, strategy);
 		cache = Maps.newHashMap();
-		statesWithCandidates = Queues.newLinkedBlockingQueue();
+		statesWithCandidates = new PriorityBlockingQueue<>();
 		// Every browser gets a lock.
 		locks = Striped.lock(config.getNumberOfBrowsers());
+	}
+
+	@Override
+	void fired(CandidateCrawlAction action) {
+		bookkeeper.fired(action);
+		notifyActionsRemoved(ImmutableList.of(action));
+	}
 
-		crawlerLostCount =
-		        registry.register(MetricsModule.EVENTS_PREFIX + "crawler_lost", new Counter());
-		unfiredActionsCount =
-		        registry.register(MetricsModule.EVENTS_PREFIX + "unfired_actions", new Counter());
+	@Override
+	ListMultimap<Integer, CandidateCrawlAction> snapshot() {
+		return bookkeeper.snapshot(queuedActions());
+	}
+
+	/**
+	 * @return A copy of the queued actions by the id of their state.
+	 */
+	private ListMultimap<Integer, CandidateCrawlAction> queuedActions() {
+		ListMultimap<Integer, CandidateCrawlAction> copy = LinkedListMultimap.create();
+		for (int i = 0; i < locks.size(); i++) {
+			locks.getAt(i).lock();
+		}
+		try {
+			for (Map.Entry<Integer, Queue<CandidateCrawlAction>> queue : cache.entrySet()) {
+				copy.putAll(queue.getKey(), queue.getValue());
+			}
+		} finally {
+			for (int i = locks.size() - 1; i >= 0; i--) {
+				locks.getAt(i).unlock();
+			}
+		}
+		return copy;
 	}
 
 	/**
@@ -62,6 +96,7 @@ public class UnfiredCandidateActions {
 	 *            The state you want to poll an {@link CandidateCrawlAction} for.
 	 * @return The next to-be-crawled action or <code>null</code> if none available.
 	 */
+	@Override
 	CandidateCrawlAction pollActionOrNull(StateVertex state) {
 		LOG.debug("Polling action for state {}", state.getName());
 		Lock lock = locks.get(state.getId());
@@ -78,7 +113,7 @@ public class UnfiredCandidateActions {
 					removeStateFromQueue(state.getId());
 					LOG.debug("There are now {} states with unfinished actions", cache.size());
 				}
-				return action;
+				return bookkeeper.polled(action, state.getId());
 			}
 		} finally {
 			lock.unlock();
@@ -87,46 +122,37 @@ public class UnfiredCandidateActions {
 	}
 
 	private void removeStateFromQueue(int id) {
-		while (statesWithCandidates.remove(id)) {
+		while (statesWithCandidates.remove(new QueuedState(id, 0, 0))) {
 			LOG.trace("Removed id {} from the queue", id);
 		}
 	}
 
-	/**
-	 * @param extract
-	 *            The actions you want to add to a state.
-	 * @param currentState
-	 *            The state you are in.
-	 */
-	public void addActions(ImmutableList<CandidateElement> extract, StateVertex currentState) {
-		List<CandidateCrawlAction> actions = new ArrayList<>(extract.size());
-		for (CandidateElement candidateElement : extract) {
-			actions.add(new CandidateCrawlAction(candidateElement, EventType.click));
-		}
-		addActions(actions, currentState);
-	}
-
 	/**
 	 * @param actions
 	 *            The actions you want to add to a state.
 	 * @param state
 	 *            The state name. This should be unique per state.
 	 */
+	@Override
 	void addActions(Collection<CandidateCrawlAction> actions, StateVertex state) {
 		if (actions.isEmpty()) {
 			LOG.debug("Received empty actions list. Ignoring...");
 			return;
 		}
+		notifyActionsAdded(actions, state);
 		Lock lock = locks.get(state.getId());
 		try {
 			lock.lock();
 			LOG.debug("Adding {} crawl actions for state {}", actions.size(), state.getId());
+			ImmutableList<CandidateCrawlAction> ordered = bookkeeper.orderActions(state, actions);
 			if (cache.containsKey(state.getId())) {
-				cache.get(state.getId()).addAll(actions);
+				cache.get(state.getId()).addAll(ordered);
 			} else {
-				cache.put(state.getId(), Queues.newConcurrentLinkedQueue(actions));
+				cache.put(state.getId(), Queues.newConcurrentLinkedQueue(ordered));
 			}
-			statesWithCandidates.add(state.getId());
+			long seq = bookkeeper.nextSequence();
+			statesWithCandidates.add(new QueuedState(state.getId(),
+			        bookkeeper.priorityOf(state, seq), seq));
 			LOG.info("There are {} states with unfired actions", statesWithCandidates.size());
 		} finally {
 			lock.unlock();
@@ -138,6 +164,7 @@ public class UnfiredCandidateActions {
 	 * @return If there are any pending actions to be crawled. This method is not threadsafe and
 	 *         might return a stale value.
 	 */
+	@Override
 	public boolean isEmpty() {
 		return statesWithCandidates.isEmpty();
 	}
@@ -147,28 +174,113 @@ public class UnfiredCandidateActions {
 	 * @throws InterruptedException
 	 *             when taking from the queue is interrupted.
 	 */
+	@Override
 	public StateVertex awaitNewTask() throws InterruptedException {
-		int id = statesWithCandidates.take();
-		// Put it back the end of the queue. It will be removed later.
-		statesWithCandidates.add(id);
+		QueuedState queued = statesWithCandidates.take();
+		int id = queued.id;
+		Lock lock = locks.get(id);
+		try {
+			lock.lock();
+			// Put it back behind the states with the same priority, unless it was drained in the
+			// meantime. It will be removed later.
+			if (cache.containsKey(id)) {
+				statesWithCandidates.add(new QueuedState(id, queued.priority,
+				        bookkeeper.nextSequence()));
+			}
+		} finally {
+			lock.unlock();
+		}
 		LOG.debug("New task polled for state {}", id);
 		LOG.info("There are {} states with unfired actions", statesWithCandidates.size());
 		return sfg.get().getById(id);
 	}
 
+	@Override
+	public StateVertex awaitNewTask(StateVertex current) throws InterruptedException {
+		if (current != null) {
+			StateVertex nearby = nearbyStateWithActions(current);
+			if (nearby != null) {
+				LOG.debug("New task for state {} near the current state {}", nearby.getName(),
+				        current.getName());
+				bookkeeper.affinityHit();
+				return nearby;
+			}
+		}
+		return awaitNewTask();
+	}
+
+	private StateVertex nearbyStateWithActions(StateVertex current) {
+		if (hasActions(current)) {
+			return current;
+		}
+		for (StateVertex next : sfg.get().getOutgoingStates(current)) {
+			if (hasActions(next)) {
+				return next;
+			}
+		}
+		return null;
+	}
+
+	private boolean hasActions(StateVertex state) {
+		Lock lock = locks.get(state.getId());
+		try {
+			lock.lock();
+			Queue<CandidateCrawlAction> queue = cache.get(state.getId());
+			return queue != null && !queue.isEmpty();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
 	public void purgeActionsForState(StateVertex crawlTask) {
 		Lock lock = locks.get(crawlTask.getId());
+		Queue<CandidateCrawlAction> removed = null;
 		try {
 			lock.lock();
 			LOG.debug("Removing tasks for target state {}", crawlTask.getName());
 			removeStateFromQueue(crawlTask.getId());
-			Queue<CandidateCrawlAction> removed = cache.remove(crawlTask.getId());
-			if (removed != null) {
-				unfiredActionsCount.inc(removed.size());
-			}
+			removed = cache.remove(crawlTask.getId());
 		} finally {
 			lock.unlock();
-			crawlerLostCount.inc();
+			bookkeeper.crawlerLost(removed == null ? 0 : removed.size());
+		}
+		if (removed != null) {
+			notifyActionsRemoved(removed);
+		}
+	}
+
+	/**
+	 * A state in the queue. States are ordered by priority and then by the order they were queued.
+	 * Equality only depends on the state id so all entries for a state can be removed from the
+	 * queue.
+	 */
+	private static final class QueuedState implements Comparable<QueuedState> {
+
+		private final int id;
+		private final long priority;
+		private final long sequence;
+
+		QueuedState(int id, long priority, long sequence) {
+			this.id = id;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(QueuedState other) {
+			int result = Longs.compare(priority, other.priority);
+			return result != 0 ? result : Longs.compare(sequence, other.sequence);
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof QueuedState && ((QueuedState) obj).id == id;
 		}
 	}
 }
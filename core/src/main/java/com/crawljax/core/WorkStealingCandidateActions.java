@@ -0,0 +1,427 @@
+package com.crawljax.core;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import net.jcip.annotations.GuardedBy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.core.configuration.BrowserConfiguration;
+import com.crawljax.core.state.StateFlowGraph;
+import com.crawljax.core.state.StateVertex;
+import com.crawljax.core.strategy.CrawlStrategy;
+import com.crawljax.metrics.MetricsModule;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+
+/**
+ * A {@link CrawlFrontier} that gives every {@link CrawlTaskConsumer} its own deque of
+ * states to crawl. New states are pushed on the deque of the consumer that found them and idle
+ * consumers steal from the tail of the other deques. The actions of a state are kept in a
+ * concurrent index so looking them up is O(1) and no global lock or queue is shared between the
+ * consumers.
+ * <p>
+ * A state is held by the consumer that took it from a deque until that consumer moves on to
+ * another state. If the state still has actions at that point it is put back on the consumer's
+ * deque so it can be stolen. Consumers that find no work at all join a state that is held by
+ * another consumer, just like the {@link UnfiredCandidateActions} lets multiple consumers crawl the
+ * same state.
+ * </p>
+ * <p>
+ * The {@link CrawlStrategy} orders the actions of a state as usual. States are ordered per
+ * consumer: a new state goes to the front of the deque when the strategy gives it a lower priority
+ * than the state at the front, and to the back otherwise.
+ * </p>
+ * Enable it using
+ * {@link com.crawljax.core.configuration.CrawljaxConfiguration.CrawljaxConfigurationBuilder#setWorkStealingFrontier(boolean)}
+ * .
+ */
+@Singleton
+public class WorkStealingCandidateActions extends CrawlFrontier {
+
+	private static final Logger LOG = LoggerFactory.getLogger(WorkStealingCandidateActions.class);
+
+	private final Provider<StateFlowGraph> sfg;
+	private final FrontierBookkeeper bookkeeper;
+	private final ConcurrentMap<Integer, StateActions> actionsByState;
+	private final ConcurrentLinkedDeque<StateActions> sharedDeque;
+	private final List<Worker> workers;
+	private final ThreadLocal<Worker> currentWorker;
+	private final AtomicInteger statesWithActions;
+	private final AtomicInteger idleWorkers;
+	private final AtomicLong pushes;
+	private final Object idleMonitor = new Object();
+	private final Counter stealCount;
+
+	@Inject
+	WorkStealingCandidateActions(BrowserConfiguration config, Provider<StateFlowGraph> sfg,
+	        MetricRegistry registry, CrawlStrategy strategy) {
+		this.sfg = sfg;
+		this.bookkeeper = new FrontierBookkeeper(sfg, registry, strategy);
+		actionsByState = Maps.newConcurrentMap();
+		sharedDeque = new ConcurrentLinkedDeque<>();
+		workers = new CopyOnWriteArrayList<>();
+		currentWorker = new ThreadLocal<>();
+		statesWithActions = new AtomicInteger();
+		idleWorkers = new AtomicInteger();
+		pushes = new AtomicLong();
+		stealCount =
+		        registry.register(MetricsModule.EVENTS_PREFIX + "frontier_steals", new Counter());
+	}
+
+	@Override
+	CandidateCrawlAction pollActionOrNull(StateVertex state) {
+		LOG.debug("Polling action for state {}", state.getName());
+		Worker worker = currentWorker.get();
+		if (worker != null && worker.held != null && worker.held.stateId != state.getId()) {
+			release(worker);
+		}
+		StateActions entry = actionsByState.get(state.getId());
+		if (entry == null) {
+			return null;
+		}
+		synchronized (entry) {
+			if (entry.removed) {
+				return null;
+			}
+			CandidateCrawlAction action = entry.actions.poll();
+			if (entry.actions.isEmpty()) {
+				LOG.debug("All actions polled for state {}", state.getName());
+				remove(entry);
+			}
+			return bookkeeper.polled(action, state.getId());
+		}
+	}
+
+	@Override
+	void addActions(Collection<CandidateCrawlAction> actions, StateVertex state) {
+		if (actions.isEmpty()) {
+			LOG.debug("Received empty actions list. Ignoring...");
+			return;
+		}
+		LOG.debug("Adding {} crawl actions for state {}", actions.size(), state.getId());
+		notifyActionsAdded(actions, state);
+		List<CandidateCrawlAction> ordered = bookkeeper.orderActions(state, actions);
+		while (true) {
+			StateActions entry = actionsByState.get(state.getId());
+			boolean isNew = false;
+			if (entry == null) {
+				long seq = bookkeeper.nextSequence();
+				StateActions created =
+				        new StateActions(state.getId(), bookkeeper.priorityOf(state, seq));
+				entry = actionsByState.putIfAbsent(state.getId(), created);
+				if (entry == null) {
+					entry = created;
+					isNew = true;
+				}
+			}
+			synchronized (entry) {
+				if (entry.removed) {
+					// Drained by another consumer in the meantime. Try again with a fresh entry.
+					continue;
+				}
+				entry.actions.addAll(ordered);
+				if (isNew) {
+					statesWithActions.incrementAndGet();
+					entry.queued = true;
+				}
+			}
+			if (isNew) {
+				push(entry);
+			}
+			LOG.info("There are {} states with unfired actions", statesWithActions.get());
+			return;
+		}
+	}
+
+	@Override
+	void fired(CandidateCrawlAction action) {
+		bookkeeper.fired(action);
+		notifyActionsRemoved(ImmutableList.of(action));
+	}
+
+	@Override
+	ListMultimap<Integer, CandidateCrawlAction> snapshot() {
+		return bookkeeper.snapshot(queuedActions());
+	}
+
+	private ListMultimap<Integer, CandidateCrawlAction> queuedActions() {
+		ListMultimap<Integer, CandidateCrawlAction> copy = LinkedListMultimap.create();
+		for (StateActions entry : actionsByState.values()) {
+			synchronized (entry) {
+				if (!entry.removed) {
+					copy.putAll(entry.stateId, entry.actions);
+				}
+			}
+		}
+		return copy;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return statesWithActions.get() == 0;
+	}
+
+	@Override
+	public StateVertex awaitNewTask() throws InterruptedException {
+		Worker worker = workerForCurrentThread();
+		if (worker.held != null) {
+			release(worker);
+		}
+		idleWorkers.incrementAndGet();
+		try {
+			while (true) {
+				long seen = pushes.get();
+				StateActions task = findTask(worker);
+				if (task != null) {
+					LOG.debug("New task polled for state {}", task.stateId);
+					return sfg.get().getById(task.stateId);
+				}
+				synchronized (idleMonitor) {
+					while (pushes.get() == seen) {
+						idleMonitor.wait();
+					}
+				}
+			}
+		} finally {
+			idleWorkers.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Like {@link CrawlFrontier#awaitNewTask(StateVertex)}, but the state that is
+	 * handed out is held by the consumer, so it isn't taken from a deque by another consumer and
+	 * is put back when this consumer moves on.
+	 */
+	@Override
+	public StateVertex awaitNewTask(StateVertex current) throws InterruptedException {
+		if (current != null) {
+			Worker worker = workerForCurrentThread();
+			StateActions nearby = claim(worker, current);
+			if (nearby == null) {
+				for (StateVertex next : sfg.get().getOutgoingStates(current)) {
+					nearby = claim(worker, next);
+					if (nearby != null) {
+						break;
+					}
+				}
+			}
+			if (nearby != null) {
+				LOG.debug("New task for state {} near the current state {}", nearby.stateId,
+				        current.getName());
+				bookkeeper.affinityHit();
+				return sfg.get().getById(nearby.stateId);
+			}
+		}
+		return awaitNewTask();
+	}
+
+	/**
+	 * Holds the state if it has actions. A queued copy of the state on any deque becomes stale.
+	 */
+	private StateActions claim(Worker worker, StateVertex state) {
+		StateActions entry = actionsByState.get(state.getId());
+		if (entry == null) {
+			return null;
+		}
+		synchronized (entry) {
+			if (entry.removed || entry.actions.isEmpty()) {
+				return null;
+			}
+			entry.queued = false;
+		}
+		if (worker.held != entry) {
+			if (worker.held != null) {
+				release(worker);
+			}
+			worker.held = entry;
+		}
+		return entry;
+	}
+
+	@Override
+	public void purgeActionsForState(StateVertex crawlTask) {
+		LOG.debug("Removing tasks for target state {}", crawlTask.getName());
+		StateActions entry = actionsByState.get(crawlTask.getId());
+		List<CandidateCrawlAction> unfired = ImmutableList.of();
+		if (entry != null) {
+			synchronized (entry) {
+				if (!entry.removed) {
+					unfired = ImmutableList.copyOf(entry.actions);
+					remove(entry);
+				}
+			}
+		}
+		bookkeeper.crawlerLost(unfired.size());
+		if (!unfired.isEmpty()) {
+			notifyActionsRemoved(unfired);
+		}
+	}
+
+	private Worker workerForCurrentThread() {
+		Worker worker = currentWorker.get();
+		if (worker == null) {
+			worker = new Worker();
+			currentWorker.set(worker);
+			workers.add(worker);
+			LOG.debug("Registered consumer {} with the frontier", workers.size());
+		}
+		return worker;
+	}
+
+	/**
+	 * Looks for work in this order: the consumer's own deque, the shared deque, the tail of other
+	 * consumers' deques and finally a state that is being crawled by another consumer.
+	 */
+	private StateActions findTask(Worker worker) {
+		StateActions task = take(worker, worker.deque, false);
+		if (task == null) {
+			task = take(worker, sharedDeque, false);
+		}
+		if (task == null) {
+			task = steal(worker);
+		}
+		if (task == null) {
+			task = join(worker);
+		}
+		return task;
+	}
+
+	private StateActions take(Worker worker, ConcurrentLinkedDeque<StateActions> deque,
+	        boolean fromTail) {
+		StateActions entry = fromTail ? deque.pollLast() : deque.pollFirst();
+		while (entry != null) {
+			synchronized (entry) {
+				if (!entry.removed && entry.queued) {
+					entry.queued = false;
+					worker.held = entry;
+					return entry;
+				}
+			}
+			// A stale entry that was drained or purged after it was queued.
+			entry = fromTail ? deque.pollLast() : deque.pollFirst();
+		}
+		return null;
+	}
+
+	private StateActions steal(Worker thief) {
+		int size = workers.size();
+		if (size < 2) {
+			return null;
+		}
+		int offset = ThreadLocalRandom.current().nextInt(size);
+		for (int i = 0; i < size; i++) {
+			Worker victim = workers.get((offset + i) % size);
+			if (victim != thief) {
+				StateActions stolen = take(thief, victim.deque, true);
+				if (stolen != null) {
+					stealCount.inc();
+					return stolen;
+				}
+			}
+		}
+		return null;
+	}
+
+	private StateActions join(Worker worker) {
+		for (Worker other : workers) {
+			StateActions held = other.held;
+			if (other != worker && held != null) {
+				synchronized (held) {
+					if (!held.removed && !held.actions.isEmpty()) {
+						return held;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private void release(Worker worker) {
+		StateActions entry = worker.held;
+		worker.held = null;
+		boolean requeue;
+		synchronized (entry) {
+			requeue = !entry.removed && !entry.actions.isEmpty();
+			entry.queued = requeue;
+		}
+		if (requeue) {
+			LOG.debug("Putting state {} back on the frontier", entry.stateId);
+			worker.deque.addLast(entry);
+			signalWork();
+		}
+	}
+
+	private void push(StateActions entry) {
+		Worker worker = currentWorker.get();
+		ConcurrentLinkedDeque<StateActions> deque = worker == null ? sharedDeque : worker.deque;
+		StateActions first = deque.peekFirst();
+		if (first != null && entry.priority < first.priority) {
+			deque.addFirst(entry);
+		} else {
+			deque.addLast(entry);
+		}
+		signalWork();
+	}
+
+	@GuardedBy("entry")
+	private void remove(StateActions entry) {
+		entry.removed = true;
+		actionsByState.remove(entry.stateId, entry);
+		int remaining = statesWithActions.decrementAndGet();
+		LOG.debug("There are now {} states with unfinished actions", remaining);
+	}
+
+	private void signalWork() {
+		pushes.incrementAndGet();
+		if (idleWorkers.get() > 0) {
+			synchronized (idleMonitor) {
+				idleMonitor.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * The pending actions of a single state. All fields are guarded by the instance itself.
+	 */
+	private static final class StateActions {
+
+		private final int stateId;
+		private final long priority;
+		private final Queue<CandidateCrawlAction> actions = new ArrayDeque<>();
+		private boolean removed;
+		private boolean queued;
+
+		StateActions(int stateId, long priority) {
+			this.stateId = stateId;
+			this.priority = priority;
+		}
+	}
+
+	/**
+	 * The deque and currently held state of a single consumer thread.
+	 */
+	private static final class Worker {
+
+		private final ConcurrentLinkedDeque<StateActions> deque = new ConcurrentLinkedDeque<>();
+		private volatile StateActions held;
+	}
+}
@@ -45,6 +45,10 @@ public class BrowserConfiguration {
 	private final Provider<EmbeddedBrowser> browserBuilder;
 	private String remoteHubUrl;
 	private String lang;
+	private int warmSpares;
+	private int recycleAfterActions;
+	private int recycleAfterResets;
+	private int recycleAboveRssMb;
 
 	/**
 	 * @param numberOfBrowsers
@@ -130,13 +134,18 @@ public class BrowserConfiguration {
 		        .add("browserBuilder", browserBuilder)
 		        .add("remoteHubUrl", remoteHubUrl)
 		        .add("language", lang)
+		        .add("warmSpares", warmSpares)
+		        .add("recycleAfterActions", recycleAfterActions)
+		        .add("recycleAfterResets", recycleAfterResets)
+		        .add("recycleAboveRssMb", recycleAboveRssMb)
 		        .toString();
 	}
 
 	@Override
 	public int hashCode() {
 		return Objects.hashCode(browsertype, numberOfBrowsers, browserBuilder,
-		        remoteHubUrl, lang);
+		        remoteHubUrl, lang, warmSpares, recycleAfterActions, recycleAfterResets,
+		        recycleAboveRssMb);
 	}
 
 	@Override
@@ -147,7 +156,11 @@ public class BrowserConfiguration {
 			        && Objects.equal(this.numberOfBrowsers, that.numberOfBrowsers)
 			        && Objects.equal(this.browserBuilder, that.browserBuilder)
 			        && Objects.equal(this.remoteHubUrl, that.remoteHubUrl)
-			        && Objects.equal(this.lang, that.lang);
+			        && Objects.equal(this.lang, that.lang)
+			        && this.warmSpares == that.warmSpares
+			        && this.recycleAfterActions == that.recycleAfterActions
+			        && this.recycleAfterResets == that.recycleAfterResets
+			        && this.recycleAboveRssMb == that.recycleAboveRssMb;
 		}
 		return false;
 	}
@@ -168,4 +181,87 @@ public class BrowserConfiguration {
 		this.lang = lang;
 	}
 
+	/**
+	 * @return The number of browsers that are kept started next to the browsers in use.
+	 */
+	public int getWarmSpares() {
+		return warmSpares;
+	}
+
+	/**
+	 * @param warmSpares
+	 *            The number of browsers to keep started next to the browsers in use, so a
+	 *            recycled or crashed browser can be replaced without waiting for a new one to
+	 *            start. Default is 0.
+	 */
+	public void setWarmSpares(int warmSpares) {
+		Preconditions.checkArgument(warmSpares >= 0, "The number of spares cannot be negative");
+		this.warmSpares = warmSpares;
+	}
+
+	/**
+	 * @return The number of fired events after which a browser is replaced, or 0 if it is never
+	 *         replaced because of the number of events.
+	 */
+	public int getRecycleAfterActions() {
+		return recycleAfterActions;
+	}
+
+	/**
+	 * @param recycleAfterActions
+	 *            The number of fired events after which a browser is replaced by a fresh one at
+	 *            its next reset. Default is 0, which never replaces the browser.
+	 */
+	public void setRecycleAfterActions(int recycleAfterActions) {
+		Preconditions.checkArgument(recycleAfterActions >= 0,
+		        "The number of actions cannot be negative");
+		this.recycleAfterActions = recycleAfterActions;
+	}
+
+	/**
+	 * @return The number of resets after which a browser is replaced, or 0 if it is never
+	 *         replaced because of the number of resets.
+	 */
+	public int getRecycleAfterResets() {
+		return recycleAfterResets;
+	}
+
+	/**
+	 * @param recycleAfterResets
+	 *            The number of resets after which a browser is replaced by a fresh one. Default
+	 *            is 0, which never replaces the browser.
+	 */
+	public void setRecycleAfterResets(int recycleAfterResets) {
+		Preconditions.checkArgument(recycleAfterResets >= 0,
+		        "The number of resets cannot be negative");
+		this.recycleAfterResets = recycleAfterResets;
+	}
+
+	/**
+	 * @return The resident memory in megabytes above which a browser is replaced, or 0 if the
+	 *         memory is not checked.
+	 */
+	public int getRecycleAboveRssMb() {
+		return recycleAboveRssMb;
+	}
+
+	/**
+	 * @param recycleAboveRssMb
+	 *            The resident memory in megabytes of the browser processes above which the
+	 *            browser is replaced by a fresh one at its next reset. The memory is read from
+	 *            <code>/proc</code> and is only available on Linux. Default is 0, which never
+	 *            checks the memory.
+	 */
+	public void setRecycleAboveRssMb(int recycleAboveRssMb) {
+		Preconditions.checkArgument(recycleAboveRssMb >= 0, "The memory cannot be negative");
+		this.recycleAboveRssMb = recycleAboveRssMb;
+	}
+
+	/**
+	 * @return Whether browsers are ever replaced during the crawl.
+	 */
+	public boolean isRecycling() {
+		return recycleAfterActions > 0 || recycleAfterResets > 0 || recycleAboveRssMb > 0;
+	}
+
 }
@@ -141,6 +141,17 @@ public class CrawlRules {
 			return this;
 		}
 
+		/**
+		 * @param oneScript
+		 *            Fill in all form inputs of an event with one JavaScript call in stead of one
+		 *            call per value. This saves round trips to the browser, which matters most
+		 *            with a remote browser. Default is <code>false</code>.
+		 */
+		public CrawlRulesBuilder fillFormsInOneScript(boolean oneScript) {
+			crawlRules.fillFormsInOneScript = oneScript;
+			return this;
+		}
+
 		/**
 		 * @param once
 		 *            Set the crawler to interact with any element only once. Default is
@@ -194,6 +205,26 @@ public class CrawlRules {
 			return this;
 		}
 
+		/**
+		 * Wait adaptively after an event or a reload instead of always waiting the full
+		 * {@link #waitAfterEvent(long, TimeUnit)} or {@link #waitAfterReloadUrl(long, TimeUnit)}.
+		 * The browser continues as soon as the page is loaded, has no pending XHR or fetch
+		 * requests, has not changed its DOM for the given time and satisfies the
+		 * {@link PreCrawlConfiguration#getWaitConditions() wait conditions}. The fixed waits
+		 * become the maximum time to wait. Only applies to browsers created by the default
+		 * {@link com.crawljax.browser.WebDriverBrowserBuilder}. Disabled by default.
+		 * 
+		 * @param time
+		 *            The time the DOM has to be quiet.
+		 * @param unit
+		 *            The time unit.
+		 */
+		public CrawlRulesBuilder waitForQuietDom(long time, TimeUnit unit) {
+			checkArgument(time > 0, "The quiet period should be larger than 0");
+			crawlRules.quietPeriod = unit.toMillis(time);
+			return this;
+		}
+
 		/**
 		 * Set Crawljax to click hidden anchors or not. Default is <code>false</code>.
 		 * <dl>
@@ -334,6 +365,7 @@ public class CrawlRules {
 	private PreCrawlConfiguration preCrawlConfig;
 
 	private boolean randomInputInForms = true;
+	private boolean fillFormsInOneScript = false;
 	private InputSpecification inputSpecification = new InputSpecification();
 	private boolean testInvariantsWhileCrawling = true;
 	private boolean clickOnce = true;
@@ -342,6 +374,7 @@ public class CrawlRules {
 	private boolean crawlHiddenAnchors = false;
 	private long waitAfterReloadUrl = DEFAULT_WAIT_AFTER_RELOAD;
 	private long waitAfterEvent = DEFAULT_WAIT_AFTER_EVENT;
+	private long quietPeriod;
 	private boolean followExternalLinks = false;
 
 	private CrawlRules() {
@@ -367,6 +400,13 @@ public class CrawlRules {
 		return randomInputInForms;
 	}
 
+	/**
+	 * @return Whether all form inputs of an event are filled in with one JavaScript call.
+	 */
+	public boolean isFillingFormsInOneScript() {
+		return fillFormsInOneScript;
+	}
+
 	public InputSpecification getInputSpecification() {
 		return inputSpecification;
 	}
@@ -405,6 +445,23 @@ public class CrawlRules {
 		return waitAfterEvent;
 	}
 
+	/**
+	 * @return The time in milliseconds the DOM has to be quiet before the browser continues, or 0
+	 *         if the browser always waits the full {@link #getWaitAfterEvent()} and
+	 *         {@link #getWaitAfterReloadUrl()}.
+	 */
+	public long getQuietPeriod() {
+		return quietPeriod;
+	}
+
+	/**
+	 * @return Whether the browser waits adaptively for the page to settle.
+	 * @see CrawlRulesBuilder#waitForQuietDom(long, TimeUnit)
+	 */
+	public boolean isWaitingForQuietDom() {
+		return quietPeriod > 0;
+	}
+
 	public ImmutableSortedSet<String> getIgnoredFrameIdentifiers() {
 		return ignoredFrameIdentifiers;
 	}
@@ -429,9 +486,10 @@ public class CrawlRules {
 	@Override
 	public int hashCode() {
 		return Objects.hashCode(crawlEvents, invariants, oracleComparators,
-		        ignoredFrameIdentifiers, preCrawlConfig, randomInputInForms, inputSpecification,
-		        testInvariantsWhileCrawling, clickOnce, crawlFrames, crawlHiddenAnchors,
-		        waitAfterReloadUrl, waitAfterEvent, followExternalLinks);
+		        ignoredFrameIdentifiers, preCrawlConfig, randomInputInForms,
+		        fillFormsInOneScript, inputSpecification, testInvariantsWhileCrawling, clickOnce,
+		        crawlFrames, crawlHiddenAnchors, waitAfterReloadUrl, waitAfterEvent, quietPeriod,
+		        followExternalLinks);
 	}
 
 	@Override
@@ -444,6 +502,7 @@ public class CrawlRules {
 			        && Objects.equal(this.ignoredFrameIdentifiers, that.ignoredFrameIdentifiers)
 			        && Objects.equal(this.preCrawlConfig, that.preCrawlConfig)
 			        && Objects.equal(this.randomInputInForms, that.randomInputInForms)
+			        && Objects.equal(this.fillFormsInOneScript, that.fillFormsInOneScript)
 			        && Objects.equal(this.inputSpecification, that.inputSpecification)
 			        && Objects.equal(this.testInvariantsWhileCrawling,
 			                that.testInvariantsWhileCrawling)
@@ -454,6 +513,7 @@ public class CrawlRules {
 			        && Objects.equal(this.crawlHiddenAnchors, that.crawlHiddenAnchors)
 			        && Objects.equal(this.waitAfterReloadUrl, that.waitAfterReloadUrl)
 			        && Objects.equal(this.waitAfterEvent, that.waitAfterEvent)
+			        && Objects.equal(this.quietPeriod, that.quietPeriod)
 			        && Objects.equal(this.followExternalLinks, that.followExternalLinks);
 		}
 		return false;
@@ -470,6 +530,7 @@ public class CrawlRules {
 		        .add("ignoredFrameIdentifiers", ignoredFrameIdentifiers)
 		        .add("preCrawlConfig", preCrawlConfig)
 		        .add("randomInputInForms", randomInputInForms)
+		        .add("fillFormsInOneScript", fillFormsInOneScript)
 		        .add("inputSpecification", inputSpecification)
 		        .add("testInvariantsWhileCrawling", testInvariantsWhileCrawling)
 		        .add("clickOnce", clickOnce)
@@ -478,6 +539,7 @@ public class CrawlRules {
 		        .add("crawlHiddenAnchors", crawlHiddenAnchors)
 		        .add("waitAfterReloadUrl", waitAfterReloadUrl)
 		        .add("waitAfterEvent", waitAfterEvent)
+		        .add("quietPeriod", quietPeriod)
 		        .add("followExternalLinks", followExternalLinks)
 		        .toString();
 	}
@@ -13,7 +13,10 @@ import com.crawljax.core.Crawler;
 import com.crawljax.core.CrawljaxException;
 import com.crawljax.core.configuration.CrawlRules.CrawlRulesBuilder;
 import com.crawljax.core.plugin.Plugin;
+import com.crawljax.core.state.DomStore;
 import com.crawljax.core.state.StateVertexFactory;
+import com.crawljax.core.strategy.BreadthFirstStrategy;
+import com.crawljax.core.strategy.CrawlStrategy;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
@@ -167,6 +170,132 @@ public class CrawljaxConfiguration {
 			return this;
 		}
 
+		/**
+		 * Set the {@link DomStore} that keeps the DOMs of the states. The default keeps them as
+		 * they are on the heap. Use a {@link com.crawljax.core.state.CompressedDomStore} for large
+		 * crawls. The store is not closed by Crawljax: {@link DomStore#close() close} it once you
+		 * no longer read the DOMs of the crawled states. Use a new store for every crawl, or it
+		 * keeps counting the DOMs of the earlier crawls.
+		 *
+		 * @param domStore The store you want to use.
+		 * @return The builder for method chaining.
+		 */
+		public CrawljaxConfigurationBuilder setDomStore(DomStore domStore) {
+			Preconditions.checkNotNull(domStore);
+			config.domStore = domStore;
+			return this;
+		}
+
+		/**
+		 * Use a {@link com.crawljax.core.WorkStealingCandidateActions} frontier in stead of the
+		 * default {@link com.crawljax.core.UnfiredCandidateActions}. Every browser gets its own
+		 * queue of states and idle browsers steal work from the others. This scales better when
+		 * crawling with many browsers. Default is <code>false</code>.
+		 *
+		 * @param workStealing Whether the work stealing frontier should be used.
+		 * @return The builder for method chaining.
+		 */
+		public CrawljaxConfigurationBuilder setWorkStealingFrontier(boolean workStealing) {
+			config.workStealingFrontier = workStealing;
+			return this;
+		}
+
+		/**
+		 * Write a checkpoint of the crawl to the given directory every time the given number of
+		 * new states is found, and once more when the crawl stops. A checkpoint only appends what
+		 * changed since the previous one and is written in the background. Use
+		 * {@link com.crawljax.core.CrawljaxRunner#resume()} to continue a crawl from its last
+		 * checkpoint. By default no checkpoints are written.
+		 *
+		 * @param directory The directory to write the checkpoints to. It is created if it does not
+		 *            exist.
+		 * @param everyStates The number of new states between two checkpoints.
+		 * @return The builder for method chaining.
+		 */
+		public CrawljaxConfigurationBuilder setCheckpoints(File directory, int everyStates) {
+			Preconditions.checkNotNull(directory);
+			checkArgument(everyStates > 0, "The number of states must be positive");
+			config.checkpointDirectory = directory;
+			config.checkpointInterval = everyStates;
+			return this;
+		}
+
+		/**
+		 * Keep the states and edges of the crawl in files in the given directory in stead of in
+		 * memory, using a {@link com.crawljax.core.state.DiskBackedStateFlowGraph}. Only the
+		 * given number of states and edges that were used last stay in memory. Use this when a
+		 * crawl finds more states than fit in the heap. By default the whole graph is kept in
+		 * memory.
+		 *
+		 * @param directory The directory to write the graph to. It is created if it does not
+		 *            exist.
+		 * @param hotStates The number of states and the number of edges kept in memory.
+		 * @return The builder for method chaining.
+		 */
+		public CrawljaxConfigurationBuilder setDiskBackedStateFlowGraph(File directory,
+		        int hotStates) {
+			Preconditions.checkNotNull(directory);
+			checkArgument(hotStates > 0, "The number of hot states must be positive");
+			config.stateFlowGraphDirectory = directory;
+			config.hotStates = hotStates;
+			return this;
+		}
+
+		/**
+		 * Keep the elements that were checked for clicking in a Bloom filter that uses a fixed
+		 * amount of memory, in stead of in a set of digests that grows with every element. Use
+		 * this for crawls that check millions of elements. An element that was not checked is
+		 * taken for a checked one, and not clicked, with the given probability.
+		 *
+		 * @param expectedElements The number of elements the filter is sized for. The false
+		 *            positive rate rises above the given one when more elements are checked.
+		 * @param falsePositiveRate The probability an element is wrongly taken for a checked
+		 *            one, between 0 and 1.
+		 * @return The builder for method chaining.
+		 */
+		public CrawljaxConfigurationBuilder setCheckedElementsFilter(int expectedElements,
+		        double falsePositiveRate) {
+			checkArgument(expectedElements > 0, "The number of elements must be positive");
+			checkArgument(falsePositiveRate > 0 && falsePositiveRate < 1,
+			        "The false positive rate must be between 0 and 1");
+			config.checkedElementsFilterSize = expectedElements;
+			config.checkedElementsFalsePositiveRate = falsePositiveRate;
+			return this;
+		}
+
+		/**
+		 * Set the {@link CrawlStrategy} that decides in which order states and their actions are
+		 * crawled. Default is the {@link BreadthFirstStrategy}. Crawljax also ships a
+		 * {@link com.crawljax.core.strategy.DepthFirstStrategy}, a
+		 * {@link com.crawljax.core.strategy.ShortestReplayPathStrategy} and a
+		 * {@link com.crawljax.core.strategy.NoveltyFirstStrategy}.
+		 *
+		 * @param strategy The strategy to use.
+		 * @return The builder for method chaining.
+		 */
+		public CrawljaxConfigurationBuilder setCrawlStrategy(CrawlStrategy strategy) {
+			Preconditions.checkNotNull(strategy);
+			config.crawlStrategy = strategy;
+			return this;
+		}
+
+		/**
+		 * Configure how {@link com.crawljax.core.plugin.AsyncPlugin}s are run. Default is 2 threads
+		 * and a queue of 100 calls per plugin.
+		 *
+		 * @param threads The number of threads that run the asynchronous plugins.
+		 * @param queueSize The number of calls that can be queued per plugin before the crawler
+		 *            waits for the plugin to catch up.
+		 * @return The builder for method chaining.
+		 */
+		public CrawljaxConfigurationBuilder setAsyncPlugins(int threads, int queueSize) {
+			checkArgument(threads > 0, "At least one thread is required");
+			checkArgument(queueSize > 0, "The queue size must be positive");
+			config.asyncPluginThreads = threads;
+			config.asyncPluginQueueSize = queueSize;
+			return this;
+		}
+
 		/**
 		 * Set the output folder for any {@link Plugin} you might configure. Crawljax itself doesn't
 		 * need an output folder but many plug-ins do.
@@ -234,6 +363,27 @@ public class CrawljaxConfiguration {
 
 	private StateVertexFactory stateVertexFactory;
 
+	private DomStore domStore;
+
+	private boolean workStealingFrontier = false;
+
+	private File checkpointDirectory;
+
+	private int checkpointInterval;
+
+	private File stateFlowGraphDirectory;
+
+	private int hotStates;
+
+	private int checkedElementsFilterSize;
+
+	private double checkedElementsFalsePositiveRate;
+
+	private CrawlStrategy crawlStrategy = new BreadthFirstStrategy();
+
+	private int asyncPluginThreads = 2;
+	private int asyncPluginQueueSize = 100;
+
 	private CrawljaxConfiguration() {
 	}
 
@@ -278,10 +428,77 @@ public class CrawljaxConfiguration {
 		return stateVertexFactory;
 	}
 
+	public DomStore getDomStore() {
+		return domStore;
+	}
+
+	public boolean isWorkStealingFrontier() {
+		return workStealingFrontier;
+	}
+
+	/**
+	 * @return The directory checkpoints are written to or <code>null</code> if no checkpoints
+	 *         are written.
+	 */
+	public File getCheckpointDirectory() {
+		return checkpointDirectory;
+	}
+
+	/**
+	 * @return The number of new states between two checkpoints.
+	 */
+	public int getCheckpointInterval() {
+		return checkpointInterval;
+	}
+
+	/**
+	 * @return The directory the state-flow graph is kept in or <code>null</code> if it is kept in
+	 *         memory.
+	 */
+	public File getStateFlowGraphDirectory() {
+		return stateFlowGraphDirectory;
+	}
+
+	/**
+	 * @return The number of states and edges of a disk backed state-flow graph that are kept in
+	 *         memory.
+	 */
+	public int getHotStates() {
+		return hotStates;
+	}
+
+	/**
+	 * @return The number of elements the Bloom filter of checked elements is sized for or 0 if
+	 *         the checked elements are kept exactly.
+	 */
+	public int getCheckedElementsFilterSize() {
+		return checkedElementsFilterSize;
+	}
+
+	/**
+	 * @return The false positive rate of the Bloom filter of checked elements.
+	 */
+	public double getCheckedElementsFalsePositiveRate() {
+		return checkedElementsFalsePositiveRate;
+	}
+
+	public CrawlStrategy getCrawlStrategy() {
+		return crawlStrategy;
+	}
+
+	public int getAsyncPluginThreads() {
+		return asyncPluginThreads;
+	}
+
+	public int getAsyncPluginQueueSize() {
+		return asyncPluginQueueSize;
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hashCode(url, browserConfig, plugins, proxyConfiguration, crawlRules,
-		  maximumStates, maximumRuntime, maximumDepth);
+		  maximumStates, maximumRuntime, maximumDepth, workStealingFrontier,
+		  crawlStrategy.getClass(), asyncPluginThreads, asyncPluginQueueSize);
 	}
 
 	@Override
@@ -295,7 +512,11 @@ public class CrawljaxConfiguration {
 			  && Objects.equal(this.crawlRules, that.crawlRules)
 			  && Objects.equal(this.maximumStates, that.maximumStates)
 			  && Objects.equal(this.maximumRuntime, that.maximumRuntime)
-			  && Objects.equal(this.maximumDepth, that.maximumDepth);
+			  && Objects.equal(this.maximumDepth, that.maximumDepth)
+			  && Objects.equal(this.workStealingFrontier, that.workStealingFrontier)
+			  && Objects.equal(this.crawlStrategy.getClass(), that.crawlStrategy.getClass())
+			  && Objects.equal(this.asyncPluginThreads, that.asyncPluginThreads)
+			  && Objects.equal(this.asyncPluginQueueSize, that.asyncPluginQueueSize);
 		}
 		return false;
 	}
@@ -311,6 +532,10 @@ public class CrawljaxConfiguration {
 					  .add("maximumStates", maximumStates)
 					  .add("maximumRuntime", maximumRuntime)
 					  .add("maximumDepth", maximumDepth)
+					  .add("workStealingFrontier", workStealingFrontier)
+					  .add("crawlStrategy", crawlStrategy)
+					  .add("asyncPluginThreads", asyncPluginThreads)
+					  .add("asyncPluginQueueSize", asyncPluginQueueSize)
 					  .toString();
 	}
 
@@ -0,0 +1,29 @@
+package com.crawljax.core.plugin;
+
+import com.crawljax.core.CrawlerContext;
+
+/**
+ * Marks a plugin that can run outside of the crawler's thread. The {@link OnNewStatePlugin},
+ * {@link PreStateCrawlingPlugin} and {@link PostCrawlingPlugin} methods of such a plugin are put
+ * on a bounded queue and run on a separate thread so a slow plugin doesn't stall the browser.
+ * <p>
+ * Calls to the same plugin are run one at a time in the order they were made, and
+ * {@link PostCrawlingPlugin#postCrawling} is only called after all other calls are done. Calls to
+ * different plugins can run at the same time, including the post crawling calls. When the queue
+ * of a plugin is full, the crawler waits for the plugin to catch up.
+ * </p>
+ * <p>
+ * Because the plugin runs later, it is given a {@link CrawlerContext#snapshot() snapshot} of the
+ * {@link CrawlerContext} with the current state and crawl path of the moment it was called. The
+ * browser of the context will have moved on and should not be used. A
+ * {@link PreStateCrawlingPlugin} gets {@link com.crawljax.core.CandidateElement#copy() copies}
+ * of the candidate elements that keep their DOM element, and changes it makes to them have no
+ * effect.
+ * </p>
+ * The number of threads and the size of the queues can be configured using
+ * {@link com.crawljax.core.configuration.CrawljaxConfiguration.CrawljaxConfigurationBuilder#setAsyncPlugins(int, int)}
+ * .
+ */
+public interface AsyncPlugin {
+
+}
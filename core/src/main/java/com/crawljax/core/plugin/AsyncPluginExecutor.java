@@ -0,0 +1,163 @@
+package com.crawljax.core.plugin;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.crawljax.metrics.MetricsModule;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Runs the calls to {@link AsyncPlugin}s on a pool of threads. Every plugin has its own bounded
+ * queue that is served by at most one thread at a time, so the calls to a plugin are run in the
+ * order they were submitted.
+ */
+@ThreadSafe
+class AsyncPluginExecutor {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AsyncPluginExecutor.class);
+
+	private final ExecutorService pool;
+	private final ImmutableMap<Plugin, PluginQueue> queues;
+
+	AsyncPluginExecutor(Iterable<Plugin> plugins, int threads, int queueSize,
+	        MetricRegistry registry) {
+		pool =
+		        Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setDaemon(true)
+		                .setNameFormat("crawljax-plugin-%d").build());
+		ImmutableMap.Builder<Plugin, PluginQueue> builder = ImmutableMap.builder();
+		for (Plugin plugin : plugins) {
+			builder.put(plugin, new PluginQueue(plugin, queueSize, registry));
+		}
+		queues = builder.build();
+	}
+
+	/**
+	 * Puts the call on the queue of the plugin. Blocks while the queue is full.
+	 * 
+	 * @param plugin
+	 *            The {@link AsyncPlugin} that is called.
+	 * @param call
+	 *            The call.
+	 */
+	void submit(Plugin plugin, Runnable call) {
+		queues.get(plugin).submit(call);
+	}
+
+	/**
+	 * Blocks until all submitted calls are done.
+	 */
+	void awaitAll() {
+		for (PluginQueue queue : queues.values()) {
+			queue.awaitEmpty();
+		}
+	}
+
+	/**
+	 * Waits for all submitted calls and stops the threads.
+	 */
+	void shutDown() {
+		awaitAll();
+		pool.shutdown();
+	}
+
+	private class PluginQueue implements Runnable {
+
+		private final Plugin plugin;
+		private final BlockingQueue<Runnable> calls;
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private final Timer blocked;
+		private final Object idle = new Object();
+		private int pending;
+
+		PluginQueue(Plugin plugin, int size, MetricRegistry registry) {
+			this.plugin = plugin;
+			this.calls = new ArrayBlockingQueue<>(size);
+			String prefix = MetricsModule.PLUGINS_PREFIX + plugin.getClass().getSimpleName();
+			blocked = registry.timer(prefix + ".queue_blocked");
+			registry.register(prefix + ".queue_depth", new Gauge<Integer>() {
+
+				@Override
+				public Integer getValue() {
+					return calls.size();
+				}
+			});
+		}
+
+		void submit(Runnable call) {
+			synchronized (idle) {
+				pending++;
+			}
+			if (!calls.offer(call)) {
+				LOG.debug("Queue of plugin {} is full. Waiting for it to catch up", plugin);
+				Timer.Context time = blocked.time();
+				Uninterruptibles.putUninterruptibly(calls, call);
+				time.stop();
+			}
+			scheduleIfIdle();
+		}
+
+		private void scheduleIfIdle() {
+			if (!calls.isEmpty() && scheduled.compareAndSet(false, true)) {
+				pool.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				Runnable call = calls.poll();
+				while (call != null) {
+					try {
+						call.run();
+					} finally {
+						done();
+					}
+					call = calls.poll();
+				}
+			} finally {
+				scheduled.set(false);
+				// A call might have been added after the last poll but before the flag was
+				// cleared, or a call threw an Error and the calls after it still have to run.
+				scheduleIfIdle();
+			}
+		}
+
+		private void done() {
+			synchronized (idle) {
+				pending--;
+				if (pending == 0) {
+					idle.notifyAll();
+				}
+			}
+		}
+
+		void awaitEmpty() {
+			boolean interrupted = false;
+			synchronized (idle) {
+				while (pending > 0) {
+					try {
+						idle.wait();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
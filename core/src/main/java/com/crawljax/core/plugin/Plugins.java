@@ -56,6 +56,11 @@ public class Plugins {
 
 	private final MetricRegistry registry;
 
+	/**
+	 * Runs the {@link AsyncPlugin}s or <code>null</code> if there are none.
+	 */
+	private final AsyncPluginExecutor asyncPlugins;
+
 	@Inject
 	public Plugins(CrawljaxConfiguration config, MetricRegistry registry) {
 		this.registry = registry;
@@ -78,6 +83,25 @@ public class Plugins {
 		                + " can be specified");
 
 		this.counters = registerCounters(registry);
+		this.asyncPlugins = createAsyncExecutor(config, registry);
+	}
+
+	private AsyncPluginExecutor createAsyncExecutor(CrawljaxConfiguration config,
+	        MetricRegistry registry) {
+		ImmutableSet.Builder<Plugin> async = ImmutableSet.builder();
+		for (Plugin plugin : plugins.values()) {
+			if (plugin instanceof AsyncPlugin) {
+				async.add(plugin);
+			}
+		}
+		ImmutableSet<Plugin> asyncPlugins = async.build();
+		if (asyncPlugins.isEmpty()) {
+			return null;
+		}
+		LOGGER.info("Running {} on {} separate threads", asyncPlugins,
+		        config.getAsyncPluginThreads());
+		return new AsyncPluginExecutor(asyncPlugins, config.getAsyncPluginThreads(),
+		        config.getAsyncPluginQueueSize(), registry);
 	}
 
 	private ImmutableMap<Class<? extends Plugin>, Counter> registerCounters(
@@ -120,6 +144,51 @@ public class Plugins {
 		LOGGER.error("Plugin {} errored while running. {}", plugin, e.getMessage(), e);
 	}
 
+	/**
+	 * Runs the call on the calling thread, or on the queue of the plugin if it is an
+	 * {@link AsyncPlugin}.
+	 */
+	private void call(final Plugin plugin, final Runnable call) {
+		Runnable reporting = new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					LOGGER.debug("Calling plugin {}", plugin);
+					call.run();
+				} catch (RuntimeException e) {
+					reportFailingPlugin(plugin, e);
+				}
+			}
+		};
+		if (asyncPlugins != null && plugin instanceof AsyncPlugin) {
+			asyncPlugins.submit(plugin, reporting);
+		} else {
+			reporting.run();
+		}
+	}
+
+	/**
+	 * @return The context as it is now for an {@link AsyncPlugin}, because the crawler changes
+	 *         the context before the plugin runs.
+	 */
+	private CrawlerContext contextFor(Plugin plugin, CrawlerContext context) {
+		if (asyncPlugins != null && plugin instanceof AsyncPlugin) {
+			return context.snapshot();
+		}
+		return context;
+	}
+
+	/**
+	 * Blocks until all calls to {@link AsyncPlugin}s that were made so far are done.
+	 */
+	public void awaitAsyncPlugins() {
+		if (asyncPlugins != null) {
+			LOGGER.debug("Waiting for the asynchronous plugins to finish...");
+			asyncPlugins.awaitAll();
+		}
+	}
+
 	private void incrementFailCounterFor(Plugin plugin) {
 		registry.counter(MetricsModule.PLUGINS_PREFIX + plugin.getClass().getSimpleName()
 		        + ".fail_count").inc();
@@ -159,24 +228,29 @@ public class Plugins {
 	 * <p>
 	 * This method can be called from multiple threads with different {@link CrawlerContext}
 	 * </p>
+	 * <p>
+	 * {@link AsyncPlugin}s are queued and run on a separate thread.
+	 * </p>
 	 * 
 	 * @param context
 	 *            the current {@link CrawlerContext} for this crawler.
 	 * @param newState
 	 *            The new state
 	 */
-	public void runOnNewStatePlugins(CrawlerContext context,
-	        StateVertex newState) {
+	public void runOnNewStatePlugins(final CrawlerContext context,
+	        final StateVertex newState) {
 		LOGGER.debug("Running OnNewStatePlugins...");
 		counters.get(OnNewStatePlugin.class).inc();
-		for (Plugin plugin : plugins.get(OnNewStatePlugin.class)) {
+		for (final Plugin plugin : plugins.get(OnNewStatePlugin.class)) {
 			if (plugin instanceof OnNewStatePlugin) {
-				try {
-					LOGGER.debug("Calling plugin {}", plugin);
-					((OnNewStatePlugin) plugin).onNewState(context, newState);
-				} catch (RuntimeException e) {
-					reportFailingPlugin(plugin, e);
-				}
+				final CrawlerContext pluginContext = contextFor(plugin, context);
+				call(plugin, new Runnable() {
+
+					@Override
+					public void run() {
+						((OnNewStatePlugin) plugin).onNewState(pluginContext, newState);
+					}
+				});
 			}
 		}
 	}
@@ -213,26 +287,33 @@ public class Plugins {
 	 * load and run the postCrawlingPlugins. PostCrawlingPlugins are executed after the crawling is
 	 * finished Warning: changing the session can change the behavior of other post crawl plugins.
 	 * It is not a clone!
+	 * <p>
+	 * {@link AsyncPlugin}s run in parallel with each other and the other plugins. This method
+	 * returns when all of them are done.
+	 * </p>
 	 * 
 	 * @param exitReason
 	 *            The reason Crawljax has stopped.
 	 * @param session
 	 *            the current {@link CrawlSession} for this crawler.
 	 */
-	public void runPostCrawlingPlugins(CrawlSession session, ExitStatus exitReason) {
+	public void runPostCrawlingPlugins(final CrawlSession session, final ExitStatus exitReason) {
 		LOGGER.debug("Running PostCrawlingPlugins...");
 		counters.get(PostCrawlingPlugin.class).inc();
-		for (Plugin plugin : plugins.get(PostCrawlingPlugin.class)) {
+		for (final Plugin plugin : plugins.get(PostCrawlingPlugin.class)) {
 			if (plugin instanceof PostCrawlingPlugin) {
-				try {
-					LOGGER.debug("Calling plugin {}", plugin);
-					((PostCrawlingPlugin) plugin).postCrawling(session,
-					        exitReason);
-				} catch (RuntimeException e) {
-					reportFailingPlugin(plugin, e);
-				}
+				call(plugin, new Runnable() {
+
+					@Override
+					public void run() {
+						((PostCrawlingPlugin) plugin).postCrawling(session, exitReason);
+					}
+				});
 			}
 		}
+		if (asyncPlugins != null) {
+			asyncPlugins.shutDown();
+		}
 	}
 
 	/**
@@ -266,7 +347,9 @@ public class Plugins {
 	 * load and run the PreStateCrawlingPlugins. Method that is called before the current state is
 	 * crawled (before firing events on the current DOM state). Example: filter candidate elements.
 	 * Warning the session and candidateElements are not clones, changes will result in changed
-	 * behaviour.
+	 * behaviour. {@link AsyncPlugin}s are queued and run on a separate thread. They get
+	 * {@link CandidateElement#copy() copies} of the candidates, because the crawler lets go of the
+	 * DOM elements of the candidates once they are queued.
 	 * 
 	 * @param context
 	 *            the current {@link CrawlerContext} for this crawler.
@@ -275,23 +358,44 @@ public class Plugins {
 	 * @param state
 	 *            The state being violated.
 	 */
-	public void runPreStateCrawlingPlugins(CrawlerContext context,
-	        ImmutableList<CandidateElement> candidateElements, StateVertex state) {
+	public void runPreStateCrawlingPlugins(final CrawlerContext context,
+	        final ImmutableList<CandidateElement> candidateElements, final StateVertex state) {
 		LOGGER.debug("Running PreStateCrawlingPlugins...");
 		counters.get(PreStateCrawlingPlugin.class).inc();
-		for (Plugin plugin : plugins.get(PreStateCrawlingPlugin.class)) {
+		ImmutableList<CandidateElement> copies = null;
+		for (final Plugin plugin : plugins.get(PreStateCrawlingPlugin.class)) {
 			if (plugin instanceof PreStateCrawlingPlugin) {
-				LOGGER.debug("Calling plugin {}", plugin);
-				try {
-					((PreStateCrawlingPlugin) plugin).preStateCrawling(context,
-					        candidateElements, state);
-				} catch (RuntimeException e) {
-					reportFailingPlugin(plugin, e);
+				final CrawlerContext pluginContext = contextFor(plugin, context);
+				final ImmutableList<CandidateElement> pluginCandidates;
+				if (asyncPlugins != null && plugin instanceof AsyncPlugin) {
+					if (copies == null) {
+						copies = copiesOf(candidateElements);
+					}
+					pluginCandidates = copies;
+				} else {
+					pluginCandidates = candidateElements;
 				}
+				call(plugin, new Runnable() {
+
+					@Override
+					public void run() {
+						((PreStateCrawlingPlugin) plugin).preStateCrawling(pluginContext,
+						        pluginCandidates, state);
+					}
+				});
 			}
 		}
 	}
 
+	private static ImmutableList<CandidateElement> copiesOf(
+	        ImmutableList<CandidateElement> candidateElements) {
+		ImmutableList.Builder<CandidateElement> copies = ImmutableList.builder();
+		for (CandidateElement candidateElement : candidateElements) {
+			copies.add(candidateElement.copy());
+		}
+		return copies.build();
+	}
+
 	/**
 	 * Run the {@link PreCrawlingPlugin}s. No {@link CrawlerContext} is available at this stage.
 	 * 
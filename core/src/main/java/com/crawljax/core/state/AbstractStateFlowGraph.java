@@ -0,0 +1,327 @@
+package com.crawljax.core.state;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jgrapht.DirectedGraph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.alg.KShortestPaths;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.crawljax.core.ExitNotifier;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashCode;
+
+/**
+ * The part of a {@link StateFlowGraph} the crawler adds states and edges to that does not depend on
+ * how the states and edges are kept. It names and counts new states, finds known states by their
+ * fingerprint, asks the {@link SimilarStateIndex} for similar states and tells the listeners what
+ * was added.
+ *
+ * @see InMemoryStateFlowGraph
+ * @see DiskBackedStateFlowGraph
+ */
+@SuppressWarnings("serial")
+public abstract class AbstractStateFlowGraph implements Serializable, StateFlowGraph {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AbstractStateFlowGraph.class);
+
+	/**
+	 * Intermediate counter for the number of states, not relaying on getAllStates.size() because of
+	 * Thread-safety.
+	 */
+	private final AtomicInteger stateCounter = new AtomicInteger();
+	private final AtomicInteger nextStateNameCounter = new AtomicInteger();
+	private final ExitNotifier exitNotifier;
+	private final StateVertexFactory vertexFactory;
+	private final boolean fingerprinting;
+
+	/**
+	 * Finds states that are similar to a new state, or <code>null</code> if states are only merged
+	 * when they are equal.
+	 */
+	private final SimilarStateIndex similarStates;
+
+	private final List<StateFlowGraphListener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * @param exitNotifier
+	 *            used for triggering an exit.
+	 * @param vertexFactory
+	 *            creates the states.
+	 */
+	AbstractStateFlowGraph(ExitNotifier exitNotifier, StateVertexFactory vertexFactory) {
+		this.exitNotifier = exitNotifier;
+		this.vertexFactory = vertexFactory;
+		this.fingerprinting = vertexFactory.comparesStrippedDom();
+		this.similarStates = vertexFactory.newSimilarStateIndex();
+	}
+
+	/**
+	 * Adds a state (as a vertix) to the State-Flow Graph if not already present. More formally,
+	 * adds the specified vertex, v, to this graph if this graph contains no vertex u such that
+	 * u.equals(v). If this graph already contains such vertex, the call leaves this graph unchanged
+	 * and returns false. In combination with the restriction on constructors, this ensures that
+	 * graphs never contain duplicate vertices. Throws java.lang.NullPointerException - if the
+	 * specified vertex is null. This method automatically updates the state name to reflect the
+	 * internal state counter.
+	 *
+	 * @param stateVertix
+	 *            the state to be added.
+	 * @return the clone if one is detected null otherwise.
+	 * @see org.jgrapht.Graph#addVertex(Object)
+	 */
+	public StateVertex putIfAbsent(StateVertex stateVertix) {
+		return putIfAbsent(stateVertix, true);
+	}
+
+	/**
+	 * Adds the index, which is the root of the shortest paths.
+	 *
+	 * @param index
+	 *            the index state.
+	 * @return the clone if one is detected <code>null</code> otherwise.
+	 */
+	public abstract StateVertex putIndex(StateVertex index);
+
+	/**
+	 * Adds a state that was found before, for example by a crawl that is resumed from a
+	 * checkpoint. It keeps its id and name, and new states get a higher id.
+	 *
+	 * @param state
+	 *            the state to be added.
+	 * @return the clone if one is detected <code>null</code> otherwise.
+	 */
+	public StateVertex putRestored(StateVertex state) {
+		int id = state.getId();
+		for (int last = nextStateNameCounter.get(); last < id; last =
+		        nextStateNameCounter.get()) {
+			nextStateNameCounter.compareAndSet(last, id);
+		}
+		return putIfAbsent(state, false);
+	}
+
+	/**
+	 * Adds a state (as a vertix) to the State-Flow Graph if not already present. More formally,
+	 * adds the specified vertex, v, to this graph if this graph contains no vertex u such that
+	 * u.equals(v). If this graph already contains such vertex, the call leaves this graph unchanged
+	 * and returns false. In combination with the restriction on constructors, this ensures that
+	 * graphs never contain duplicate vertices. Throws java.lang.NullPointerException - if the
+	 * specified vertex is null.
+	 *
+	 * @param stateVertix
+	 *            the state to be added.
+	 * @param correctName
+	 *            if true the name of the state will be corrected according to the internal state
+	 *            counter.
+	 * @return the clone if one is detected <code>null</code> otherwise.
+	 * @see org.jgrapht.Graph#addVertex(Object)
+	 */
+	abstract StateVertex putIfAbsent(StateVertex stateVertix, boolean correctName);
+
+	/**
+	 * Adds the specified edge to this graph, going from the source vertex to the target vertex.
+	 * More formally, adds the specified edge, e, to this graph if this graph contains no edge e2
+	 * such that e2.equals(e). If this graph already contains such an edge, the call leaves this
+	 * graph unchanged and returns false. Some graphs do not allow edge-multiplicity. In such cases,
+	 * if the graph already contains an edge from the specified source to the specified target, than
+	 * this method does not change the graph and returns false. If the edge was added to the graph,
+	 * returns true. The source and target vertices must already be contained in this graph. If they
+	 * are not found in graph IllegalArgumentException is thrown.
+	 *
+	 * @param sourceVert
+	 *            source vertex of the edge.
+	 * @param targetVert
+	 *            target vertex of the edge.
+	 * @param clickable
+	 *            the clickable edge to be added to this graph.
+	 * @return true if this graph did not already contain the specified edge.
+	 * @see org.jgrapht.Graph#addEdge(Object, Object, Object)
+	 */
+	public abstract boolean addEdge(StateVertex sourceVert, StateVertex targetVert,
+	        Eventable clickable);
+
+	/**
+	 * @param listener
+	 *            Is told about every state and edge that is added from now on.
+	 */
+	public void addListener(StateFlowGraphListener listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * @return <code>true</code> if known states can be found by their fingerprint.
+	 * @see StateVertexFactory#comparesStrippedDom()
+	 */
+	boolean isFingerprinting() {
+		return fingerprinting;
+	}
+
+	/**
+	 * @return A state in the graph that is similar to the given state, or <code>null</code> if
+	 *         there is none or states are only merged when they are equal.
+	 */
+	StateVertex findSimilar(StateVertex state) {
+		return similarStates == null ? null : similarStates.findSimilar(state);
+	}
+
+	/**
+	 * Counts a state that was just added to the graph and tells the listeners about it. Called
+	 * while the graph is locked for writing.
+	 */
+	void stateAdded(StateVertex state) {
+		if (similarStates != null) {
+			similarStates.add(state);
+		}
+		int count = stateCounter.incrementAndGet();
+		exitNotifier.incrementNumberOfStates();
+		LOG.debug("Number of states is now {}", count);
+		for (StateFlowGraphListener listener : listeners) {
+			listener.stateAdded(state);
+		}
+	}
+
+	/**
+	 * Tells the listeners about an edge that was just added to the graph. Called while the graph
+	 * is locked for writing.
+	 */
+	void edgeAdded(Eventable edge) {
+		for (StateFlowGraphListener listener : listeners) {
+			listener.edgeAdded(edge);
+		}
+	}
+
+	@Override
+	public int getNumberOfStates() {
+		return stateCounter.get();
+	}
+
+	/**
+	 * @return A new state for the DOM, or the state that is already in the graph if the
+	 *         {@link StateVertexFactory} allows finding it by its fingerprint. In that case no new
+	 *         state id is used.
+	 */
+	StateVertex newStateFor(String url, String dom, String strippedDom) {
+		HashCode fingerprint = null;
+		if (fingerprinting) {
+			fingerprint = StateVertexImpl.fingerprintOf(strippedDom);
+			StateVertex known = knownState(fingerprint);
+			if (known != null && known.getStrippedDom().equals(strippedDom)) {
+				LOG.debug("The DOM belongs to known state {}", known.getName());
+				return known;
+			}
+		}
+		int id = nextStateNameCounter.incrementAndGet();
+		StateVertex state =
+		        vertexFactory.newStateVertex(id, url, getNewStateName(id), dom, strippedDom);
+		if (fingerprint != null && state instanceof StateVertexImpl) {
+			((StateVertexImpl) state).setFingerprint(fingerprint);
+		}
+		return state;
+	}
+
+	/**
+	 * @return The state with the given fingerprint or <code>null</code> if there is none.
+	 */
+	abstract StateVertex knownState(HashCode fingerprint);
+
+	static HashCode fingerprintOf(StateVertex state) {
+		if (state instanceof StateVertexImpl) {
+			return ((StateVertexImpl) state).getFingerprint();
+		}
+		return StateVertexImpl.fingerprintOf(state.getStrippedDom());
+	}
+
+	private String getNewStateName(int id) {
+		return "state" + id;
+	}
+
+	@Override
+	public List<List<GraphPath<StateVertex, Eventable>>> getAllPossiblePaths(StateVertex index) {
+		final List<List<GraphPath<StateVertex, Eventable>>> results = Lists.newArrayList();
+
+		final KShortestPaths<StateVertex, Eventable> kPaths =
+		        new KShortestPaths<>(graphForPaths(), index, Integer.MAX_VALUE);
+
+		for (StateVertex state : getDeepStates(index)) {
+			List<GraphPath<StateVertex, Eventable>> paths = kPaths.getPaths(state);
+			results.add(paths);
+		}
+
+		return results;
+	}
+
+	/**
+	 * @return The graph to find all possible paths in.
+	 */
+	abstract DirectedGraph<StateVertex, Eventable> graphForPaths();
+
+	/**
+	 * @param state
+	 *            The starting state.
+	 * @return A list of the deepest states (states with no outgoing edges).
+	 */
+	private List<StateVertex> getDeepStates(StateVertex state) {
+		final List<StateVertex> deepStates = new ArrayList<StateVertex>();
+
+		traverse(Sets.<String> newHashSet(), deepStates, state);
+
+		return deepStates;
+	}
+
+	private void traverse(Set<String> visitedStates, List<StateVertex> deepStates,
+	        StateVertex state) {
+		visitedStates.add(state.getName());
+
+		Set<StateVertex> outgoingSet = getOutgoingStates(state);
+
+		if ((outgoingSet == null) || outgoingSet.isEmpty()) {
+			deepStates.add(state);
+		} else {
+			if (cyclic(visitedStates, outgoingSet)) {
+				deepStates.add(state);
+			} else {
+				for (StateVertex st : outgoingSet) {
+					if (!visitedStates.contains(st.getName())) {
+						traverse(visitedStates, deepStates, st);
+					}
+				}
+			}
+		}
+	}
+
+	private boolean cyclic(Set<String> visitedStates, Set<StateVertex> outgoingSet) {
+		int i = 0;
+
+		for (StateVertex state : outgoingSet) {
+			if (visitedStates.contains(state.getName())) {
+				i++;
+			}
+		}
+
+		return i == outgoingSet.size();
+	}
+
+	@Override
+	public ImmutableSet<StateVertex> getOutgoingStates(StateVertex stateVertix) {
+		final Set<StateVertex> result = new HashSet<>();
+
+		for (Eventable c : getOutgoingClickables(stateVertix)) {
+			result.add(c.getTargetStateVertex());
+		}
+
+		return ImmutableSet.copyOf(result);
+	}
+}
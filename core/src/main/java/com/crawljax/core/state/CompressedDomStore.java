@@ -0,0 +1,250 @@
+package com.crawljax.core.state;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.crawljax.core.CrawljaxException;
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+
+/**
+ * Keeps DOMs deflated on the heap. The states of one site share most of their markup, so the
+ * start of the first DOM is used as a preset dictionary for all DOMs. When the compressed DOMs
+ * take more heap than the limit, the oldest DOMs are moved to a memory mapped file and read back
+ * from it when they are needed.
+ */
+@ThreadSafe
+public class CompressedDomStore implements DomStore {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CompressedDomStore.class);
+
+	/**
+	 * Deflate does not look back further than this, so a larger dictionary does not help.
+	 */
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+
+	private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	private static final StoredDom NULL_DOM = new StoredDom() {
+
+		@Override
+		public String get() {
+			return null;
+		}
+	};
+
+	private final long heapLimit;
+	private final File spillDirectory;
+	private final int segmentSize;
+
+	private final Queue<CompressedDom> onHeap = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger doms = new AtomicInteger();
+	private final AtomicLong uncompressedBytes = new AtomicLong();
+	private final AtomicLong heapBytes = new AtomicLong();
+
+	private volatile byte[] dictionary;
+	private SpillFile spillFile;
+
+	/**
+	 * Keeps all DOMs on the heap.
+	 */
+	public CompressedDomStore() {
+		this(Long.MAX_VALUE, null);
+	}
+
+	/**
+	 * @param heapLimitBytes
+	 *            The number of bytes the compressed DOMs may take on the heap.
+	 * @param spillDirectory
+	 *            The directory for the file with the DOMs that do not fit on the heap, or
+	 *            <code>null</code> for the temporary directory. The file is deleted when the store
+	 *            is {@link #close() closed}.
+	 */
+	public CompressedDomStore(long heapLimitBytes, File spillDirectory) {
+		this(heapLimitBytes, spillDirectory, SEGMENT_SIZE);
+	}
+
+	CompressedDomStore(long heapLimitBytes, File spillDirectory, int segmentSize) {
+		Preconditions.checkArgument(heapLimitBytes >= 0, "The heap limit can't be negative");
+		this.heapLimit = heapLimitBytes;
+		this.spillDirectory = spillDirectory;
+		this.segmentSize = segmentSize;
+	}
+
+	@Override
+	public StoredDom store(String dom) {
+		if (dom == null) {
+			return NULL_DOM;
+		}
+		byte[] bytes = dom.getBytes(Charsets.UTF_8);
+		CompressedDom stored = new CompressedDom(deflate(bytes, dictionaryFor(bytes)), bytes.length);
+		doms.incrementAndGet();
+		uncompressedBytes.addAndGet(HeapDomStore.sizeOf(dom));
+		heapBytes.addAndGet(stored.compressedLength);
+		onHeap.add(stored);
+		spillIfNeeded();
+		return stored;
+	}
+
+	@Override
+	public int getNumberOfDoms() {
+		return doms.get();
+	}
+
+	@Override
+	public long getUncompressedBytes() {
+		return uncompressedBytes.get();
+	}
+
+	@Override
+	public long getHeapBytes() {
+		return heapBytes.get();
+	}
+
+	@Override
+	public synchronized long getSpilledBytes() {
+		return spillFile == null ? 0 : spillFile.size();
+	}
+
+	/**
+	 * Closes and deletes the spill file. A DOM that is stored after this starts a new one.
+	 */
+	@Override
+	public synchronized void close() {
+		if (spillFile != null) {
+			spillFile.close();
+			spillFile = null;
+		}
+	}
+
+	private byte[] dictionaryFor(byte[] firstDom) {
+		if (dictionary == null) {
+			synchronized (this) {
+				if (dictionary == null) {
+					dictionary =
+					        Arrays.copyOf(firstDom, Math.min(firstDom.length, DICTIONARY_SIZE));
+				}
+			}
+		}
+		return dictionary;
+	}
+
+	private static byte[] deflate(byte[] bytes, byte[] dictionary) {
+		Deflater deflater = new Deflater();
+		try {
+			deflater.setDictionary(dictionary);
+			deflater.setInput(bytes);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 16);
+			byte[] buffer = new byte[8192];
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private String inflate(byte[] compressed, int length) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			byte[] bytes = new byte[length];
+			int read = 0;
+			while (read < length) {
+				int inflated = inflater.inflate(bytes, read, length - read);
+				if (inflated == 0 && inflater.needsDictionary()) {
+					inflater.setDictionary(dictionary);
+				} else if (inflated == 0 && (inflater.needsInput() || inflater.finished())) {
+					throw new CrawljaxException("A stored DOM is truncated");
+				}
+				read += inflated;
+			}
+			return new String(bytes, Charsets.UTF_8);
+		} catch (DataFormatException e) {
+			throw new CrawljaxException("A stored DOM is corrupt", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private void spillIfNeeded() {
+		while (heapBytes.get() > heapLimit) {
+			CompressedDom oldest = onHeap.poll();
+			if (oldest == null) {
+				return;
+			}
+			oldest.spillTo(spillFile());
+			heapBytes.addAndGet(-oldest.compressedLength);
+		}
+	}
+
+	private synchronized SpillFile spillFile() {
+		if (spillFile == null) {
+			try {
+				File file = File.createTempFile("crawljax-doms", ".spill", spillDirectory);
+				LOG.info("The DOMs do not fit in {} bytes of heap. Spilling them to {}",
+				        heapLimit, file);
+				spillFile = new SpillFile(file, segmentSize);
+			} catch (IOException e) {
+				throw new CrawljaxException("Could not create a file to spill DOMs to", e);
+			}
+		}
+		return spillFile;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + heapLimit + " bytes)";
+	}
+
+	private final class CompressedDom implements StoredDom {
+
+		private final int compressedLength;
+		private final int length;
+
+		/**
+		 * The compressed DOM, or <code>null</code> once it moved to the {@link SpillFile}.
+		 */
+		private volatile byte[] compressed;
+		private SpillFile file;
+		private long position;
+
+		CompressedDom(byte[] compressed, int length) {
+			this.compressed = compressed;
+			this.compressedLength = compressed.length;
+			this.length = length;
+		}
+
+		void spillTo(SpillFile file) {
+			this.position = file.append(compressed);
+			this.file = file;
+			// Written last, so a reader that sees null also sees the position.
+			this.compressed = null;
+		}
+
+		@Override
+		public String get() {
+			byte[] bytes = compressed;
+			if (bytes == null) {
+				bytes = file.read(position, compressedLength);
+			}
+			return inflate(bytes, length);
+		}
+	}
+}
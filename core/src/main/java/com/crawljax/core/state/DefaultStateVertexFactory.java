@@ -8,6 +8,11 @@ public class DefaultStateVertexFactory extends StateVertexFactory {
 
 	@Override
 	public StateVertex newStateVertex(int id, String url, String name, String dom, String strippedDom) {
-		return new StateVertexImpl(id, url, name, dom, strippedDom);
+		return new StateVertexImpl(id, url, name, dom, strippedDom, getDomStore());
+	}
+
+	@Override
+	public boolean comparesStrippedDom() {
+		return getClass() == DefaultStateVertexFactory.class;
 	}
 }
@@ -0,0 +1,683 @@
+package com.crawljax.core.state;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import org.jgrapht.DirectedGraph;
+import org.jgrapht.graph.DirectedMultigraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.crawljax.core.CrawljaxException;
+import com.crawljax.core.ExitNotifier;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Utf8;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.primitives.Ints;
+
+/**
+ * A {@link StateFlowGraph} for crawls with more states than fit in the heap. States and edges are
+ * appended to files in a directory and only the ones that were used last are kept in memory. The
+ * structure of the graph is kept in memory as arrays of state ids and edge numbers, so finding a
+ * path only reads the edges on that path.
+ * <p>
+ * A state or an edge that is still referenced is always handed out as the same instance. A state
+ * that is read back from disk has no {@link StateVertex#getCandidateElements() candidate elements}
+ * any more, which are only used while the state is crawled. {@link #getAllStates()},
+ * {@link #getAllEdges()} and {@link #getAllPossiblePaths(StateVertex)} read the whole graph and are
+ * meant for after the crawl. When the {@link StateVertexFactory} merges similar states, the
+ * {@link SimilarStateIndex} keeps all states in memory.
+ * </p>
+ * Enable it using
+ * {@link com.crawljax.core.configuration.CrawljaxConfiguration.CrawljaxConfigurationBuilder#setDiskBackedStateFlowGraph(File, int)}
+ * .
+ */
+@ThreadSafe
+@SuppressWarnings("serial")
+public class DiskBackedStateFlowGraph extends AbstractStateFlowGraph {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DiskBackedStateFlowGraph.class);
+
+	private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final File directory;
+	private final SpillFile stateFile;
+	private final SpillFile edgeFile;
+	private final Lock readLock;
+	private final Lock writeLock;
+
+	/**
+	 * The ids of the states in the graph. The other arrays about states are indexed by id. The
+	 * structure of the graph is changed while holding the write lock and read while holding the
+	 * read lock.
+	 */
+	@GuardedBy("writeLock")
+	private final BitSet stateIds = new BitSet();
+	@GuardedBy("writeLock")
+	private long[] statePositions = new long[INITIAL_CAPACITY];
+	@GuardedBy("writeLock")
+	private int[] stateLengths = new int[INITIAL_CAPACITY];
+	@GuardedBy("writeLock")
+	private IntList[] outgoing = new IntList[INITIAL_CAPACITY];
+	@GuardedBy("writeLock")
+	private IntList[] incoming = new IntList[INITIAL_CAPACITY];
+
+	/**
+	 * The breadth first shortest path tree from the index. Its edges are edge numbers.
+	 */
+	@GuardedBy("writeLock")
+	private final ShortestPathTree<Integer> shortestPaths;
+
+	/**
+	 * The ids of states by their fingerprint when the factory
+	 * {@link StateVertexFactory#comparesStrippedDom() compares stripped DOMs}, otherwise by their
+	 * hash code.
+	 */
+	@GuardedBy("writeLock")
+	private final Map<HashCode, Integer> idByFingerprint = Maps.newHashMap();
+	@GuardedBy("writeLock")
+	private final ListMultimap<Integer, Integer> idsByHash = ArrayListMultimap.create();
+	@GuardedBy("writeLock")
+	private long domBytes;
+
+	/**
+	 * Edges are numbered in the order they are added. The arrays about edges are indexed by that
+	 * number. The key is the hash of what makes two edges between the same states equal.
+	 */
+	@GuardedBy("writeLock")
+	private int edgeCount;
+	@GuardedBy("writeLock")
+	private long[] edgePositions = new long[INITIAL_CAPACITY];
+	@GuardedBy("writeLock")
+	private int[] edgeLengths = new int[INITIAL_CAPACITY];
+	@GuardedBy("writeLock")
+	private int[] edgeSources = new int[INITIAL_CAPACITY];
+	@GuardedBy("writeLock")
+	private int[] edgeTargets = new int[INITIAL_CAPACITY];
+	@GuardedBy("writeLock")
+	private int[] edgeKeys = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The live caches hand out the same instance as long as it is referenced. The hot caches keep
+	 * the instances that were used last.
+	 */
+	private final Cache<Integer, StateVertex> liveStates;
+	private final Cache<Integer, StateVertex> hotStates;
+	private final Cache<Integer, Eventable> liveEdges;
+	private final Cache<Integer, Eventable> hotEdges;
+
+	/**
+	 * @param exitNotifier
+	 *            used for triggering an exit.
+	 * @param vertexFactory
+	 *            creates the states.
+	 * @param directory
+	 *            The directory to write the states and edges to. It is created if it does not
+	 *            exist. The files are deleted when the graph is {@link #close() closed}.
+	 * @param hot
+	 *            The number of states and the number of edges that are kept in memory.
+	 */
+	public DiskBackedStateFlowGraph(ExitNotifier exitNotifier, StateVertexFactory vertexFactory,
+	        File directory, int hot) {
+		super(exitNotifier, vertexFactory);
+		Preconditions.checkArgument(hot > 0, "The number of hot states must be positive");
+		this.directory = directory;
+		this.shortestPaths = new ShortestPathTree<>(new EdgeNumbers());
+		directory.mkdirs();
+		this.stateFile = new SpillFile(newFile("states"), SEGMENT_SIZE);
+		this.edgeFile = new SpillFile(newFile("edges"), SEGMENT_SIZE);
+		this.liveStates = CacheBuilder.newBuilder().weakValues().build();
+		this.hotStates = CacheBuilder.newBuilder().maximumSize(hot).build();
+		this.liveEdges = CacheBuilder.newBuilder().weakValues().build();
+		this.hotEdges = CacheBuilder.newBuilder().maximumSize(hot).build();
+		ReadWriteLock lock = new ReentrantReadWriteLock();
+		readLock = lock.readLock();
+		writeLock = lock.writeLock();
+		LOG.debug("Keeping the stateflowgraph in {}", directory);
+	}
+
+	/**
+	 * Closes and deletes the files of the graph. Only the states and edges that are still in
+	 * memory can be used after this.
+	 */
+	@Override
+	public void close() {
+		writeLock.lock();
+		try {
+			stateFile.close();
+		} finally {
+			edgeFile.close();
+			writeLock.unlock();
+		}
+	}
+
+	private File newFile(String prefix) {
+		try {
+			return File.createTempFile(prefix, ".log", directory);
+		} catch (IOException e) {
+			throw new CrawljaxException("Could not create a file in " + directory, e);
+		}
+	}
+
+	@Override
+	public StateVertex putIndex(StateVertex index) {
+		writeLock.lock();
+		try {
+			StateVertex clone = putIfAbsent(index, false);
+			if (clone == null) {
+				shortestPaths.setRoot(index.getId());
+			}
+			return clone;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * The state is serialized and compressed before the graph is locked, so other crawlers can
+	 * keep using the graph meanwhile.
+	 */
+	@Override
+	StateVertex putIfAbsent(StateVertex state, boolean correctName) {
+		readLock.lock();
+		try {
+			int known = idOf(state);
+			if (known >= 0) {
+				LOG.debug("Graph already contained vertex {}", state);
+				return loadState(known);
+			}
+		} finally {
+			readLock.unlock();
+		}
+		byte[] record = encodeState(state);
+		int domSize = Utf8.encodedLength(state.getDom());
+		writeLock.lock();
+		try {
+			int known = idOf(state);
+			if (known >= 0) {
+				LOG.debug("Graph already contained vertex {}", state);
+				return loadState(known);
+			}
+			StateVertex similar = findSimilar(state);
+			if (similar != null) {
+				LOG.debug("Graph already contained a vertex similar to {}", state);
+				return similar;
+			}
+			int id = state.getId();
+			Preconditions.checkArgument(!stateIds.get(id), "There already is a state with id %s",
+			        id);
+			ensureStateCapacity(id);
+			statePositions[id] = stateFile.append(record);
+			stateLengths[id] = record.length;
+			stateIds.set(id);
+			if (isFingerprinting()) {
+				idByFingerprint.put(fingerprintOf(state), id);
+			} else {
+				idsByHash.put(state.hashCode(), id);
+			}
+			liveStates.put(id, state);
+			hotStates.put(id, state);
+			domBytes += domSize;
+			stateAdded(state);
+			return null;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	StateVertex knownState(HashCode fingerprint) {
+		readLock.lock();
+		try {
+			Integer id = idByFingerprint.get(fingerprint);
+			return id == null ? null : loadState(id);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public StateVertex getById(int id) {
+		readLock.lock();
+		try {
+			return id >= 0 && stateIds.get(id) ? loadState(id) : null;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public StateVertex getInitialState() {
+		return getById(StateVertex.INDEX_ID);
+	}
+
+	@Override
+	public boolean addEdge(StateVertex sourceVert, StateVertex targetVert, Eventable clickable) {
+		clickable.setSource(sourceVert);
+		clickable.setTarget(targetVert);
+		writeLock.lock();
+		try {
+			int source = checkInGraph(sourceVert);
+			int target = checkInGraph(targetVert);
+			int key = keyOf(clickable);
+			IntList fromSource = outgoing[source];
+			for (int i = 0; fromSource != null && i < fromSource.size; i++) {
+				int edge = fromSource.values[i];
+				if (edgeTargets[edge] == target && edgeKeys[edge] == key
+				        && sameEvent(loadEdge(edge), clickable)) {
+					return false;
+				}
+			}
+			byte[] record = encodeEdge(clickable);
+			int edge = edgeCount++;
+			ensureEdgeCapacity(edge);
+			edgePositions[edge] = edgeFile.append(record);
+			edgeLengths[edge] = record.length;
+			edgeSources[edge] = source;
+			edgeTargets[edge] = target;
+			edgeKeys[edge] = key;
+			outgoing[source] = IntList.add(outgoing[source], edge);
+			incoming[target] = IntList.add(incoming[target], edge);
+			liveEdges.put(edge, clickable);
+			hotEdges.put(edge, clickable);
+			shortestPaths.edgeAdded(source, target, edge);
+			edgeAdded(clickable);
+			return true;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		readLock.lock();
+		try {
+			return Objects.toStringHelper(this)
+			        .add("states", getNumberOfStates())
+			        .add("edges", edgeCount)
+			        .add("directory", directory)
+			        .toString();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public ImmutableSet<Eventable> getOutgoingClickables(StateVertex stateVertix) {
+		readLock.lock();
+		try {
+			return loadEdges(outgoing[checkInGraph(stateVertix)]);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public ImmutableSet<Eventable> getIncomingClickable(StateVertex stateVertix) {
+		readLock.lock();
+		try {
+			return loadEdges(incoming[checkInGraph(stateVertix)]);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean canGoTo(StateVertex source, StateVertex target) {
+		readLock.lock();
+		try {
+			int from = resolve(source);
+			int to = resolve(target);
+			return from >= 0 && to >= 0 && (hasEdge(from, to) || hasEdge(to, from));
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@GuardedBy("readLock")
+	private boolean hasEdge(int source, int target) {
+		IntList edges = outgoing[source];
+		for (int i = 0; edges != null && i < edges.size; i++) {
+			if (edgeTargets[edges.values[i]] == target) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Paths from the index are looked up in the shortest path tree. Paths from other states are
+	 * found with a breadth first search over the edge numbers, so only the edges on the path are
+	 * read.
+	 */
+	@Override
+	public ImmutableList<Eventable> getShortestPath(StateVertex start, StateVertex end) {
+		readLock.lock();
+		try {
+			int from = checkInGraph(start);
+			int to = checkInGraph(end);
+			ImmutableList<Integer> path =
+			        shortestPaths.isRoot(from) ? shortestPaths.pathTo(to) : ShortestPathTree
+			                .breadthFirstPath(new EdgeNumbers(), from, to);
+			Preconditions.checkArgument(path != null, "%s can not be reached from %s", end,
+			        start);
+			ImmutableList.Builder<Eventable> events = ImmutableList.builder();
+			for (int edge : path) {
+				events.add(loadEdge(edge));
+			}
+			return events.build();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Reads all states from disk.
+	 */
+	@Override
+	public ImmutableSet<StateVertex> getAllStates() {
+		readLock.lock();
+		try {
+			ImmutableSet.Builder<StateVertex> states = ImmutableSet.builder();
+			for (int id = stateIds.nextSetBit(0); id >= 0; id = stateIds.nextSetBit(id + 1)) {
+				states.add(loadState(id));
+			}
+			return states.build();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Reads all edges from disk.
+	 */
+	@Override
+	public ImmutableSet<Eventable> getAllEdges() {
+		readLock.lock();
+		try {
+			ImmutableSet.Builder<Eventable> edges = ImmutableSet.builder();
+			for (int edge = 0; edge < edgeCount; edge++) {
+				edges.add(loadEdge(edge));
+			}
+			return edges.build();
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public int getMeanStateStringSize() {
+		readLock.lock();
+		try {
+			int count = getNumberOfStates();
+			return count == 0 ? 0 : (int) (domBytes / count);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * @return A copy of the whole graph in memory.
+	 */
+	@Override
+	DirectedGraph<StateVertex, Eventable> graphForPaths() {
+		readLock.lock();
+		try {
+			DirectedGraph<StateVertex, Eventable> graph =
+			        new DirectedMultigraph<>(Eventable.class);
+			for (int id = stateIds.nextSetBit(0); id >= 0; id = stateIds.nextSetBit(id + 1)) {
+				graph.addVertex(loadState(id));
+			}
+			for (int edge = 0; edge < edgeCount; edge++) {
+				graph.addEdge(loadState(edgeSources[edge]), loadState(edgeTargets[edge]),
+				        loadEdge(edge));
+			}
+			return graph;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Drops all states and edges from memory, even the ones that are still referenced, so they
+	 * are read from disk the next time.
+	 */
+	@VisibleForTesting
+	void evictAll() {
+		liveStates.invalidateAll();
+		hotStates.invalidateAll();
+		liveEdges.invalidateAll();
+		hotEdges.invalidateAll();
+	}
+
+	/**
+	 * @return The id of the state in the graph that equals the given state or -1 if there is none.
+	 */
+	@GuardedBy("readLock")
+	private int resolve(StateVertex state) {
+		int id = state.getId();
+		if (id >= 0 && stateIds.get(id) && liveStates.getIfPresent(id) == state) {
+			return id;
+		}
+		return idOf(state);
+	}
+
+	@GuardedBy("readLock")
+	private int checkInGraph(StateVertex state) {
+		int id = resolve(state);
+		Preconditions.checkArgument(id >= 0, "no such vertex in graph: %s", state);
+		return id;
+	}
+
+	@GuardedBy("readLock")
+	private int idOf(StateVertex state) {
+		if (isFingerprinting()) {
+			Integer id = idByFingerprint.get(fingerprintOf(state));
+			return id != null && loadState(id).equals(state) ? id : -1;
+		}
+		for (int id : idsByHash.get(state.hashCode())) {
+			if (loadState(id).equals(state)) {
+				return id;
+			}
+		}
+		return -1;
+	}
+
+	@GuardedBy("readLock")
+	private StateVertex loadState(int id) {
+		StateVertex state = liveStates.getIfPresent(id);
+		if (state == null) {
+			StateVertex loaded = decodeState(stateFile.read(statePositions[id], stateLengths[id]));
+			state = liveStates.asMap().putIfAbsent(id, loaded);
+			if (state == null) {
+				state = loaded;
+			}
+		}
+		hotStates.put(id, state);
+		return state;
+	}
+
+	@GuardedBy("readLock")
+	private Eventable loadEdge(int edge) {
+		Eventable event = liveEdges.getIfPresent(edge);
+		if (event == null) {
+			Eventable loaded = decodeEdge(edgeFile.read(edgePositions[edge], edgeLengths[edge]));
+			loaded.setSource(loadState(edgeSources[edge]));
+			loaded.setTarget(loadState(edgeTargets[edge]));
+			event = liveEdges.asMap().putIfAbsent(edge, loaded);
+			if (event == null) {
+				event = loaded;
+			}
+		}
+		hotEdges.put(edge, event);
+		return event;
+	}
+
+	@GuardedBy("readLock")
+	private ImmutableSet<Eventable> loadEdges(IntList edges) {
+		if (edges == null) {
+			return ImmutableSet.of();
+		}
+		ImmutableSet.Builder<Eventable> events = ImmutableSet.builder();
+		for (int i = 0; i < edges.size; i++) {
+			events.add(loadEdge(edges.values[i]));
+		}
+		return events.build();
+	}
+
+	/**
+	 * @return The hash of what makes two edges between the same states equal.
+	 */
+	private static int keyOf(Eventable event) {
+		return Objects.hashCode(event.getEventType(), event.getIdentification(),
+		        event.getElement());
+	}
+
+	private static boolean sameEvent(Eventable first, Eventable second) {
+		return Objects.equal(first.getEventType(), second.getEventType())
+		        && Objects.equal(first.getIdentification(), second.getIdentification())
+		        && Objects.equal(first.getElement(), second.getElement());
+	}
+
+	/**
+	 * States are serialized as a whole so states of any {@link StateVertexFactory} keep their
+	 * fields. They are compressed because the DOMs are most of their size.
+	 */
+	private static byte[] encodeState(StateVertex state) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(new DeflaterOutputStream(bytes))) {
+			out.writeObject(state);
+		} catch (IOException e) {
+			throw new CrawljaxException("Could not write state " + state.getName(), e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static StateVertex decodeState(byte[] record) {
+		try (ObjectInputStream in =
+		        new ObjectInputStream(new InflaterInputStream(new ByteArrayInputStream(record)))) {
+			return (StateVertex) in.readObject();
+		} catch (IOException | ClassNotFoundException e) {
+			throw new CrawljaxException("Could not read a state", e);
+		}
+	}
+
+	private static byte[] encodeEdge(Eventable event) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			EventableCodec.writeEventable(out, event);
+		} catch (IOException e) {
+			throw new CrawljaxException("Could not write edge " + event, e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static Eventable decodeEdge(byte[] record) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+			return EventableCodec.readEventable(in);
+		} catch (IOException e) {
+			throw new CrawljaxException("Could not read an edge", e);
+		}
+	}
+
+	@GuardedBy("writeLock")
+	private void ensureStateCapacity(int id) {
+		if (id < statePositions.length) {
+			return;
+		}
+		int capacity = Math.max(id + 1, statePositions.length * 2);
+		statePositions = Arrays.copyOf(statePositions, capacity);
+		stateLengths = Arrays.copyOf(stateLengths, capacity);
+		outgoing = Arrays.copyOf(outgoing, capacity);
+		incoming = Arrays.copyOf(incoming, capacity);
+	}
+
+	@GuardedBy("writeLock")
+	private void ensureEdgeCapacity(int edge) {
+		if (edge < edgePositions.length) {
+			return;
+		}
+		int capacity = edgePositions.length * 2;
+		edgePositions = Arrays.copyOf(edgePositions, capacity);
+		edgeLengths = Arrays.copyOf(edgeLengths, capacity);
+		edgeSources = Arrays.copyOf(edgeSources, capacity);
+		edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+		edgeKeys = Arrays.copyOf(edgeKeys, capacity);
+	}
+
+	/**
+	 * The edges of the graph by their number, as the {@link ShortestPathTree} sees them.
+	 */
+	private final class EdgeNumbers implements ShortestPathTree.Edges<Integer> {
+
+		@Override
+		public Iterable<Integer> outgoingEdgesOf(int state) {
+			IntList edges = outgoing[state];
+			if (edges == null) {
+				return Collections.emptyList();
+			}
+			return Ints.asList(edges.values).subList(0, edges.size);
+		}
+
+		@Override
+		public int sourceOf(Integer edge) {
+			return edgeSources[edge];
+		}
+
+		@Override
+		public int targetOf(Integer edge) {
+			return edgeTargets[edge];
+		}
+	}
+
+	/**
+	 * A growing list of edge numbers.
+	 */
+	private static final class IntList {
+
+		private int[] values = new int[4];
+		private int size;
+
+		/**
+		 * @return The list with the value added. A new list if the given one was
+		 *         <code>null</code>.
+		 */
+		static IntList add(IntList list, int value) {
+			IntList result = list == null ? new IntList() : list;
+			if (result.size == result.values.length) {
+				result.values = Arrays.copyOf(result.values, result.size * 2);
+			}
+			result.values[result.size++] = value;
+			return result;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package com.crawljax.core.state;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Keeps the DOMs of the states in the {@link StateFlowGraph}. A {@link StateVertex} only holds a
+ * {@link StoredDom} and asks it for the DOM when it is needed, so a store can keep the DOMs in a
+ * smaller form than a {@link String}.
+ * 
+ * @see HeapDomStore
+ * @see CompressedDomStore
+ */
+@ThreadSafe
+public interface DomStore {
+
+	/**
+	 * @param dom
+	 *            The DOM to keep.
+	 * @return The handle to get the DOM back.
+	 */
+	StoredDom store(String dom);
+
+	/**
+	 * @return The number of DOMs in the store.
+	 */
+	int getNumberOfDoms();
+
+	/**
+	 * @return The number of bytes the DOMs would take on the heap as {@link String}s.
+	 */
+	long getUncompressedBytes();
+
+	/**
+	 * @return The number of bytes the stored DOMs take on the heap.
+	 */
+	long getHeapBytes();
+
+	/**
+	 * @return The number of bytes the stored DOMs take outside the heap.
+	 */
+	long getSpilledBytes();
+
+	/**
+	 * Releases the files the store keeps DOMs in. DOMs that were moved to such a file can not be
+	 * read after this. Crawljax does not close a store that was given to it, because the states
+	 * of the {@link com.crawljax.core.CrawlSession} it returns still read their DOMs from it.
+	 */
+	void close();
+
+	/**
+	 * A DOM kept by a {@link DomStore}.
+	 */
+	@ThreadSafe
+	interface StoredDom {
+
+		/**
+		 * @return The DOM as it was stored.
+		 */
+		String get();
+	}
+}
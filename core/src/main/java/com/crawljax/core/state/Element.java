@@ -1,6 +1,7 @@
 package com.crawljax.core.state;
 
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.util.Map.Entry;
 
 import javax.annotation.concurrent.Immutable;
@@ -12,19 +13,38 @@ import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.hash.Hashing;
 
 /**
  * This class represents an element. It is built from the node name and node text contents.
+ * <p>
+ * It only keeps a weak reference to the {@link Node} it was built from, so the document the node
+ * belongs to can be collected while the element lives on in the {@link StateFlowGraph}. The tag and attributes are
+ * interned because the same ones show up in every state. Only the first
+ * {@value #MAX_TEXT_LENGTH} characters of the text are kept, together with a hash of the full
+ * text.
+ * </p>
  */
 @Immutable
 public class Element implements Serializable {
 
 	private static final long serialVersionUID = -1608999189549530008L;
 
-	private final Node node;
+	/**
+	 * The number of characters of the text that are kept.
+	 */
+	public static final int MAX_TEXT_LENGTH = 256;
+
+	private static final Interner<String> STRINGS = Interners.newWeakInterner();
+
 	private final String tag;
 	private final String text;
+	private final long textDigest;
 	private final ImmutableMap<String, String> attributes;
+	private final transient WeakReference<Node> node;
 
 	/**
 	 * Create a new Element.
@@ -35,21 +55,41 @@ public class Element implements Serializable {
 	 */
 	public Element(Node node) {
 		Preconditions.checkNotNull(node);
-		this.node = node;
-		this.tag = node.getNodeName();
-		if (node.getTextContent() == null) {
-			this.text = "";
-		} else {
-			this.text = DomUtils.removeNewLines(node.getTextContent()).trim();
+		this.node = new WeakReference<>(node);
+		this.tag = STRINGS.intern(node.getNodeName());
+		String fullText = "";
+		if (node.getTextContent() != null) {
+			fullText = DomUtils.removeNewLines(node.getTextContent()).trim();
 		}
+		this.text =
+		        fullText.length() > MAX_TEXT_LENGTH ? fullText.substring(0, MAX_TEXT_LENGTH)
+		                : fullText;
+		this.textDigest = Hashing.murmur3_128().hashUnencodedChars(fullText).asLong();
 		Builder<String, String> builder = ImmutableMap.builder();
 		for (int i = 0; i < node.getAttributes().getLength(); i++) {
 			Node attr = node.getAttributes().item(i);
-			builder.put(attr.getNodeName().toLowerCase(), attr.getNodeValue());
+			builder.put(STRINGS.intern(attr.getNodeName().toLowerCase()),
+			        STRINGS.intern(attr.getNodeValue()));
 		}
 		attributes = builder.build();
 	}
 
+	/**
+	 * Creates an element from its parts, for example when it is read back by the
+	 * {@link EventableCodec}.
+	 */
+	Element(String tag, String text, long textDigest, ImmutableMap<String, String> attributes) {
+		this.node = null;
+		this.tag = STRINGS.intern(tag);
+		this.text = text;
+		this.textDigest = textDigest;
+		Builder<String, String> builder = ImmutableMap.builder();
+		for (Entry<String, String> attribute : attributes.entrySet()) {
+			builder.put(STRINGS.intern(attribute.getKey()), STRINGS.intern(attribute.getValue()));
+		}
+		this.attributes = builder.build();
+	}
+
 	/**
 	 * Are all the attributes the same?
 	 * 
@@ -80,10 +120,14 @@ public class Element implements Serializable {
 	 * 
 	 * @param otherElement
 	 *            the other element to compare
-	 * @return true if the text of both elements is the same
+	 * @return true if the text of both elements is the same. Texts longer than
+	 *         {@link #MAX_TEXT_LENGTH} must also be the same in case.
 	 */
 	public boolean equalText(Element otherElement) {
-		return getText().equalsIgnoreCase(otherElement.getText());
+		if (!getText().equalsIgnoreCase(otherElement.getText())) {
+			return false;
+		}
+		return text.length() < MAX_TEXT_LENGTH || textDigest == otherElement.textDigest;
 	}
 
 	/**
@@ -108,12 +152,19 @@ public class Element implements Serializable {
 	}
 
 	/**
-	 * @return the text
+	 * @return the text, cut off after {@link #MAX_TEXT_LENGTH} characters.
 	 */
 	public String getText() {
 		return text;
 	}
 
+	/**
+	 * @return the hash of the full text.
+	 */
+	long getTextDigest() {
+		return textDigest;
+	}
+
 	/**
 	 * @param attribute
 	 *            the attribute name.
@@ -124,20 +175,40 @@ public class Element implements Serializable {
 	}
 
 	/**
-	 * @return The node.
+	 * @return The node, or <code>null</code> when its document was collected or the element was
+	 *         read back.
+	 * @deprecated The element no longer keeps its node alive. Use the tag, text and attributes of
+	 *             the element instead.
 	 */
+	@Deprecated
 	public Node getNode() {
-		return node;
+		return node == null ? null : node.get();
 	}
 
 	public ImmutableMap<String, String> getAttributes() {
 		return attributes;
 	}
 
+	/**
+	 * @param exclude
+	 *            The names of the attributes to leave out.
+	 * @return The attributes as <code>name=value</code> pairs separated by a space, like
+	 *         {@link DomUtils#getElementAttributes(org.w3c.dom.Element, ImmutableSet)}.
+	 */
+	public String attributesToString(ImmutableSet<String> exclude) {
+		StringBuilder buffer = new StringBuilder();
+		for (Entry<String, String> attribute : attributes.entrySet()) {
+			if (!exclude.contains(attribute.getKey())) {
+				buffer.append(attribute.getKey()).append('=').append(attribute.getValue())
+				        .append(' ');
+			}
+		}
+		return buffer.toString().trim();
+	}
+
 	@Override
 	public String toString() {
 		return Objects.toStringHelper(this)
-		        .add("node", node)
 		        .add("tag", tag)
 		        .add("text", text)
 		        .add("attributes", attributes)
@@ -146,16 +217,16 @@ public class Element implements Serializable {
 
 	@Override
 	public int hashCode() {
-		return Objects.hashCode(node.toString(), tag, text, attributes);
+		return Objects.hashCode(tag, text, textDigest, attributes);
 	}
 
 	@Override
 	public boolean equals(Object object) {
 		if (object instanceof Element) {
 			Element that = (Element) object;
-			return Objects.equal(this.node.toString(), that.node.toString())
-			        && Objects.equal(this.tag, that.tag)
+			return Objects.equal(this.tag, that.tag)
 			        && Objects.equal(this.text, that.text)
+			        && this.textDigest == that.textDigest
 			        && Objects.equal(this.attributes, that.attributes);
 		}
 		return false;
@@ -98,9 +98,7 @@ public class Eventable extends DefaultEdge implements Serializable {
 	 */
 	public Eventable(CandidateElement candidateElement, EventType eventType) {
 		this(candidateElement.getIdentification(), eventType);
-		if (candidateElement.getElement() != null) {
-			this.element = new Element(candidateElement.getElement());
-		}
+		this.element = candidateElement.getElementDescriptor();
 		this.relatedFormInputs = new CopyOnWriteArrayList<>(candidateElement.getFormInputs());
 		this.relatedFrame = candidateElement.getRelatedFrame();
 	}
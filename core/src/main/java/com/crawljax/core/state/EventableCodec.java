@@ -0,0 +1,161 @@
+package com.crawljax.core.state;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.crawljax.core.state.Eventable.EventType;
+import com.crawljax.forms.FormInput;
+import com.crawljax.forms.InputValue;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+
+/**
+ * Writes {@link Eventable}s and their parts in a compact binary form and reads them back. The
+ * source and target of an {@link Eventable} are not written: the caller knows where the edge
+ * belongs. Strings may be <code>null</code>.
+ */
+@Immutable
+public final class EventableCodec {
+
+	private EventableCodec() {
+	}
+
+	public static void writeEventable(DataOutput out, Eventable event) throws IOException {
+		out.writeLong(event.getId());
+		writeString(out, event.getEventType().name());
+		writeIdentification(out, event.getIdentification());
+		writeString(out, event.getRelatedFrame());
+		writeElement(out, event.getElement());
+		writeFormInputs(out, event.getRelatedFormInputs());
+	}
+
+	/**
+	 * @return The event without a source and a target.
+	 */
+	public static Eventable readEventable(DataInput in) throws IOException {
+		long id = in.readLong();
+		EventType eventType = EventType.valueOf(readString(in));
+		Identification identification = readIdentification(in);
+		Eventable event = new Eventable(identification, eventType, readString(in));
+		event.setId(id);
+		event.setElement(readElement(in));
+		event.setRelatedFormInputs(new CopyOnWriteArrayList<>(readFormInputs(in)));
+		return event;
+	}
+
+	/**
+	 * @param element
+	 *            The element or <code>null</code>.
+	 */
+	public static void writeElement(DataOutput out, Element element) throws IOException {
+		out.writeBoolean(element != null);
+		if (element == null) {
+			return;
+		}
+		writeString(out, element.getTag());
+		writeString(out, element.getText());
+		out.writeLong(element.getTextDigest());
+		out.writeInt(element.getAttributes().size());
+		for (Entry<String, String> attribute : element.getAttributes().entrySet()) {
+			writeString(out, attribute.getKey());
+			writeString(out, attribute.getValue());
+		}
+	}
+
+	public static Element readElement(DataInput in) throws IOException {
+		if (!in.readBoolean()) {
+			return null;
+		}
+		String tag = readString(in);
+		String text = readString(in);
+		long textDigest = in.readLong();
+		int size = in.readInt();
+		ImmutableMap.Builder<String, String> attributes = ImmutableMap.builder();
+		for (int i = 0; i < size; i++) {
+			attributes.put(readString(in), readString(in));
+		}
+		return new Element(tag, text, textDigest, attributes.build());
+	}
+
+	public static void writeIdentification(DataOutput out, Identification identification)
+	        throws IOException {
+		writeString(out, identification.getHow().name());
+		writeString(out, identification.getValue());
+	}
+
+	public static Identification readIdentification(DataInput in) throws IOException {
+		return new Identification(Identification.How.valueOf(readString(in)), readString(in));
+	}
+
+	public static void writeFormInputs(DataOutput out, Collection<FormInput> inputs)
+	        throws IOException {
+		out.writeInt(inputs.size());
+		for (FormInput input : inputs) {
+			writeString(out, input.getType());
+			writeIdentification(out, input.getIdentification());
+			out.writeBoolean(input.isMultiple());
+			out.writeInt(input.getInputValues().size());
+			for (InputValue value : input.getInputValues()) {
+				writeString(out, value.getValue());
+				out.writeBoolean(value.isChecked());
+			}
+		}
+	}
+
+	public static List<FormInput> readFormInputs(DataInput in) throws IOException {
+		int size = in.readInt();
+		if (size == 0) {
+			return ImmutableList.of();
+		}
+		List<FormInput> inputs = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			FormInput input = new FormInput();
+			input.setType(readString(in));
+			input.setIdentification(readIdentification(in));
+			input.setMultiple(in.readBoolean());
+			int values = in.readInt();
+			Set<InputValue> inputValues = Sets.newHashSetWithExpectedSize(values);
+			for (int j = 0; j < values; j++) {
+				inputValues.add(new InputValue(readString(in), in.readBoolean()));
+			}
+			input.setInputValues(inputValues);
+			inputs.add(input);
+		}
+		return inputs;
+	}
+
+	/**
+	 * Writes the string as its length followed by its UTF-8 bytes. Unlike
+	 * {@link DataOutput#writeUTF(String)} it has no limit on the length.
+	 */
+	public static void writeString(DataOutput out, String string) throws IOException {
+		if (string == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = string.getBytes(Charsets.UTF_8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+
+	public static String readString(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, Charsets.UTF_8);
+	}
+}
@@ -0,0 +1,75 @@
+package com.crawljax.core.state;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Keeps every DOM as the {@link String} it was given. This is the default {@link DomStore}.
+ */
+@ThreadSafe
+public class HeapDomStore implements DomStore {
+
+	/**
+	 * Used for states that are not created by a {@link StateVertexFactory}, so their DOMs are not
+	 * counted.
+	 */
+	static final HeapDomStore UNCOUNTED = new HeapDomStore();
+
+	private final AtomicInteger doms = new AtomicInteger();
+	private final AtomicLong bytes = new AtomicLong();
+
+	@Override
+	public StoredDom store(String dom) {
+		doms.incrementAndGet();
+		bytes.addAndGet(sizeOf(dom));
+		return new HeapDom(dom);
+	}
+
+	@Override
+	public int getNumberOfDoms() {
+		return doms.get();
+	}
+
+	@Override
+	public long getUncompressedBytes() {
+		return bytes.get();
+	}
+
+	@Override
+	public long getHeapBytes() {
+		return bytes.get();
+	}
+
+	@Override
+	public long getSpilledBytes() {
+		return 0;
+	}
+
+	@Override
+	public void close() {
+		// Nothing leaves the heap.
+	}
+
+	/**
+	 * @return The number of bytes taken by the characters of the DOM.
+	 */
+	static long sizeOf(String dom) {
+		return dom == null ? 0 : 2L * dom.length();
+	}
+
+	private static final class HeapDom implements StoredDom {
+
+		private final String dom;
+
+		HeapDom(String dom) {
+			this.dom = dom;
+		}
+
+		@Override
+		public String get() {
+			return dom;
+		}
+	}
+}
@@ -4,27 +4,21 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.crawljax.core.ExitNotifier;
+import com.google.common.hash.HashCode;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import org.apache.commons.math.stat.descriptive.moment.Mean;
 import org.jgrapht.DirectedGraph;
-import org.jgrapht.GraphPath;
 import org.jgrapht.alg.DijkstraShortestPath;
-import org.jgrapht.alg.KShortestPaths;
 import org.jgrapht.graph.DirectedMultigraph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +29,7 @@ import org.slf4j.LoggerFactory;
  */
 @Singleton
 @SuppressWarnings("serial")
-public class InMemoryStateFlowGraph implements Serializable, StateFlowGraph {
+public class InMemoryStateFlowGraph extends AbstractStateFlowGraph {
 
 	private static final Logger LOG = LoggerFactory.getLogger(InMemoryStateFlowGraph.class
 	        .getName());
@@ -44,15 +38,14 @@ public class InMemoryStateFlowGraph implements Serializable, StateFlowGraph {
 	private final Lock readLock;
 	private final Lock writeLock;
 
+	private final ConcurrentMap<Integer, StateVertex> stateById;
+	private final ShortestPathTree<Eventable> shortestPaths;
+
 	/**
-	 * Intermediate counter for the number of states, not relaying on getAllStates.size() because of
-	 * Thread-safety.
+	 * The states by the fingerprint of their stripped DOM. Only used when the
+	 * {@link StateVertexFactory#comparesStrippedDom()}.
 	 */
-	private final AtomicInteger stateCounter = new AtomicInteger();
-	private final AtomicInteger nextStateNameCounter = new AtomicInteger();
-	private final ConcurrentMap<Integer, StateVertex> stateById;
-	private final ExitNotifier exitNotifier;
-	private final StateVertexFactory vertexFactory;
+	private final ConcurrentMap<HashCode, StateVertex> stateByFingerprint;
 
 	/**
 	 * The constructor.
@@ -62,63 +55,56 @@ public class InMemoryStateFlowGraph implements Serializable, StateFlowGraph {
 	 */
 	@Inject
 	public InMemoryStateFlowGraph(ExitNotifier exitNotifier, StateVertexFactory vertexFactory) {
-		this.exitNotifier = exitNotifier;
-		this.vertexFactory = vertexFactory;
+		super(exitNotifier, vertexFactory);
 		sfg = new DirectedMultigraph<>(Eventable.class);
 		stateById = Maps.newConcurrentMap();
+		shortestPaths = new ShortestPathTree<>(new GraphEdges(sfg, stateById));
+		stateByFingerprint = Maps.newConcurrentMap();
 		LOG.debug("Initialized the stateflowgraph");
 		ReadWriteLock lock = new ReentrantReadWriteLock();
 		readLock = lock.readLock();
 		writeLock = lock.writeLock();
 	}
 
-	/**
-	 * Adds a state (as a vertix) to the State-Flow Graph if not already present. More formally,
-	 * adds the specified vertex, v, to this graph if this graph contains no vertex u such that
-	 * u.equals(v). If this graph already contains such vertex, the call leaves this graph unchanged
-	 * and returns false. In combination with the restriction on constructors, this ensures that
-	 * graphs never contain duplicate vertices. Throws java.lang.NullPointerException - if the
-	 * specified vertex is null. This method automatically updates the state name to reflect the
-	 * internal state counter.
-	 * 
-	 * @param stateVertix
-	 *            the state to be added.
-	 * @return the clone if one is detected null otherwise.
-	 * @see org.jgrapht.Graph#addVertex(Object)
-	 */
-	public StateVertex putIfAbsent(StateVertex stateVertix) {
-		return putIfAbsent(stateVertix, true);
-	}
-
+	@Override
 	public StateVertex putIndex(StateVertex index) {
-		return putIfAbsent(index, false);
+		writeLock.lock();
+		try {
+			StateVertex clone = putIfAbsent(index, false);
+			if (clone == null) {
+				shortestPaths.setRoot(index.getId());
+			}
+			return clone;
+		} finally {
+			writeLock.unlock();
+		}
 	}
 
-	/**
-	 * Adds a state (as a vertix) to the State-Flow Graph if not already present. More formally,
-	 * adds the specified vertex, v, to this graph if this graph contains no vertex u such that
-	 * u.equals(v). If this graph already contains such vertex, the call leaves this graph unchanged
-	 * and returns false. In combination with the restriction on constructors, this ensures that
-	 * graphs never contain duplicate vertices. Throws java.lang.NullPointerException - if the
-	 * specified vertex is null.
-	 * 
-	 * @param stateVertix
-	 *            the state to be added.
-	 * @param correctName
-	 *            if true the name of the state will be corrected according to the internal state
-	 *            counter.
-	 * @return the clone if one is detected <code>null</code> otherwise.
-	 * @see org.jgrapht.Graph#addVertex(Object)
-	 */
-	private StateVertex putIfAbsent(StateVertex stateVertix, boolean correctName) {
+	@Override
+	StateVertex putIfAbsent(StateVertex stateVertix, boolean correctName) {
 		writeLock.lock();
 		try {
+			HashCode fingerprint = null;
+			if (isFingerprinting()) {
+				fingerprint = fingerprintOf(stateVertix);
+				StateVertex known = stateByFingerprint.get(fingerprint);
+				if (known != null && known.equals(stateVertix)) {
+					LOG.debug("Graph already contained vertex {}", stateVertix);
+					return known;
+				}
+			}
+			StateVertex similar = findSimilar(stateVertix);
+			if (similar != null) {
+				LOG.debug("Graph already contained a vertex similar to {}", stateVertix);
+				return similar;
+			}
 			boolean added = sfg.addVertex(stateVertix);
 			if (added) {
 				stateById.put(stateVertix.getId(), stateVertix);
-				int count = stateCounter.incrementAndGet();
-				exitNotifier.incrementNumberOfStates();
-				LOG.debug("Number of states is now {}", count);
+				if (fingerprint != null) {
+					stateByFingerprint.putIfAbsent(fingerprint, stateVertix);
+				}
+				stateAdded(stateVertix);
 				return null;
 			} else {
 				// Graph already contained the vertex
@@ -140,32 +126,19 @@ public class InMemoryStateFlowGraph implements Serializable, StateFlowGraph {
 		return stateById.get(StateVertex.INDEX_ID);
 	}
 
-	/**
-	 * Adds the specified edge to this graph, going from the source vertex to the target vertex.
-	 * More formally, adds the specified edge, e, to this graph if this graph contains no edge e2
-	 * such that e2.equals(e). If this graph already contains such an edge, the call leaves this
-	 * graph unchanged and returns false. Some graphs do not allow edge-multiplicity. In such cases,
-	 * if the graph already contains an edge from the specified source to the specified target, than
-	 * this method does not change the graph and returns false. If the edge was added to the graph,
-	 * returns true. The source and target vertices must already be contained in this graph. If they
-	 * are not found in graph IllegalArgumentException is thrown.
-	 * 
-	 * @param sourceVert
-	 *            source vertex of the edge.
-	 * @param targetVert
-	 *            target vertex of the edge.
-	 * @param clickable
-	 *            the clickable edge to be added to this graph.
-	 * @return true if this graph did not already contain the specified edge.
-	 * @see org.jgrapht.Graph#addEdge(Object, Object, Object)
-	 */
+	@Override
 	public boolean addEdge(StateVertex sourceVert, StateVertex targetVert,
 	        Eventable clickable) {
 		clickable.setSource(sourceVert);
 		clickable.setTarget(targetVert);
 		writeLock.lock();
 		try {
-			return sfg.addEdge(sourceVert, targetVert, clickable);
+			boolean added = sfg.addEdge(sourceVert, targetVert, clickable);
+			if (added) {
+				shortestPaths.edgeAdded(sourceVert.getId(), targetVert.getId(), clickable);
+				edgeAdded(clickable);
+			}
+			return added;
 		} finally {
 			writeLock.unlock();
 		}
@@ -211,11 +184,24 @@ public class InMemoryStateFlowGraph implements Serializable, StateFlowGraph {
 		}
 	}
 
+	/**
+	 * Paths from the index are looked up in a {@link ShortestPathTree} that is kept up to date
+	 * while edges are added. Paths from other states are calculated using Dijkstra.
+	 */
 	@Override
 	public ImmutableList<Eventable> getShortestPath(StateVertex start, StateVertex end) {
 		readLock.lock();
 		try {
-			return ImmutableList.copyOf(DijkstraShortestPath.findPathBetween(sfg, start, end));
+			if (shortestPaths.isRoot(start.getId())) {
+				ImmutableList<Eventable> path = shortestPaths.pathTo(end.getId());
+				if (path != null) {
+					return path;
+				}
+			}
+			List<Eventable> path = DijkstraShortestPath.findPathBetween(sfg, start, end);
+			Preconditions.checkArgument(path != null, "%s can not be reached from %s", end,
+			        start);
+			return ImmutableList.copyOf(path);
 		} finally {
 			readLock.unlock();
 		}
@@ -271,90 +257,47 @@ public class InMemoryStateFlowGraph implements Serializable, StateFlowGraph {
 		}
 	}
 
+	/**
+	 * @return The state with the given fingerprint or <code>null</code> if there is none.
+	 */
 	@Override
-	public int getNumberOfStates() {
-		return stateCounter.get();
-	}
-
-	StateVertex newStateFor(String url, String dom, String strippedDom) {
-		int id = nextStateNameCounter.incrementAndGet();
-		return vertexFactory.newStateVertex(id, url, getNewStateName(id), dom, strippedDom);
-	}
-
-	private String getNewStateName(int id) {
-		return "state" + id;
+	StateVertex knownState(HashCode fingerprint) {
+		return stateByFingerprint.get(fingerprint);
 	}
 
 	@Override
-	public List<List<GraphPath<StateVertex, Eventable>>> getAllPossiblePaths(StateVertex index) {
-		final List<List<GraphPath<StateVertex, Eventable>>> results = Lists.newArrayList();
-
-		final KShortestPaths<StateVertex, Eventable> kPaths =
-		        new KShortestPaths<>(this.sfg, index, Integer.MAX_VALUE);
-
-		for (StateVertex state : getDeepStates(index)) {
-			List<GraphPath<StateVertex, Eventable>> paths = kPaths.getPaths(state);
-			results.add(paths);
-		}
-
-		return results;
+	DirectedGraph<StateVertex, Eventable> graphForPaths() {
+		return sfg;
 	}
 
 	/**
-	 * @param state
-	 *            The starting state.
-	 * @return A list of the deepest states (states with no outgoing edges).
+	 * The edges of the graph as the {@link ShortestPathTree} sees them.
 	 */
-	private List<StateVertex> getDeepStates(StateVertex state) {
-		final List<StateVertex> deepStates = new ArrayList<StateVertex>();
-
-		traverse(Sets.<String> newHashSet(), deepStates, state);
+	private static final class GraphEdges implements ShortestPathTree.Edges<Eventable>,
+	        Serializable {
 
-		return deepStates;
-	}
+		private final DirectedGraph<StateVertex, Eventable> sfg;
+		private final ConcurrentMap<Integer, StateVertex> stateById;
 
-	private void traverse(Set<String> visitedStates, List<StateVertex> deepStates,
-	        StateVertex state) {
-		visitedStates.add(state.getName());
-
-		Set<StateVertex> outgoingSet = getOutgoingStates(state);
-
-		if ((outgoingSet == null) || outgoingSet.isEmpty()) {
-			deepStates.add(state);
-		} else {
-			if (cyclic(visitedStates, outgoingSet)) {
-				deepStates.add(state);
-			} else {
-				for (StateVertex st : outgoingSet) {
-					if (!visitedStates.contains(st.getName())) {
-						traverse(visitedStates, deepStates, st);
-					}
-				}
-			}
+		GraphEdges(DirectedGraph<StateVertex, Eventable> sfg,
+		        ConcurrentMap<Integer, StateVertex> stateById) {
+			this.sfg = sfg;
+			this.stateById = stateById;
 		}
-	}
-
-	private boolean cyclic(Set<String> visitedStates, Set<StateVertex> outgoingSet) {
-		int i = 0;
 
-		for (StateVertex state : outgoingSet) {
-			if (visitedStates.contains(state.getName())) {
-				i++;
-			}
+		@Override
+		public Iterable<Eventable> outgoingEdgesOf(int state) {
+			return sfg.outgoingEdgesOf(stateById.get(state));
 		}
 
-		return i == outgoingSet.size();
-	}
-
-	@Override
-	public ImmutableSet<StateVertex> getOutgoingStates(StateVertex stateVertix) {
-		final Set<StateVertex> result = new HashSet<>();
-
-		for (Eventable c : getOutgoingClickables(stateVertix)) {
-			result.add(sfg.getEdgeTarget(c));
+		@Override
+		public int sourceOf(Eventable edge) {
+			return sfg.getEdgeSource(edge).getId();
 		}
 
-		return ImmutableSet.copyOf(result);
+		@Override
+		public int targetOf(Eventable edge) {
+			return sfg.getEdgeTarget(edge).getId();
+		}
 	}
-
 }
@@ -0,0 +1,114 @@
+package com.crawljax.core.state;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.crawljax.util.MinHash;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+
+/**
+ * A {@link SimilarStateIndex} that uses locality sensitive hashing over {@link MinHash} signatures.
+ * A signature is cut in bands and states that share at least one band are compared by their
+ * signatures. The number of bands is chosen so that states above the threshold almost always share
+ * a band, so only a handful of states are compared no matter how large the graph is.
+ */
+@NotThreadSafe
+class LshStateIndex implements SimilarStateIndex {
+
+	private static final Logger LOG = LoggerFactory.getLogger(LshStateIndex.class);
+
+	private final double threshold;
+	private final int rows;
+	private final List<ListMultimap<Integer, StateVertex>> bands;
+	private final Map<StateVertex, int[]> signatures = Maps.newIdentityHashMap();
+
+	/**
+	 * @param threshold
+	 *            The similarity between 0 and 1 above which two states are the same.
+	 */
+	LshStateIndex(double threshold) {
+		Preconditions.checkArgument(threshold > 0 && threshold <= 1,
+		        "The threshold should be between 0 and 1");
+		this.threshold = threshold;
+		this.rows = rowsPerBand(threshold);
+		int numberOfBands = MinHash.SIGNATURE_SIZE / rows;
+		this.bands = new ArrayList<>(numberOfBands);
+		for (int i = 0; i < numberOfBands; i++) {
+			bands.add(ArrayListMultimap.<Integer, StateVertex> create());
+		}
+		LOG.debug("Using {} bands of {} rows for threshold {}", numberOfBands, rows, threshold);
+	}
+
+	/**
+	 * Two states with similarity s share a band with probability 1 - (1 - s^r)^b, which rises
+	 * steeply around (1/b)^(1/r). The largest number of rows for which that point is still below
+	 * the threshold is used, so similar states are found and few others are compared.
+	 */
+	static int rowsPerBand(double threshold) {
+		int best = 1;
+		for (int r = 1; r <= MinHash.SIGNATURE_SIZE; r *= 2) {
+			int b = MinHash.SIGNATURE_SIZE / r;
+			if (Math.pow(1.0 / b, 1.0 / r) <= threshold) {
+				best = r;
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public StateVertex findSimilar(StateVertex state) {
+		int[] signature = signatureOf(state);
+		StateVertex best = null;
+		double bestSimilarity = threshold;
+		for (int band = 0; band < bands.size(); band++) {
+			for (StateVertex candidate : bands.get(band).get(bandHash(signature, band))) {
+				double similarity = MinHash.similarity(signature, signatures.get(candidate));
+				if (similarity >= bestSimilarity) {
+					best = candidate;
+					bestSimilarity = similarity;
+				}
+			}
+		}
+		if (best != null) {
+			LOG.debug("State {} is {} similar to {}", state.getName(), bestSimilarity,
+			        best.getName());
+			// The state is not added, so its signature is not needed anymore.
+			signatures.remove(state);
+		}
+		return best;
+	}
+
+	@Override
+	public void add(StateVertex state) {
+		int[] signature = signatureOf(state);
+		for (int band = 0; band < bands.size(); band++) {
+			bands.get(band).put(bandHash(signature, band), state);
+		}
+	}
+
+	private int[] signatureOf(StateVertex state) {
+		int[] signature = signatures.get(state);
+		if (signature == null) {
+			signature = MinHash.signatureOf(state.getStrippedDom());
+			signatures.put(state, signature);
+		}
+		return signature;
+	}
+
+	private int bandHash(int[] signature, int band) {
+		int hash = 1;
+		for (int i = band * rows; i < (band + 1) * rows; i++) {
+			hash = 31 * hash + signature[i];
+		}
+		return hash;
+	}
+}
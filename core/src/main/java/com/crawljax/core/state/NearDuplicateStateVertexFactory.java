@@ -0,0 +1,46 @@
+package com.crawljax.core.state;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@link StateVertexFactory} that treats a new state as a known state when their stripped DOMs
+ * are near duplicates. The similarity is the estimated Jaccard similarity of the runs of tokens in
+ * both DOMs, see {@link com.crawljax.util.MinHash}. Unlike the
+ * {@link com.crawljax.oraclecomparator.comparators.EditDistanceComparator} the time to find a
+ * similar state does not grow with the size of the DOMs or the number of states.
+ */
+public class NearDuplicateStateVertexFactory extends StateVertexFactory {
+
+	private final double threshold;
+
+	/**
+	 * @param threshold
+	 *            The similarity between 0 and 1 above which two states are the same. 1 only merges
+	 *            states whose DOMs have the same shingles.
+	 */
+	public NearDuplicateStateVertexFactory(double threshold) {
+		Preconditions.checkArgument(threshold > 0 && threshold <= 1,
+		        "The threshold should be between 0 and 1");
+		this.threshold = threshold;
+	}
+
+	@Override
+	public StateVertex newStateVertex(int id, String url, String name, String dom,
+	        String strippedDom) {
+		return new StateVertexImpl(id, url, name, dom, strippedDom, getDomStore());
+	}
+
+	@Override
+	public SimilarStateIndex newSimilarStateIndex() {
+		return new LshStateIndex(threshold);
+	}
+
+	public double getThreshold() {
+		return threshold;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + threshold + ")";
+	}
+}
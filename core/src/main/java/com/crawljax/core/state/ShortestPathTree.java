@@ -0,0 +1,211 @@
+package com.crawljax.core.state;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Queue;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+/**
+ * A breadth first shortest path tree from the index of a {@link StateFlowGraph}. The tree is
+ * updated every time an edge is added so the shortest path from the index to any state can be
+ * looked up in the time it takes to walk that path.
+ * <p>
+ * Edges are never removed from the graph, so distances to the root can only go down. When an edge
+ * gives a state a shorter distance, the states that can be reached from it are updated as well.
+ * </p>
+ * <p>
+ * States are known by their id, so the tree only keeps an int and an edge per state. The edges
+ * can be anything the graph can look up, like the {@link Eventable} itself or a number.
+ * </p>
+ * This class is not thread safe. The graphs guard it with their lock.
+ *
+ * @param <E>
+ *            The type of the edges.
+ */
+@NotThreadSafe
+@SuppressWarnings("serial")
+class ShortestPathTree<E> implements Serializable {
+
+	/**
+	 * The edges of a graph as the tree sees them.
+	 */
+	interface Edges<E> {
+
+		/**
+		 * @return The edges that leave the state with the given id.
+		 */
+		Iterable<E> outgoingEdgesOf(int state);
+
+		/**
+		 * @return The id of the state the edge leaves.
+		 */
+		int sourceOf(E edge);
+
+		/**
+		 * @return The id of the state the edge goes to.
+		 */
+		int targetOf(E edge);
+	}
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final Edges<E> graph;
+
+	/**
+	 * The distance of every state to the root, or -1 if it can't be reached, and the edge it is
+	 * reached through. Indexed by state id.
+	 */
+	private int[] depths = newDepths(INITIAL_CAPACITY);
+	private Object[] parents = new Object[INITIAL_CAPACITY];
+	private int root = -1;
+
+	ShortestPathTree(Edges<E> graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * @param index
+	 *            The id of the root of the tree. This should be called before any edges are
+	 *            added.
+	 */
+	void setRoot(int index) {
+		ensureCapacity(index);
+		root = index;
+		depths[index] = 0;
+	}
+
+	/**
+	 * @param state
+	 *            The id of a state.
+	 * @return <code>true</code> if the state is the root of this tree.
+	 */
+	boolean isRoot(int state) {
+		return root >= 0 && root == state;
+	}
+
+	/**
+	 * Updates the tree after the edge was added to the graph.
+	 *
+	 * @param source
+	 *            The id of the source of the new edge.
+	 * @param target
+	 *            The id of the target of the new edge.
+	 * @param edge
+	 *            The new edge.
+	 */
+	void edgeAdded(int source, int target, E edge) {
+		if (depthOf(source) < 0 || !improves(source, target)) {
+			return;
+		}
+		reach(target, depths[source] + 1, edge);
+		Queue<Integer> improved = new ArrayDeque<>();
+		improved.add(target);
+		while (!improved.isEmpty()) {
+			int state = improved.poll();
+			for (E outgoing : graph.outgoingEdgesOf(state)) {
+				int next = graph.targetOf(outgoing);
+				if (improves(state, next)) {
+					reach(next, depths[state] + 1, outgoing);
+					improved.add(next);
+				}
+			}
+		}
+	}
+
+	private int depthOf(int state) {
+		return state < depths.length ? depths[state] : -1;
+	}
+
+	private boolean improves(int from, int target) {
+		int current = depthOf(target);
+		return current < 0 || depths[from] + 1 < current;
+	}
+
+	private void reach(int state, int depth, E parent) {
+		ensureCapacity(state);
+		depths[state] = depth;
+		parents[state] = parent;
+	}
+
+	/**
+	 * @param target
+	 *            The id of the state to find the path to.
+	 * @return The shortest path from the root to the target, or <code>null</code> if the target
+	 *         cannot be reached from the root.
+	 */
+	ImmutableList<E> pathTo(int target) {
+		int depth = depthOf(target);
+		if (depth < 0) {
+			return null;
+		}
+		@SuppressWarnings("unchecked")
+		E[] path = (E[]) new Object[depth];
+		for (int i = path.length - 1, state = target; i >= 0; i--) {
+			@SuppressWarnings("unchecked")
+			E parent = (E) parents[state];
+			path[i] = parent;
+			state = graph.sourceOf(parent);
+		}
+		return ImmutableList.copyOf(path);
+	}
+
+	/**
+	 * Finds a shortest path between two states that are not the root of a tree.
+	 *
+	 * @return The edges on a shortest path from one state to the other, or <code>null</code> if
+	 *         there is no path.
+	 */
+	static <E> ImmutableList<E> breadthFirstPath(Edges<E> graph, int from, int to) {
+		Map<Integer, E> reachedBy = Maps.newHashMap();
+		BitSet visited = new BitSet();
+		visited.set(from);
+		Queue<Integer> queue = new ArrayDeque<>();
+		queue.add(from);
+		while (!queue.isEmpty() && !visited.get(to)) {
+			int state = queue.poll();
+			for (E edge : graph.outgoingEdgesOf(state)) {
+				int next = graph.targetOf(edge);
+				if (!visited.get(next)) {
+					visited.set(next);
+					reachedBy.put(next, edge);
+					queue.add(next);
+				}
+			}
+		}
+		if (!visited.get(to)) {
+			return null;
+		}
+		Deque<E> path = new ArrayDeque<>();
+		for (int state = to; state != from;) {
+			E edge = reachedBy.get(state);
+			path.addFirst(edge);
+			state = graph.sourceOf(edge);
+		}
+		return ImmutableList.copyOf(path);
+	}
+
+	private void ensureCapacity(int state) {
+		if (state < depths.length) {
+			return;
+		}
+		int capacity = Math.max(state + 1, depths.length * 2);
+		int oldCapacity = depths.length;
+		depths = Arrays.copyOf(depths, capacity);
+		Arrays.fill(depths, oldCapacity, capacity, -1);
+		parents = Arrays.copyOf(parents, capacity);
+	}
+
+	private static int[] newDepths(int capacity) {
+		int[] depths = new int[capacity];
+		Arrays.fill(depths, -1);
+		return depths;
+	}
+}
@@ -0,0 +1,28 @@
+package com.crawljax.core.state;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * Finds a known state that is similar enough to a new state to be treated as the same state, even
+ * though their stripped DOMs are not equal. The {@link AbstractStateFlowGraph} asks the index for
+ * a similar state before it adds a new one and only calls it while holding its write lock.
+ * 
+ * @see StateVertexFactory#newSimilarStateIndex()
+ */
+@NotThreadSafe
+public interface SimilarStateIndex {
+
+	/**
+	 * @param state
+	 *            The new state.
+	 * @return The known state that is similar to the new state or <code>null</code> if there is
+	 *         none.
+	 */
+	StateVertex findSimilar(StateVertex state);
+
+	/**
+	 * @param state
+	 *            A state that was added to the graph.
+	 */
+	void add(StateVertex state);
+}
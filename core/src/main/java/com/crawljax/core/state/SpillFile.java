@@ -0,0 +1,131 @@
+package com.crawljax.core.state;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.List;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.crawljax.core.CrawljaxException;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * An append-only file that is mapped in memory in segments. Records are never split over two
+ * segments, so reading one is a copy out of a single mapping. The operating system decides which
+ * parts of the file stay in memory. The file is deleted when it is {@link #close() closed}.
+ */
+@ThreadSafe
+class SpillFile {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SpillFile.class);
+
+	private final File file;
+	private final FileChannel channel;
+	private final int segmentSize;
+	private final List<MappedByteBuffer> segments = Lists.newCopyOnWriteArrayList();
+	private long end;
+	private volatile boolean closed;
+
+	/**
+	 * @param file
+	 *            The file to write to. It is deleted when this is closed.
+	 * @param segmentSize
+	 *            The number of bytes that is mapped at once. Also the largest record.
+	 */
+	SpillFile(File file, int segmentSize) {
+		this.file = file;
+		this.segmentSize = segmentSize;
+		try {
+			this.channel = new RandomAccessFile(file, "rw").getChannel();
+		} catch (IOException e) {
+			throw new CrawljaxException("Could not open spill file " + file, e);
+		}
+	}
+
+	/**
+	 * @return The position of the record in the file.
+	 */
+	synchronized long append(byte[] record) {
+		Preconditions.checkArgument(record.length <= segmentSize,
+		        "A record of %s bytes does not fit in a segment", record.length);
+		checkOpen();
+		if (end % segmentSize + record.length > segmentSize) {
+			end = (end / segmentSize + 1) * segmentSize;
+		}
+		long position = end;
+		ByteBuffer segment = segmentFor(position).duplicate();
+		segment.position((int) (position % segmentSize));
+		segment.put(record);
+		end += record.length;
+		return position;
+	}
+
+	byte[] read(long position, int length) {
+		checkOpen();
+		ByteBuffer segment = segments.get((int) (position / segmentSize)).duplicate();
+		segment.position((int) (position % segmentSize));
+		byte[] record = new byte[length];
+		segment.get(record);
+		return record;
+	}
+
+	/**
+	 * @return The number of bytes in use, including the unused ends of segments.
+	 */
+	synchronized long size() {
+		return end;
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	/**
+	 * Closes and deletes the file. The mappings are released once they are garbage collected.
+	 * Records can not be read after this.
+	 */
+	synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		segments.clear();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			throw new CrawljaxException("Could not close spill file " + file, e);
+		} finally {
+			if (!file.delete()) {
+				LOG.warn("Could not delete spill file {}", file);
+			}
+		}
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new CrawljaxException("Spill file " + file + " is closed");
+		}
+	}
+
+	private MappedByteBuffer segmentFor(long position) {
+		int index = (int) (position / segmentSize);
+		while (segments.size() <= index) {
+			try {
+				segments.add(channel.map(MapMode.READ_WRITE, (long) segments.size()
+				        * segmentSize, segmentSize));
+			} catch (IOException e) {
+				throw new CrawljaxException("Could not grow spill file " + file, e);
+			}
+		}
+		return segments.get(index);
+	}
+}
@@ -63,6 +63,8 @@ public interface StateFlowGraph {
 	 * @param end
 	 *            the end state.
 	 * @return a list of shortest path of clickables from the state to the end
+	 * @throws IllegalArgumentException
+	 *             if a state is not in the graph or the end can't be reached from the start.
 	 */
 	ImmutableList<Eventable> getShortestPath(StateVertex start, StateVertex end);
 
@@ -107,4 +109,13 @@ public interface StateFlowGraph {
 	 */
 	ImmutableSet<StateVertex> getOutgoingStates(StateVertex stateVertix);
 
+	/**
+	 * Releases the files the graph keeps its states and edges in. Only the states and edges that
+	 * are still in memory can be read after this. Does nothing for a graph that is kept in
+	 * memory.
+	 * 
+	 * @see com.crawljax.core.CrawlSession#close()
+	 */
+	void close();
+
 }
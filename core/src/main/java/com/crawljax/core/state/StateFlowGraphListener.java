@@ -0,0 +1,22 @@
+package com.crawljax.core.state;
+
+/**
+ * Is told about the states and edges that are added to an {@link AbstractStateFlowGraph}. It is
+ * called while the graph is locked, so it should return quickly.
+ * 
+ * @see AbstractStateFlowGraph#addListener(StateFlowGraphListener)
+ */
+public interface StateFlowGraphListener {
+
+	/**
+	 * @param state
+	 *            The state that was added.
+	 */
+	void stateAdded(StateVertex state);
+
+	/**
+	 * @param edge
+	 *            The edge that was added, with its source and target set.
+	 */
+	void edgeAdded(Eventable edge);
+}
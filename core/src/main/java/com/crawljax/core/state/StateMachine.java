@@ -3,6 +3,7 @@ package com.crawljax.core.state;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.MetricRegistry;
 import com.crawljax.browser.EmbeddedBrowser;
 import com.crawljax.condition.ConditionTypeChecker;
 import com.crawljax.condition.invariant.Invariant;
@@ -18,7 +19,7 @@ public class StateMachine {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(StateMachine.class.getName());
 
-	private final InMemoryStateFlowGraph stateFlowGraph;
+	private final AbstractStateFlowGraph stateFlowGraph;
 
 	private final StateVertex initialState;
 
@@ -33,15 +34,21 @@ public class StateMachine {
 
 	private final StateComparator stateComparator;
 
-	public StateMachine(InMemoryStateFlowGraph sfg,
+	public StateMachine(AbstractStateFlowGraph sfg,
 	        ImmutableList<Invariant> invariantList, Plugins plugins,
 	        StateComparator stateComparator) {
+		this(sfg, invariantList, plugins, stateComparator, new MetricRegistry());
+	}
+
+	public StateMachine(AbstractStateFlowGraph sfg,
+	        ImmutableList<Invariant> invariantList, Plugins plugins,
+	        StateComparator stateComparator, MetricRegistry registry) {
 		stateFlowGraph = sfg;
 		this.initialState = sfg.getInitialState();
 		this.plugins = plugins;
 		this.stateComparator = stateComparator;
 		currentState = initialState;
-		invariantChecker = new ConditionTypeChecker<>(invariantList);
+		invariantChecker = new ConditionTypeChecker<>(invariantList, registry);
 	}
 
 	public StateVertex newStateFor(EmbeddedBrowser browser) {
@@ -1,5 +1,7 @@
 package com.crawljax.core.state;
 
+import javax.inject.Inject;
+
 /**
  * A factory that creates a {@link com.crawljax.core.state.StateVertex}. This factory can be implemented
  * if you want to use custom states that use a different {@link Object#hashCode()} or {@link Object#equals(Object)}
@@ -7,6 +9,8 @@ package com.crawljax.core.state;
  */
 public abstract class StateVertexFactory {
 
+	private DomStore domStore = new HeapDomStore();
+
 	/**
 	 * Defines a State.
 	 *
@@ -17,6 +21,46 @@ public abstract class StateVertexFactory {
 	 */
 	public abstract StateVertex newStateVertex(int id, String url, String name, String dom, String strippedDom);
 
+	/**
+	 * Override this method to return <code>true</code> if two states are equal exactly when their
+	 * stripped DOMs are equal. The {@link AbstractStateFlowGraph} can then find a known state by a
+	 * hash of its stripped DOM instead of comparing it to every state in the graph.
+	 *
+	 * @return <code>false</code> by default.
+	 */
+	public boolean comparesStrippedDom() {
+		return false;
+	}
+
+	/**
+	 * Override this method to merge states that are not equal but similar enough. A new index is
+	 * created for every {@link AbstractStateFlowGraph}.
+	 *
+	 * @return The index of similar states or <code>null</code> if states are only merged when they
+	 *         are equal, which is the default.
+	 */
+	public SimilarStateIndex newSimilarStateIndex() {
+		return null;
+	}
+
+
+	/**
+	 * @return The store for the DOMs of new states. The DOMs are kept on the heap as they are,
+	 *         unless another store is configured.
+	 * @see com.crawljax.core.configuration.CrawljaxConfiguration.CrawljaxConfigurationBuilder#setDomStore(DomStore)
+	 */
+	public DomStore getDomStore() {
+		return domStore;
+	}
+
+	/**
+	 * @param domStore
+	 *            The store for the DOMs of new states. Set by Crawljax when the crawl starts.
+	 */
+	@Inject
+	public void setDomStore(DomStore domStore) {
+		this.domStore = domStore;
+	}
 
 	/**
 	 * @return The index {@link StateVertex}.
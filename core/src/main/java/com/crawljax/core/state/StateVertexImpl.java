@@ -1,31 +1,49 @@
 package com.crawljax.core.state;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.LinkedList;
 
 import com.crawljax.core.CandidateElement;
+import com.crawljax.core.state.DomStore.StoredDom;
 import com.crawljax.util.DomUtils;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 import org.w3c.dom.Document;
 
 /**
  * The state vertex class which represents a state in the browser. When iterating over the possible
  * candidate elements every time a candidate is returned its removed from the list so it is a one
  * time only access to the candidates.
+ * <p>
+ * The DOMs are kept by a {@link DomStore} and are only as expensive to get as the store makes
+ * them. Equality is decided on the hash of the stripped DOM first, so most comparisons don't need
+ * the DOM at all.
+ * </p>
  */
 class StateVertexImpl implements StateVertex {
 
-	private static final long serialVersionUID = 123400017983488L;
+	private static final long serialVersionUID = 123400017983489L;
+
+	private static final HashFunction FINGERPRINT = Hashing.murmur3_128();
 
 	private final int id;
-	private final String dom;
-	private final String strippedDom;
+	private transient StoredDom dom;
+	private transient StoredDom strippedDom;
+	private final int hashCode;
 	private final String url;
 	private String name;
 
-	private ImmutableList<CandidateElement> candidateElements;
+	/**
+	 * Not serialized, so a state that is written to disk and read back has no candidate elements.
+	 */
+	private transient ImmutableList<CandidateElement> candidateElements;
+	private transient HashCode fingerprint;
 
 	/**
 	 * Creates a current state without an url and the stripped dom equals the dom.
@@ -53,11 +71,24 @@ class StateVertexImpl implements StateVertex {
 	 *            the stripped dom by the OracleComparators
 	 */
 	public StateVertexImpl(int id, String url, String name, String dom, String strippedDom) {
+		this(id, url, name, dom, strippedDom, HeapDomStore.UNCOUNTED);
+	}
+
+	/**
+	 * Defines a State of which the DOMs are kept in the given store.
+	 * 
+	 * @param store
+	 *            the store for the DOMs.
+	 */
+	StateVertexImpl(int id, String url, String name, String dom, String strippedDom,
+	        DomStore store) {
 		this.id = id;
 		this.url = url;
 		this.name = name;
-		this.dom = dom;
-		this.strippedDom = strippedDom;
+		this.hashCode = Objects.hashCode(strippedDom);
+		this.dom = store.store(dom);
+		this.strippedDom =
+		        Objects.equal(dom, strippedDom) ? this.dom : store.store(strippedDom);
 	}
 
 	@Override
@@ -67,12 +98,12 @@ class StateVertexImpl implements StateVertex {
 
 	@Override
 	public String getDom() {
-		return dom;
+		return dom.get();
 	}
 
 	@Override
 	public String getStrippedDom() {
-		return strippedDom;
+		return strippedDom.get();
 	}
 
 	@Override
@@ -82,14 +113,17 @@ class StateVertexImpl implements StateVertex {
 
 	@Override
 	public int hashCode() {
-		return Objects.hashCode(strippedDom);
+		return hashCode;
 	}
 
 	@Override
 	public boolean equals(Object object) {
+		if (object instanceof StateVertexImpl && hashCode != object.hashCode()) {
+			return false;
+		}
 		if (object instanceof StateVertex) {
 			StateVertex that = (StateVertex) object;
-			return Objects.equal(this.strippedDom, that.getStrippedDom());
+			return Objects.equal(this.getStrippedDom(), that.getStrippedDom());
 		}
 		return false;
 	}
@@ -102,6 +136,29 @@ class StateVertexImpl implements StateVertex {
 		        .toString();
 	}
 
+	/**
+	 * @return A 128-bit hash of the stripped DOM. It is computed once per state.
+	 */
+	HashCode getFingerprint() {
+		if (fingerprint == null) {
+			fingerprint = fingerprintOf(getStrippedDom());
+		}
+		return fingerprint;
+	}
+
+	void setFingerprint(HashCode fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * @param strippedDom
+	 *            The stripped DOM of a state.
+	 * @return A 128-bit hash of the stripped DOM.
+	 */
+	static HashCode fingerprintOf(String strippedDom) {
+		return FINGERPRINT.hashUnencodedChars(strippedDom);
+	}
+
 	@Override
 	public int getId() {
 		return id;
@@ -109,7 +166,7 @@ class StateVertexImpl implements StateVertex {
 
 	@Override
 	public Document getDocument() throws IOException {
-		return DomUtils.asDocument(this.dom);
+		return DomUtils.asDocument(getDom());
 	}
 
 	@Override
@@ -123,4 +180,16 @@ class StateVertexImpl implements StateVertex {
 		return candidateElements;
 	}
 
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeObject(getDom());
+		out.writeObject(getStrippedDom());
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		dom = HeapDomStore.UNCOUNTED.store((String) in.readObject());
+		strippedDom = HeapDomStore.UNCOUNTED.store((String) in.readObject());
+	}
+
 }
@@ -0,0 +1,36 @@
+package com.crawljax.core.strategy;
+
+import java.util.List;
+
+import com.crawljax.core.CandidateCrawlAction;
+import com.crawljax.core.state.StateFlowGraph;
+import com.crawljax.core.state.StateVertex;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Crawls the states in the order they were found and the actions in the order they appear in the
+ * DOM. This is the default strategy.
+ */
+public class BreadthFirstStrategy implements CrawlStrategy {
+
+	@Override
+	public long statePriority(StateVertex state, StateFlowGraph graph, long sequence) {
+		return 0;
+	}
+
+	@Override
+	public ImmutableList<CandidateCrawlAction> orderActions(StateVertex state,
+	        List<CandidateCrawlAction> actions) {
+		return ImmutableList.copyOf(actions);
+	}
+
+	@Override
+	public void onActionPolled(CandidateCrawlAction action) {
+		// Nothing to keep track of.
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+}
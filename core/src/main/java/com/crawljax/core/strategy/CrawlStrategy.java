@@ -0,0 +1,53 @@
+package com.crawljax.core.strategy;
+
+import java.util.List;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.crawljax.core.CandidateCrawlAction;
+import com.crawljax.core.state.StateFlowGraph;
+import com.crawljax.core.state.StateVertex;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Decides in which order states and the actions within a state are crawled. States with a lower
+ * {@link #statePriority(StateVertex, StateFlowGraph, long)} are crawled first. States with the same
+ * priority are crawled in the order they were found.
+ * <p>
+ * A strategy is shared by all browsers so implementations must be thread safe.
+ * </p>
+ */
+@ThreadSafe
+public interface CrawlStrategy {
+
+	/**
+	 * @param state
+	 *            The state that has new actions to be crawled.
+	 * @param graph
+	 *            The current {@link StateFlowGraph}. The state might not be in the graph yet when
+	 *            it is the index state.
+	 * @param sequence
+	 *            A number that increases with every state that is queued.
+	 * @return the priority of the state. Lower values are crawled first.
+	 */
+	long statePriority(StateVertex state, StateFlowGraph graph, long sequence);
+
+	/**
+	 * @param state
+	 *            The state the actions belong to.
+	 * @param actions
+	 *            The actions in the order they were found in the DOM.
+	 * @return The actions in the order they should be fired.
+	 */
+	ImmutableList<CandidateCrawlAction> orderActions(StateVertex state,
+	        List<CandidateCrawlAction> actions);
+
+	/**
+	 * Called when an action is handed to a browser to be fired.
+	 * 
+	 * @param action
+	 *            The action that is about to be fired.
+	 */
+	void onActionPolled(CandidateCrawlAction action);
+
+}
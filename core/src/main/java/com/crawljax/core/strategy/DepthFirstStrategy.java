@@ -0,0 +1,16 @@
+package com.crawljax.core.strategy;
+
+import com.crawljax.core.state.StateFlowGraph;
+import com.crawljax.core.state.StateVertex;
+
+/**
+ * Crawls the most recently found state first.
+ */
+public class DepthFirstStrategy extends BreadthFirstStrategy {
+
+	@Override
+	public long statePriority(StateVertex state, StateFlowGraph graph, long sequence) {
+		return -sequence;
+	}
+
+}
@@ -0,0 +1,57 @@
+package com.crawljax.core.strategy;
+
+import java.util.List;
+import java.util.Set;
+
+import com.crawljax.core.CandidateCrawlAction;
+import com.crawljax.core.state.Element;
+import com.crawljax.core.state.StateVertex;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+/**
+ * Fires the actions on elements that look like nothing that has been fired before first. An
+ * element looks the same when it has the same tag, attributes and text, regardless of where it is
+ * in the DOM. States are crawled in the order they were found.
+ * <p>
+ * The actions of a state are ordered when they are added, so an action that was novel at that time
+ * keeps its place even if a similar element is fired in another state afterwards.
+ * </p>
+ */
+public class NoveltyFirstStrategy extends BreadthFirstStrategy {
+
+	private static final ImmutableSet<String> EXCLUDED_ATTRIBUTES = ImmutableSet.of("atusa");
+
+	private final Set<String> firedSignatures = Sets.newConcurrentHashSet();
+
+	@Override
+	public ImmutableList<CandidateCrawlAction> orderActions(StateVertex state,
+	        List<CandidateCrawlAction> actions) {
+		ImmutableList.Builder<CandidateCrawlAction> novel = ImmutableList.builder();
+		ImmutableList.Builder<CandidateCrawlAction> seen = ImmutableList.builder();
+		for (CandidateCrawlAction action : actions) {
+			if (firedSignatures.contains(signatureOf(action))) {
+				seen.add(action);
+			} else {
+				novel.add(action);
+			}
+		}
+		return novel.addAll(seen.build()).build();
+	}
+
+	@Override
+	public void onActionPolled(CandidateCrawlAction action) {
+		firedSignatures.add(signatureOf(action));
+	}
+
+	private String signatureOf(CandidateCrawlAction action) {
+		Element element = action.getCandidateElement().getElementDescriptor();
+		if (element == null) {
+			return action.getEventType() + " " + action.getCandidateElement().getIdentification();
+		}
+		return action.getEventType() + " " + element.getTag() + ": "
+		        + element.attributesToString(EXCLUDED_ATTRIBUTES) + " " + element.getText();
+	}
+
+}
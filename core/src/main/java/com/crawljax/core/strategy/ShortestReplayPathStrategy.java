@@ -0,0 +1,26 @@
+package com.crawljax.core.strategy;
+
+import com.crawljax.core.state.StateFlowGraph;
+import com.crawljax.core.state.StateVertex;
+
+/**
+ * Crawls the states that are the cheapest to get to first. The cost of a state is the length of
+ * the shortest path from the index state that has to be replayed before its actions can be fired.
+ * States that can't be reached from the index state, such as restored ones, are crawled last.
+ */
+public class ShortestReplayPathStrategy extends BreadthFirstStrategy {
+
+	@Override
+	public long statePriority(StateVertex state, StateFlowGraph graph, long sequence) {
+		StateVertex index = graph.getInitialState();
+		if (index == null || state.getId() == StateVertex.INDEX_ID) {
+			return 0;
+		}
+		try {
+			return graph.getShortestPath(index, state).size();
+		} catch (IllegalArgumentException e) {
+			return Long.MAX_VALUE;
+		}
+	}
+
+}
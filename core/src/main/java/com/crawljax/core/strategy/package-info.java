@@ -0,0 +1,4 @@
+/**
+ * Strategies that decide the order in which states and their actions are crawled.
+ */
+package com.crawljax.core.strategy;
@@ -9,6 +9,7 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.Target;
 import java.net.URI;
 
+import com.crawljax.browser.BrowserPool;
 import com.crawljax.browser.EmbeddedBrowser;
 import com.crawljax.browser.WebDriverBrowserBuilder;
 import com.crawljax.core.configuration.BrowserConfiguration;
@@ -42,11 +43,13 @@ public class ConfigurationModule extends AbstractModule {
 		bind(BrowserConfiguration.class).toInstance(browserConfig);
 
 		if (browserConfig.isDefaultBuilder()) {
-			bind(EmbeddedBrowser.class).toProvider(WebDriverBrowserBuilder.class);
+			bind(EmbeddedBrowser.class).annotatedWith(NewBrowser.class).toProvider(
+			        WebDriverBrowserBuilder.class);
 		} else {
-			bind(EmbeddedBrowser.class).toProvider(
+			bind(EmbeddedBrowser.class).annotatedWith(NewBrowser.class).toProvider(
 			        Providers.guicify(browserConfig.getBrowserBuilder()));
 		}
+		bind(EmbeddedBrowser.class).toProvider(BrowserPool.class);
 	}
 
 	@BindingAnnotation
@@ -55,4 +58,14 @@ public class ConfigurationModule extends AbstractModule {
 	public @interface BaseUrl {
 	}
 
+	/**
+	 * Marks the factory that starts a new browser. Use the unannotated {@link EmbeddedBrowser}
+	 * binding to get a browser from the {@link BrowserPool}.
+	 */
+	@BindingAnnotation
+	@Target({ FIELD, PARAMETER, METHOD })
+	@Retention(RUNTIME)
+	public @interface NewBrowser {
+	}
+
 }
@@ -5,19 +5,27 @@ import javax.inject.Singleton;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import com.codahale.metrics.MetricRegistry;
 import com.crawljax.browser.EmbeddedBrowser;
 import com.crawljax.condition.ConditionTypeChecker;
 import com.crawljax.condition.crawlcondition.CrawlCondition;
 import com.crawljax.core.CandidateElementExtractor;
 import com.crawljax.core.CandidateElementManager;
+import com.crawljax.core.CrawlFrontier;
 import com.crawljax.core.CrawlSession;
 import com.crawljax.core.ExitNotifier;
 import com.crawljax.core.ExtractorManager;
+import com.crawljax.core.UnfiredCandidateActions;
+import com.crawljax.core.WorkStealingCandidateActions;
 import com.crawljax.core.configuration.CrawljaxConfiguration;
 import com.crawljax.core.state.DefaultStateVertexFactory;
+import com.crawljax.core.state.AbstractStateFlowGraph;
+import com.crawljax.core.state.DiskBackedStateFlowGraph;
+import com.crawljax.core.state.DomStore;
 import com.crawljax.core.state.InMemoryStateFlowGraph;
 import com.crawljax.core.state.StateFlowGraph;
 import com.crawljax.core.state.StateVertexFactory;
+import com.crawljax.core.strategy.CrawlStrategy;
 import com.crawljax.forms.FormHandler;
 import com.crawljax.metrics.MetricsModule;
 import com.google.inject.AbstractModule;
@@ -51,12 +59,26 @@ public class CoreModule extends AbstractModule {
 
 		bind(ExtractorManager.class).to(CandidateElementManager.class);
 
-		bind(StateFlowGraph.class).to(InMemoryStateFlowGraph.class);
-		bind(InMemoryStateFlowGraph.class).in(Singleton.class);
+		if (configuration.isWorkStealingFrontier()) {
+			bind(CrawlFrontier.class).to(WorkStealingCandidateActions.class);
+		} else {
+			bind(CrawlFrontier.class).to(UnfiredCandidateActions.class);
+		}
+
+		bind(CrawlStrategy.class).toInstance(configuration.getCrawlStrategy());
+
+		bind(StateFlowGraph.class).to(AbstractStateFlowGraph.class);
+		if (configuration.getStateFlowGraphDirectory() == null) {
+			bind(AbstractStateFlowGraph.class).to(InMemoryStateFlowGraph.class).in(Singleton.class);
+		} else {
+			bind(AbstractStateFlowGraph.class).to(DiskBackedStateFlowGraph.class);
+		}
 
 		install(new FactoryModuleBuilder().build(FormHandlerFactory.class));
 		install(new FactoryModuleBuilder().build(CandidateElementExtractorFactory.class));
 
+		bind(DomStore.class).toProvider(DomStoreProvider.class);
+
 		if (configuration.getStateVertexFactory() == null) {
 			bind(StateVertexFactory.class).to(DefaultStateVertexFactory.class);
 		} else {
@@ -71,9 +93,17 @@ public class CoreModule extends AbstractModule {
 	}
 
 	@Provides
-	ConditionTypeChecker<CrawlCondition> crawlConditionChecker() {
+	@Singleton
+	DiskBackedStateFlowGraph diskBackedStateFlowGraph(ExitNotifier exitNotifier,
+	        StateVertexFactory vertexFactory) {
+		return new DiskBackedStateFlowGraph(exitNotifier, vertexFactory,
+		        configuration.getStateFlowGraphDirectory(), configuration.getHotStates());
+	}
+
+	@Provides
+	ConditionTypeChecker<CrawlCondition> crawlConditionChecker(MetricRegistry registry) {
 		return new ConditionTypeChecker<>(configuration.getCrawlRules().getPreCrawlConfig()
-		        .getCrawlConditions());
+		        .getCrawlConditions(), registry);
 	}
 
 	public interface FormHandlerFactory {
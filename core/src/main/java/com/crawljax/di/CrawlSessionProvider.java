@@ -13,7 +13,7 @@ import com.codahale.metrics.MetricRegistry;
 import com.crawljax.core.CrawlSession;
 import com.crawljax.core.CrawlSessionNotSetupYetException;
 import com.crawljax.core.configuration.CrawljaxConfiguration;
-import com.crawljax.core.state.InMemoryStateFlowGraph;
+import com.crawljax.core.state.AbstractStateFlowGraph;
 import com.crawljax.core.state.StateVertex;
 import com.google.common.base.Preconditions;
 
@@ -26,14 +26,14 @@ public class CrawlSessionProvider implements Provider<CrawlSession> {
 	private static final Logger LOG = LoggerFactory.getLogger(CrawlSessionProvider.class);
 
 	private final AtomicBoolean isSet = new AtomicBoolean();
-	private final InMemoryStateFlowGraph stateFlowGraph;
+	private final AbstractStateFlowGraph stateFlowGraph;
 	private final CrawljaxConfiguration config;
 	private final MetricRegistry registry;
 
 	private CrawlSession session;
 
 	@Inject
-	public CrawlSessionProvider(InMemoryStateFlowGraph stateFlowGraph,
+	public CrawlSessionProvider(AbstractStateFlowGraph stateFlowGraph,
 	        CrawljaxConfiguration config, MetricRegistry registry) {
 		this.stateFlowGraph = stateFlowGraph;
 		this.config = config;
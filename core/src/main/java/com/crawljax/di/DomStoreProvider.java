@@ -0,0 +1,62 @@
+package com.crawljax.di;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.core.configuration.CrawljaxConfiguration;
+import com.crawljax.core.state.DomStore;
+import com.crawljax.core.state.HeapDomStore;
+import com.crawljax.metrics.MetricsModule;
+
+/**
+ * Provides the configured {@link DomStore}, or a {@link HeapDomStore} when none is configured,
+ * and reports how much memory it uses.
+ */
+@Singleton
+public class DomStoreProvider implements Provider<DomStore> {
+
+	private static final String PREFIX = MetricsModule.STATES_PREFIX + "dom_store.";
+
+	private final DomStore store;
+
+	@Inject
+	DomStoreProvider(CrawljaxConfiguration config, MetricRegistry registry) {
+		store = config.getDomStore() == null ? new HeapDomStore() : config.getDomStore();
+		registry.register(PREFIX + "doms", new Gauge<Integer>() {
+
+			@Override
+			public Integer getValue() {
+				return store.getNumberOfDoms();
+			}
+		});
+		registry.register(PREFIX + "uncompressed_bytes", new Gauge<Long>() {
+
+			@Override
+			public Long getValue() {
+				return store.getUncompressedBytes();
+			}
+		});
+		registry.register(PREFIX + "heap_bytes", new Gauge<Long>() {
+
+			@Override
+			public Long getValue() {
+				return store.getHeapBytes();
+			}
+		});
+		registry.register(PREFIX + "spilled_bytes", new Gauge<Long>() {
+
+			@Override
+			public Long getValue() {
+				return store.getSpilledBytes();
+			}
+		});
+	}
+
+	@Override
+	public DomStore get() {
+		return store;
+	}
+}
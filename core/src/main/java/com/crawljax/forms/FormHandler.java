@@ -1,8 +1,8 @@
 package com.crawljax.forms;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -15,13 +15,20 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
 import com.crawljax.browser.EmbeddedBrowser;
 import com.crawljax.condition.eventablecondition.EventableCondition;
 import com.crawljax.core.CandidateElement;
+import com.crawljax.core.CrawljaxException;
 import com.crawljax.core.configuration.CrawlRules;
 import com.crawljax.core.exception.BrowserConnectionException;
+import com.crawljax.metrics.MetricsModule;
 import com.crawljax.util.DomUtils;
+import com.crawljax.util.XPathEngine;
 import com.crawljax.util.XPathHelper;
+import com.google.common.collect.ImmutableList;
 import com.google.inject.assistedinject.Assisted;
 
 /**
@@ -39,51 +46,151 @@ public class FormHandler {
 	private static final double HALF = 0.5;
 
 	private final FormInputValueHelper formInputValueHelper;
+	private final boolean batched;
+
+	private final Counter roundTrips;
+	private final Histogram roundTripsPerEvent;
+	private final Counter filledFields;
+	private final Counter unfilledFields;
+
+	/**
+	 * The round trips of this handler, which is only used by the thread of its browser.
+	 */
+	private long ownRoundTrips;
+
+	public FormHandler(EmbeddedBrowser browser, CrawlRules config) {
+		this(browser, config, new MetricRegistry());
+	}
 
 	@Inject
-	public FormHandler(@Assisted EmbeddedBrowser browser, CrawlRules config) {
+	public FormHandler(@Assisted EmbeddedBrowser browser, CrawlRules config,
+	        MetricRegistry registry) {
 		this.browser = browser;
 		this.formInputValueHelper =
 		        new FormInputValueHelper(config.getInputSpecification(),
 		                config.isRandomInputInForms());
+		this.batched = config.isFillingFormsInOneScript();
+		this.roundTrips = registry.counter(MetricsModule.FORMS_PREFIX + "round_trips");
+		this.roundTripsPerEvent =
+		        registry.histogram(MetricsModule.FORMS_PREFIX + "round_trips_per_event");
+		this.filledFields = registry.counter(MetricsModule.FORMS_PREFIX + "filled_fields");
+		this.unfilledFields = registry.counter(MetricsModule.FORMS_PREFIX + "unfilled_fields");
 	}
 
 	private static final String[] ALLOWED_INPUT_TYPES =
 	{ "text", "radio", "checkbox", "password" };
 
+	private static final ImmutableList<String> INPUT_EXPRESSIONS = ImmutableList.of("//INPUT",
+	        "//TEXTAREA", "//SELECT");
+
 	/**
-	 * Fills in the element with the InputValues for input TODO: improve this by using WebDriver
-	 * options?
+	 * Fills in the element with the InputValues for input, with one script per value. TODO:
+	 * improve this by using WebDriver options?
+	 * 
+	 * @return Whether the element was found and filled in.
 	 */
-	private void setInputElementValue(Node element, FormInput input) {
+	private boolean setInputElementValue(Node element, FormInput input) {
 
 		LOGGER.debug("INPUTFIELD: {} ({})", input.getIdentification(), input.getType());
-		if (element == null || input.getInputValues().isEmpty()) {
-			return;
+		List<String> statements = getStatements(input);
+		if (element == null || statements.isEmpty()) {
+			// Nothing is typed, so the input doesn't count as filled in.
+			return false;
 		}
 		try {
-			if (input.getType().toLowerCase().startsWith("text")
-			        || input.getType().equalsIgnoreCase("password")
-			        || input.getType().equalsIgnoreCase("hidden")) {
-				handleText(element, input);
-			} else if ("checkbox".equals(input.getType())) {
-				handleCheckBoxes(element, input);
-			} else if (input.getType().equals("radio")) {
-				handleRadioSwitches(element, input);
-			} else if (input.getType().startsWith("select")) {
-				handleSelectBoxes(element, input);
+			String js = DomUtils.getJSGetElement(XPathHelper.getXPathExpression(element));
+			for (String statement : statements) {
+				execute(js + "try{" + statement + "}catch(e){}");
 			}
+			return true;
 		} catch (BrowserConnectionException e) {
 			throw e;
 		} catch (RuntimeException e) {
 			LOGGER.error("Could not input element values", e);
+			return false;
 		}
 	}
 
-	private void handleCheckBoxes(Node element, FormInput input) {
+	/**
+	 * Fills in all elements with one script. Every element is looked up and filled in by a
+	 * function of its own, which reports whether that worked.
+	 * 
+	 * @return Whether each element was found and filled in.
+	 */
+	private List<Boolean> setInputElementValues(List<Node> elements, List<FormInput> inputs) {
+		Boolean[] filled = new Boolean[inputs.size()];
+		List<Integer> scripted = new ArrayList<>();
+		StringBuilder js = new StringBuilder(DomUtils.getJSElementFunctions());
+		js.append("var ATUSA_filled = [];");
+		for (int i = 0; i < inputs.size(); i++) {
+			FormInput input = inputs.get(i);
+			Node element = elements.get(i);
+			LOGGER.debug("INPUTFIELD: {} ({})", input.getIdentification(), input.getType());
+			List<String> statements = getStatements(input);
+			if (element == null || statements.isEmpty()) {
+				filled[i] = false;
+				continue;
+			}
+			js.append("ATUSA_filled.push((function(){")
+			        .append("var ATUSA_element = ATUSA_getElementByXpath('")
+			        .append(XPathHelper.getXPathExpression(element)).append("');")
+			        .append("if(ATUSA_element==null){return false;}try{");
+			for (String statement : statements) {
+				js.append(statement);
+			}
+			js.append("}catch(e){return false;}return true;})());");
+			scripted.add(i);
+		}
+		if (!scripted.isEmpty()) {
+			js.append("return ATUSA_filled;");
+			List<?> results = ImmutableList.of();
+			try {
+				Object result = execute(js.toString());
+				if (result instanceof List) {
+					results = (List<?>) result;
+				}
+			} catch (BrowserConnectionException e) {
+				throw e;
+			} catch (RuntimeException e) {
+				LOGGER.error("Could not input element values", e);
+			}
+			for (int j = 0; j < scripted.size(); j++) {
+				filled[scripted.get(j)] = j < results.size() && Boolean.TRUE.equals(results.get(j));
+			}
+		}
+		return Arrays.asList(filled);
+	}
+
+	private Object execute(String js) {
+		ownRoundTrips++;
+		roundTrips.inc();
+		return browser.executeJavaScript(js);
+	}
+
+	/**
+	 * @return The JavaScript statements that fill in <code>ATUSA_element</code>, one per value.
+	 */
+	private List<String> getStatements(FormInput input) {
+		List<String> statements = new ArrayList<>();
+		if (input.getInputValues().isEmpty()) {
+			return statements;
+		}
+		if (input.getType().toLowerCase().startsWith("text")
+		        || input.getType().equalsIgnoreCase("password")
+		        || input.getType().equalsIgnoreCase("hidden")) {
+			handleText(statements, input);
+		} else if ("checkbox".equals(input.getType())) {
+			handleCheckBoxes(statements, input);
+		} else if (input.getType().equals("radio")) {
+			handleRadioSwitches(statements, input);
+		} else if (input.getType().startsWith("select")) {
+			handleSelectBoxes(statements, input);
+		}
+		return statements;
+	}
+
+	private void handleCheckBoxes(List<String> statements, FormInput input) {
 		for (InputValue inputValue : input.getInputValues()) {
-			String js =
-			        DomUtils.getJSGetElement(XPathHelper.getXPathExpression(element));
 			boolean check;
 			if (!randomFieldValue) {
 				check = inputValue.isChecked();
@@ -97,48 +204,35 @@ public class FormHandler {
 			} else {
 				value = "false";
 			}
-			js += "try{ATUSA_element.checked=" + value + ";}catch(e){}";
-			browser.executeJavaScript(js);
-
+			statements.add("ATUSA_element.checked=" + value + ";");
 		}
 	}
 
-	private void handleRadioSwitches(Node element, FormInput input) {
+	private void handleRadioSwitches(List<String> statements, FormInput input) {
 		for (InputValue inputValue : input.getInputValues()) {
 			if (inputValue.isChecked()) {
-				String js =
-				        DomUtils.getJSGetElement(XPathHelper
-				                .getXPathExpression(element));
-				js += "try{ATUSA_element.checked=true;}catch(e){}";
-				browser.executeJavaScript(js);
+				statements.add("ATUSA_element.checked=true;");
 			}
 		}
 	}
 
-	private void handleSelectBoxes(Node element, FormInput input) {
+	private void handleSelectBoxes(List<String> statements, FormInput input) {
 		for (InputValue inputValue : input.getInputValues()) {
-			String js =
-			        DomUtils.getJSGetElement(XPathHelper.getXPathExpression(element));
-			js +=
-			        "try{" + "for(i=0; i<ATUSA_element.options.length; i++){"
-			                + "if(ATUSA_element.options[i].value=='"
-			                + inputValue.getValue()
-			                + "' || ATUSA_element.options[i].text=='"
-			                + inputValue.getValue() + "'){"
-			                + "ATUSA_element.options[i].selected=true;" + "break;"
-			                + "}" + "};" + "}catch(e){}";
-			browser.executeJavaScript(js);
+			String value = DomUtils.escapeJavaScript(inputValue.getValue());
+			statements.add("for(var i=0; i<ATUSA_element.options.length; i++){"
+			        + "if(ATUSA_element.options[i].value=='" + value
+			        + "' || ATUSA_element.options[i].text=='" + value + "'){"
+			        + "ATUSA_element.options[i].selected=true;" + "break;"
+			        + "}" + "};");
 		}
 	}
 
-	private void handleText(Node element, FormInput input) {
+	private void handleText(List<String> statements, FormInput input) {
 		String text = input.getInputValues().iterator().next().getValue();
 		if ("".equals(text)) {
 			return;
 		}
-		String js = DomUtils.getJSGetElement(XPathHelper.getXPathExpression(element));
-		js += "try{ATUSA_element.value='" + text + "';}catch(e){}";
-		browser.executeJavaScript(js);
+		statements.add("ATUSA_element.value='" + DomUtils.escapeJavaScript(text) + "';");
 	}
 
 	/**
@@ -147,7 +241,8 @@ public class FormHandler {
 	private List<Node> getInputElements(Document dom) {
 		List<Node> nodes = new ArrayList<Node>();
 		try {
-			NodeList nodeList = XPathHelper.evaluateXpathExpression(dom, "//INPUT");
+			List<NodeList> nodeLists = XPathEngine.getDefault().evaluate(dom, INPUT_EXPRESSIONS);
+			NodeList nodeList = nodeLists.get(0);
 			List<String> allowedTypes = new ArrayList<String>(Arrays.asList(ALLOWED_INPUT_TYPES));
 
 			for (int i = 0; i < nodeList.getLength(); i++) {
@@ -158,13 +253,10 @@ public class FormHandler {
 					nodes.add(nodeList.item(i));
 				}
 			}
-			nodeList = XPathHelper.evaluateXpathExpression(dom, "//TEXTAREA");
-			for (int i = 0; i < nodeList.getLength(); i++) {
-				nodes.add(nodeList.item(i));
-			}
-			nodeList = XPathHelper.evaluateXpathExpression(dom, "//SELECT");
-			for (int i = 0; i < nodeList.getLength(); i++) {
-				nodes.add(nodeList.item(i));
+			for (NodeList others : nodeLists.subList(1, nodeLists.size())) {
+				for (int i = 0; i < others.getLength(); i++) {
+					nodes.add(others.item(i));
+				}
 			}
 
 			return nodes;
@@ -181,7 +273,7 @@ public class FormHandler {
 		List<FormInput> formInputs = new ArrayList<FormInput>();
 		Document dom;
 		try {
-			dom = DomUtils.asDocument(browser.getStrippedDom());
+			dom = browser.getStrippedDocument();
 			List<Node> nodes = getInputElements(dom);
 			for (Node node : nodes) {
 				FormInput formInput =
@@ -190,7 +282,7 @@ public class FormHandler {
 					formInputs.add(formInput);
 				}
 			}
-		} catch (IOException e) {
+		} catch (CrawljaxException e) {
 			LOGGER.error(e.getMessage(), e);
 		}
 		return formInputs;
@@ -207,22 +299,46 @@ public class FormHandler {
 	}
 
 	/**
-	 * Fills in form/input elements.
+	 * Fills in form/input elements. By default every value is filled in with a script of its
+	 * own. When {@link CrawlRules#isFillingFormsInOneScript()} all inputs are filled in with one
+	 * script.
 	 * 
 	 * @param formInputs
 	 *            form input list.
+	 * @return Whether each input was filled in, in the order of the inputs. An input is not
+	 *         filled in when its element can't be found.
 	 */
-	public void handleFormElements(List<FormInput> formInputs) {
+	public List<Boolean> handleFormElements(List<FormInput> formInputs) {
+		long before = ownRoundTrips;
+		List<Boolean> filled = new ArrayList<>(formInputs.size());
 		try {
-			Document dom = DomUtils.asDocument(browser.getStrippedDomWithoutIframeContent());
+			Document dom = browser.getStrippedDocumentWithoutIframeContent();
+			List<Node> elements = new ArrayList<>(formInputs.size());
 			for (FormInput input : formInputs) {
 				LOGGER.debug("Filling in: " + input);
-				setInputElementValue(formInputValueHelper.getBelongingNode(input, dom), input);
+				Node element = formInputValueHelper.getBelongingNode(input, dom);
+				if (batched) {
+					elements.add(element);
+				} else {
+					filled.add(setInputElementValue(element, input));
+				}
 			}
-		} catch (IOException | XPathExpressionException e) {
+			if (batched) {
+				filled.addAll(setInputElementValues(elements, formInputs));
+			}
+		} catch (CrawljaxException | XPathExpressionException e) {
 			LOGGER.error(e.getMessage(), e);
 		}
-
+		while (filled.size() < formInputs.size()) {
+			filled.add(false);
+		}
+		int filledCount = Collections.frequency(filled, true);
+		filledFields.inc(filledCount);
+		unfilledFields.inc(filled.size() - filledCount);
+		if (!formInputs.isEmpty()) {
+			roundTripsPerEvent.update(ownRoundTrips - before);
+		}
+		return filled;
 	}
 
 	/**
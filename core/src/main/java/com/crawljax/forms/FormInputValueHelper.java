@@ -138,12 +138,12 @@ public final class FormInputValueHelper {
 				}
 			}
 
-			String id = eventableCondition.getId() + "_" + curValueIndex;
-			sourceElement.setAttribute("atusa", id);
-
-			// clone node inclusive text content
+			// clone node inclusive text content. The source element is part of the DOM the
+			// browser shares with other callers, so only the clone is marked.
 			Element cloneElement = (Element) sourceElement.cloneNode(false);
 			cloneElement.setTextContent(DomUtils.getTextValue(sourceElement));
+			String id = eventableCondition.getId() + "_" + curValueIndex;
+			cloneElement.setAttribute("atusa", id);
 
 			CandidateElement candidateElement =
 			        new CandidateElement(cloneElement,
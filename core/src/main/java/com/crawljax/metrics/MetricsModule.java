@@ -25,6 +25,42 @@ public class MetricsModule extends AbstractModule implements Module {
 	 */
 	public static final String PLUGINS_PREFIX = CRAWL_PREFIX + "plugins.";
 
+	/**
+	 * The prefix for a {@link Metric} concerning the {@link com.crawljax.core.strategy.CrawlStrategy}.
+	 */
+	public static final String STRATEGY_PREFIX = CRAWL_PREFIX + "strategy.";
+
+	/**
+	 * The prefix for a {@link Metric} concerning the {@link com.crawljax.browser.BrowserPool}.
+	 */
+	public static final String BROWSER_PREFIX = CRAWL_PREFIX + "browser.";
+
+	/**
+	 * The prefix for a {@link Metric} concerning the states in the
+	 * {@link com.crawljax.core.state.StateFlowGraph}.
+	 */
+	public static final String STATES_PREFIX = CRAWL_PREFIX + "states.";
+
+	/**
+	 * The prefix for a {@link Metric} concerning the checkpoints of a crawl.
+	 */
+	public static final String CHECKPOINTS_PREFIX = CRAWL_PREFIX + "checkpoints.";
+
+	/**
+	 * The prefix for a {@link Metric} concerning the elements that are checked for clicking.
+	 */
+	public static final String ELEMENTS_PREFIX = CRAWL_PREFIX + "elements.";
+
+	/**
+	 * The prefix for a {@link Metric} concerning the forms that are filled in.
+	 */
+	public static final String FORMS_PREFIX = CRAWL_PREFIX + "forms.";
+
+	/**
+	 * The prefix for a {@link Metric} concerning the checks of conditions and invariants.
+	 */
+	public static final String CONDITIONS_PREFIX = CRAWL_PREFIX + "conditions.";
+
 	@Override
 	protected void configure() {
 		bind(MetricRegistry.class).asEagerSingleton();
@@ -0,0 +1,46 @@
+package com.crawljax.oraclecomparator.comparators;
+
+import com.crawljax.oraclecomparator.AbstractComparator;
+import com.crawljax.util.MinHash;
+import com.google.common.base.Preconditions;
+
+/**
+ * Oracle Comparator that treats two DOMs as equivalent when their estimated Jaccard similarity is
+ * at least the threshold, see {@link MinHash}. It is a faster replacement for the
+ * {@link EditDistanceComparator}: the time is linear in the size of the DOMs instead of quadratic.
+ * To merge similar states in the state-flow graph, use
+ * {@link com.crawljax.core.state.NearDuplicateStateVertexFactory}.
+ */
+public class MinHashComparator extends AbstractComparator {
+
+	private final double threshold;
+
+	/**
+	 * @param threshold
+	 *            the similarity threshold. 1 is no difference, 0 is totally different.
+	 */
+	public MinHashComparator(double threshold) {
+		Preconditions.checkArgument(threshold >= 0 && threshold <= 1,
+		        "Threshold must be between 0.0 and 1.0");
+		this.threshold = threshold;
+	}
+
+	/**
+	 * @return true if and only if the estimated similarity is >= the threshold.
+	 */
+	@Override
+	public boolean isEquivalent(String oldDom, String newDom) {
+		return similarity(oldDom, newDom) >= threshold;
+	}
+
+	/**
+	 * @return The estimated similarity of the two DOMs between 0 and 1.
+	 */
+	double similarity(String oldDom, String newDom) {
+		return MinHash.similarity(MinHash.signatureOf(oldDom), MinHash.signatureOf(newDom));
+	}
+
+	public double getThreshold() {
+		return threshold;
+	}
+}
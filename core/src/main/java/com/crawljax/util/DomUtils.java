@@ -22,10 +22,7 @@ import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.custommonkey.xmlunit.DetailedDiff;
 import org.custommonkey.xmlunit.Diff;
@@ -170,10 +167,7 @@ public final class DomUtils {
 	 */
 	public static Element getElementByXpath(Document dom, String xpath)
 	        throws XPathExpressionException {
-		XPath xp = XPathFactory.newInstance().newXPath();
-		xp.setNamespaceContext(new HtmlNamespace());
-
-		return (Element) xp.evaluate(xpath, dom, XPathConstants.NODE);
+		return (Element) XPathEngine.getHtml().evaluateNode(dom, xpath);
 	}
 
 	/**
@@ -436,12 +430,32 @@ public final class DomUtils {
 		return stringBuilder.toString();
 	}
 
+	/**
+	 * @param text
+	 *            The text.
+	 * @return The text escaped to be put between single quotes in JavaScript.
+	 */
+	public static String escapeJavaScript(String text) {
+		return text.replace("\\", "\\\\").replace("'", "\\'").replace("\n", "\\n")
+		        .replace("\r", "\\r");
+	}
+
 	/**
 	 * @param xpath
 	 *            The xpath of the element.
 	 * @return The JavaScript to get an element.
 	 */
 	public static String getJSGetElement(String xpath) {
+		return getJSElementFunctions()
+		        + "try{var ATUSA_element = ATUSA_getElementByXpath('" + xpath
+		        + "');}catch(e){return null;}";
+	}
+
+	/**
+	 * @return The JavaScript that defines <code>ATUSA_getElementByXpath(xpath)</code>, which
+	 *         returns the element with the given xpath or <code>null</code>.
+	 */
+	public static String getJSElementFunctions() {
 		String js =
 		        "function ATUSA_getElementInNodes(nodes, tagName, number){"
 		                + "try{"
@@ -477,9 +491,7 @@ public final class DomUtils {
 		                + "if(tagName!='body' && tagName!='html'){"
 		                + "curNode = ATUSA_getElementInNodes(curNode.childNodes, tagName, number);"
 		                + "if(curNode==null){" + "return null;" + "}" + "}" + "}" + "}"
-		                + "}catch(e){return null;}" + "return curNode;" + "}"
-		                + "try{var ATUSA_element = ATUSA_getElementByXpath('" + xpath
-		                + "');}catch(e){return null;}";
+		                + "}catch(e){return null;}" + "return curNode;" + "}";
 
 		return js;
 	}
@@ -1,7 +1,5 @@
 package com.crawljax.util;
 
-import java.io.IOException;
-
 import javax.xml.xpath.XPathExpressionException;
 
 import org.slf4j.Logger;
@@ -11,6 +9,7 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import com.crawljax.browser.EmbeddedBrowser;
+import com.crawljax.core.CrawljaxException;
 import com.crawljax.core.state.Element;
 import com.crawljax.core.state.Eventable;
 
@@ -52,15 +51,18 @@ public class ElementResolver {
 	public String resolve(boolean logging) {
 		Document dom = null;
 		try {
-			dom = DomUtils.asDocument(browser.getStrippedDom());
-		} catch (IOException e) {
+			dom = browser.getStrippedDocument();
+		} catch (CrawljaxException e) {
 			LOGGER.error(e.getMessage(), e);
 			return "";
 		}
 
 		try {
 			String xpathEventable = eventable.getIdentification().getValue();
-			Node nodeSameXpath = DomUtils.getElementByXpath(dom, xpathEventable);
+			Node nodeSameXpath = XPathIndex.of(dom).getElement(xpathEventable);
+			if (nodeSameXpath == null) {
+				nodeSameXpath = DomUtils.getElementByXpath(dom, xpathEventable);
+			}
 			if (nodeSameXpath != null) {
 				Element elementSameXpath = new Element(nodeSameXpath);
 				if (logging) {
@@ -0,0 +1,140 @@
+package com.crawljax.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Estimates how similar two DOMs are in time linear in their length. A DOM is split into tokens
+ * (tag names, attributes and words), every run of {@value #SHINGLE_SIZE} tokens is a shingle and
+ * the signature keeps the minimum hash of all shingles for {@value #SIGNATURE_SIZE} different hash
+ * functions. The fraction of positions where two signatures agree estimates the Jaccard similarity
+ * of their shingle sets.
+ */
+@Immutable
+public final class MinHash {
+
+	/**
+	 * The number of hash functions and thus the length of a signature.
+	 */
+	public static final int SIGNATURE_SIZE = 128;
+
+	/**
+	 * The number of consecutive tokens in a shingle.
+	 */
+	public static final int SHINGLE_SIZE = 4;
+
+	private static final long[] SEEDS = new long[SIGNATURE_SIZE];
+
+	static {
+		Random random = new Random(0x5DEECE66DL);
+		for (int i = 0; i < SEEDS.length; i++) {
+			SEEDS[i] = random.nextLong();
+		}
+	}
+
+	private MinHash() {
+	}
+
+	/**
+	 * @param dom
+	 *            The DOM to sign.
+	 * @return The MinHash signature of the DOM. Always {@link #SIGNATURE_SIZE} long.
+	 */
+	public static int[] signatureOf(String dom) {
+		int[] signature = new int[SIGNATURE_SIZE];
+		Arrays.fill(signature, Integer.MAX_VALUE);
+		long[] window = new long[SHINGLE_SIZE];
+		int tokens = 0;
+		long token = 0;
+		boolean inToken = false;
+		for (int i = 0, length = dom.length(); i <= length; i++) {
+			char c = i < length ? dom.charAt(i) : ' ';
+			if (isSeparator(c)) {
+				if (inToken) {
+					window[tokens % SHINGLE_SIZE] = token;
+					tokens++;
+					if (tokens >= SHINGLE_SIZE) {
+						addShingle(signature, shingleOf(window, tokens));
+					}
+					token = 0;
+					inToken = false;
+				}
+				if (c == '<' || c == '>') {
+					// Keep the structure in the shingles.
+					window[tokens % SHINGLE_SIZE] = c;
+					tokens++;
+					if (tokens >= SHINGLE_SIZE) {
+						addShingle(signature, shingleOf(window, tokens));
+					}
+				}
+			} else {
+				token = token * 31 + c;
+				inToken = true;
+			}
+		}
+		if (tokens > 0 && tokens < SHINGLE_SIZE) {
+			addShingle(signature, shingleOf(window, tokens));
+		}
+		return signature;
+	}
+
+	/**
+	 * @param first
+	 *            A signature.
+	 * @param second
+	 *            Another signature.
+	 * @return The estimated Jaccard similarity between 0 and 1.
+	 */
+	public static double similarity(int[] first, int[] second) {
+		Preconditions.checkArgument(first.length == second.length,
+		        "Signatures should have the same length");
+		int same = 0;
+		for (int i = 0; i < first.length; i++) {
+			if (first[i] == second[i]) {
+				same++;
+			}
+		}
+		return (double) same / first.length;
+	}
+
+	private static boolean isSeparator(char c) {
+		return Character.isWhitespace(c) || c == '<' || c == '>' || c == '"' || c == '='
+		        || c == '/';
+	}
+
+	private static long shingleOf(long[] window, int tokens) {
+		long shingle = 0;
+		int size = Math.min(tokens, SHINGLE_SIZE);
+		// Oldest token first, so the same run of tokens gives the same shingle.
+		for (int i = tokens - size; i < tokens; i++) {
+			shingle = mix(shingle ^ window[i % SHINGLE_SIZE]);
+		}
+		return shingle;
+	}
+
+	private static void addShingle(int[] signature, long shingle) {
+		for (int i = 0; i < SIGNATURE_SIZE; i++) {
+			int hash = (int) mix(shingle ^ SEEDS[i]);
+			if (hash < signature[i]) {
+				signature[i] = hash;
+			}
+		}
+	}
+
+	/**
+	 * The finalization step of MurmurHash3, which spreads every input bit over the output.
+	 */
+	private static long mix(long value) {
+		long k = value;
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+}
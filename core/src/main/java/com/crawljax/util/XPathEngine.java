@@ -0,0 +1,155 @@
+package com.crawljax.util;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Evaluates XPath expressions without looking up an {@link XPathFactory} and compiling the
+ * expression on every call. {@link XPath} and {@link XPathExpression} are not thread safe, so
+ * every thread gets its own {@link XPath} and its own cache of the last
+ * {@value #MAX_CACHED_EXPRESSIONS} expressions it compiled.
+ */
+@ThreadSafe
+public final class XPathEngine {
+
+	/**
+	 * The number of compiled expressions every thread keeps.
+	 */
+	public static final int MAX_CACHED_EXPRESSIONS = 512;
+
+	private static final XPathEngine DEFAULT = new XPathEngine(null);
+	private static final XPathEngine HTML = new XPathEngine(new HtmlNamespace());
+
+	/**
+	 * @return The engine that resolves no namespace prefixes.
+	 */
+	public static XPathEngine getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @return The engine that resolves prefixes with the {@link HtmlNamespace}.
+	 */
+	public static XPathEngine getHtml() {
+		return HTML;
+	}
+
+	private final ThreadLocal<Compiler> compilers;
+
+	private XPathEngine(final NamespaceContext namespace) {
+		compilers = new ThreadLocal<Compiler>() {
+			@Override
+			protected Compiler initialValue() {
+				return new Compiler(namespace);
+			}
+		};
+	}
+
+	/**
+	 * @param expression
+	 *            The XPath expression.
+	 * @return The compiled expression. It may only be used by the calling thread.
+	 * @throws XPathExpressionException
+	 *             If the expression can't be compiled.
+	 */
+	public XPathExpression compile(String expression) throws XPathExpressionException {
+		return compilers.get().compile(expression);
+	}
+
+	/**
+	 * @param context
+	 *            The node to evaluate the expression on, usually a document.
+	 * @param expression
+	 *            The XPath expression.
+	 * @return The nodes that match the expression.
+	 * @throws XPathExpressionException
+	 *             If the expression can't be compiled or evaluated.
+	 */
+	public NodeList evaluate(Node context, String expression) throws XPathExpressionException {
+		return (NodeList) compile(expression).evaluate(context, XPathConstants.NODESET);
+	}
+
+	/**
+	 * @param context
+	 *            The node to evaluate the expression on, usually a document.
+	 * @param expression
+	 *            The XPath expression.
+	 * @return The first node that matches the expression or <code>null</code> if there is none.
+	 * @throws XPathExpressionException
+	 *             If the expression can't be compiled or evaluated.
+	 */
+	public Node evaluateNode(Node context, String expression) throws XPathExpressionException {
+		return (Node) compile(expression).evaluate(context, XPathConstants.NODE);
+	}
+
+	/**
+	 * Evaluates many expressions on one node.
+	 *
+	 * @param context
+	 *            The node to evaluate the expressions on, usually a document.
+	 * @param expressions
+	 *            The XPath expressions.
+	 * @return The nodes that match each expression, in the order of the expressions.
+	 * @throws XPathExpressionException
+	 *             If one of the expressions can't be compiled or evaluated.
+	 */
+	public ImmutableList<NodeList> evaluate(Node context, List<String> expressions)
+	        throws XPathExpressionException {
+		Compiler compiler = compilers.get();
+		ImmutableList.Builder<NodeList> results = ImmutableList.builder();
+		for (String expression : expressions) {
+			results.add((NodeList) compiler.compile(expression).evaluate(context,
+			        XPathConstants.NODESET));
+		}
+		return results.build();
+	}
+
+	/**
+	 * The {@link XPath} of one thread with the expressions it compiled, least recently used
+	 * first.
+	 */
+	private static final class Compiler {
+
+		private final XPath xpath;
+		private final Map<String, XPathExpression> expressions =
+		        new LinkedHashMap<String, XPathExpression>(16, 0.75f, true) {
+
+			        private static final long serialVersionUID = 1L;
+
+			        @Override
+			        protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+				        return size() > MAX_CACHED_EXPRESSIONS;
+			        }
+		        };
+
+		Compiler(NamespaceContext namespace) {
+			xpath = XPathFactory.newInstance().newXPath();
+			if (namespace != null) {
+				xpath.setNamespaceContext(namespace);
+			}
+		}
+
+		XPathExpression compile(String expression) throws XPathExpressionException {
+			XPathExpression compiled = expressions.get(expression);
+			if (compiled == null) {
+				compiled = xpath.compile(expression);
+				expressions.put(expression, compiled);
+			}
+			return compiled;
+		}
+	}
+}
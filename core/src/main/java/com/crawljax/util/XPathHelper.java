@@ -7,11 +7,7 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -36,7 +32,8 @@ public final class XPathHelper {
 	private static final int MAX_SEARCH_LOOPS = 10000;
 
 	/**
-	 * Reverse Engineers an XPath Expression of a given Node in the DOM.
+	 * Reverse Engineers an XPath Expression of a given Node in the DOM. If its document has an
+	 * {@link XPathIndex}, the expression is looked up there.
 	 * 
 	 * @param node
 	 *            the given node.
@@ -47,6 +44,13 @@ public final class XPathHelper {
 		if (xpathCache != null) {
 			return xpathCache.toString();
 		}
+		XPathIndex index = XPathIndex.find(node.getOwnerDocument());
+		if (index != null) {
+			String indexed = index.getXPath(node);
+			if (indexed != null) {
+				return indexed;
+			}
+		}
 		Node parent = node.getParentNode();
 
 		if ((parent == null) || parent.getNodeName().contains("#document")) {
@@ -130,12 +134,7 @@ public final class XPathHelper {
 	 */
 	public static NodeList evaluateXpathExpression(Document dom, String xpathExpr)
 	        throws XPathExpressionException {
-		XPathFactory factory = XPathFactory.newInstance();
-		XPath xpath = factory.newXPath();
-		XPathExpression expr = xpath.compile(xpathExpr);
-		Object result = expr.evaluate(dom, XPathConstants.NODESET);
-		NodeList nodes = (NodeList) result;
-		return nodes;
+		return XPathEngine.getDefault().evaluate(dom, xpathExpr);
 	}
 
 	/**
@@ -0,0 +1,117 @@
+package com.crawljax.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.annotation.concurrent.Immutable;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.google.common.collect.Maps;
+
+/**
+ * The XPath of every element of a {@link Document}, like
+ * {@link XPathHelper#getXPathExpression(Node)} builds it, and the element of every such XPath.
+ * The index is built in one traversal of the document, which counts the siblings of every level
+ * once instead of once per element.
+ * <p>
+ * The index is kept with the document, so every user of the same document shares it. That is
+ * why it may only be used for documents that don't change anymore, like the ones the
+ * {@link com.crawljax.browser.EmbeddedBrowser} hands out for the page it is on.
+ * </p>
+ */
+@Immutable
+public final class XPathIndex {
+
+	private static final String USER_DATA_KEY = "XPATH_INDEX";
+
+	/**
+	 * @param dom
+	 *            A document that won't be changed anymore.
+	 * @return The index of the document, which is built the first time it is asked for.
+	 */
+	public static XPathIndex of(Document dom) {
+		XPathIndex index = find(dom);
+		if (index == null) {
+			index = new XPathIndex(dom);
+			dom.setUserData(USER_DATA_KEY, index, null);
+		}
+		return index;
+	}
+
+	/**
+	 * @param dom
+	 *            The document or <code>null</code>.
+	 * @return The index of the document if it was built before, otherwise <code>null</code>.
+	 */
+	static XPathIndex find(Document dom) {
+		return dom == null ? null : (XPathIndex) dom.getUserData(USER_DATA_KEY);
+	}
+
+	private final Map<Node, String> xpathsByNode;
+	private final Map<String, Element> nodesByXpath;
+
+	private XPathIndex(Document dom) {
+		xpathsByNode = new IdentityHashMap<>();
+		nodesByXpath = Maps.newHashMap();
+		Element root = dom.getDocumentElement();
+		if (root == null) {
+			return;
+		}
+		add(root, "/" + root.getNodeName() + "[1]");
+		Deque<Element> parents = new ArrayDeque<>();
+		parents.push(root);
+		Map<String, Integer> counts = Maps.newHashMap();
+		while (!parents.isEmpty()) {
+			Element parent = parents.pop();
+			String prefix = xpathsByNode.get(parent) + "/";
+			counts.clear();
+			for (Node child = parent.getFirstChild(); child != null; child =
+			        child.getNextSibling()) {
+				if (child instanceof Element) {
+					String name = child.getNodeName();
+					Integer count = counts.get(name);
+					int position = count == null ? 1 : count + 1;
+					counts.put(name, position);
+					add((Element) child, prefix + name + "[" + position + "]");
+					parents.push((Element) child);
+				}
+			}
+		}
+	}
+
+	private void add(Element element, String xpath) {
+		xpathsByNode.put(element, xpath);
+		nodesByXpath.put(xpath, element);
+	}
+
+	/**
+	 * @param node
+	 *            A node of the indexed document.
+	 * @return The XPath of the node (e.g., "/HTML[1]/BODY[1]/DIV[3]") or <code>null</code> if it
+	 *         is not an element of the document.
+	 */
+	public String getXPath(Node node) {
+		return xpathsByNode.get(node);
+	}
+
+	/**
+	 * @param xpath
+	 *            An XPath as {@link #getXPath(Node)} returns it.
+	 * @return The element with that XPath or <code>null</code> if there is none.
+	 */
+	public Element getElement(String xpath) {
+		return nodesByXpath.get(xpath);
+	}
+
+	/**
+	 * @return The number of indexed elements.
+	 */
+	public int size() {
+		return xpathsByNode.size();
+	}
+}
@@ -0,0 +1,114 @@
+package com.crawljax.browser;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import com.crawljax.core.state.Identification;
+import com.crawljax.core.state.Identification.How;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedSet;
+
+public class BoundingBoxesTest {
+
+	private static final Identification FIRST = new Identification(How.xpath,
+	        "/HTML[1]/BODY[1]/A[1]");
+	private static final Identification MISSING = new Identification(How.id, "missing");
+	private static final Identification LINK = new Identification(How.text, "Next");
+
+	private WebDriver driver;
+	private WebDriverBackedEmbeddedBrowser browser;
+
+	@Before
+	public void setup() {
+		driver = mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class));
+		browser =
+		        WebDriverBackedEmbeddedBrowser.withDriver(driver,
+		                ImmutableSortedSet.<String> of(), 0, 0);
+	}
+
+	@Test
+	public void allElementsAreLookedUpInOneScript() {
+		when(((JavascriptExecutor) driver).executeScript(anyString(), any(), any())).thenReturn(
+		        Arrays.asList(Arrays.asList(10L, 20L, 30L, 40L), null));
+
+		Map<Identification, BoundingBox> boxes =
+		        browser.getBoundingBoxes(ImmutableList.of(FIRST, MISSING));
+
+		assertThat(boxes.size(), is(1));
+		assertThat(boxes.get(FIRST), is(new BoundingBox(new Point(10, 20), new Dimension(30, 40))));
+		verify((JavascriptExecutor) driver, times(1)).executeScript(anyString(),
+		        eq(ImmutableList.of("xpath", "id")),
+		        eq(ImmutableList.of(FIRST.getValue(), MISSING.getValue())));
+		verify(driver, never()).findElement(any(By.class));
+	}
+
+	@Test
+	public void fractionalRectsAreAccepted() {
+		when(((JavascriptExecutor) driver).executeScript(anyString(), any(), any())).thenReturn(
+		        Arrays.asList(Arrays.asList(1.0, 2.0, 3.0, 4.0)));
+
+		Map<Identification, BoundingBox> boxes =
+		        browser.getBoundingBoxes(ImmutableList.of(FIRST));
+
+		assertThat(boxes.get(FIRST), is(new BoundingBox(new Point(1, 2), new Dimension(3, 4))));
+	}
+
+	@Test
+	public void elementsTheScriptCannotFindAreAskedForOneByOne() {
+		WebElement element = mock(WebElement.class);
+		when(element.getLocation()).thenReturn(new Point(5, 6));
+		when(element.getSize()).thenReturn(new Dimension(7, 8));
+		when(driver.findElement(LINK.getWebDriverBy())).thenReturn(element);
+
+		Map<Identification, BoundingBox> boxes =
+		        browser.getBoundingBoxes(ImmutableList.of(LINK));
+
+		assertThat(boxes.get(LINK), is(new BoundingBox(new Point(5, 6), new Dimension(7, 8))));
+		verify((JavascriptExecutor) driver, never()).executeScript(anyString(), any(), any());
+	}
+
+	@Test
+	public void missingElementsAreLeftOut() {
+		when(driver.findElement(LINK.getWebDriverBy())).thenThrow(
+		        new NoSuchElementException("gone"));
+
+		assertThat(browser.getBoundingBoxes(ImmutableList.of(LINK)).isEmpty(), is(true));
+		assertThat(browser.getBoundingBoxes(Collections.<Identification> emptyList()).isEmpty(),
+		        is(true));
+	}
+
+	@Test
+	public void lookingUpBoxesKeepsTheCachedDom() {
+		when(driver.getPageSource()).thenReturn("<html><body></body></html>");
+		when(((JavascriptExecutor) driver).executeScript(anyString(), any(), any())).thenReturn(
+		        Arrays.asList((Object) null));
+		long epoch = browser.getDomEpoch();
+
+		browser.getBoundingBoxes(ImmutableList.of(FIRST));
+
+		assertThat(browser.getDomEpoch(), is(epoch));
+	}
+}
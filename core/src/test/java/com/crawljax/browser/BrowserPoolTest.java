@@ -0,0 +1,193 @@
+package com.crawljax.browser;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+
+import javax.inject.Provider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.openqa.selenium.WebDriverException;
+
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.browser.EmbeddedBrowser.BrowserType;
+import com.crawljax.core.configuration.BrowserConfiguration;
+import com.crawljax.core.exception.BrowserConnectionException;
+import com.crawljax.metrics.MetricsModule;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BrowserPoolTest {
+
+	private static final URI URL = URI.create("http://localhost");
+
+	@Mock
+	private Provider<EmbeddedBrowser> factory;
+
+	private BrowserConfiguration config;
+	private MetricRegistry registry;
+	private BrowserPool pool;
+
+	@Before
+	public void setup() {
+		when(factory.get()).thenAnswer(new Answer<EmbeddedBrowser>() {
+
+			@Override
+			public EmbeddedBrowser answer(InvocationOnMock invocation) {
+				return mock(EmbeddedBrowser.class);
+			}
+		});
+		config = new BrowserConfiguration(BrowserType.FIREFOX, 2);
+		registry = new MetricRegistry();
+	}
+
+	@After
+	public void shutDown() {
+		if (pool != null) {
+			pool.shutDown();
+		}
+	}
+
+	@Test(timeout = 5000L)
+	public void warmUpStartsTheBrowsersAndTheSpares() {
+		config.setWarmSpares(1);
+		pool = new BrowserPool(factory, config, registry);
+		pool.warmUp();
+
+		verify(factory, timeout(2000).times(3)).get();
+		pool.get();
+		pool.get();
+		assertThat(spares(), is(1));
+	}
+
+	@Test
+	public void aBrowserIsRecycledAfterTheConfiguredNumberOfResets() {
+		config.setRecycleAfterResets(2);
+		pool = new BrowserPool(factory, config, registry);
+		PooledBrowser browser = (PooledBrowser) pool.get();
+		EmbeddedBrowser first = browser.getDelegate();
+
+		browser.goToUrl(URL);
+		browser.goToUrl(URL);
+		assertThat(browser.getDelegate(), is(first));
+
+		browser.goToUrl(URL);
+		assertThat(browser.getDelegate(), is(not(first)));
+		verify(first, timeout(2000)).close();
+		verify(browser.getDelegate()).goToUrl(URL);
+		assertThat(registry.counter(MetricsModule.BROWSER_PREFIX + "recycled").getCount(),
+		        is(1L));
+	}
+
+	@Test
+	public void aBrowserIsRecycledAfterTheConfiguredNumberOfActions() throws Exception {
+		config.setRecycleAfterActions(1);
+		pool = new BrowserPool(factory, config, registry);
+		PooledBrowser browser = (PooledBrowser) pool.get();
+		EmbeddedBrowser first = browser.getDelegate();
+
+		browser.goToUrl(URL);
+		browser.fireEventAndWait(null);
+		browser.goToUrl(URL);
+
+		assertThat(browser.getDelegate(), is(not(first)));
+	}
+
+	@Test
+	public void aBrowserIsRecycledWhenItGetsANewTaskWithoutAReset() throws Exception {
+		config.setRecycleAfterActions(1);
+		pool = new BrowserPool(factory, config, registry);
+		PooledBrowser browser = (PooledBrowser) pool.get();
+		EmbeddedBrowser first = browser.getDelegate();
+
+		browser.goToUrl(URL);
+		assertThat(BrowserPool.recycleIfNeeded(browser), is(false));
+		browser.fireEventAndWait(null);
+
+		assertThat(BrowserPool.recycleIfNeeded(browser), is(true));
+		EmbeddedBrowser second = browser.getDelegate();
+		assertThat(second, is(not(first)));
+		browser.goToUrl(URL);
+		assertThat(browser.getDelegate(), is(second));
+		assertThat(BrowserPool.recycleIfNeeded(mock(EmbeddedBrowser.class)), is(false));
+	}
+
+	@Test
+	public void aLostBrowserIsReplacedAndTheErrorIsRethrown() {
+		pool = new BrowserPool(factory, config, registry);
+		PooledBrowser browser = (PooledBrowser) pool.get();
+		EmbeddedBrowser crashed = browser.getDelegate();
+		doThrow(new BrowserConnectionException(new WebDriverException("gone"))).when(crashed)
+		        .goToUrl(any(URI.class));
+
+		try {
+			browser.goToUrl(URL);
+			fail("The connection error should be rethrown");
+		} catch (BrowserConnectionException e) {
+			assertThat(browser.getDelegate(), is(not(crashed)));
+		}
+		browser.goToUrl(URL);
+		verify(browser.getDelegate()).goToUrl(URL);
+		assertThat(registry.counter(MetricsModule.BROWSER_PREFIX + "replaced").getCount(),
+		        is(1L));
+	}
+
+	@Test
+	public void aFailedReplacementIsAddedToTheOriginalError() {
+		pool = new BrowserPool(factory, config, registry);
+		PooledBrowser browser = (PooledBrowser) pool.get();
+		EmbeddedBrowser crashed = browser.getDelegate();
+		BrowserConnectionException lost =
+		        new BrowserConnectionException(new WebDriverException("gone"));
+		doThrow(lost).when(crashed).goToUrl(any(URI.class));
+		IllegalStateException noBrowser = new IllegalStateException("no browser");
+		when(factory.get()).thenThrow(noBrowser);
+
+		try {
+			browser.goToUrl(URL);
+			fail("The connection error should be rethrown");
+		} catch (BrowserConnectionException e) {
+			assertThat(e, is(sameInstance(lost)));
+			assertThat(e.getSuppressed()[0], is((Throwable) noBrowser));
+			assertThat(browser.getDelegate(), is(crashed));
+		}
+		assertThat(registry.counter(MetricsModule.BROWSER_PREFIX + "replaced").getCount(),
+		        is(0L));
+	}
+
+	@Test
+	public void otherErrorsKeepTheBrowser() {
+		pool = new BrowserPool(factory, config, registry);
+		PooledBrowser browser = (PooledBrowser) pool.get();
+		EmbeddedBrowser delegate = browser.getDelegate();
+		when(delegate.getCurrentUrl()).thenThrow(new IllegalStateException());
+
+		try {
+			browser.getCurrentUrl();
+			fail("The error should be rethrown");
+		} catch (IllegalStateException e) {
+			assertThat(browser.getDelegate(), is(delegate));
+		}
+	}
+
+	private int spares() {
+		return (Integer) registry.getGauges().get(MetricsModule.BROWSER_PREFIX + "spares")
+		        .getValue();
+	}
+}
@@ -0,0 +1,93 @@
+package com.crawljax.browser;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.w3c.dom.Document;
+
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.metrics.MetricsModule;
+import com.google.common.collect.ImmutableSortedSet;
+
+public class DomSnapshotTest {
+
+	private static final String PAGE =
+	        "<html><head><script>var a;</script></head><body><p>Hello</p></body></html>";
+
+	private WebDriver driver;
+	private WebDriverBackedEmbeddedBrowser browser;
+	private MetricRegistry registry;
+
+	@Before
+	public void setup() {
+		driver =
+		        mock(WebDriver.class, withSettings().extraInterfaces(JavascriptExecutor.class)
+		                .defaultAnswer(RETURNS_DEEP_STUBS));
+		when(driver.getPageSource()).thenReturn(PAGE);
+		browser =
+		        WebDriverBackedEmbeddedBrowser.withDriver(driver,
+		                ImmutableSortedSet.<String> of(), 0, 0);
+		registry = new MetricRegistry();
+		browser.registerMetrics(registry);
+	}
+
+	@Test
+	public void allDomsAreReadFromTheBrowserOnce() {
+		String stripped = browser.getStrippedDom();
+		assertThat(browser.getStrippedDom(), is(stripped));
+		browser.getUnStrippedDom();
+		browser.getStrippedDomWithoutIframeContent();
+		Document document = browser.getStrippedDocument();
+
+		assertThat(browser.getStrippedDocument(), is(sameInstance(document)));
+		verify(driver, times(1)).getPageSource();
+		assertThat(stripped.contains("SCRIPT"), is(false));
+	}
+
+	@Test
+	public void changingThePageStartsANewEpoch() {
+		Document document = browser.getStrippedDocument();
+		long epoch = browser.getDomEpoch();
+
+		browser.goBack();
+
+		assertThat(browser.getDomEpoch(), is(epoch + 1));
+		assertThat(browser.getStrippedDocument(), is(not(sameInstance(document))));
+		verify(driver, times(2)).getPageSource();
+	}
+
+	@Test
+	public void queriesKeepTheDomButScriptsDropIt() {
+		Document document = browser.getStrippedDocument();
+
+		browser.queryJavaScript("return document.title;");
+		assertThat(browser.getStrippedDocument(), is(sameInstance(document)));
+
+		browser.executeJavaScript("document.title = 'changed';");
+		assertThat(browser.getStrippedDocument(), is(not(sameInstance(document))));
+		verify(driver, times(2)).getPageSource();
+	}
+
+	@Test
+	public void hitsAndMissesAreCounted() {
+		browser.getStrippedDom();
+		browser.getStrippedDom();
+
+		assertThat(registry.counter(MetricsModule.BROWSER_PREFIX + "dom_cache_hits").getCount(),
+		        is(1L));
+		assertThat(registry.counter(MetricsModule.BROWSER_PREFIX + "dom_cache_misses")
+		        .getCount(), is(2L));
+	}
+}
@@ -0,0 +1,145 @@
+package com.crawljax.browser;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.condition.browserwaiter.ExpectedCondition;
+import com.crawljax.condition.browserwaiter.WaitCondition;
+import com.crawljax.condition.browserwaiter.WaitConditionChecker;
+import com.crawljax.core.CrawljaxException;
+import com.crawljax.core.configuration.CrawlRules;
+import com.crawljax.core.configuration.CrawljaxConfiguration;
+import com.crawljax.core.configuration.CrawljaxConfiguration.CrawljaxConfigurationBuilder;
+import com.crawljax.metrics.MetricsModule;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SettleWaiterTest {
+
+	private static final long QUIET = 50;
+	private static final long MAXIMUM = 2000;
+
+	@Mock
+	private EmbeddedBrowser browser;
+
+	private MetricRegistry registry;
+	private SettleWaiter waiter;
+
+	@Before
+	public void setup() {
+		registry = new MetricRegistry();
+		when(browser.getCurrentUrl()).thenReturn("http://localhost/");
+		waiter = new SettleWaiter(QUIET, checkerFor(), registry);
+	}
+
+	@Test
+	public void aQuietPageSettlesImmediately() throws InterruptedException {
+		when(browser.queryJavaScript(anyString())).thenReturn(status("complete", 0, QUIET));
+
+		assertThat(waiter.afterEvent(browser, MAXIMUM), is(lessThan(MAXIMUM / 2)));
+		assertThat(registry.histogram(MetricsModule.BROWSER_PREFIX + "settle_time_event")
+		        .getCount(), is(1L));
+	}
+
+	@Test
+	public void pendingRequestsAndLoadingPagesKeepTheBrowserWaiting()
+	        throws InterruptedException {
+		when(browser.queryJavaScript(anyString()))
+		        .thenReturn(status("loading", 0, 0))
+		        .thenReturn(status("complete", 1, QUIET))
+		        .thenReturn(status("complete", 0, QUIET));
+
+		long waited = waiter.afterReload(browser, MAXIMUM);
+
+		assertThat(waited, is(greaterThanOrEqualTo(2 * (QUIET / 2))));
+		assertThat(waited, is(lessThan(MAXIMUM / 2)));
+		assertThat(registry.histogram(MetricsModule.BROWSER_PREFIX + "settle_time_reload")
+		        .getCount(), is(1L));
+	}
+
+	@Test
+	public void aBusyPageIsCappedAtTheMaximum() throws InterruptedException {
+		when(browser.queryJavaScript(anyString())).thenReturn(status("complete", 0, 0));
+
+		assertThat(waiter.afterEvent(browser, 200), is(greaterThanOrEqualTo(200L)));
+	}
+
+	@Test
+	public void anUntrackablePageWaitsTheFullTime() throws InterruptedException {
+		when(browser.queryJavaScript(anyString())).thenThrow(new CrawljaxException("no JS"));
+
+		assertThat(waiter.afterEvent(browser, 100), is(greaterThanOrEqualTo(100L)));
+	}
+
+	@Test
+	public void waitConditionsArePartOfTheSettleLoop() throws InterruptedException {
+		ExpectedCondition condition = mock(ExpectedCondition.class);
+		when(condition.isSatisfied(browser)).thenReturn(false, false, true);
+		waiter = new SettleWaiter(QUIET, checkerFor(condition), registry);
+		when(browser.queryJavaScript(anyString())).thenReturn(status("complete", 0, QUIET));
+
+		long waited = waiter.afterEvent(browser, MAXIMUM);
+
+		assertThat(waited, is(greaterThanOrEqualTo(2 * (QUIET / 2))));
+		assertThat(waited, is(lessThan(MAXIMUM / 2)));
+	}
+
+	@Test
+	public void waitConditionsAreWaitedForUpToTheirOwnTimeOut() throws InterruptedException {
+		ExpectedCondition never = mock(ExpectedCondition.class);
+		waiter = new SettleWaiter(QUIET, checkerFor(300, never), registry);
+		when(browser.queryJavaScript(anyString())).thenReturn(status("complete", 0, QUIET));
+
+		long waited = waiter.afterEvent(browser, 100);
+
+		assertThat(waited, is(greaterThanOrEqualTo(300L)));
+		assertThat(waited, is(lessThan(MAXIMUM)));
+	}
+
+	@Test
+	public void browsersWithoutAWaiterWaitForTheConditionsThemselves() {
+		ExpectedCondition condition = mock(ExpectedCondition.class);
+		when(condition.isSatisfied(browser)).thenReturn(false, true);
+
+		checkerFor(condition).wait(browser);
+
+		verify(condition, atLeast(2)).isSatisfied(browser);
+	}
+
+	private WaitConditionChecker checkerFor(ExpectedCondition... conditions) {
+		return checkerFor(5000, conditions);
+	}
+
+	private WaitConditionChecker checkerFor(int timeOut, ExpectedCondition... conditions) {
+		CrawljaxConfigurationBuilder builder =
+		        CrawljaxConfiguration.builderFor("http://localhost");
+		builder.crawlRules().waitForQuietDom(QUIET, TimeUnit.MILLISECONDS);
+		if (conditions.length > 0) {
+			builder.crawlRules().addWaitCondition(
+			        new WaitCondition("localhost", timeOut, conditions));
+		}
+		CrawlRules rules = builder.build().getCrawlRules();
+		return new WaitConditionChecker(rules);
+	}
+
+	private List<Object> status(String readyState, long pending, long quietFor) {
+		return Arrays.<Object> asList(readyState, pending, quietFor);
+	}
+}
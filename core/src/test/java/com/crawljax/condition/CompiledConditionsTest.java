@@ -0,0 +1,233 @@
+package com.crawljax.condition;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.browser.EmbeddedBrowser;
+import com.crawljax.condition.CompiledConditions.Evaluation;
+import com.crawljax.condition.eventablecondition.EventableCondition;
+import com.crawljax.condition.invariant.Invariant;
+import com.crawljax.core.CrawljaxException;
+import com.crawljax.core.state.Identification;
+import com.crawljax.core.state.Identification.How;
+import com.crawljax.metrics.MetricsModule;
+import com.crawljax.util.DomUtils;
+import com.google.common.collect.ImmutableList;
+
+public class CompiledConditionsTest {
+
+	private static final String DOM =
+	        "<HTML><HEAD></HEAD><BODY><DIV id=\"a\">Hello</DIV></BODY></HTML>";
+
+	private EmbeddedBrowser browser;
+
+	@Before
+	public void setup() throws Exception {
+		browser = mock(EmbeddedBrowser.class);
+		when(browser.getStrippedDom()).thenReturn(DOM);
+		when(browser.getStrippedDocument()).thenReturn(DomUtils.asDocument(DOM));
+		when(browser.getCurrentUrl()).thenReturn("http://example.com/page");
+	}
+
+	@Test
+	public void scriptConditionsAreCheckedInOneScript() {
+		Condition first = new JavaScriptCondition("1 == 1");
+		Condition second = new JavaScriptCondition("1 == 2");
+		when(browser.queryJavaScript(anyString())).thenReturn(Arrays.asList(true, false));
+
+		CompiledConditions compiled = new CompiledConditions(ImmutableList.of(first, second));
+		Evaluation evaluation = compiled.evaluate(browser);
+
+		assertThat(compiled.getScriptedConditions(), is(2));
+		assertThat(evaluation.check(first), is(true));
+		assertThat(evaluation.check(second), is(false));
+		verify(browser, times(1)).queryJavaScript(anyString());
+	}
+
+	@Test
+	public void everyExpressionIsCompiledOnItsOwn() {
+		Condition condition = new JavaScriptCondition("document.title == \"it's\"");
+		when(browser.queryJavaScript(anyString())).thenReturn(Arrays.asList(true));
+
+		new CompiledConditions(ImmutableList.of(condition)).evaluate(browser).check(condition);
+
+		verify(browser).queryJavaScript(
+		        contains("check(\"return (document.title == \\\"it's\\\");\")"));
+		verify(browser, never()).executeJavaScript(anyString());
+	}
+
+	@Test
+	public void conditionsThatDontCompileAreCheckedOnTheirOwn() {
+		Condition broken = new JavaScriptCondition("1 ==");
+		Condition holds = new JavaScriptCondition("1 == 1");
+		when(browser.queryJavaScript(contains("results"))).thenReturn(
+		        Arrays.asList((Object) null, true));
+		when(browser.queryJavaScript(contains("if(1 ==)"))).thenReturn("0");
+
+		Evaluation evaluation =
+		        new CompiledConditions(ImmutableList.of(broken, holds)).evaluate(browser);
+
+		assertThat(evaluation.check(holds), is(true));
+		assertThat(evaluation.check(broken), is(false));
+		verify(browser, times(2)).queryJavaScript(anyString());
+	}
+
+	@Test
+	public void aFailingScriptChecksTheConditionsOnTheirOwn() {
+		Condition condition = new JavaScriptCondition("true");
+		when(browser.queryJavaScript(contains("results"))).thenThrow(
+		        new CrawljaxException("too long"));
+		when(browser.queryJavaScript(contains("if(true)"))).thenReturn("1");
+
+		Evaluation evaluation =
+		        new CompiledConditions(ImmutableList.of(condition)).evaluate(browser);
+
+		assertThat(evaluation.check(condition), is(true));
+	}
+
+	@Test
+	public void eventableConditionsAreCompiledOnceAndTimed() {
+		MetricRegistry registry = new MetricRegistry();
+		EventableCondition eventable =
+		        new EventableCondition("id", new JavaScriptCondition("a"));
+		when(browser.queryJavaScript(anyString())).thenReturn(Arrays.asList(true));
+
+		assertThat(eventable.checkAllConditionsSatisfied(browser, registry), is(true));
+		assertThat(eventable.checkAllConditionsSatisfied(browser, registry), is(true));
+		eventable.addCondition(new JavaScriptCondition("b"));
+		when(browser.queryJavaScript(anyString())).thenReturn(Arrays.asList(true, false));
+		assertThat(eventable.checkAllConditionsSatisfied(browser, registry), is(false));
+
+		List<String> scripts = scriptsRun(3);
+		assertThat(scripts.get(0), is(scripts.get(1)));
+		assertThat(scripts.get(2), containsString("return (b);"));
+		assertThat(registry.timer(MetricsModule.CONDITIONS_PREFIX + "scripts").getCount(),
+		        is(3L));
+	}
+
+	private List<String> scriptsRun(int times) {
+		ArgumentCaptor<String> scripts = ArgumentCaptor.forClass(String.class);
+		verify(browser, times(times)).queryJavaScript(scripts.capture());
+		return scripts.getAllValues();
+	}
+
+	@Test
+	public void domConditionsShareOneReadOfThePage() {
+		ImmutableList<Condition> conditions =
+		        ImmutableList.<Condition> of(new XPathCondition("//DIV"),
+		                new NotXPathCondition("//SPAN"),
+		                new RegexCondition("hello"), new NotRegexCondition("bye"),
+		                new UrlCondition("example"), new NotUrlCondition("other"));
+
+		CompiledConditions compiled = new CompiledConditions(conditions);
+
+		assertThat(compiled.evaluate(browser).checkAll(conditions), is(true));
+		verify(browser, times(1)).getStrippedDocument();
+		verify(browser, times(1)).getStrippedDom();
+		verify(browser, times(1)).getCurrentUrl();
+		verify(browser, never()).queryJavaScript(anyString());
+	}
+
+	@Test
+	public void aFailingScriptFailsItsConditions() {
+		Condition condition = new JavaScriptCondition("true");
+		when(browser.queryJavaScript(anyString())).thenThrow(new CrawljaxException("gone"));
+
+		Evaluation evaluation =
+		        new CompiledConditions(ImmutableList.of(condition)).evaluate(browser);
+
+		assertThat(evaluation.check(condition), is(false));
+	}
+
+	@Test
+	public void visibilityIsAskedFromTheBrowser() {
+		Identification link = new Identification(How.id, "a");
+		Condition visible = new VisibleCondition(link);
+		when(browser.isVisible(link)).thenReturn(true);
+
+		CompiledConditions compiled = new CompiledConditions(ImmutableList.of(visible));
+
+		assertThat(compiled.getScriptedConditions(), is(0));
+		assertThat(compiled.evaluate(browser).check(visible), is(true));
+		assertThat(compiled.evaluate(browser).check(Logic.not(visible)), is(false));
+		verify(browser, never()).queryJavaScript(anyString());
+	}
+
+	@Test
+	public void invariantsAreTimedAndCheckedWithOneScript() {
+		MetricRegistry registry = new MetricRegistry();
+		Invariant holds = new Invariant("holds", new JavaScriptCondition("a"));
+		Invariant fails =
+		        new Invariant("fails", new XPathCondition("//SPAN"), new JavaScriptCondition(
+		                "b"));
+		when(browser.queryJavaScript(anyString())).thenReturn(Arrays.asList(true, true));
+
+		ConditionTypeChecker<Invariant> checker =
+		        new ConditionTypeChecker<>(ImmutableList.of(holds, fails), registry);
+
+		assertThat(checker.getFailedConditions(browser), is(ImmutableList.of(fails)));
+		verify(browser, times(1)).queryJavaScript(anyString());
+		assertThat(registry.timer(MetricsModule.CONDITIONS_PREFIX + "invariant.0.holds")
+		        .getCount(), is(1L));
+		assertThat(registry.timer(MetricsModule.CONDITIONS_PREFIX + "invariant.1.fails")
+		        .getCount(), is(1L));
+		assertThat(registry.timer(MetricsModule.CONDITIONS_PREFIX + "scripts").getCount(),
+		        is(1L));
+	}
+
+	@Test
+	public void conditionsBehindAFailingPreconditionAreNotChecked() {
+		MetricRegistry registry = new MetricRegistry();
+		Invariant gated =
+		        new Invariant("gated", new JavaScriptCondition("condition"),
+		                new JavaScriptCondition("precondition"));
+		when(browser.queryJavaScript(anyString())).thenReturn(Arrays.asList(false));
+
+		ConditionTypeChecker<Invariant> checker =
+		        new ConditionTypeChecker<>(ImmutableList.of(gated), registry);
+
+		assertThat(checker.getFailedConditions(browser), is(ImmutableList.<Invariant> of()));
+		ArgumentCaptor<String> script = ArgumentCaptor.forClass(String.class);
+		verify(browser, times(1)).queryJavaScript(script.capture());
+		assertThat(script.getValue(), containsString("precondition"));
+		assertThat(script.getValue(), not(containsString("(condition)")));
+		assertThat(registry.timer(MetricsModule.CONDITIONS_PREFIX + "scripts").getCount(),
+		        is(1L));
+	}
+
+	@Test
+	public void invariantsWithTheSameOrNoDescriptionHaveTheirOwnTimer() {
+		MetricRegistry registry = new MetricRegistry();
+		Invariant first = new Invariant("same", new JavaScriptCondition("a"));
+		Invariant second = new Invariant("same", new JavaScriptCondition("b"));
+		Invariant unnamed = new Invariant(null, new JavaScriptCondition("c"));
+		when(browser.queryJavaScript(anyString())).thenReturn(Arrays.asList(true, true, true));
+
+		new ConditionTypeChecker<>(ImmutableList.of(first, second, unnamed), registry)
+		        .getFailedConditions(browser);
+
+		assertThat(registry.timer(MetricsModule.CONDITIONS_PREFIX + "invariant.0.same")
+		        .getCount(), is(1L));
+		assertThat(registry.timer(MetricsModule.CONDITIONS_PREFIX + "invariant.1.same")
+		        .getCount(), is(1L));
+		assertThat(registry.timer(MetricsModule.CONDITIONS_PREFIX + "invariant.2").getCount(),
+		        is(1L));
+	}
+}
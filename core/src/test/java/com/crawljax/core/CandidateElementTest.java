@@ -89,6 +89,33 @@ public class CandidateElementTest {
 		        .getUniqueString().trim());
 	}
 
+	@Test
+	public void theDescriptorIsKeptWhenTheElementIsReleased() {
+		e.setAttribute("id", "abc");
+		e.setTextContent("Click me");
+		String generalString = c.getGeneralString();
+
+		c.detach();
+
+		Assert.assertNull(c.getElement());
+		Assert.assertEquals("TEST", c.getElementDescriptor().getTag());
+		Assert.assertEquals("abc", c.getElementDescriptor().getElementId());
+		Assert.assertEquals("Click me", c.getElementDescriptor().getText());
+		Assert.assertEquals(generalString, c.getGeneralString());
+	}
+
+	@Test
+	public void aCopyKeepsItsElementWhenTheOriginalIsReleased() {
+		e.setAttribute("id", "abc");
+		CandidateElement copy = c.copy();
+
+		c.detach();
+
+		Assert.assertSame(e, copy.getElement());
+		Assert.assertEquals(c.getElementDescriptor(), copy.getElementDescriptor());
+		Assert.assertEquals(c.getUniqueString(), copy.getUniqueString());
+	}
+
 	@Test
 	public void testMultipleAttribureElementWithAtusaOrderedAlphabetical() throws SAXException,
 	        IOException {
@@ -0,0 +1,146 @@
+package com.crawljax.core;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.core.configuration.CrawljaxConfiguration;
+import com.crawljax.forms.FormInput;
+import com.crawljax.metrics.MetricsModule;
+import com.crawljax.util.DomUtils;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+
+public class CheckedElementsTest {
+
+	private static final List<FormInput> NO_INPUTS = ImmutableList.of();
+
+	@Test
+	public void digestsAreFoundAfterTheyAreAdded() {
+		assertAddsAndFinds(new CheckedElementDigests());
+	}
+
+	@Test
+	public void filteredDigestsAreFoundAfterTheyAreAdded() {
+		assertAddsAndFinds(new CheckedElementFilter(1000, 0.001));
+	}
+
+	@Test
+	public void checkpointsOnlyContainNewDigests() throws IOException {
+		CheckedElementDigests written = new CheckedElementDigests();
+		written.add(digest("a"), digest("a1"));
+		int first = written.size();
+		written.add(digest("b"), digest("b1"));
+
+		CheckedElementDigests restored = new CheckedElementDigests();
+		restored.read(roundTrip(written, first, written.size()));
+
+		assertThat(restored.contains(digest("b1")), is(true));
+		assertThat(restored.contains(digest("a1")), is(false));
+		assertThat(restored.size(), is(2));
+	}
+
+	@Test
+	public void filtersAreRestoredFromTheirCheckpointAndFromDigests() throws IOException {
+		CheckedElementFilter written = new CheckedElementFilter(1000, 0.001);
+		written.add(digest("a"), digest("a1"));
+		CheckedElementDigests digests = new CheckedElementDigests();
+		digests.add(digest("b"), digest("b1"));
+
+		CheckedElementFilter restored = new CheckedElementFilter(1000, 0.001);
+		restored.read(roundTrip(written, 0, written.size()));
+		restored.read(roundTrip(digests, 0, digests.size()));
+
+		assertThat(restored.contains(digest("a1")), is(true));
+		assertThat(restored.contains(digest("b1")), is(true));
+		assertThat(restored.size(), is(4));
+	}
+
+	@Test
+	public void laterCheckpointsOfAFilterOnlyContainTheNewDigests() throws IOException {
+		CheckedElementFilter written = new CheckedElementFilter(1000, 0.001);
+		written.add(digest("a"), digest("a1"));
+		int first = written.size();
+		CheckedElementFilter restored = new CheckedElementFilter(1000, 0.001);
+		DataInputStream whole = roundTrip(written, 0, first);
+		int filterBytes = whole.available();
+		restored.read(whole);
+
+		written.add(digest("b"), digest("b1"));
+		DataInputStream delta = roundTrip(written, first, written.size());
+
+		assertThat(delta.available(), is(1 + 4 + 2 * CheckedElements.DIGEST_BITS / Byte.SIZE));
+		assertThat(delta.available() < filterBytes, is(true));
+		restored.read(delta);
+		assertThat(restored.contains(digest("a1")), is(true));
+		assertThat(restored.contains(digest("b1")), is(true));
+		assertThat(restored.size(), is(4));
+	}
+
+	@Test(expected = CrawljaxException.class)
+	public void digestsCannotBeRestoredFromAFilter() throws IOException {
+		CheckedElementFilter written = new CheckedElementFilter(1000, 0.001);
+		written.add(digest("a"), digest("a1"));
+
+		new CheckedElementDigests().read(roundTrip(written, 0, written.size()));
+	}
+
+	@Test
+	public void theConfiguredFilterIsUsedAndReported() throws IOException {
+		CrawljaxConfiguration config =
+		        CrawljaxConfiguration.builderFor("http://example.com")
+		                .setCheckedElementsFilter(1000, 0.01).build();
+		MetricRegistry registry = new MetricRegistry();
+		CandidateElementManager manager =
+		        new CandidateElementManager(null, null, config, registry);
+		Document dom = DomUtils.asDocument("");
+		Element element = dom.createElement("A");
+		CandidateElement candidate = new CandidateElement(element, "", NO_INPUTS);
+
+		assertThat(manager.markChecked(candidate), is(true));
+		assertThat(manager.markChecked(candidate), is(false));
+
+		assertThat(manager.getCheckedElements() instanceof CheckedElementFilter, is(true));
+		assertThat(manager.isChecked(candidate.getUniqueString()), is(true));
+		assertThat(registry.getCounters()
+		        .get(MetricsModule.ELEMENTS_PREFIX + "checked_rejected").getCount(), is(1L));
+		assertThat((Integer) registry.getGauges()
+		        .get(MetricsModule.ELEMENTS_PREFIX + "checked_digests").getValue(), is(1));
+	}
+
+	private static void assertAddsAndFinds(CheckedElements elements) {
+		assertThat(elements.contains(digest("general")), is(false));
+		assertThat(elements.add(digest("general"), digest("unique")), is(true));
+		assertThat(elements.contains(digest("general")), is(true));
+		assertThat(elements.contains(digest("unique")), is(true));
+		assertThat(elements.add(digest("other general"), digest("unique")), is(false));
+		assertThat(elements.contains(digest("other general")), is(false));
+		assertThat(elements.add(digest("general"), digest("other unique")), is(true));
+		assertThat(elements.size(), is(3));
+	}
+
+	private static DataInputStream roundTrip(CheckedElements elements, int from, int to)
+	        throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		elements.write(out, from, to);
+		out.close();
+		return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+	}
+
+	private static HashCode digest(String element) {
+		return CheckedElements.DIGESTS.hashString(element, Charsets.UTF_8);
+	}
+}
@@ -0,0 +1,406 @@
+package com.crawljax.core;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Element;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.crawljax.condition.eventablecondition.EventableConditionChecker;
+import com.crawljax.core.configuration.CrawljaxConfiguration;
+import com.crawljax.core.state.DefaultStateVertexFactory;
+import com.crawljax.core.state.Eventable;
+import com.crawljax.core.state.Eventable.EventType;
+import com.crawljax.core.state.Identification;
+import com.crawljax.core.state.Identification.How;
+import com.crawljax.core.state.InMemoryStateFlowGraph;
+import com.crawljax.core.state.StateFlowGraph;
+import com.crawljax.core.state.StateVertex;
+import com.crawljax.core.state.StateVertexFactory;
+import com.crawljax.di.CrawlSessionProvider;
+import com.crawljax.forms.FormInput;
+import com.crawljax.metrics.MetricsModule;
+import com.crawljax.util.DomUtils;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.inject.util.Providers;
+
+public class CheckpointTest {
+
+	private static final String URL = "http://example.com";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CrawljaxConfiguration config;
+	private Crawl crawl;
+	private StateVertex index;
+
+	@Before
+	public void setup() {
+		config =
+		        CrawljaxConfiguration.builderFor(URL).setCheckpoints(folder.getRoot(), 1)
+		                .build();
+		crawl = new Crawl();
+		index = crawl.factory.createIndex(URL, page("index"), page("index"));
+		crawl.sessions.setup(index);
+	}
+
+	@Test
+	public void theCrawlIsRestoredFromACheckpoint() throws IOException {
+		StateVertex state = crawl.addState(1, "first");
+		Eventable edge = crawl.addEdge(index, state, "/HTML[1]/BODY[1]/A[1]");
+		CandidateElement candidate = candidate("/HTML[1]/BODY[1]/A[2]");
+		crawl.checked.markChecked(candidate);
+		crawl.frontier.addActions(ImmutableList.of(candidate), state);
+		crawl.sessions.get().addCrawlPath(ImmutableList.of(edge));
+
+		assertThat(crawl.checkpointer.checkpoint(), is(true));
+		Crawl restored = new Crawl();
+		restored.checkpointer.restore();
+
+		assertThat(restored.graph.getNumberOfStates(), is(2));
+		StateVertex restoredState = restored.graph.getById(1);
+		assertThat(restoredState.getStrippedDom(), is(state.getStrippedDom()));
+		assertThat(restored.graph.getInitialState().getName(), is("index"));
+		Eventable restoredEdge =
+		        Iterables.getOnlyElement(restored.graph.getOutgoingClickables(restored.graph
+		                .getInitialState()));
+		assertThat(restoredEdge.getIdentification(), is(edge.getIdentification()));
+		assertThat(restoredEdge.getTargetStateVertex(), is(restoredState));
+		assertThat(restoredEdge.getRelatedFormInputs(), hasSize(1));
+
+		List<Eventable> path =
+		        Iterables.getOnlyElement(restored.sessions.get().getCrawlPaths());
+		assertThat(path.get(0), is(sameInstance(restoredEdge)));
+		assertThat(restored.checked.isChecked(candidate.getUniqueString()), is(true));
+
+		CandidateCrawlAction action = restored.frontier.pollActionOrNull(restoredState);
+		assertThat(action, is(notNullValue()));
+		CandidateElement restoredCandidate = action.getCandidateElement();
+		assertThat(restoredCandidate.getIdentification(), is(candidate.getIdentification()));
+		assertThat(restoredCandidate.getElementDescriptor(),
+		        is(candidate.getElementDescriptor()));
+		assertThat(restoredCandidate.getUniqueString(), is(candidate.getUniqueString()));
+	}
+
+	@Test
+	public void checkpointsOnlyAppendWhatChanged() {
+		StateVertex first = crawl.addState(1, "first");
+		crawl.addEdge(index, first, "/HTML[1]/BODY[1]/A[1]");
+		crawl.checkpointer.checkpoint();
+		long firstCheckpoint = checkpointFile().length();
+
+		StateVertex second = crawl.addState(2, "second");
+		crawl.addEdge(first, second, "/HTML[1]/BODY[1]/A[1]");
+		crawl.checkpointer.checkpoint();
+		long secondCheckpoint = checkpointFile().length() - firstCheckpoint;
+
+		assertThat(secondCheckpoint, is(lessThan(firstCheckpoint)));
+		Crawl restored = new Crawl();
+		restored.checkpointer.restore();
+		assertThat(restored.graph.getNumberOfStates(), is(3));
+		assertThat(restored.graph.getAllEdges(), hasSize(2));
+	}
+
+	@Test
+	public void anIncompleteCheckpointIsDropped() throws IOException {
+		crawl.addState(1, "first");
+		crawl.checkpointer.checkpoint();
+		long committed = checkpointFile().length();
+		try (FileOutputStream out = new FileOutputStream(checkpointFile(), true)) {
+			out.write(new byte[] { CheckpointLog.STATE, 0, 0, 1, 0, 42 });
+		}
+
+		Crawl restored = new Crawl();
+		restored.checkpointer.restore();
+
+		assertThat(restored.graph.getNumberOfStates(), is(2));
+		assertThat(checkpointFile().length(), is(committed));
+	}
+
+	@Test
+	public void actionsThatWereBeingFiredAreRestored() throws IOException {
+		StateVertex state = crawl.addState(1, "first");
+		crawl.frontier.addActions(ImmutableList.of(candidate("/HTML[1]/BODY[1]/A[2]")), state);
+		CandidateCrawlAction polled = crawl.frontier.pollActionOrNull(state);
+
+		crawl.checkpointer.checkpoint();
+		Crawl restored = new Crawl();
+		restored.checkpointer.restore();
+
+		CandidateCrawlAction action =
+		        restored.frontier.pollActionOrNull(restored.graph.getById(1));
+		assertThat(action.getCandidateElement().getIdentification(), is(polled
+		        .getCandidateElement().getIdentification()));
+	}
+
+	@Test
+	public void aRestoredCrawlKeepsAppending() {
+		crawl.addState(1, "first");
+		crawl.checkpointer.checkpoint();
+		Crawl resumed = new Crawl();
+		resumed.checkpointer.restore();
+		StateVertex second = resumed.addState(2, "second");
+		resumed.addEdge(resumed.graph.getById(1), second, "/HTML[1]/BODY[1]/A[1]");
+		resumed.checkpointer.checkpoint();
+
+		Crawl restored = new Crawl();
+		restored.checkpointer.restore();
+
+		assertThat(restored.graph.getNumberOfStates(), is(3));
+		assertThat(restored.graph.getAllEdges(), hasSize(1));
+	}
+
+	@Test
+	public void edgesOfARestoredCloneGoToTheStateItIsACloneOf() throws IOException {
+		StateVertex first = crawl.addState(1, "first");
+		StateVertex second = crawl.addState(2, "FIRST");
+		crawl.addEdge(index, first, "/HTML[1]/BODY[1]/A[1]");
+		crawl.addEdge(index, second, "/HTML[1]/BODY[1]/A[2]");
+		crawl.frontier.addActions(ImmutableList.of(candidate("/HTML[1]/BODY[1]/A[3]")), second);
+		crawl.checkpointer.checkpoint();
+
+		Crawl restored = new Crawl(new DefaultStateVertexFactory() {
+
+			@Override
+			public StateVertex newStateVertex(int id, String url, String name, String dom,
+			        String strippedDom) {
+				return super.newStateVertex(id, url, name, dom, strippedDom.toLowerCase());
+			}
+		});
+		restored.checkpointer.restore();
+
+		StateVertex restoredFirst = restored.graph.getById(1);
+		assertThat(restored.graph.getNumberOfStates(), is(2));
+		for (Eventable edge : restored.graph.getAllEdges()) {
+			assertThat(edge.getTargetStateVertex(), is(restoredFirst));
+		}
+		assertThat(restored.graph.getAllEdges(), hasSize(2));
+		assertThat(restored.frontier.pollActionOrNull(restoredFirst), is(notNullValue()));
+	}
+
+	@Test(timeout = 60_000L)
+	public void aCheckpointAskedForWhileOneIsWrittenIsWrittenAfterIt()
+	        throws InterruptedException {
+		final CountDownLatch writing = new CountDownLatch(1);
+		final CountDownLatch written = new CountDownLatch(1);
+		StateVertexFactory factory = new DefaultStateVertexFactory();
+		Crawl slow = new Crawl(factory, new InMemoryStateFlowGraph(new ExitNotifier(0), factory) {
+
+			@Override
+			public StateVertex getById(int id) {
+				writing.countDown();
+				Uninterruptibles.awaitUninterruptibly(written);
+				return super.getById(id);
+			}
+		});
+		slow.sessions.setup(factory.createIndex(URL, page("index"), page("index")));
+		Timer snapshots = slow.registry.timer(MetricsModule.CHECKPOINTS_PREFIX + "snapshot_time");
+		slow.addState(1, "first");
+		slow.checkpointer.stateAdded();
+		writing.await();
+		slow.addState(2, "second");
+		slow.checkpointer.stateAdded();
+		written.countDown();
+
+		while (snapshots.getCount() < 2) {
+			Thread.sleep(10);
+		}
+		assertThat(snapshots.getCount(), is(2L));
+	}
+
+	@Test
+	public void checkpointsOnlyAppendTheActionsThatChanged() throws IOException {
+		StateVertex state = crawl.addState(1, "first");
+		crawl.frontier.addActions(candidates(20), state);
+		crawl.checkpointer.checkpoint();
+		long firstCheckpoint = checkpointFile().length();
+
+		crawl.frontier.fired(crawl.frontier.pollActionOrNull(state));
+		crawl.checkpointer.checkpoint();
+
+		assertThat(checkpointFile().length() - firstCheckpoint, is(lessThan(100L)));
+		Crawl restored = new Crawl();
+		restored.checkpointer.restore();
+		assertThat(pollAll(restored, restored.graph.getById(1)), is(19));
+	}
+
+	@Test
+	public void allQueuedActionsAreWrittenEveryCompactionInterval() throws IOException {
+		StateVertex state = crawl.addState(1, "first");
+		crawl.frontier.addActions(candidates(5), state);
+		for (int i = 0; i < Checkpointer.COMPACTION_INTERVAL; i++) {
+			crawl.frontier.fired(crawl.frontier.pollActionOrNull(state));
+			if (i == 1) {
+				crawl.frontier.addActions(candidates(20), state);
+			}
+			crawl.checkpointer.checkpoint();
+		}
+		crawl.frontier.addActions(candidates(1), state);
+		crawl.checkpointer.checkpoint();
+
+		List<Byte> types = new ArrayList<>();
+		for (CheckpointLog.Record record : CheckpointLog.readCommitted(checkpointFile())) {
+			types.add(record.type);
+		}
+		assertThat(types, hasItem(CheckpointLog.FRONTIER));
+		Crawl restored = new Crawl();
+		restored.checkpointer.restore();
+		assertThat(pollAll(restored, restored.graph.getById(1)),
+		        is(5 + 20 + 1 - Checkpointer.COMPACTION_INTERVAL));
+	}
+
+	@Test
+	public void statesWhoseActionsWereNotQueuedAreExpandedWhenResumed() throws IOException {
+		crawl.checkpointer.stateExpanded(index);
+		crawl.checkpointer.stateExpanded(crawl.addState(1, "first"));
+		StateVertex unexpanded = crawl.addState(2, "second");
+		StateVertex withActions = crawl.addState(3, "third");
+		crawl.frontier.addActions(candidates(1), withActions);
+		crawl.checkpointer.checkpoint();
+
+		List<StateVertex> restored = new Crawl().checkpointer.restore();
+
+		assertThat(restored, hasSize(1));
+		assertThat(restored.get(0).getId(), is(unexpanded.getId()));
+	}
+
+	@Test
+	public void aCheckpointOnlyReadsTheNewStatesAndEdges() {
+		StateVertexFactory factory = new DefaultStateVertexFactory();
+		Crawl walking =
+		        new Crawl(factory, new InMemoryStateFlowGraph(new ExitNotifier(0), factory) {
+
+			        @Override
+			        public ImmutableSet<StateVertex> getAllStates() {
+				        throw new AssertionError("The checkpoint read all states");
+			        }
+
+			        @Override
+			        public ImmutableSet<Eventable> getAllEdges() {
+				        throw new AssertionError("The checkpoint read all edges");
+			        }
+		        });
+		StateVertex walkingIndex = factory.createIndex(URL, page("index"), page("index"));
+		walking.sessions.setup(walkingIndex);
+		walking.addEdge(walkingIndex, walking.addState(1, "first"), "/HTML[1]/BODY[1]/A[1]");
+
+		assertThat(walking.checkpointer.checkpoint(), is(true));
+		Crawl restored = new Crawl();
+		restored.checkpointer.restore();
+		assertThat(restored.graph.getNumberOfStates(), is(2));
+		assertThat(restored.graph.getAllEdges(), hasSize(1));
+	}
+
+	@Test(expected = CrawljaxException.class)
+	public void resumingWithoutACheckpointFails() {
+		new Crawl().checkpointer.restore();
+	}
+
+	private static int pollAll(Crawl crawl, StateVertex state) {
+		int polled = 0;
+		while (crawl.frontier.pollActionOrNull(state) != null) {
+			polled++;
+		}
+		return polled;
+	}
+
+	private static ImmutableList<CandidateElement> candidates(int count) throws IOException {
+		ImmutableList.Builder<CandidateElement> candidates = ImmutableList.builder();
+		for (int i = 0; i < count; i++) {
+			candidates.add(candidate("/HTML[1]/BODY[1]/A[" + (i + 1) + "]"));
+		}
+		return candidates.build();
+	}
+
+	private File checkpointFile() {
+		return new File(folder.getRoot(), CheckpointLog.FILE_NAME);
+	}
+
+	private static String page(String text) {
+		return "<HTML><BODY><P>" + text + "</P><P>" + Strings.repeat(text + " ", 500)
+		        + "</P></BODY></HTML>";
+	}
+
+	private static CandidateElement candidate(String xpath) throws IOException {
+		Element element =
+		        (Element) DomUtils.asDocument("<a href=\"/next\" class=\"menu\">Next</a>")
+		                .getElementsByTagName("a").item(0);
+		return new CandidateElement(element, xpath, ImmutableList.of(new FormInput("text",
+		        new Identification(How.name, "q"), "crawljax")));
+	}
+
+	/**
+	 * The parts of a crawl that are in a checkpoint.
+	 */
+	private class Crawl {
+
+		private final MetricRegistry registry = new MetricRegistry();
+		private final StateVertexFactory factory;
+		private final InMemoryStateFlowGraph graph;
+		private final UnfiredCandidateActions frontier;
+		private final EventableConditionChecker conditions;
+		private final CandidateElementManager checked;
+		private final CrawlSessionProvider sessions;
+		private final Checkpointer checkpointer;
+
+		Crawl() {
+			this(new DefaultStateVertexFactory());
+		}
+
+		Crawl(StateVertexFactory factory) {
+			this(factory, new InMemoryStateFlowGraph(new ExitNotifier(0), factory));
+		}
+
+		Crawl(StateVertexFactory factory, InMemoryStateFlowGraph graph) {
+			this.factory = factory;
+			this.graph = graph;
+			frontier =
+			        new UnfiredCandidateActions(config.getBrowserConfig(),
+			                Providers.<StateFlowGraph> of(graph), registry);
+			conditions = new EventableConditionChecker(config.getCrawlRules());
+			checked = new CandidateElementManager(conditions, null);
+			sessions = new CrawlSessionProvider(graph, config, registry);
+			checkpointer =
+			        new Checkpointer(config, graph, frontier, checked, sessions, factory,
+			                conditions, registry);
+		}
+
+		StateVertex addState(int id, String text) {
+			StateVertex state =
+			        factory.newStateVertex(id, URL, "state" + id, page(text), page(text));
+			graph.putIfAbsent(state);
+			return state;
+		}
+
+		Eventable addEdge(StateVertex source, StateVertex target, String xpath) {
+			Eventable edge =
+			        new Eventable(new Identification(How.xpath, xpath), EventType.click);
+			edge.getRelatedFormInputs().add(
+			        new FormInput("text", new Identification(How.name, "q"), "crawljax"));
+			graph.addEdge(source, target, edge);
+			return edge;
+		}
+	}
+}
@@ -1,13 +1,16 @@
 package com.crawljax.core;
 
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -18,7 +21,9 @@ import javax.inject.Provider;
 
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -27,20 +32,29 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 
 import com.codahale.metrics.MetricRegistry;
+import com.crawljax.browser.BrowserPool;
 import com.crawljax.browser.EmbeddedBrowser.BrowserType;
 import com.crawljax.core.ExitNotifier.ExitStatus;
 import com.crawljax.core.configuration.BrowserConfiguration;
 import com.crawljax.core.configuration.CrawljaxConfiguration;
 import com.crawljax.core.plugin.Plugins;
 import com.crawljax.core.plugin.PostCrawlingPlugin;
+import com.crawljax.core.state.AbstractStateFlowGraph;
+import com.crawljax.core.state.CompressedDomStore;
+import com.crawljax.core.state.DefaultStateVertexFactory;
+import com.crawljax.core.state.DiskBackedStateFlowGraph;
 import com.crawljax.core.state.InMemoryStateFlowGraph;
 import com.crawljax.core.state.StateFlowGraph;
 import com.crawljax.core.state.StateVertex;
+import com.crawljax.core.state.StateVertexFactory;
 import com.crawljax.di.CrawlSessionProvider;
 
 @RunWith(MockitoJUnitRunner.class)
 public class CrawlControllerTest {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Mock
 	private InMemoryStateFlowGraph graph;
 
@@ -73,6 +87,8 @@ public class CrawlControllerTest {
 
 	private AtomicInteger polledActions;
 
+	private Answer<Void> pollActions;
+
 	@Mock
 	private PostCrawlingPlugin postCrawlPlugin;
 
@@ -81,7 +97,7 @@ public class CrawlControllerTest {
 		setupGraphAndStates();
 
 		polledActions = new AtomicInteger();
-		Mockito.doAnswer(new Answer<Void>() {
+		pollActions = new Answer<Void>() {
 
 			@Override
 			public Void answer(InvocationOnMock invocation) throws Throwable {
@@ -95,7 +111,8 @@ public class CrawlControllerTest {
 				}
 				return null;
 			}
-		}).when(crawler).execute(any(StateVertex.class));
+		};
+		Mockito.doAnswer(pollActions).when(crawler).execute(any(StateVertex.class));
 	}
 
 	private void setupGraphAndStates() {
@@ -121,6 +138,10 @@ public class CrawlControllerTest {
 	}
 
 	private void setupForConsumers(int consumers) {
+		setupForConsumers(consumers, graph);
+	}
+
+	private void setupForConsumers(int consumers, AbstractStateFlowGraph graph) {
 		executor = Executors.newFixedThreadPool(consumers + 2);
 		CrawljaxConfiguration config =
 		        CrawljaxConfiguration
@@ -143,7 +164,8 @@ public class CrawlControllerTest {
 
 		Plugins plugins = new Plugins(config, new MetricRegistry());
 		controller = new CrawlController(executor, consumerFactory, config, consumersDoneLatch,
-		        crawlSessionProvider, plugins);
+		        crawlSessionProvider, plugins, mock(BrowserPool.class),
+		        mock(Checkpointer.class));
 
 	}
 
@@ -191,6 +213,44 @@ public class CrawlControllerTest {
 
 	}
 
+	@Test(timeout = 5000L)
+	public void theStatesCanBeReadAfterTheCrawlUntilTheSessionIsClosed() throws Exception {
+		File directory = folder.getRoot();
+		CompressedDomStore domStore = new CompressedDomStore(0, directory);
+		final StateVertexFactory factory = new DefaultStateVertexFactory();
+		factory.setDomStore(domStore);
+		final DiskBackedStateFlowGraph diskGraph =
+		        new DiskBackedStateFlowGraph(new ExitNotifier(0), factory, directory, 1);
+		when(graphProvider.get()).thenReturn(diskGraph);
+		StateVertex diskIndex = factory.createIndex("http://example.com", "index", "index");
+		when(crawler.crawlIndex()).thenReturn(diskIndex);
+		doAnswer(new Answer<Void>() {
+
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				diskGraph.putIfAbsent(factory.newStateVertex(1, "http://example.com/1",
+				        "state1", "state1", "state1"));
+				return pollActions.answer(invocation);
+			}
+		}).when(crawler).execute(any(StateVertex.class));
+		setupForConsumers(1, diskGraph);
+		candidateActions.addActions(mockActions(1), diskIndex);
+
+		CrawlSession session = controller.call();
+
+		List<String> doms = new ArrayList<>();
+		for (StateVertex state : session.getStateFlowGraph().getAllStates()) {
+			doms.add(state.getDom());
+		}
+		assertThat(doms, containsInAnyOrder("index", "state1"));
+		assertThat(directory.list().length, is(3));
+
+		session.close();
+		assertThat(directory.list().length, is(1));
+		domStore.close();
+		assertThat(directory.list().length, is(0));
+	}
+
 	public List<CandidateCrawlAction> mockActions(int size) {
 		List<CandidateCrawlAction> list = new ArrayList<>(size);
 		for (int i = 0; i < size; i++) {
@@ -0,0 +1,188 @@
+package com.crawljax.core;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.browser.EmbeddedBrowser.BrowserType;
+import com.crawljax.core.configuration.BrowserConfiguration;
+import com.crawljax.core.state.Eventable;
+import com.crawljax.core.state.Eventable.EventType;
+import com.crawljax.core.state.Identification;
+import com.crawljax.core.state.Identification.How;
+import com.crawljax.core.state.StateFlowGraph;
+import com.crawljax.core.state.StateVertex;
+import com.crawljax.core.strategy.BreadthFirstStrategy;
+import com.crawljax.core.strategy.CrawlStrategy;
+import com.crawljax.core.strategy.DepthFirstStrategy;
+import com.crawljax.core.strategy.NoveltyFirstStrategy;
+import com.crawljax.core.strategy.ShortestReplayPathStrategy;
+import com.crawljax.metrics.MetricsModule;
+import com.crawljax.util.DomUtils;
+import com.google.common.collect.ImmutableList;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CrawlStrategyTest {
+
+	@Mock
+	private StateFlowGraph graph;
+
+	@Mock
+	private Provider<StateFlowGraph> graphProvider;
+
+	private List<StateVertex> states;
+
+	@Before
+	public void setup() {
+		when(graphProvider.get()).thenReturn(graph);
+		states = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			StateVertex state = mock(StateVertex.class);
+			when(state.getId()).thenReturn(i);
+			when(state.getName()).thenReturn("state" + i);
+			when(graph.getById(i)).thenReturn(state);
+			states.add(state);
+		}
+	}
+
+	@Test(timeout = 5000L)
+	public void breadthFirstCrawlsStatesInTheOrderTheyWereFound() throws Exception {
+		UnfiredCandidateActions actions = actionsWith(new BreadthFirstStrategy());
+		addOneActionTo(actions, 1, 2, 3);
+
+		assertThat(nextTaskAndDrain(actions), is(states.get(1)));
+		assertThat(nextTaskAndDrain(actions), is(states.get(2)));
+		assertThat(nextTaskAndDrain(actions), is(states.get(3)));
+	}
+
+	@Test(timeout = 5000L)
+	public void depthFirstCrawlsTheLastFoundStateFirst() throws Exception {
+		UnfiredCandidateActions actions = actionsWith(new DepthFirstStrategy());
+		addOneActionTo(actions, 1, 2, 3);
+
+		assertThat(nextTaskAndDrain(actions), is(states.get(3)));
+		assertThat(nextTaskAndDrain(actions), is(states.get(2)));
+		assertThat(nextTaskAndDrain(actions), is(states.get(1)));
+	}
+
+	@Test(timeout = 5000L)
+	public void shortestReplayPathCrawlsTheCheapestStateFirst() throws Exception {
+		when(graph.getInitialState()).thenReturn(states.get(0));
+		when(graph.getShortestPath(any(StateVertex.class), eq(states.get(1)))).thenReturn(
+		        pathOfLength(3));
+		when(graph.getShortestPath(any(StateVertex.class), eq(states.get(2)))).thenReturn(
+		        pathOfLength(1));
+		when(graph.getShortestPath(any(StateVertex.class), eq(states.get(3)))).thenReturn(
+		        pathOfLength(2));
+		UnfiredCandidateActions actions = actionsWith(new ShortestReplayPathStrategy());
+		addOneActionTo(actions, 1, 2, 3);
+
+		assertThat(nextTaskAndDrain(actions), is(states.get(2)));
+		assertThat(nextTaskAndDrain(actions), is(states.get(3)));
+		assertThat(nextTaskAndDrain(actions), is(states.get(1)));
+	}
+
+	@Test(timeout = 5000L)
+	public void shortestReplayPathCrawlsUnreachableStatesLast() throws Exception {
+		when(graph.getInitialState()).thenReturn(states.get(0));
+		when(graph.getShortestPath(any(StateVertex.class), eq(states.get(1)))).thenThrow(
+		        new IllegalArgumentException("Not reachable"));
+		when(graph.getShortestPath(any(StateVertex.class), eq(states.get(2)))).thenReturn(
+		        pathOfLength(4));
+		UnfiredCandidateActions actions = actionsWith(new ShortestReplayPathStrategy());
+		addOneActionTo(actions, 1, 2);
+
+		assertThat(nextTaskAndDrain(actions), is(states.get(2)));
+		assertThat(nextTaskAndDrain(actions), is(states.get(1)));
+	}
+
+	@Test
+	public void noveltyFirstFiresUnseenElementsFirst() throws IOException {
+		Document dom =
+		        DomUtils.asDocument("<html><body><a id='home'>Home</a><a id='about'>About</a>"
+		                + "<a id='news'>News</a></body></html>");
+		CandidateCrawlAction home = actionFor(dom, "home");
+		CandidateCrawlAction about = actionFor(dom, "about");
+		CandidateCrawlAction news = actionFor(dom, "news");
+		UnfiredCandidateActions actions = actionsWith(new NoveltyFirstStrategy());
+
+		actions.addActions(ImmutableList.of(home, about), states.get(1));
+		assertThat(actions.pollActionOrNull(states.get(1)), is(home));
+		assertThat(actions.pollActionOrNull(states.get(1)), is(about));
+
+		// The same links in another state are fired after the unseen one.
+		CandidateCrawlAction homeAgain = actionFor(dom, "home");
+		actions.addActions(ImmutableList.of(homeAgain, news), states.get(2));
+		assertThat(actions.pollActionOrNull(states.get(2)), is(news));
+		assertThat(actions.pollActionOrNull(states.get(2)), is(homeAgain));
+	}
+
+	@Test
+	public void statesPerMinuteIsRegisteredPerStrategy() {
+		MetricRegistry registry = new MetricRegistry();
+		new UnfiredCandidateActions(new BrowserConfiguration(BrowserType.FIREFOX), graphProvider,
+		        registry, new DepthFirstStrategy());
+
+		assertThat(registry.getGauges().containsKey(
+		        MetricsModule.STRATEGY_PREFIX + "DepthFirstStrategy.states_per_minute"), is(true));
+	}
+
+	private UnfiredCandidateActions actionsWith(CrawlStrategy strategy) {
+		return new UnfiredCandidateActions(new BrowserConfiguration(BrowserType.FIREFOX),
+		        graphProvider, new MetricRegistry(), strategy);
+	}
+
+	private void addOneActionTo(UnfiredCandidateActions actions, int... ids) {
+		for (int id : ids) {
+			actions.addActions(ImmutableList.of(mock(CandidateCrawlAction.class)), states.get(id));
+		}
+	}
+
+	private StateVertex nextTaskAndDrain(UnfiredCandidateActions actions)
+	        throws InterruptedException {
+		StateVertex task = actions.awaitNewTask();
+		while (actions.pollActionOrNull(task) != null) {
+			// Fire everything.
+		}
+		return task;
+	}
+
+	private ImmutableList<Eventable> pathOfLength(int length) {
+		ImmutableList.Builder<Eventable> path = ImmutableList.builder();
+		for (int i = 0; i < length; i++) {
+			path.add(mock(Eventable.class));
+		}
+		return path.build();
+	}
+
+	private CandidateCrawlAction actionFor(Document dom, String id) {
+		Element link = null;
+		NodeList links = dom.getElementsByTagName("A");
+		for (int i = 0; i < links.getLength(); i++) {
+			if (id.equals(((Element) links.item(i)).getAttribute("id"))) {
+				link = (Element) links.item(i);
+			}
+		}
+		CandidateElement element = new CandidateElement(link, new Identification(How.id, id), "");
+		return new CandidateCrawlAction(element, EventType.click);
+	}
+}
@@ -1,7 +1,14 @@
 package com.crawljax.core;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import javax.inject.Provider;
@@ -16,11 +23,12 @@ import com.crawljax.browser.EmbeddedBrowser;
 import com.crawljax.condition.browserwaiter.WaitConditionChecker;
 import com.crawljax.core.configuration.CrawljaxConfiguration;
 import com.crawljax.core.plugin.Plugins;
+import com.crawljax.core.state.AbstractStateFlowGraph;
+import com.crawljax.core.state.CrawlPath;
 import com.crawljax.core.state.DefaultStateVertexFactory;
 import com.crawljax.core.state.Eventable;
 import com.crawljax.core.state.Identification;
 import com.crawljax.core.state.Identification.How;
-import com.crawljax.core.state.InMemoryStateFlowGraph;
 import com.crawljax.core.state.StateVertex;
 import com.crawljax.di.CoreModule.CandidateElementExtractorFactory;
 import com.crawljax.di.CoreModule.FormHandlerFactory;
@@ -74,7 +82,7 @@ public class CrawlerTest {
 	private CandidateElementExtractor extractor;
 
 	@Mock
-	private UnfiredCandidateActions candidateActionCache;
+	private CrawlFrontier candidateActionCache;
 
 	@Mock
 	private StateVertex index;
@@ -83,10 +91,10 @@ public class CrawlerTest {
 	private StateVertex target;
 
 	@Mock
-	private InMemoryStateFlowGraph graph;
+	private AbstractStateFlowGraph graph;
 
 	@Mock
-	private Provider<InMemoryStateFlowGraph> graphProvider;
+	private Provider<AbstractStateFlowGraph> graphProvider;
 
 	@Mock
 	private Eventable eventToTransferToTarget;
@@ -126,7 +134,8 @@ public class CrawlerTest {
 		        new Crawler(context, config,
 		                stateComparator,
 		                candidateActionCache, formHandlerFactory, waitConditionChecker,
-		                elementExtractor, graphProvider, plugins, new DefaultStateVertexFactory());
+		                elementExtractor, graphProvider, plugins, new DefaultStateVertexFactory(),
+		                mock(Checkpointer.class));
 
 		setupStateFlowGraph();
 	}
@@ -187,6 +196,40 @@ public class CrawlerTest {
 		order.verify(candidateActionCache).pollActionOrNull(target);
 	}
 
+	@Test
+	public void whenTheBrowserIsStillInTheTargetStateItIsNotReset() throws Exception {
+		when(extractor.checkCrawlCondition()).thenReturn(true);
+		when(browser.fireEventAndWait(eventToTransferToTarget)).thenReturn(true);
+		when(target.getStrippedDom()).thenReturn("<html>target</html>");
+		when(browser.getStrippedDom()).thenReturn("<html>target</html>");
+
+		crawler.execute(target);
+		CrawlPath firstPath = context.getCrawlPath();
+		crawler.execute(target);
+
+		verify(browser, times(1)).goToUrl(url);
+		verify(browser, times(1)).fireEventAndWait(eventToTransferToTarget);
+		verify(candidateActionCache, times(2)).pollActionOrNull(target);
+		assertThat(crawler.getCurrentState(), is(target));
+		verify(session).addCrawlPath(firstPath);
+		assertThat(context.getCrawlPath(), is(not(sameInstance(firstPath))));
+		assertThat(context.getCrawlPath(), contains(eventToTransferToTarget));
+	}
+
+	@Test
+	public void whenTheBrowserLeftTheTargetStateItIsReset() throws Exception {
+		when(extractor.checkCrawlCondition()).thenReturn(true);
+		when(browser.fireEventAndWait(eventToTransferToTarget)).thenReturn(true);
+		when(target.getStrippedDom()).thenReturn("<html>target</html>");
+		when(browser.getStrippedDom()).thenReturn("<html>something else</html>");
+
+		crawler.execute(target);
+		crawler.execute(target);
+
+		verify(browser, times(2)).goToUrl(url);
+		verify(browser, times(2)).fireEventAndWait(eventToTransferToTarget);
+	}
+
 	private void verifyFormElementsChecked(InOrder order) {
 		order.verify(formHandler).getFormInputs();
 		order.verify(formHandler).handleFormElements(formInputsCaptor.capture());
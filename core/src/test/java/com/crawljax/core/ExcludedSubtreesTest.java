@@ -0,0 +1,110 @@
+package com.crawljax.core;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.crawljax.condition.eventablecondition.EventableConditionChecker;
+import com.crawljax.core.configuration.CrawlElement;
+import com.crawljax.core.configuration.CrawlRules;
+import com.crawljax.core.configuration.CrawljaxConfiguration;
+import com.crawljax.core.configuration.CrawljaxConfiguration.CrawljaxConfigurationBuilder;
+import com.crawljax.util.DomUtils;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+public class ExcludedSubtreesTest {
+
+	private static final String PAGE = "<HTML><BODY>"
+	        + "<DIV id='menu'><A id='menuLink'>Menu</A><SPAN><A id='nested'>Nested</A>"
+	        + "<B id='bold'>Bold</B></SPAN></DIV>"
+	        + "<A id='free'>Free</A>"
+	        + "<DIV id='footer'><SPAN id='footerSpan'><A id='footerLink'>Footer</A></SPAN></DIV>"
+	        + "</BODY></HTML>";
+
+	private CrawljaxConfigurationBuilder builder;
+	private Document dom;
+
+	@Before
+	public void setup() throws IOException {
+		builder = CrawljaxConfiguration.builderFor("http://example.com");
+		builder.crawlRules().click("a");
+		dom = DomUtils.asDocument(PAGE);
+	}
+
+	@Test
+	public void elementsUnderTheXPathWithTheRuleTagAreExcluded() {
+		builder.crawlRules().dontClick("a").underXPath("//DIV[@id='menu']");
+
+		ExcludedSubtrees excluded = excludedSubtrees();
+
+		assertThat(excluded.contains(dom.getElementById("menuLink")), is(true));
+		assertThat(excluded.contains(dom.getElementById("nested")), is(true));
+		assertThat(excluded.contains(dom.getElementById("bold")), is(false));
+		assertThat(excluded.contains(dom.getElementById("free")), is(false));
+		assertThat(excluded.contains(dom.getElementById("footerLink")), is(false));
+	}
+
+	@Test
+	public void theSubtreeOfAnExcludedElementIsExcluded() {
+		builder.crawlRules().dontClick("span").underXPath("//DIV[@id='footer']");
+
+		ExcludedSubtrees excluded = excludedSubtrees();
+
+		assertThat(excluded.contains(dom.getElementById("footerSpan")), is(true));
+		assertThat(excluded.contains(dom.getElementById("footerLink")), is(true));
+		assertThat(excluded.contains(dom.getElementById("nested")), is(false));
+	}
+
+	@Test
+	public void attributeRulesExcludeTheMatchingElements() {
+		builder.crawlRules().dontClick("a").withAttribute("id", "free");
+
+		ExcludedSubtrees excluded = excludedSubtrees();
+
+		assertThat(excluded.contains(dom.getElementById("free")), is(true));
+		assertThat(excluded.contains(dom.getElementById("menuLink")), is(false));
+	}
+
+	@Test
+	public void siblingsWithALongerPositionAreNotUnderTheXPath() throws IOException {
+		dom = DomUtils.asDocument("<HTML><BODY>"
+		        + Strings.repeat("<DIV><A>link</A></DIV>", 10) + "</BODY></HTML>");
+		builder.crawlRules().dontClick("a").underXPath("/HTML[1]/BODY[1]/DIV[1]");
+
+		ExcludedSubtrees excluded = excludedSubtrees();
+
+		assertThat(excluded.contains(link(1)), is(true));
+		assertThat(excluded.contains(link(10)), is(false));
+	}
+
+	@Test
+	public void rulesWithoutXPathOrWithAnInvalidOneExcludeNothing() {
+		builder.crawlRules().dontClick("a");
+		builder.crawlRules().dontClick("a").underXPath("//[");
+
+		ExcludedSubtrees excluded = excludedSubtrees();
+
+		assertThat(excluded.contains(dom.getElementById("menuLink")), is(false));
+		assertThat(excluded.contains(dom.getElementById("free")), is(false));
+	}
+
+	private Element link(int div) {
+		return (Element) dom.getElementsByTagName("DIV").item(div - 1)
+		        .getFirstChild();
+	}
+
+	private ExcludedSubtrees excludedSubtrees() {
+		CrawlRules rules = builder.build().getCrawlRules();
+		CrawlRuleIndex index = new CrawlRuleIndex(ImmutableList.<CrawlElement> of(),
+		        rules.getPreCrawlConfig().getExcludedElements(),
+		        new EventableConditionChecker(rules));
+		return new ExcludedSubtrees(dom, index.getExcludes());
+	}
+}
@@ -0,0 +1,101 @@
+package com.crawljax.core;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crawljax.browser.EmbeddedBrowser;
+import com.crawljax.condition.ConditionTypeChecker;
+import com.crawljax.condition.eventablecondition.EventableConditionChecker;
+import com.crawljax.core.configuration.CrawljaxConfiguration;
+import com.crawljax.core.configuration.CrawljaxConfiguration.CrawljaxConfigurationBuilder;
+import com.crawljax.core.state.StateVertex;
+import com.crawljax.forms.FormHandler;
+import com.crawljax.util.DomUtils;
+
+public class SinglePassExtractionTest {
+
+	private static final String PAGE = "<HTML><BODY>"
+	        + "<DIV id='menu'><A href='/menu'>Menu</A></DIV>"
+	        + "<A href='/first'>First</A>"
+	        + "<DIV class='clickable'>Click me</DIV>"
+	        + "<IFRAME id='inner'></IFRAME>"
+	        + "<A href='/second'>Second</A>"
+	        + "</BODY></HTML>";
+
+	private static final String FRAME = "<HTML><BODY><A href='/framed'>Framed</A></BODY></HTML>";
+
+	private EmbeddedBrowser browser;
+	private CrawljaxConfigurationBuilder builder;
+
+	@Before
+	public void setup() throws IOException {
+		browser = mock(EmbeddedBrowser.class);
+		when(browser.getStrippedDocumentWithoutIframeContent()).thenReturn(
+		        DomUtils.asDocument(PAGE));
+		when(browser.getFrameDom("inner")).thenReturn(FRAME);
+		builder = CrawljaxConfiguration.builderFor("http://example.com");
+		builder.crawlRules().click("a");
+		builder.crawlRules().click("div").withAttribute("class", "clickable");
+		builder.crawlRules().dontClick("a").underXPath("//DIV[@id='menu']");
+	}
+
+	@Test
+	public void candidatesAreFoundInFramesFirstAndThenByRule() {
+		List<CandidateElement> candidates = extract(builder.build());
+
+		assertThat(xpathsOf(candidates), contains(
+		        "/HTML[1]/BODY[1]/A[1]",
+		        "/HTML[1]/BODY[1]/A[1]",
+		        "/HTML[1]/BODY[1]/A[2]",
+		        "/HTML[1]/BODY[1]/DIV[2]"));
+		assertThat(candidates.get(0).getRelatedFrame(), is("inner"));
+		assertThat(candidates.get(1).getRelatedFrame(), is(""));
+	}
+
+	@Test
+	public void everyFrameIsReadOnce() {
+		extract(builder.build());
+
+		verify(browser, times(1)).getFrameDom("inner");
+	}
+
+	@Test
+	public void ignoredFramesAreNotRead() {
+		builder.crawlRules().dontCrawlFrame("inner");
+
+		List<CandidateElement> candidates = extract(builder.build());
+
+		verify(browser, times(0)).getFrameDom("inner");
+		assertThat(candidates.size(), is(3));
+	}
+
+	private List<CandidateElement> extract(CrawljaxConfiguration config) {
+		CandidateElementManager checker =
+		        new CandidateElementManager(new EventableConditionChecker(config.getCrawlRules()),
+		                new ConditionTypeChecker<>(config.getCrawlRules().getPreCrawlConfig()
+		                        .getCrawlConditions()));
+		CandidateElementExtractor extractor =
+		        new CandidateElementExtractor(checker, browser, mock(FormHandler.class), config);
+		return extractor.extract(mock(StateVertex.class));
+	}
+
+	private static List<String> xpathsOf(List<CandidateElement> candidates) {
+		List<String> xpaths = new ArrayList<>();
+		for (CandidateElement candidate : candidates) {
+			xpaths.add(candidate.getIdentification().getValue());
+		}
+		return xpaths;
+	}
+}
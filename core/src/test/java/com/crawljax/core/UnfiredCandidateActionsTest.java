@@ -0,0 +1,204 @@
+package com.crawljax.core;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Provider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.browser.EmbeddedBrowser.BrowserType;
+import com.crawljax.core.configuration.BrowserConfiguration;
+import com.crawljax.core.state.StateFlowGraph;
+import com.crawljax.core.state.StateVertex;
+import com.crawljax.metrics.MetricsModule;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UnfiredCandidateActionsTest {
+
+	@Mock
+	private StateFlowGraph graph;
+
+	@Mock
+	private Provider<StateFlowGraph> graphProvider;
+
+	private MetricRegistry registry;
+
+	protected CrawlFrontier actions;
+
+	protected List<StateVertex> states;
+
+	@Before
+	public void setup() {
+		when(graphProvider.get()).thenReturn(graph);
+		when(graph.getOutgoingStates(any(StateVertex.class))).thenReturn(
+		        ImmutableSet.<StateVertex> of());
+		states = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			StateVertex state = mock(StateVertex.class);
+			when(state.getId()).thenReturn(i);
+			when(state.getName()).thenReturn("state" + i);
+			when(graph.getById(i)).thenReturn(state);
+			states.add(state);
+		}
+		registry = new MetricRegistry();
+		actions = newFrontier(graphProvider, registry);
+	}
+
+	/**
+	 * @return The frontier under test. Override it to run these tests on another implementation.
+	 */
+	protected CrawlFrontier newFrontier(Provider<StateFlowGraph> graphProvider,
+	        MetricRegistry registry) {
+		return new UnfiredCandidateActions(new BrowserConfiguration(BrowserType.FIREFOX, 2),
+		        graphProvider, registry);
+	}
+
+	@Test
+	public void actionsArePolledInOrderUntilTheStateIsDrained() {
+		List<CandidateCrawlAction> added = mockActions(3);
+		actions.addActions(added, states.get(0));
+		assertThat(actions.isEmpty(), is(false));
+
+		for (CandidateCrawlAction action : added) {
+			assertThat(actions.pollActionOrNull(states.get(0)), is(action));
+		}
+		assertThat(actions.pollActionOrNull(states.get(0)), is(nullValue()));
+		assertThat(actions.isEmpty(), is(true));
+	}
+
+	@Test
+	public void theSnapshotHoldsQueuedAndPolledActions() {
+		List<CandidateCrawlAction> added = mockActions(3);
+		actions.addActions(added, states.get(0));
+		actions.addActions(mockActions(1), states.get(1));
+		CandidateCrawlAction polled = actions.pollActionOrNull(states.get(0));
+		CandidateCrawlAction fired = actions.pollActionOrNull(states.get(0));
+		actions.fired(fired);
+
+		ListMultimap<Integer, CandidateCrawlAction> snapshot = actions.snapshot();
+
+		assertThat(snapshot.get(0), containsInAnyOrder(added.get(2), polled));
+		assertThat(snapshot.get(1).size(), is(1));
+	}
+
+	@Test(timeout = 5000L)
+	public void statesAreHandedOutInTheOrderTheyWereFound() throws InterruptedException {
+		actions.addActions(mockActions(1), states.get(1));
+		actions.addActions(mockActions(1), states.get(2));
+
+		assertThat(actions.awaitNewTask(), is(states.get(1)));
+		actions.pollActionOrNull(states.get(1));
+		assertThat(actions.awaitNewTask(), is(states.get(2)));
+	}
+
+	@Test
+	public void purgingAStateRemovesAllItsActions() {
+		actions.addActions(mockActions(5), states.get(3));
+		actions.purgeActionsForState(states.get(3));
+
+		assertThat(actions.isEmpty(), is(true));
+		assertThat(actions.pollActionOrNull(states.get(3)), is(nullValue()));
+		assertThat(registry.counter(MetricsModule.EVENTS_PREFIX + "unfired_actions")
+		        .getCount(), is(5L));
+		assertThat(registry.counter(MetricsModule.EVENTS_PREFIX + "crawler_lost")
+		        .getCount(), is(1L));
+	}
+
+	@Test(timeout = 5000L)
+	public void aConsumerPrefersTheStateItIsInOrOneStepAway() throws InterruptedException {
+		when(graph.getOutgoingStates(states.get(5))).thenReturn(
+		        ImmutableSet.of(states.get(6), states.get(7)));
+		actions.addActions(mockActions(1), states.get(1));
+		actions.addActions(mockActions(1), states.get(5));
+		actions.addActions(mockActions(1), states.get(7));
+
+		assertThat(actions.awaitNewTask(states.get(5)), is(states.get(5)));
+		actions.pollActionOrNull(states.get(5));
+		assertThat(actions.awaitNewTask(states.get(5)), is(states.get(7)));
+		actions.pollActionOrNull(states.get(7));
+		assertThat(actions.awaitNewTask(states.get(7)), is(states.get(1)));
+
+		assertThat(registry.counter(MetricsModule.EVENTS_PREFIX + "task_affinity_hits")
+		        .getCount(), is(2L));
+	}
+
+	@Test(timeout = 5000L)
+	public void withoutACurrentStateTheQueueDecides() throws InterruptedException {
+		actions.addActions(mockActions(1), states.get(3));
+		actions.addActions(mockActions(1), states.get(4));
+
+		assertThat(actions.awaitNewTask(null), is(states.get(3)));
+		assertThat(registry.counter(MetricsModule.EVENTS_PREFIX + "task_affinity_hits")
+		        .getCount(), is(0L));
+	}
+
+	@Test(timeout = 20_000L)
+	public void multipleConsumersFireEveryActionExactlyOnce() throws Exception {
+		final int actionsPerState = 50;
+		final int total = actionsPerState * states.size();
+		final AtomicInteger fired = new AtomicInteger();
+		actions.addActions(mockActions(actionsPerState), states.get(0));
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		for (int i = 0; i < 4; i++) {
+			executor.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					while (fired.get() < total) {
+						StateVertex task = actions.awaitNewTask();
+						CandidateCrawlAction action = actions.pollActionOrNull(task);
+						while (action != null) {
+							int count = fired.incrementAndGet();
+							// Draining a state's worth of actions "discovers" the next state.
+							if (count % actionsPerState == 0 && count < total) {
+								actions.addActions(mockActions(actionsPerState),
+								        states.get(count / actionsPerState));
+							}
+							action = actions.pollActionOrNull(task);
+						}
+					}
+					return null;
+				}
+			});
+		}
+
+		while (fired.get() < total) {
+			Thread.sleep(10);
+		}
+		executor.shutdownNow();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+
+		assertThat(fired.get(), is(total));
+		assertThat(actions.isEmpty(), is(true));
+	}
+
+	protected static List<CandidateCrawlAction> mockActions(int size) {
+		List<CandidateCrawlAction> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			list.add(mock(CandidateCrawlAction.class));
+		}
+		return list;
+	}
+}
@@ -0,0 +1,77 @@
+package com.crawljax.core;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Provider;
+
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.browser.EmbeddedBrowser.BrowserType;
+import com.crawljax.core.configuration.BrowserConfiguration;
+import com.crawljax.core.state.StateFlowGraph;
+import com.crawljax.core.state.StateVertex;
+import com.crawljax.core.strategy.BreadthFirstStrategy;
+
+/**
+ * Runs the {@link UnfiredCandidateActionsTest}s on a {@link WorkStealingCandidateActions}.
+ */
+public class WorkStealingCandidateActionsTest extends UnfiredCandidateActionsTest {
+
+	@Override
+	protected CrawlFrontier newFrontier(Provider<StateFlowGraph> graphProvider,
+	        MetricRegistry registry) {
+		return new WorkStealingCandidateActions(new BrowserConfiguration(BrowserType.FIREFOX, 4),
+		        graphProvider, registry, new BreadthFirstStrategy());
+	}
+
+	@Test(timeout = 5000L)
+	public void anIdleConsumerStealsWorkFoundByAnotherConsumer() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			executor.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					actions.addActions(mockActions(2), states.get(0));
+					actions.awaitNewTask();
+					actions.addActions(mockActions(2), states.get(4));
+					return null;
+				}
+			}).get();
+		} finally {
+			executor.shutdownNow();
+		}
+
+		StateVertex stolen = actions.awaitNewTask();
+		assertThat(stolen, is(states.get(4)));
+	}
+
+	@Test(timeout = 5000L)
+	public void aStateHandedOutNearTheCurrentStateIsNotTakenByAnotherConsumer()
+	        throws Exception {
+		actions.addActions(mockActions(2), states.get(5));
+		actions.addActions(mockActions(1), states.get(2));
+
+		assertThat(actions.awaitNewTask(states.get(5)), is(states.get(5)));
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			StateVertex other = executor.submit(new Callable<StateVertex>() {
+
+				@Override
+				public StateVertex call() throws Exception {
+					return actions.awaitNewTask();
+				}
+			}).get();
+			assertThat(other, is(states.get(2)));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package com.crawljax.core.plugin;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.core.CandidateElement;
+import com.crawljax.core.CrawlSession;
+import com.crawljax.core.CrawlerContext;
+import com.crawljax.core.ExitNotifier.ExitStatus;
+import com.crawljax.core.configuration.CrawljaxConfiguration;
+import com.crawljax.core.state.StateVertex;
+import com.crawljax.forms.FormInput;
+import com.crawljax.metrics.MetricsModule;
+import com.crawljax.util.DomUtils;
+import com.google.common.collect.ImmutableList;
+
+public class AsyncPluginsTest {
+
+	private final MetricRegistry registry = new MetricRegistry();
+	private final CrawlerContext context = mock(CrawlerContext.class);
+
+	@Test(timeout = 10_000L)
+	public void callsToAnAsyncPluginRunInOrderAndPostCrawlingRunsLast() {
+		RecordingPlugin plugin = new RecordingPlugin();
+		Plugins plugins = pluginsWith(plugin, 4, 10);
+
+		for (int i = 0; i < 100; i++) {
+			plugins.runOnNewStatePlugins(context, mock(StateVertex.class, "state" + i));
+		}
+		plugins.runPostCrawlingPlugins(mock(CrawlSession.class), ExitStatus.EXHAUSTED);
+
+		assertThat(plugin.calls.size(), is(101));
+		for (int i = 0; i < 100; i++) {
+			assertThat(plugin.calls.get(i), is("state" + i));
+		}
+		assertThat(plugin.calls.get(100), is("postCrawling"));
+	}
+
+	@Test(timeout = 10_000L)
+	public void aSlowAsyncPluginDoesNotBlockTheCrawlerUntilItsQueueIsFull() throws Exception {
+		final RecordingPlugin plugin = new RecordingPlugin();
+		plugin.block = new CountDownLatch(1);
+		final Plugins plugins = pluginsWith(plugin, 1, 1);
+
+		// The first call is taken by the worker, the second one is queued.
+		plugins.runOnNewStatePlugins(context, mock(StateVertex.class, "state0"));
+		while (queueDepth() > 0) {
+			Thread.sleep(10);
+		}
+		plugins.runOnNewStatePlugins(context, mock(StateVertex.class, "state1"));
+
+		Thread crawler = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				plugins.runOnNewStatePlugins(context, mock(StateVertex.class, "state2"));
+			}
+		});
+		crawler.start();
+		crawler.join(200);
+		assertThat("The crawler waits while the queue is full", crawler.isAlive(), is(true));
+
+		plugin.block.countDown();
+		crawler.join();
+		plugins.awaitAsyncPlugins();
+
+		assertThat(plugin.calls.size(), is(3));
+		assertThat(registry.timer(MetricsModule.PLUGINS_PREFIX
+		        + "RecordingPlugin.queue_blocked").getCount(), is(1L));
+		assertThat(queueDepth(), is(0));
+	}
+
+	private int queueDepth() {
+		return (Integer) registry.getGauges()
+		        .get(MetricsModule.PLUGINS_PREFIX + "RecordingPlugin.queue_depth").getValue();
+	}
+
+	@Test(timeout = 10_000L)
+	public void failingAsyncPluginsAreReported() {
+		RecordingPlugin plugin = new RecordingPlugin();
+		plugin.fail = true;
+		Plugins plugins = pluginsWith(plugin, 1, 10);
+
+		plugins.runOnNewStatePlugins(context, mock(StateVertex.class));
+		plugins.runOnNewStatePlugins(context, mock(StateVertex.class));
+		plugins.awaitAsyncPlugins();
+
+		assertThat(registry.counter(MetricsModule.PLUGINS_PREFIX
+		        + "RecordingPlugin.fail_count").getCount(), is(2L));
+	}
+
+	@Test(timeout = 10_000L)
+	public void anAsyncPluginThatThrowsAnErrorKeepsGettingCalls() {
+		RecordingPlugin plugin = new RecordingPlugin();
+		plugin.error = true;
+		Plugins plugins = pluginsWith(plugin, 1, 10);
+
+		plugins.runOnNewStatePlugins(context, mock(StateVertex.class, "state0"));
+		plugins.awaitAsyncPlugins();
+		plugin.error = false;
+		plugins.runOnNewStatePlugins(context, mock(StateVertex.class, "state1"));
+		plugins.awaitAsyncPlugins();
+
+		assertThat(plugin.calls.size(), is(1));
+		assertThat(plugin.calls.get(0), is("state1"));
+	}
+
+	@Test(timeout = 10_000L)
+	public void asyncPluginsGetASnapshotOfTheContext() {
+		CrawlerContext snapshot = mock(CrawlerContext.class);
+		when(context.snapshot()).thenReturn(snapshot);
+		RecordingPlugin plugin = new RecordingPlugin();
+		Plugins plugins = pluginsWith(plugin, 1, 10);
+
+		plugins.runOnNewStatePlugins(context, mock(StateVertex.class));
+		plugins.awaitAsyncPlugins();
+
+		assertThat(plugin.contexts.get(0), is(sameInstance(snapshot)));
+	}
+
+	@Test(timeout = 10_000L)
+	public void asyncPluginsGetCopiesOfTheCandidatesWithTheirElements() throws Exception {
+		Element element = DomUtils.asDocument("<html><body><a>Next</a></body></html>")
+		        .getDocumentElement();
+		CandidateElement candidate =
+		        new CandidateElement(element, "/HTML", ImmutableList.<FormInput> of());
+		RecordingPlugin plugin = new RecordingPlugin();
+		Plugins plugins = pluginsWith(plugin, 1, 10);
+
+		plugins.runPreStateCrawlingPlugins(context, ImmutableList.of(candidate),
+		        mock(StateVertex.class));
+		plugins.awaitAsyncPlugins();
+
+		CandidateElement copy = plugin.candidates.get(0);
+		assertThat(copy, is(not(sameInstance(candidate))));
+		assertThat(copy.getElement(), is(sameInstance(element)));
+	}
+
+	private Plugins pluginsWith(Plugin plugin, int threads, int queueSize) {
+		CrawljaxConfiguration config =
+		        CrawljaxConfiguration.builderFor("http://localhost").addPlugin(plugin)
+		                .setAsyncPlugins(threads, queueSize).build();
+		return new Plugins(config, registry);
+	}
+
+	private static class RecordingPlugin implements OnNewStatePlugin, PreStateCrawlingPlugin,
+	        PostCrawlingPlugin, AsyncPlugin {
+
+		private final List<String> calls = new CopyOnWriteArrayList<>();
+		private final List<CandidateElement> candidates = new CopyOnWriteArrayList<>();
+		private final List<CrawlerContext> contexts = new CopyOnWriteArrayList<>();
+		private volatile CountDownLatch block;
+		private volatile boolean fail;
+		private volatile boolean error;
+
+		@Override
+		public void onNewState(CrawlerContext context, StateVertex newState) {
+			if (fail) {
+				throw new IllegalStateException("Failing on purpose");
+			}
+			if (error) {
+				throw new AssertionError("Erroring on purpose");
+			}
+			contexts.add(context);
+			awaitBlock();
+			calls.add(newState.toString());
+		}
+
+		@Override
+		public void preStateCrawling(CrawlerContext context,
+		        ImmutableList<CandidateElement> candidateElements, StateVertex state) {
+			candidates.addAll(candidateElements);
+		}
+
+		@Override
+		public void postCrawling(CrawlSession session, ExitStatus exitReason) {
+			calls.add("postCrawling");
+		}
+
+		private void awaitBlock() {
+			if (block != null) {
+				try {
+					block.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.crawljax.core.state;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.crawljax.core.state.DomStore.StoredDom;
+
+public class CompressedDomStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void domsAreStoredCompressed() {
+		CompressedDomStore store = new CompressedDomStore();
+		StoredDom first = store.store(page(1));
+		StoredDom second = store.store(page(2));
+
+		assertThat(first.get(), is(page(1)));
+		assertThat(second.get(), is(page(2)));
+		assertThat(store.getNumberOfDoms(), is(2));
+		assertThat(store.getUncompressedBytes(), is(2L * (page(1).length() + page(2).length())));
+		assertThat(store.getHeapBytes(), is(lessThan(store.getUncompressedBytes() / 10)));
+		assertThat(store.getSpilledBytes(), is(0L));
+	}
+
+	@Test
+	public void domsThatDoNotFitOnTheHeapAreSpilled() throws IOException {
+		CompressedDomStore store = new CompressedDomStore(1024, folder.getRoot(), 4096);
+		List<StoredDom> stored = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			stored.add(store.store(page(i)));
+		}
+
+		assertThat(store.getHeapBytes(), is(lessThanOrEqualTo(1024L)));
+		assertThat(store.getSpilledBytes(), is(greaterThan(4096L)));
+		assertThat(folder.getRoot().list().length, is(1));
+		for (int i = 0; i < 100; i++) {
+			assertThat(stored.get(i).get(), is(page(i)));
+		}
+	}
+
+	@Test
+	public void closingDeletesTheSpillFile() {
+		CompressedDomStore store = new CompressedDomStore(0, folder.getRoot(), 4096);
+		store.store(page(1));
+		assertThat(folder.getRoot().list().length, is(1));
+
+		store.close();
+
+		assertThat(folder.getRoot().list().length, is(0));
+		assertThat(store.getSpilledBytes(), is(0L));
+	}
+
+	@Test
+	public void emptyAndNullDomsAreKept() {
+		CompressedDomStore store = new CompressedDomStore();
+
+		assertThat(store.store("").get(), is(""));
+		assertThat(store.store(null).get(), is(nullValue()));
+		assertThat(store.store("<p>é中</p>").get(), is("<p>é中</p>"));
+	}
+
+	@Test
+	public void statesWithStoredDomsCanBeSerialized() throws IOException, ClassNotFoundException {
+		StateVertex state =
+		        new StateVertexImpl(1, "http://localhost", "state1", page(1), page(2),
+		                new CompressedDomStore());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(state);
+		}
+		StateVertex read;
+		try (ObjectInputStream in =
+		        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			read = (StateVertex) in.readObject();
+		}
+
+		assertThat(read.getDom(), is(page(1)));
+		assertThat(read.getStrippedDom(), is(page(2)));
+		assertThat(read, is(state));
+	}
+
+	private static String page(int seed) {
+		StringBuilder page = new StringBuilder("<html><head><title>Shop</title></head><body>");
+		for (int i = 0; i < 50; i++) {
+			page.append("<div class=\"product\"><a href=\"/product/").append(seed * 100 + i)
+			        .append("\">Product ").append(seed * 100 + i).append("</a></div>");
+		}
+		return page.append("</body></html>").toString();
+	}
+}
@@ -0,0 +1,175 @@
+package com.crawljax.core.state;
+
+import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.hamcrest.core.StringContains.containsString;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.crawljax.core.CrawljaxException;
+import com.crawljax.core.ExitNotifier;
+import com.crawljax.core.state.Eventable.EventType;
+import com.crawljax.core.state.Identification.How;
+import com.crawljax.forms.FormInput;
+import com.google.common.base.Strings;
+import com.google.common.collect.Iterables;
+
+/**
+ * Runs the {@link StateFlowGraphTest}s on a {@link DiskBackedStateFlowGraph} that keeps only one
+ * state in memory.
+ */
+public class DiskBackedStateFlowGraphTest extends StateFlowGraphTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private DiskBackedStateFlowGraph diskGraph;
+	private StateVertex index;
+
+	@Override
+	protected AbstractStateFlowGraph newGraph(StateVertexFactory factory) {
+		return new DiskBackedStateFlowGraph(new ExitNotifier(0), factory, folder.getRoot(), 1);
+	}
+
+	@Before
+	public void setupDiskGraph() {
+		diskGraph = (DiskBackedStateFlowGraph) newGraph(new DefaultStateVertexFactory());
+		index = state(StateVertex.INDEX_ID);
+		diskGraph.putIndex(index);
+	}
+
+	@Test
+	public void evictedStatesAreReadFromDisk() {
+		StateVertex state = state(1);
+		diskGraph.putIfAbsent(state);
+
+		diskGraph.evictAll();
+		StateVertex loaded = diskGraph.getById(1);
+
+		assertThat(loaded, is(not(sameInstance(state))));
+		assertThat(loaded.getName(), is(state.getName()));
+		assertThat(loaded.getDom(), is(state.getDom()));
+		assertThat(diskGraph.getById(1), is(sameInstance(loaded)));
+		assertThat(diskGraph.putIfAbsent(state), is(sameInstance(loaded)));
+	}
+
+	@Test
+	public void closingDeletesTheFiles() throws IOException {
+		File directory = folder.newFolder("closed");
+		DiskBackedStateFlowGraph graph =
+		        new DiskBackedStateFlowGraph(new ExitNotifier(0), new DefaultStateVertexFactory(),
+		                directory, 1);
+		graph.putIndex(state(StateVertex.INDEX_ID));
+		graph.putIfAbsent(state(1));
+		graph.evictAll();
+
+		graph.close();
+
+		assertThat(directory.list().length, is(0));
+		try {
+			graph.getById(1);
+			fail("An evicted state was read from a closed graph");
+		} catch (CrawljaxException e) {
+			assertThat(e.getMessage(), containsString("closed"));
+		}
+	}
+
+	@Test
+	public void evictedEdgesAreReadFromDisk() {
+		StateVertex state = state(1);
+		diskGraph.putIfAbsent(state);
+		Eventable edge = new Eventable(new Identification(How.xpath, "/A[1]"), EventType.click);
+		edge.getRelatedFormInputs().add(
+		        new FormInput("text", new Identification(How.name, "q"), "crawljax"));
+		diskGraph.addEdge(index, state, edge);
+
+		diskGraph.evictAll();
+		Eventable loaded =
+		        Iterables.getOnlyElement(diskGraph.getOutgoingClickables(diskGraph
+		                .getInitialState()));
+
+		assertThat(loaded, is(not(sameInstance(edge))));
+		assertThat(loaded, is(edge));
+		assertThat(loaded.getTargetStateVertex(), is(sameInstance(diskGraph.getById(1))));
+		assertThat(loaded.getRelatedFormInputs(), hasSize(1));
+		assertThat(diskGraph.addEdge(index, state, edge), is(false));
+	}
+
+	@Test
+	public void pathsAreFoundAfterEviction() {
+		for (int i = 1; i <= 20; i++) {
+			diskGraph.putIfAbsent(state(i));
+			diskGraph.addEdge(diskGraph.getById(i - 1), diskGraph.getById(i), new Eventable(
+			        new Identification(How.xpath, "/A[" + i + "]"), EventType.click));
+		}
+		diskGraph.evictAll();
+
+		List<Eventable> fromIndex =
+		        diskGraph.getShortestPath(diskGraph.getInitialState(), diskGraph.getById(20));
+		List<Eventable> fromState =
+		        diskGraph.getShortestPath(diskGraph.getById(5), diskGraph.getById(20));
+
+		assertThat(fromIndex, hasSize(20));
+		assertThat(fromState, hasSize(15));
+		assertThat(fromState.get(0).getSourceStateVertex().getId(), is(5));
+		assertThat(diskGraph.getAllStates(), hasSize(21));
+		assertThat(diskGraph.getAllEdges(), hasSize(20));
+	}
+
+	@Test
+	public void aCrawlShapedGraphAnswersLikeTheInMemoryGraphAfterEviction() {
+		InMemoryStateFlowGraph memory =
+		        new InMemoryStateFlowGraph(new ExitNotifier(0), new DefaultStateVertexFactory());
+		memory.putIndex(index);
+		String filler = Strings.repeat("<p>Lorem ipsum dolor sit amet</p>", 32);
+		Random random = new Random(42);
+		int edge = 0;
+		for (int i = 1; i < 300; i++) {
+			StateVertex state =
+			        new StateVertexImpl(i, "state" + i, "<div>state" + i + filler + "</div>");
+			diskGraph.putIfAbsent(state);
+			memory.putIfAbsent(state);
+			// Every state is found from a state that was found before it, like in a crawl.
+			addEdge(memory, random.nextInt(i), i, edge++);
+			for (int j = 1; j < 4; j++) {
+				addEdge(memory, i, random.nextInt(i), edge++);
+			}
+		}
+		diskGraph.evictAll();
+
+		for (int i = 0; i < 1000; i++) {
+			int id = random.nextInt(300);
+			StateVertex target = diskGraph.getById(id);
+			StateVertex expected = memory.getById(id);
+			assertThat(target.getDom(), is(expected.getDom()));
+			assertThat(diskGraph.getShortestPath(diskGraph.getInitialState(), target),
+			        hasSize(memory.getShortestPath(index, expected).size()));
+			assertThat(diskGraph.getOutgoingClickables(target),
+			        is(memory.getOutgoingClickables(expected)));
+		}
+		assertThat(diskGraph.getNumberOfStates(), is(300));
+	}
+
+	private void addEdge(InMemoryStateFlowGraph memory, int from, int to, int id) {
+		diskGraph.addEdge(diskGraph.getById(from), diskGraph.getById(to), new Eventable(
+		        new Identification(How.xpath, "/edge/" + id), EventType.click));
+		memory.addEdge(memory.getById(from), memory.getById(to), new Eventable(
+		        new Identification(How.xpath, "/edge/" + id), EventType.click));
+	}
+
+	private static StateVertex state(int id) {
+		return new StateVertexImpl(id, "state" + id, "<div>state" + id + "</div>");
+	}
+}
@@ -1,6 +1,8 @@
 package com.crawljax.core.state;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.junit.Assert.assertThat;
 
 import java.io.IOException;
@@ -10,6 +12,8 @@ import org.junit.Test;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
+import com.google.common.base.Strings;
+
 public class ElementTest {
 
 	@Test
@@ -31,4 +35,45 @@ public class ElementTest {
 
 	}
 
+	@Test
+	@SuppressWarnings("deprecation")
+	public void theNodeIsNotSerialized() throws IOException {
+		StateVertex sv = new StateVertexImpl(0, "test", "<body><a id='thea'>test</a></body>");
+		Node node = sv.getDocument().getElementById("thea");
+		Element element = new Element(node);
+
+		Element deserialized =
+		        (Element) SerializationUtils.deserialize(SerializationUtils.serialize(element));
+
+		assertThat(element.getNode(), is(sameInstance(node)));
+		assertThat(deserialized.getNode(), is(nullValue()));
+	}
+
+	@Test
+	public void longTextsAreCutOffButStillCompared() throws IOException {
+		String start = Strings.repeat("x", Element.MAX_TEXT_LENGTH);
+		StateVertex sv =
+		        new StateVertexImpl(0, "test", "<body><p id='a'>" + start + "a</p><p id='b'>"
+		                + start + "b</p><p id='c'>" + start + "a</p></body>");
+		Element a = new Element(sv.getDocument().getElementById("a"));
+		Element b = new Element(sv.getDocument().getElementById("b"));
+		Element c = new Element(sv.getDocument().getElementById("c"));
+
+		assertThat(a.getText(), is(start));
+		assertThat(a.getText(), is(b.getText()));
+		assertThat(a.equalText(b), is(false));
+		assertThat(a.equalText(c), is(true));
+	}
+
+	@Test
+	public void tagsAndAttributesAreShared() throws IOException {
+		StateVertex first = new StateVertexImpl(0, "first", "<body><a class='nav'>x</a></body>");
+		StateVertex second = new StateVertexImpl(1, "second", "<body><a class='nav'>y</a></body>");
+		Element a = new Element(first.getDocument().getElementsByTagName("a").item(0));
+		Element b = new Element(second.getDocument().getElementsByTagName("a").item(0));
+
+		assertThat(a.getTag(), is(sameInstance(b.getTag())));
+		assertThat(a.getAttributeOrNull("class"), is(sameInstance(b.getAttributeOrNull("class"))));
+	}
+
 }
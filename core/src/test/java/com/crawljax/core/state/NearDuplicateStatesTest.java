@@ -0,0 +1,144 @@
+package com.crawljax.core.state;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crawljax.core.ExitNotifier;
+import com.crawljax.oraclecomparator.comparators.EditDistanceComparator;
+import com.crawljax.oraclecomparator.comparators.MinHashComparator;
+
+public class NearDuplicateStatesTest {
+
+	private InMemoryStateFlowGraph graph;
+	private StateVertex index;
+
+	@Before
+	public void setup() {
+		StateVertexFactory factory = new NearDuplicateStateVertexFactory(0.8);
+		graph = new InMemoryStateFlowGraph(new ExitNotifier(0), factory);
+		index = factory.createIndex("http://localhost", page(-1), page(-1));
+		graph.putIndex(index);
+	}
+
+	@Test
+	public void aNearDuplicateIsMergedWithTheKnownState() {
+		StateVertex similar = graph.newStateFor("http://localhost", page(10), page(10));
+
+		assertThat(graph.putIfAbsent(similar), is(sameInstance(index)));
+		assertThat(graph.getNumberOfStates(), is(1));
+	}
+
+	@Test
+	public void aDifferentStateIsAdded() {
+		String other = "<html><body><form><input name=q>search</form></body></html>";
+		StateVertex different = graph.newStateFor("http://localhost", other, other);
+
+		assertThat(graph.putIfAbsent(different), is(nullValue()));
+		assertThat(graph.getNumberOfStates(), is(2));
+	}
+
+	@Test
+	public void theMostSimilarStateIsReturned() {
+		String other = page(-1).replace("news item", "archived post").replace("story", "entry");
+		StateVertex second = graph.newStateFor("http://localhost", other, other);
+		assertThat(graph.putIfAbsent(second), is(nullValue()));
+
+		StateVertex nearSecond = graph.newStateFor("http://localhost", other + "<p>x</p>",
+		        other + "<p>x</p>");
+		assertThat(graph.putIfAbsent(nearSecond), is(sameInstance(second)));
+	}
+
+	@Test
+	public void theComparatorUsesTheSameSimilarity() {
+		MinHashComparator comparator = new MinHashComparator(0.8);
+
+		assertThat(comparator.isEquivalent(page(-1), page(10)), is(true));
+		assertThat(comparator.isEquivalent(page(-1), "<html><body></body></html>"), is(false));
+	}
+
+	@Test
+	public void theComparatorAgreesWithEditDistance() {
+		EditDistanceComparator editDistance = new EditDistanceComparator(0.8);
+		MinHashComparator minHash = new MinHashComparator(0.8);
+		Random random = new Random(42);
+		for (int i = 0; i < 5; i++) {
+			String original = table(i);
+			String changed = mutate(random, original, 2);
+			String other = page(i);
+
+			assertThat(editDistance.isEquivalent(original, changed), is(true));
+			assertThat(minHash.isEquivalent(original, changed), is(true));
+			assertThat(editDistance.isEquivalent(original, other), is(false));
+			assertThat(minHash.isEquivalent(original, other), is(false));
+		}
+	}
+
+	@Test
+	public void aStateWithAFewChangesIsFoundAmongManyStates() {
+		List<StateVertex> states = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			String dom = table(i);
+			StateVertex state = graph.newStateFor("http://localhost", dom, dom);
+			assertThat(graph.putIfAbsent(state), is(nullValue()));
+			states.add(state);
+		}
+
+		Random random = new Random(42);
+		for (int i = 0; i < states.size(); i += 10) {
+			String dom = mutate(random, table(i), 2);
+			StateVertex changed = graph.newStateFor("http://localhost", dom, dom);
+			assertThat(graph.putIfAbsent(changed), is(sameInstance(states.get(i))));
+		}
+		assertThat(graph.getNumberOfStates(), is(201));
+	}
+
+	@Test
+	public void theNumberOfRowsPutsTheLshThresholdBelowTheSimilarityThreshold() {
+		assertThat(LshStateIndex.rowsPerBand(0.9), is(16));
+		assertThat(LshStateIndex.rowsPerBand(0.5), is(4));
+	}
+
+	private static String page(int changedRow) {
+		StringBuilder page = new StringBuilder("<html><body><ul>");
+		for (int i = 0; i < 100; i++) {
+			page.append("<li>news item ").append(i).append(' ')
+			        .append(i == changedRow ? "updated" : "story").append("</li>");
+		}
+		return page.append("</ul></body></html>").toString();
+	}
+
+	/**
+	 * A table where the seed picks the content, so every seed gives a different state.
+	 */
+	private static String table(int seed) {
+		Random random = new Random(seed);
+		StringBuilder page = new StringBuilder("<html><body><h1>Page ").append(seed)
+		        .append("</h1><table class=\"list\">");
+		for (int i = 0; i < 50; i++) {
+			page.append("<tr><td id=\"r").append(i).append("\">")
+			        .append(Long.toString(random.nextLong(), 36)).append("</td><td>")
+			        .append(random.nextInt(1000)).append("</td></tr>");
+		}
+		return page.append("</table></body></html>").toString();
+	}
+
+	private static String mutate(Random random, String dom, int changes) {
+		StringBuilder mutated = new StringBuilder(dom);
+		for (int i = 0; i < changes; i++) {
+			int at = mutated.indexOf("<td>", random.nextInt(mutated.length()));
+			if (at >= 0) {
+				mutated.insert(at + "<td>".length(), random.nextInt(10));
+			}
+		}
+		return mutated.toString();
+	}
+}
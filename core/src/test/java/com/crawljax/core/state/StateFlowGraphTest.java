@@ -4,17 +4,22 @@ import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsNot.not;
 import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.jgrapht.GraphPath;
+import org.jgrapht.alg.DijkstraShortestPath;
+import org.jgrapht.graph.DirectedMultigraph;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -29,7 +34,7 @@ public class StateFlowGraphTest {
 	private StateVertex state3;
 	private StateVertex state4;
 	private StateVertex state5;
-	private InMemoryStateFlowGraph graph;
+	private AbstractStateFlowGraph graph;
 
 	@Before
 	public void setup() {
@@ -40,10 +45,17 @@ public class StateFlowGraphTest {
 		state3 = new StateVertexImpl(3, "STATE_THREE", "<table><div>state3</div></table>");
 		state4 = new StateVertexImpl(4, "STATE_FOUR", "<table><div>state4</div></table>");
 		state5 = new StateVertexImpl(5, "STATE_FIVE", "<table><div>state5</div></table>");
-		graph = new InMemoryStateFlowGraph(new ExitNotifier(0), new DefaultStateVertexFactory());
+		graph = newGraph(new DefaultStateVertexFactory());
 		graph.putIndex(index);
 	}
 
+	/**
+	 * @return The graph under test. Override it to run these tests on another implementation.
+	 */
+	protected AbstractStateFlowGraph newGraph(StateVertexFactory factory) {
+		return new InMemoryStateFlowGraph(new ExitNotifier(0), factory);
+	}
+
 	@Test
 	public void testDuplicationAdding() throws Exception {
 		assertThat(graph.putIfAbsent(index), is(not(nullValue())));
@@ -145,7 +157,7 @@ public class StateFlowGraphTest {
 		                + "<SCRIPT src='js/jquery-1.2.3.js' type='text/javascript'></SCRIPT>"
 		                + "<body><div id='firstdiv' class='orange'>";
 
-		InMemoryStateFlowGraph g = new InMemoryStateFlowGraph(new ExitNotifier(0), new DefaultStateVertexFactory());
+		AbstractStateFlowGraph g = newGraph(new DefaultStateVertexFactory());
 		g.putIndex(new StateVertexImpl(1, "", HTML1));
 		g.putIfAbsent(new StateVertexImpl(2, "", HTML2));
 
@@ -238,6 +250,140 @@ public class StateFlowGraphTest {
 
 	}
 
+	@Test
+	public void shortestPathFromTheIndexIsUpdatedWhenAShorterPathIsFound() {
+		graph.putIfAbsent(state2);
+		graph.putIfAbsent(state3);
+		graph.putIfAbsent(state4);
+		graph.putIfAbsent(state5);
+		graph.addEdge(index, state2, newXpathEventable("/index/2"));
+		graph.addEdge(state2, state3, newXpathEventable("/2/3"));
+		graph.addEdge(state3, state4, newXpathEventable("/3/4"));
+		graph.addEdge(state4, state5, newXpathEventable("/4/5"));
+		assertThat(graph.getShortestPath(index, state5), hasSize(4));
+
+		Eventable shortcut = newXpathEventable("/index/3");
+		graph.addEdge(index, state3, shortcut);
+
+		List<Eventable> path = graph.getShortestPath(index, state5);
+		assertThat(path, hasSize(3));
+		assertThat(path.get(0), is(shortcut));
+		assertThat(path.get(1).getTargetStateVertex(), is(state4));
+		assertThat(path.get(2).getTargetStateVertex(), is(state5));
+		assertThat(graph.getShortestPath(index, index), hasSize(0));
+	}
+
+	@Test
+	public void shortestPathFromTheIndexHasTheSameLengthAsDijkstra() {
+		Random random = new Random(42);
+		List<StateVertex> states = new ArrayList<>();
+		states.add(index);
+		DirectedMultigraph<StateVertex, Eventable> reference =
+		        new DirectedMultigraph<>(Eventable.class);
+		reference.addVertex(index);
+		for (int i = 1; i <= 100; i++) {
+			StateVertex state =
+			        new StateVertexImpl(i, "state" + i, "<div>state" + i + "</div>");
+			graph.putIfAbsent(state);
+			reference.addVertex(state);
+			states.add(state);
+		}
+		for (int i = 0; i < 300; i++) {
+			StateVertex source = states.get(random.nextInt(states.size()));
+			StateVertex target = states.get(random.nextInt(states.size()));
+			Eventable event = newXpathEventable("/edge/" + i);
+			graph.addEdge(source, target, event);
+			reference.addEdge(source, target, event);
+		}
+
+		for (StateVertex state : states) {
+			List<Eventable> expected = DijkstraShortestPath.findPathBetween(reference, index, state);
+			if (expected != null) {
+				List<Eventable> path = graph.getShortestPath(index, state);
+				assertThat(path, hasSize(expected.size()));
+				StateVertex current = index;
+				for (Eventable event : path) {
+					assertThat(event.getSourceStateVertex(), is(current));
+					current = event.getTargetStateVertex();
+				}
+				assertThat(current, is(state));
+			}
+		}
+	}
+
+	@Test
+	public void everyStateFoundFromAnEarlierStateHasAPathAsShortAsDijkstras() {
+		Random random = new Random(42);
+		List<StateVertex> states = new ArrayList<>();
+		states.add(index);
+		DirectedMultigraph<StateVertex, Eventable> reference =
+		        new DirectedMultigraph<>(Eventable.class);
+		reference.addVertex(index);
+		int edge = 0;
+		for (int i = 1; i <= 200; i++) {
+			StateVertex state =
+			        new StateVertexImpl(i, "state" + i, "<div>state" + i + "</div>");
+			graph.putIfAbsent(state);
+			reference.addVertex(state);
+			// Every state is found from a state that was found before it, like in a crawl.
+			addEdge(reference, states.get(random.nextInt(i)), state, edge++);
+			states.add(state);
+			for (int j = 0; j < 3; j++) {
+				addEdge(reference, state, states.get(random.nextInt(i)), edge++);
+			}
+		}
+
+		for (StateVertex state : states) {
+			List<Eventable> expected = DijkstraShortestPath.findPathBetween(reference, index, state);
+			assertThat(graph.getShortestPath(index, state), hasSize(expected.size()));
+		}
+	}
+
+	private void addEdge(DirectedMultigraph<StateVertex, Eventable> reference, StateVertex source,
+	        StateVertex target, int id) {
+		Eventable event = newXpathEventable("/edge/" + id);
+		graph.addEdge(source, target, event);
+		reference.addEdge(source, target, event);
+	}
+
+	@Test
+	public void aKnownDomIsFoundByItsFingerprintWithoutANewState() {
+		graph.putIfAbsent(state2);
+		StateVertex fresh = graph.newStateFor("http://localhost", "<b>new</b>", "<b>new</b>");
+
+		StateVertex known =
+		        graph.newStateFor("http://localhost", "<table><div>state2</div></table>",
+		                "<table><div>state2</div></table>");
+		StateVertex next = graph.newStateFor("http://localhost", "<b>next</b>", "<b>next</b>");
+
+		assertThat(known, is(sameInstance(state2)));
+		assertThat(next.getId(), is(fresh.getId() + 1));
+	}
+
+	@Test
+	public void aCloneIsFoundByItsFingerprint() {
+		graph.putIfAbsent(state2);
+		StateVertex clone =
+		        new StateVertexImpl(7, "STATE_SEVEN", "<table><div>state2</div></table>");
+
+		assertThat(graph.putIfAbsent(clone), is(sameInstance(state2)));
+		assertThat(graph.getNumberOfStates(), is(2));
+	}
+
+	@Test
+	public void customFactoriesAreNotFingerprinted() {
+		AbstractStateFlowGraph custom = newGraph(new DefaultStateVertexFactory() {
+		});
+		custom.putIndex(index);
+
+		StateVertex same =
+		        custom.newStateFor("http://localhost", "<table><div>index</div></table>",
+		                "<table><div>index</div></table>");
+
+		assertThat(same, is(not(sameInstance(index))));
+		assertThat(custom.putIfAbsent(same), is(sameInstance(index)));
+	}
+
 	@Test
 	public void largetTest() {
 		graph.putIfAbsent(state2);
@@ -0,0 +1,117 @@
+package com.crawljax.forms;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.codahale.metrics.MetricRegistry;
+import com.crawljax.browser.EmbeddedBrowser;
+import com.crawljax.core.configuration.CrawljaxConfiguration;
+import com.crawljax.core.configuration.CrawljaxConfiguration.CrawljaxConfigurationBuilder;
+import com.crawljax.core.state.Identification;
+import com.crawljax.core.state.Identification.How;
+import com.crawljax.metrics.MetricsModule;
+import com.crawljax.util.DomUtils;
+
+public class FormHandlerTest {
+
+	private static final String PAGE = "<HTML><BODY><FORM>"
+	        + "<INPUT type='text' name='query'/>"
+	        + "<INPUT type='checkbox' name='agree'/>"
+	        + "<SELECT name='color'><OPTION value='red'>Red</OPTION></SELECT>"
+	        + "<INPUT type='file' name='upload'/>"
+	        + "</FORM></BODY></HTML>";
+
+	private EmbeddedBrowser browser;
+	private CrawljaxConfigurationBuilder builder;
+	private MetricRegistry registry;
+	private List<FormInput> inputs;
+
+	@Before
+	public void setup() throws IOException {
+		browser = mock(EmbeddedBrowser.class);
+		when(browser.getStrippedDocumentWithoutIframeContent()).thenReturn(
+		        DomUtils.asDocument(PAGE));
+		builder = CrawljaxConfiguration.builderFor("http://example.com");
+		builder.crawlRules().insertRandomDataInInputForms(false);
+		registry = new MetricRegistry();
+		inputs = Arrays.asList(
+		        new FormInput("text", new Identification(How.name, "query"), "it's"),
+		        new FormInput("checkbox", new Identification(How.name, "agree"), "1"),
+		        new FormInput("select", new Identification(How.name, "color"), "red"),
+		        new FormInput("text", new Identification(How.name, "missing"), "lost"));
+	}
+
+	@Test
+	public void everyValueIsFilledInWithAScriptOfItsOwnByDefault() {
+		List<Boolean> filled = handler().handleFormElements(inputs);
+
+		verify(browser, times(3)).executeJavaScript(anyString());
+		assertThat(filled, contains(true, true, true, false));
+		assertThat(roundTripsPerEvent(), is(3L));
+	}
+
+	@Test
+	public void allValuesAreFilledInWithOneScript() {
+		builder.crawlRules().fillFormsInOneScript(true);
+		when(browser.executeJavaScript(anyString())).thenReturn(Arrays.asList(true, false, true));
+
+		List<Boolean> filled = handler().handleFormElements(inputs);
+
+		ArgumentCaptor<String> script = ArgumentCaptor.forClass(String.class);
+		verify(browser, times(1)).executeJavaScript(script.capture());
+		assertThat(script.getValue(), containsString("ATUSA_element.value='it\\'s';"));
+		assertThat(script.getValue(), containsString("ATUSA_element.checked=true;"));
+		assertThat(script.getValue(), containsString("return ATUSA_filled;"));
+		assertThat(filled, contains(true, false, true, false));
+		assertThat(roundTripsPerEvent(), is(1L));
+		assertThat(registry.getCounters().get(MetricsModule.FORMS_PREFIX + "unfilled_fields")
+		        .getCount(), is(2L));
+	}
+
+	@Test
+	public void nothingIsFilledInWhenTheScriptFails() {
+		builder.crawlRules().fillFormsInOneScript(true);
+		when(browser.executeJavaScript(anyString())).thenReturn(null);
+
+		assertThat(handler().handleFormElements(inputs), contains(false, false, false, false));
+	}
+
+	@Test
+	public void inputsThatNothingIsTypedInAreNotFilledIn() {
+		List<FormInput> file =
+		        Arrays.asList(new FormInput("file", new Identification(How.name, "upload"),
+		                "data.txt"));
+
+		assertThat(handler().handleFormElements(file), contains(false));
+		builder.crawlRules().fillFormsInOneScript(true);
+		assertThat(handler().handleFormElements(file), contains(false));
+
+		verify(browser, times(0)).executeJavaScript(anyString());
+		assertThat(registry.getCounters().get(MetricsModule.FORMS_PREFIX + "filled_fields")
+		        .getCount(), is(0L));
+	}
+
+	private FormHandler handler() {
+		return new FormHandler(browser, builder.build().getCrawlRules(), registry);
+	}
+
+	private long roundTripsPerEvent() {
+		return registry.getHistograms().get(MetricsModule.FORMS_PREFIX + "round_trips_per_event")
+		        .getSnapshot().getValues()[0];
+	}
+}
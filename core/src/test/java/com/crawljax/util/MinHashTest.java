@@ -0,0 +1,68 @@
+package com.crawljax.util;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class MinHashTest {
+
+	@Test
+	public void equalDomsHaveEqualSignatures() {
+		String dom = page(100, -1);
+		assertThat(MinHash.similarity(MinHash.signatureOf(dom), MinHash.signatureOf(dom)),
+		        is(1.0));
+	}
+
+	@Test
+	public void aSmallChangeKeepsTheDomsSimilar() {
+		double similarity =
+		        MinHash.similarity(MinHash.signatureOf(page(200, -1)),
+		                MinHash.signatureOf(page(200, 100)));
+		assertThat(similarity, is(greaterThan(0.9)));
+		assertThat(similarity, is(lessThan(1.0)));
+	}
+
+	@Test
+	public void differentDomsAreNotSimilar() {
+		double similarity =
+		        MinHash.similarity(MinHash.signatureOf(page(200, -1)),
+		                MinHash.signatureOf("<html><body><form>login here</form></body></html>"));
+		assertThat(similarity, is(lessThan(0.2)));
+	}
+
+	@Test
+	public void theEstimateIsCloseToTheJaccardSimilarity() {
+		// Half of the rows are shared, which gives about a third of the shingles in common.
+		StringBuilder first = new StringBuilder();
+		StringBuilder second = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			first.append("<li>row ").append(i).append("</li>");
+			second.append("<li>row ").append(i + 150).append("</li>");
+		}
+		double similarity =
+		        MinHash.similarity(MinHash.signatureOf(first.toString()),
+		                MinHash.signatureOf(second.toString()));
+		assertThat(similarity, is(closeTo(1.0 / 3, 0.12)));
+	}
+
+	@Test
+	public void tinyDomsStillGetASignature() {
+		assertThat(MinHash.similarity(MinHash.signatureOf("a"), MinHash.signatureOf("a")),
+		        is(1.0));
+		assertThat(MinHash.similarity(MinHash.signatureOf("a"), MinHash.signatureOf("b")),
+		        is(0.0));
+	}
+
+	private static String page(int rows, int changedRow) {
+		StringBuilder page = new StringBuilder("<html><body><table>");
+		for (int i = 0; i < rows; i++) {
+			page.append("<tr><td>item ").append(i).append("</td><td>")
+			        .append(i == changedRow ? "changed" : "price " + i * 7).append("</td></tr>");
+		}
+		return page.append("</table></body></html>").toString();
+	}
+}
@@ -0,0 +1,101 @@
+package com.crawljax.util;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+public class XPathEngineTest {
+
+	private Document dom;
+
+	@Before
+	public void setup() throws IOException {
+		dom = DomUtils.asDocument("<body><div id='a'><span>1</span><span>2</span></div>"
+		        + "<div id='b'><span>3</span></div><input type='text'/></body>");
+	}
+
+	@Test
+	public void expressionsAreCompiledOncePerThread() throws Exception {
+		final XPathEngine engine = XPathEngine.getDefault();
+		XPathExpression compiled = engine.compile("//SPAN");
+		assertThat(engine.compile("//SPAN"), is(sameInstance(compiled)));
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			XPathExpression other = executor.submit(new Callable<XPathExpression>() {
+				@Override
+				public XPathExpression call() throws XPathExpressionException {
+					return engine.compile("//SPAN");
+				}
+			}).get();
+			assertThat(other, is(not(sameInstance(compiled))));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void manyExpressionsAreEvaluatedOnOneDocument() throws XPathExpressionException {
+		List<NodeList> results =
+		        XPathEngine.getDefault().evaluate(dom,
+		                ImmutableList.of("//SPAN", "//DIV", "//INPUT", "//SELECT"));
+
+		assertThat(results.size(), is(4));
+		assertThat(results.get(0).getLength(), is(3));
+		assertThat(results.get(1).getLength(), is(2));
+		assertThat(results.get(2).getLength(), is(1));
+		assertThat(results.get(3).getLength(), is(0));
+	}
+
+	@Test
+	public void theHtmlEngineFindsTheFirstNode() throws XPathExpressionException {
+		Node span = XPathEngine.getHtml().evaluateNode(dom, "/HTML[1]/BODY[1]/DIV[2]/SPAN[1]");
+
+		assertThat(span.getTextContent(), is("3"));
+	}
+
+	@Test
+	public void compiledExpressionsFindWhatANewFactoryFinds() throws Exception {
+		ImmutableList<String> expressions = ImmutableList.of("//INPUT", "//TEXTAREA", "//SELECT",
+		        "//*[@style]/@style", "/HTML[1]/BODY[1]/DIV[5]/A[1]", "//DIV[@class='menu']//A");
+		for (int elements = 1; elements <= 10; elements++) {
+			Document page = DomUtils.asDocument("<body>"
+			        + Strings.repeat("<div class='menu' style='color: red'><a href='#'>link</a>"
+			                + "<input type='text'/></div>", elements) + "</body>");
+			for (String expression : expressions) {
+				NodeList expected = (NodeList) XPathFactory.newInstance().newXPath()
+				        .evaluate(expression, page, XPathConstants.NODESET);
+
+				assertThat(expression + " on " + elements + " elements",
+				        XPathEngine.getDefault().evaluate(page, expression).getLength(),
+				        is(expected.getLength()));
+			}
+		}
+	}
+
+	@Test(expected = XPathExpressionException.class)
+	public void invalidExpressionsAreRejected() throws XPathExpressionException {
+		XPathEngine.getDefault().evaluate(dom, "//[");
+	}
+}
@@ -0,0 +1,70 @@
+package com.crawljax.util;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+public class XPathIndexTest {
+
+	private static final String HTML = "<body><div id='first'></div>text<div><span></span>"
+	        + "<a id='link'>link</a><span id='second'></span></div><p><a></a></p></body>";
+
+	private Document dom;
+
+	@Before
+	public void setup() throws IOException {
+		dom = DomUtils.asDocument(HTML);
+	}
+
+	@Test
+	public void everyElementHasTheXPathTheHelperBuilds() throws IOException {
+		Document fresh = DomUtils.asDocument(HTML);
+		XPathIndex index = XPathIndex.of(dom);
+
+		NodeList elements = dom.getElementsByTagName("*");
+		NodeList freshElements = fresh.getElementsByTagName("*");
+		assertThat(index.size(), is(elements.getLength()));
+		for (int i = 0; i < elements.getLength(); i++) {
+			assertThat(index.getXPath(elements.item(i)),
+			        is(XPathHelper.getXPathExpression(freshElements.item(i))));
+		}
+	}
+
+	@Test
+	public void elementsAreFoundByTheirXPath() {
+		XPathIndex index = XPathIndex.of(dom);
+
+		assertThat(index.getElement("/HTML[1]/BODY[1]/DIV[2]/SPAN[2]"),
+		        is(sameInstance(dom.getElementById("second"))));
+		assertThat(index.getXPath(dom.getElementById("link")), is("/HTML[1]/BODY[1]/DIV[2]/A[1]"));
+		assertThat(index.getElement("/HTML[1]/BODY[1]/DIV[3]"), is(nullValue()));
+	}
+
+	@Test
+	public void theIndexIsSharedByAllUsersOfTheDocument() {
+		XPathIndex index = XPathIndex.of(dom);
+
+		assertThat(XPathIndex.of(dom), is(sameInstance(index)));
+		assertThat(XPathIndex.find(dom), is(sameInstance(index)));
+	}
+
+	@Test
+	public void theHelperUsesTheIndexOnceItIsBuilt() {
+		Element first = dom.getElementById("first");
+		XPathIndex.of(dom);
+		Node text = first.getNextSibling();
+
+		assertThat(XPathHelper.getXPathExpression(first), is("/HTML[1]/BODY[1]/DIV[1]"));
+		assertThat(XPathHelper.getXPathExpression(text), is("/HTML[1]/BODY[1]/#text[1]"));
+	}
+}
@@ -0,0 +1,365 @@
+package com.crawljax.plugins.crawloverview;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+
+/**
+ * Stores the DOMs and screenshots of a crawl in two files instead of a file per artifact.
+ * <p>
+ * The pack file holds the content of the artifacts, each compressed with deflate unless that
+ * doesn't make it smaller, as is the case for screenshots. Content is addressed by its SHA-1
+ * hash, so artifacts with the same content are stored once. The index file maps the path of
+ * every artifact, relative to the directory of the pack, to its content. Both files are only
+ * appended to, so a pack can be read while it is written.
+ * </p>
+ */
+@ThreadSafe
+public class ArtifactPack implements Closeable {
+
+	/**
+	 * The name of the file with the content of the artifacts.
+	 */
+	public static final String PACK_NAME = "artifacts.pack";
+
+	/**
+	 * The name of the file with the paths of the artifacts.
+	 */
+	public static final String INDEX_NAME = "artifacts.idx";
+
+	private static final int MAGIC = 0x434a5850;
+	private static final int VERSION = 1;
+	private static final int HEADER_LENGTH = 8;
+	private static final HashFunction CONTENT_HASH = Hashing.sha1();
+
+	private final File directory;
+	private final FileChannel pack;
+	private final ConcurrentMap<String, Entry> entries = Maps.newConcurrentMap();
+	private final ConcurrentMap<HashCode, Entry> contents = Maps.newConcurrentMap();
+
+	@Nullable
+	private final DataOutputStream index;
+
+	@GuardedBy("this")
+	private long indexRead = HEADER_LENGTH;
+
+	/**
+	 * Creates a new pack in the directory. An existing pack in the directory is replaced.
+	 *
+	 * @param directory
+	 *            The directory of the pack.
+	 * @return The pack, to add artifacts to.
+	 * @throws IOException
+	 *             if the files of the pack can't be created.
+	 */
+	public static ArtifactPack create(File directory) throws IOException {
+		return new ArtifactPack(directory, true);
+	}
+
+	/**
+	 * Opens an existing pack for reading.
+	 *
+	 * @param directory
+	 *            The directory of the pack.
+	 * @return The pack, with the artifacts that were indexed so far.
+	 * @throws IOException
+	 *             if there is no pack in the directory or it can't be read.
+	 * @see #refresh()
+	 */
+	public static ArtifactPack open(File directory) throws IOException {
+		ArtifactPack pack = new ArtifactPack(directory, false);
+		pack.refresh();
+		return pack;
+	}
+
+	/**
+	 * @param directory
+	 *            The directory to look in.
+	 * @return Whether the directory has a pack.
+	 */
+	public static boolean exists(File directory) {
+		return new File(directory, INDEX_NAME).isFile() && new File(directory, PACK_NAME).isFile();
+	}
+
+	private ArtifactPack(File directory, boolean writable) throws IOException {
+		this.directory = directory;
+		File packFile = new File(directory, PACK_NAME);
+		if (writable) {
+			pack = FileChannel.open(packFile.toPath(), StandardOpenOption.CREATE,
+			        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+			        StandardOpenOption.WRITE);
+			index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+			        new File(directory, INDEX_NAME))));
+			index.writeInt(MAGIC);
+			index.writeInt(VERSION);
+			index.flush();
+		} else {
+			pack = FileChannel.open(packFile.toPath(), StandardOpenOption.READ);
+			index = null;
+		}
+	}
+
+	/**
+	 * @return The directory of the pack.
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @param file
+	 *            A file in the directory of the pack.
+	 * @return The path of the file in the pack.
+	 */
+	public String pathOf(File file) {
+		return directory.toURI().relativize(file.toURI()).getPath();
+	}
+
+	/**
+	 * Adds an artifact. Its content is only written if no other artifact has the same content.
+	 *
+	 * @param path
+	 *            The path of the artifact.
+	 * @param content
+	 *            The content of the artifact.
+	 * @return Whether the content was written.
+	 * @throws IOException
+	 *             if the artifact can't be written.
+	 */
+	public boolean put(String path, byte[] content) throws IOException {
+		checkWritable();
+		HashCode hash = CONTENT_HASH.hashBytes(content);
+		Entry entry = contents.get(hash);
+		if (entry != null) {
+			index(path, entry);
+			return false;
+		}
+		byte[] compressed = deflate(content);
+		boolean deflated = compressed.length < content.length;
+		byte[] stored = deflated ? compressed : content;
+		synchronized (this) {
+			entry = contents.get(hash);
+			if (entry != null) {
+				index(path, entry);
+				return false;
+			}
+			long offset = pack.size();
+			ByteBuffer buffer = ByteBuffer.wrap(stored);
+			while (buffer.hasRemaining()) {
+				pack.write(buffer, offset + buffer.position());
+			}
+			entry = new Entry(hash, offset, stored.length, content.length, deflated);
+			contents.put(hash, entry);
+			index(path, entry);
+			return true;
+		}
+	}
+
+	/**
+	 * Adds an artifact with the same content as an artifact that was added before.
+	 *
+	 * @param existingPath
+	 *            The path of the artifact that was added before.
+	 * @param path
+	 *            The path of the new artifact.
+	 * @return Whether the artifact was added, which it isn't when there is no artifact at the
+	 *         existing path.
+	 * @throws IOException
+	 *             if the artifact can't be written.
+	 */
+	public boolean link(String existingPath, String path) throws IOException {
+		checkWritable();
+		Entry entry = entries.get(existingPath);
+		if (entry == null) {
+			return false;
+		}
+		index(path, entry);
+		return true;
+	}
+
+	private void checkWritable() throws IOException {
+		if (index == null) {
+			throw new IOException("The pack in " + directory + " is opened for reading");
+		}
+	}
+
+	private synchronized void index(String path, Entry entry) throws IOException {
+		index.writeUTF(path);
+		index.write(entry.hash.asBytes());
+		index.writeLong(entry.offset);
+		index.writeInt(entry.storedLength);
+		index.writeInt(entry.length);
+		index.writeBoolean(entry.deflated);
+		index.flush();
+		entries.put(path, entry);
+	}
+
+	/**
+	 * @param path
+	 *            The path of the artifact.
+	 * @return The content of the artifact or <code>null</code> if the pack has no artifact at the
+	 *         path.
+	 * @throws IOException
+	 *             if the artifact can't be read.
+	 */
+	@Nullable
+	public byte[] get(String path) throws IOException {
+		Entry entry = entries.get(path);
+		if (entry == null) {
+			return null;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(entry.storedLength);
+		while (buffer.hasRemaining()) {
+			if (pack.read(buffer, entry.offset + buffer.position()) < 0) {
+				throw new EOFException("The pack in " + directory + " ends before " + path);
+			}
+		}
+		return entry.deflated ? inflate(buffer.array(), entry.length) : buffer.array();
+	}
+
+	/**
+	 * @param path
+	 *            The path of the artifact.
+	 * @return Whether the pack has an artifact at the path.
+	 */
+	public boolean contains(String path) {
+		return entries.containsKey(path);
+	}
+
+	/**
+	 * @return The paths of all artifacts in the pack.
+	 */
+	public ImmutableSet<String> getPaths() {
+		return ImmutableSet.copyOf(entries.keySet());
+	}
+
+	/**
+	 * @return The number of distinct contents in the pack.
+	 */
+	public int getDistinctContents() {
+		return contents.size();
+	}
+
+	/**
+	 * Reads the artifacts that were indexed since the pack was opened or last refreshed. This is
+	 * only needed for packs that are opened for reading while they are written.
+	 *
+	 * @throws IOException
+	 *             if the index can't be read.
+	 */
+	public synchronized void refresh() throws IOException {
+		if (index != null) {
+			return;
+		}
+		File indexFile = new File(directory, INDEX_NAME);
+		if (indexFile.length() <= indexRead) {
+			return;
+		}
+		try (InputStream in = new FileInputStream(indexFile)) {
+			CountingInputStream counting = new CountingInputStream(new BufferedInputStream(in));
+			DataInputStream data = new DataInputStream(counting);
+			if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+				throw new IOException(indexFile + " is not an index of a pack");
+			}
+			ByteStreams.skipFully(data, indexRead - HEADER_LENGTH);
+			while (true) {
+				String path = data.readUTF();
+				byte[] hash = new byte[CONTENT_HASH.bits() / Byte.SIZE];
+				data.readFully(hash);
+				Entry entry =
+				        new Entry(HashCode.fromBytes(hash), data.readLong(), data.readInt(),
+				                data.readInt(), data.readBoolean());
+				contents.putIfAbsent(entry.hash, entry);
+				entries.put(path, entry);
+				indexRead = counting.getCount();
+			}
+		} catch (EOFException e) {
+			// The last entry is read or is still being written.
+		}
+	}
+
+	private static byte[] deflate(byte[] content) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2 + 16);
+		Deflater deflater = new Deflater();
+		try (DeflaterOutputStream deflating = new DeflaterOutputStream(out, deflater)) {
+			deflating.write(content);
+		} finally {
+			deflater.end();
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] inflate(byte[] stored, int length) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(stored);
+			byte[] content = new byte[length];
+			int inflated = inflater.inflate(content);
+			if (inflated != length || !inflater.finished()) {
+				throw new IOException("Expected " + length + " bytes but inflated " + inflated);
+			}
+			return content;
+		} catch (DataFormatException e) {
+			throw new IOException("The pack is corrupt", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			if (index != null) {
+				index.close();
+			}
+		} finally {
+			pack.close();
+		}
+	}
+
+	private static final class Entry {
+
+		private final HashCode hash;
+		private final long offset;
+		private final int storedLength;
+		private final int length;
+		private final boolean deflated;
+
+		Entry(HashCode hash, long offset, int storedLength, int length, boolean deflated) {
+			this.hash = hash;
+			this.offset = offset;
+			this.storedLength = storedLength;
+			this.length = length;
+			this.deflated = deflated;
+		}
+	}
+}
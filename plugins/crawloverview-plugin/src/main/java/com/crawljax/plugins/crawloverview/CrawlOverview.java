@@ -2,16 +2,17 @@ package com.crawljax.plugins.crawloverview;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.crawljax.core.plugin.*;
-import org.openqa.selenium.Dimension;
 import org.openqa.selenium.Point;
 import org.openqa.selenium.WebDriverException;
-import org.openqa.selenium.WebElement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.crawljax.browser.BoundingBox;
 import com.crawljax.browser.EmbeddedBrowser;
 import com.crawljax.core.CandidateElement;
 import com.crawljax.core.CrawlSession;
@@ -20,15 +21,13 @@ import com.crawljax.core.CrawljaxException;
 import com.crawljax.core.ExitNotifier.ExitStatus;
 import com.crawljax.core.configuration.CrawljaxConfiguration;
 import com.crawljax.core.state.Eventable;
-import com.crawljax.core.state.StateFlowGraph;
+import com.crawljax.core.state.Identification;
 import com.crawljax.core.state.StateVertex;
 import com.crawljax.plugins.crawloverview.model.CandidateElementPosition;
 import com.crawljax.plugins.crawloverview.model.OutPutModel;
-import com.crawljax.plugins.crawloverview.model.State;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -39,13 +38,23 @@ import com.google.common.collect.Maps;
  * the visited states are linked together.
  **/
 public class CrawlOverview implements OnNewStatePlugin, PreStateCrawlingPlugin,
-        PostCrawlingPlugin, OnFireEventFailedPlugin, PreCrawlingPlugin {
+        PostCrawlingPlugin, OnFireEventFailedPlugin, PreCrawlingPlugin, OnRevisitStatePlugin {
+
+	/**
+	 * The parameter that, when <code>true</code>, writes the DOMs and screenshots to an
+	 * {@link ArtifactPack} instead of a file each. The report pages then need the web module to
+	 * serve them.
+	 */
+	public static final String PACK_ARTIFACTS = "packArtifacts";
 
 	private static final Logger LOG = LoggerFactory.getLogger(CrawlOverview.class);
 
 	private final ConcurrentMap<String, StateVertex> visitedStates;
 	private final OutPutModelCache outModelCache;
 	private OutputBuilder outputBuilder;
+	private ScreenshotEncoder screenshotEncoder;
+	private ReportWriter reportWriter;
+	private final AtomicBoolean metricsRegistered = new AtomicBoolean();
 	private boolean warnedForElementsInIframe = false;
 
 	private OutPutModel result;
@@ -73,19 +82,40 @@ public class CrawlOverview implements OnNewStatePlugin, PreStateCrawlingPlugin,
 		}
 		File outputFolder = hostInterface.getOutputDirectory();
 		Preconditions.checkNotNull(outputFolder, "Output folder cannot be null");
-		outputBuilder = new OutputBuilder(outputFolder);
+		outputBuilder = new OutputBuilder(outputFolder, packArtifacts());
+		screenshotEncoder = new ScreenshotEncoder(outputBuilder.getPack());
+		reportWriter = new ReportWriter(outputBuilder, outModelCache, visitedStates);
+	}
+
+	private boolean packArtifacts() {
+		Map<String, String> parameters = hostInterface.getParameters();
+		return parameters != null && Boolean.parseBoolean(parameters.get(PACK_ARTIFACTS));
 	}
 
 	/**
-	 * Saves a screenshot of every new state.
+	 * Saves a screenshot of every new state. The screenshot is taken here and written by the
+	 * {@link ScreenshotEncoder}.
 	 */
 	@Override
 	public void onNewState(CrawlerContext context, StateVertex vertex) {
 		LOG.debug("onNewState");
+		if (metricsRegistered.compareAndSet(false, true)) {
+			screenshotEncoder.registerMetrics(context.getRegistry());
+		}
 		StateBuilder state = outModelCache.addStateIfAbsent(vertex);
 		visitedStates.putIfAbsent(state.getName(), vertex);
 		saveScreenshot(context.getBrowser(), state.getName(), vertex);
 		outputBuilder.persistDom(state.getName(), context.getBrowser().getUnStrippedDom());
+		reportWriter.edgesFound(context);
+		reportWriter.stateChanged(context, state.getName());
+	}
+
+	/**
+	 * Streams the edge to a state that was found before.
+	 */
+	@Override
+	public void onRevisitState(CrawlerContext context, StateVertex currentState) {
+		reportWriter.edgesFound(context);
 	}
 
 	private void saveScreenshot(EmbeddedBrowser browser, String name,
@@ -95,14 +125,14 @@ public class CrawlOverview implements OnNewStatePlugin, PreStateCrawlingPlugin,
 		File thumb = outputBuilder.newThumbNail(name);
 		try {
 			byte[] screenshot = browser.getScreenShot();
-			ImageWriter.writeScreenShotAndThumbnail(screenshot, jpg, thumb);
+			screenshotEncoder.submit(screenshot, jpg, thumb);
 		} catch (CrawljaxException | WebDriverException e) {
 			LOG.warn(
 			        "Screenshots are not supported or not functioning for {}. Exception message: {}",
 			        browser, e.getMessage());
 			LOG.debug("Screenshot not made because {}", e.getMessage(), e);
 		}
-		LOG.trace("Screenshot saved");
+		LOG.trace("Screenshot queued");
 	}
 
 	/**
@@ -113,38 +143,48 @@ public class CrawlOverview implements OnNewStatePlugin, PreStateCrawlingPlugin,
 	public void preStateCrawling(CrawlerContext context,
 	        ImmutableList<CandidateElement> candidateElements, StateVertex state) {
 		LOG.debug("preStateCrawling");
-		List<CandidateElementPosition> newElements = Lists.newLinkedList();
 		LOG.info("Prestate found new state {} with {} candidates",
 		        state.getName(), candidateElements.size());
-		for (CandidateElement element : candidateElements) {
-			try {
-				WebElement webElement = getWebElement(context.getBrowser(), element);
-				if (webElement != null) {
-					newElements.add(findElement(webElement, element));
-				}
-			} catch (WebDriverException e) {
-				LOG.info("Could not get position for {}", element, e);
-			}
-		}
+		List<CandidateElementPosition> newElements =
+		        findPositions(context.getBrowser(), candidateElements);
 
 		StateBuilder stateOut = outModelCache.addStateIfAbsent(state);
 		stateOut.addCandidates(newElements);
+		reportWriter.stateChanged(context, state.getName());
 		LOG.trace("preState finished, elements added to state");
 	}
 
-	private WebElement getWebElement(EmbeddedBrowser browser,
-	        CandidateElement element) {
-		try {
-			if (!Strings.isNullOrEmpty(element.getRelatedFrame())) {
+	/**
+	 * Asks the browser for the positions of all elements at once. Elements in frames are left
+	 * out, because their positions are relative to the frame.
+	 */
+	private List<CandidateElementPosition> findPositions(EmbeddedBrowser browser,
+	        List<CandidateElement> candidateElements) {
+		List<Identification> identifications = Lists.newArrayList();
+		for (CandidateElement element : candidateElements) {
+			if (Strings.isNullOrEmpty(element.getRelatedFrame())) {
+				identifications.add(element.getIdentification());
+			} else {
 				warnUserForInvisibleElements();
-				return null;
+			}
+		}
+		Map<Identification, BoundingBox> boxes;
+		try {
+			boxes = browser.getBoundingBoxes(identifications);
+		} catch (RuntimeException e) {
+			LOG.info("Could not get the positions of the candidates", e);
+			return Lists.newLinkedList();
+		}
+		List<CandidateElementPosition> positions = Lists.newLinkedList();
+		for (Identification identification : identifications) {
+			BoundingBox box = boxes.get(identification);
+			if (box == null) {
+				LOG.info("Could not locate element for positioning {}", identification);
 			} else {
-				return browser.getWebElement(element.getIdentification());
+				positions.add(toPosition(identification, box));
 			}
-		} catch (WebDriverException e) {
-			LOG.info("Could not locate element for positioning {}", element);
-			return null;
 		}
+		return positions;
 	}
 
 	private void warnUserForInvisibleElements() {
@@ -154,15 +194,13 @@ public class CrawlOverview implements OnNewStatePlugin, PreStateCrawlingPlugin,
 		}
 	}
 
-	private CandidateElementPosition findElement(WebElement webElement,
-	        CandidateElement element) {
-		Point location = webElement.getLocation();
-		Dimension size = webElement.getSize();
+	private CandidateElementPosition toPosition(Identification identification, BoundingBox box) {
+		Point location = box.getLocation();
 		CandidateElementPosition renderedCandidateElement =
-		        new CandidateElementPosition(element.getIdentification().getValue(),
-		                location, size);
+		        new CandidateElementPosition(identification.getValue(), location,
+		                box.getSize());
 		if (location.getY() < 0) {
-			LOG.warn("Weird positioning {} for {}", webElement.getLocation(),
+			LOG.warn("Weird positioning {} for {}", location,
 			        renderedCandidateElement.getXpath());
 		}
 		return renderedCandidateElement;
@@ -174,13 +212,17 @@ public class CrawlOverview implements OnNewStatePlugin, PreStateCrawlingPlugin,
 	@Override
 	public void postCrawling(CrawlSession session, ExitStatus exitStatus) {
 		LOG.debug("postCrawling");
-		StateFlowGraph sfg = session.getStateFlowGraph();
-		result = outModelCache.close(session, exitStatus);
-		outputBuilder.write(result, session.getConfig());
-		StateWriter writer = new StateWriter(outputBuilder, sfg,
-		        ImmutableMap.copyOf(visitedStates));
-		for (State state : result.getStates().values()) {
-			writer.writeHtmlForState(state);
+		try {
+			screenshotEncoder.finish();
+		} catch (InterruptedException e) {
+			LOG.warn("Interrupted while writing the screenshots");
+			Thread.currentThread().interrupt();
+		}
+		try {
+			result = reportWriter.finish(session, exitStatus);
+			outputBuilder.write(result, session.getConfig());
+		} finally {
+			outputBuilder.close();
 		}
 		LOG.info("Crawl overview plugin has finished");
 	}
@@ -201,6 +243,9 @@ public class CrawlOverview implements OnNewStatePlugin, PreStateCrawlingPlugin,
 	public void onFireEventFailed(CrawlerContext context, Eventable eventable,
 	        List<Eventable> pathToFailure) {
 		outModelCache.registerFailEvent(context.getCurrentState(), eventable);
+		if (context.getCurrentState() != null) {
+			reportWriter.stateChanged(context, context.getCurrentState().getName());
+		}
 	}
 
 }
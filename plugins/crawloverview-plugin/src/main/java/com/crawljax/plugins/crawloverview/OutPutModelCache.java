@@ -1,7 +1,7 @@
 package com.crawljax.plugins.crawloverview;
 
-import static com.google.common.base.Preconditions.checkNotNull;
-
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
@@ -26,6 +26,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 /**
  * Cache to build the {@link OutPutModel}. It is {@link ThreadSafe} except for the
@@ -38,6 +39,8 @@ class OutPutModelCache {
 	private final ConcurrentMap<String, StateBuilder> states = Maps
 	        .newConcurrentMap();
 
+	private final Set<Edge> edges = Sets.newConcurrentHashSet();
+
 	private final AtomicInteger failedEvents = new AtomicInteger();
 
 	private final Date startDate = new Date();
@@ -53,14 +56,51 @@ class OutPutModelCache {
 	}
 
 	/**
+	 * Adds an edge of the state-flow graph and counts it in the fan in and fan out of its states.
+	 * 
+	 * @param eventable
+	 *            An edge of the state-flow graph.
+	 * @return The edge if it wasn't added before, otherwise <code>null</code>.
+	 */
+	Edge addEdge(Eventable eventable) {
+		StateVertex source = eventable.getSourceStateVertex();
+		StateVertex target = eventable.getTargetStateVertex();
+		if (source == null || target == null) {
+			return null;
+		}
+		Edge edge = new Edge(eventable);
+		if (!edges.add(edge)) {
+			return null;
+		}
+		addStateIfAbsent(source).incrementFanOut();
+		addStateIfAbsent(target).incrementFanIn();
+		return edge;
+	}
+
+	/**
+	 * @return The state with the given name or <code>null</code> if it wasn't added.
+	 */
+	StateBuilder getState(String name) {
+		return states.get(name);
+	}
+
+	/**
+	 * @return All states added so far.
+	 */
+	Collection<StateBuilder> getStates() {
+		return Collections.unmodifiableCollection(states.values());
+	}
+
+	/**
+	 * @param session
+	 *            The crawl session.
+	 * @param exitStatus
+	 *            Why the crawl stopped.
 	 * @return Makes the final calculations and retuns the {@link OutPutModel}.
 	 */
 	public OutPutModel close(CrawlSession session, ExitStatus exitStatus) {
-		ImmutableList<Edge> edgesCopy = asEdges(session.getStateFlowGraph()
-		        .getAllEdges());
-		checkEdgesAndCountFans(edgesCopy);
+		ImmutableList<Edge> edgesCopy = ImmutableList.copyOf(edges);
 		ImmutableMap<String, State> statesCopy = buildStates();
-
 		if (statesCopy.size() != session.getStateFlowGraph().getAllStates()
 		        .size()) {
 			LOG.error("Not all states from the session are in the result. This means there's a bug somewhere");
@@ -74,25 +114,6 @@ class OutPutModelCache {
 		        stateStats, startDate, failedEvents.get()), exitStatus);
 	}
 
-	private ImmutableList<Edge> asEdges(Set<Eventable> allEdges) {
-		ImmutableList.Builder<Edge> builder = ImmutableList.builder();
-		for (Eventable eventable : allEdges) {
-			builder.add(new Edge(eventable));
-		}
-		return builder.build();
-	}
-
-	private void checkEdgesAndCountFans(ImmutableList<Edge> edges) {
-		for (Edge e : edges) {
-			StateBuilder from = states.get(e.getFrom());
-			StateBuilder to = states.get(e.getTo());
-			checkNotNull(from, "From state %s is unkown", e.getFrom());
-			checkNotNull(to, "To state %s is unkown", e.getTo());
-			from.incrementFanOut();
-			to.incrementFanIn();
-		}
-	}
-
 	private ImmutableMap<String, State> buildStates() {
 		Builder<String, State> builder = ImmutableMap.builder();
 		for (StateBuilder state : states.values()) {
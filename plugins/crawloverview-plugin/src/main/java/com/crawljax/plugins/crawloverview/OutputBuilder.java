@@ -41,6 +41,8 @@ class OutputBuilder {
 	static final String STATES_FOLDER_NAME = "states";
 	static final String JSON_OUTPUT_NAME = "result.json";
 	static final String DOMS_OUTPUT_NAME = "doms";
+	static final String STATES_STREAM_NAME = "states.ndjson";
+	static final String EDGES_STREAM_NAME = "edges.ndjson";
 
 	private final File outputDir;
 	private final File states;
@@ -48,12 +50,25 @@ class OutputBuilder {
 	private final File indexFile;
 	private final File doms;
 	private final VelocityEngine ve;
+	@Nullable
+	private final ArtifactPack pack;
 
 	/**
 	 * @param outputDir
 	 *            target for the output directory. Folder must not exist or be empty.
 	 */
 	OutputBuilder(File outputDir) {
+		this(outputDir, false);
+	}
+
+	/**
+	 * @param outputDir
+	 *            target for the output directory. Folder must not exist or be empty.
+	 * @param packArtifacts
+	 *            Whether the DOMs and screenshots are written to an {@link ArtifactPack} instead
+	 *            of a file each.
+	 */
+	OutputBuilder(File outputDir, boolean packArtifacts) {
 		this.outputDir = outputDir;
 		checkPermissions();
 		copySkeleton();
@@ -62,11 +77,16 @@ class OutputBuilder {
 		boolean created = states.mkdir();
 		checkArgument(created, "Could not create states dir");
 		screenshots = new File(outputDir, SCREENSHOT_FOLDER_NAME);
-		created = screenshots.mkdir();
-		checkArgument(created, "Could not create screenshots dir");
 		doms = new File(outputDir, DOMS_OUTPUT_NAME);
-		created = doms.mkdir();
-		checkArgument(created, "Could not create doms dir");
+		if (packArtifacts) {
+			pack = createPack();
+		} else {
+			pack = null;
+			created = screenshots.mkdir();
+			checkArgument(created, "Could not create screenshots dir");
+			created = doms.mkdir();
+			checkArgument(created, "Could not create doms dir");
+		}
 
 		indexFile = new File(outputDir, "index.html");
 		ve = new VelocityEngine();
@@ -80,6 +100,14 @@ class OutputBuilder {
 		ve.setProperty("classpath.resource.loader.class", ClasspathResourceLoader.class.getName());
 	}
 
+	private ArtifactPack createPack() {
+		try {
+			return ArtifactPack.create(outputDir);
+		} catch (IOException e) {
+			throw new CrawlOverviewException("Could not create the artifact pack", e);
+		}
+	}
+
 	private void checkPermissions() {
 		if (outputDir.exists()) {
 			checkArgument(outputDir.isDirectory(), outputDir + " is not a directory");
@@ -146,6 +174,15 @@ class OutputBuilder {
 		return jar;
 	}
 
+	/**
+	 * @return The pack the DOMs and screenshots are written to, or <code>null</code> if they are
+	 *         written to files.
+	 */
+	@Nullable
+	ArtifactPack getPack() {
+		return pack;
+	}
+
 	File newScreenShotFile(String name) {
 		return new File(screenshots, name + ".jpg");
 	}
@@ -154,6 +191,20 @@ class OutputBuilder {
 		return new File(screenshots, name + "_small.jpg");
 	}
 
+	/**
+	 * @return The file the states are streamed to while crawling.
+	 */
+	File getStatesStream() {
+		return new File(outputDir, STATES_STREAM_NAME);
+	}
+
+	/**
+	 * @return The file the edges are streamed to while crawling.
+	 */
+	File getEdgesStream() {
+		return new File(outputDir, EDGES_STREAM_NAME);
+	}
+
 	public void write(OutPutModel result, CrawljaxConfiguration config) {
 		try {
 			writeIndexFile(result, config);
@@ -216,8 +267,13 @@ class OutputBuilder {
 	 *            the DOM as string
 	 */
 	void persistDom(String name, @Nullable String dom) {
+		File file = new File(doms, name + ".html");
 		try {
-			Files.write(Strings.nullToEmpty(dom), new File(doms, name + ".html"), Charsets.UTF_8);
+			if (pack == null) {
+				Files.write(Strings.nullToEmpty(dom), file, Charsets.UTF_8);
+			} else {
+				pack.put(pack.pathOf(file), Strings.nullToEmpty(dom).getBytes(Charsets.UTF_8));
+			}
 		} catch (IOException e) {
 			LOG.warn("Could not save dom state for {}", name);
 			LOG.debug("Could not save dom state", e);
@@ -225,11 +281,32 @@ class OutputBuilder {
 	}
 
 	String getDom(String name) {
+		File file = new File(doms, name + ".html");
 		try {
-			return Files.toString(new File(doms, name + ".html"), Charsets.UTF_8);
+			if (pack == null) {
+				return Files.toString(file, Charsets.UTF_8);
+			}
+			byte[] dom = pack.get(pack.pathOf(file));
+			if (dom == null) {
+				return "Could not load DOM: " + name + " is not in the pack";
+			}
+			return new String(dom, Charsets.UTF_8);
 		} catch (IOException e) {
 			return "Could not load DOM: " + e.getLocalizedMessage();
 		}
 	}
 
+	/**
+	 * Closes the artifact pack, if there is one.
+	 */
+	void close() {
+		if (pack != null) {
+			try {
+				pack.close();
+			} catch (IOException e) {
+				LOG.warn("Could not close the artifact pack because {}", e.getMessage());
+			}
+		}
+	}
+
 }
@@ -0,0 +1,280 @@
+package com.crawljax.plugins.crawloverview;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.crawljax.core.CrawlSession;
+import com.crawljax.core.CrawlerContext;
+import com.crawljax.core.ExitNotifier.ExitStatus;
+import com.crawljax.core.state.AbstractStateFlowGraph;
+import com.crawljax.core.state.Eventable;
+import com.crawljax.core.state.StateFlowGraph;
+import com.crawljax.core.state.StateFlowGraphListener;
+import com.crawljax.core.state.StateVertex;
+import com.crawljax.plugins.crawloverview.model.Edge;
+import com.crawljax.plugins.crawloverview.model.OutPutModel;
+import com.crawljax.plugins.crawloverview.model.Serializer;
+import com.crawljax.plugins.crawloverview.model.State;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Writes the report while the crawl runs, so finishing it doesn't take longer for bigger crawls.
+ * <p>
+ * The edges are taken from the {@link AbstractStateFlowGraph} as it grows and appended to the
+ * edges stream. Whenever a state changes, its page is rendered again on a background thread. The
+ * state is only appended to the states stream when its candidates or failed events changed, so
+ * the fan in and fan out of a record are those when it was written. Both streams have one JSON
+ * record per line, and a later record of a state replaces the earlier ones. When the crawl is
+ * done, only the states that changed since they were last rendered are rendered again, and the
+ * {@link OutPutModel} of the index is made from the counters of the {@link OutPutModelCache}, so
+ * the streams aren't read again.
+ * </p>
+ */
+@ThreadSafe
+class ReportWriter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ReportWriter.class);
+
+	private final OutputBuilder outputBuilder;
+	private final OutPutModelCache cache;
+	private final Map<String, StateVertex> visitedStates;
+	private final ExecutorService renderer;
+	private final Set<String> queued = Sets.newConcurrentHashSet();
+	private final ConcurrentMap<String, Long> renderedChanges = Maps.newConcurrentMap();
+	private final ConcurrentMap<String, Long> streamedChanges = Maps.newConcurrentMap();
+	private final Queue<Eventable> addedEdges = Queues.newConcurrentLinkedQueue();
+	private final Writer statesStream;
+	private final Writer edgesStream;
+
+	private volatile StateWriter stateWriter;
+	private volatile boolean listening;
+
+	/**
+	 * @param outputBuilder
+	 *            The output the pages and the streams are written to.
+	 * @param cache
+	 *            The states and edges found so far.
+	 * @param visitedStates
+	 *            The vertices of the states, by name.
+	 * @throws CrawlOverviewException
+	 *             if the streams can't be created.
+	 */
+	ReportWriter(OutputBuilder outputBuilder, OutPutModelCache cache,
+	        Map<String, StateVertex> visitedStates) {
+		this.outputBuilder = outputBuilder;
+		this.cache = cache;
+		this.visitedStates = visitedStates;
+		this.renderer =
+		        Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+		                .setNameFormat("overview-renderer").setDaemon(true).build());
+		try {
+			statesStream = Files.newWriter(outputBuilder.getStatesStream(), Charsets.UTF_8);
+			edgesStream = Files.newWriter(outputBuilder.getEdgesStream(), Charsets.UTF_8);
+		} catch (IOException e) {
+			throw new CrawlOverviewException("Could not create the report streams", e);
+		}
+	}
+
+	/**
+	 * Streams the edges that were added to the graph and weren't streamed yet. When the graph
+	 * can't tell which edges were added, the crawl path of the context is used.
+	 *
+	 * @param context
+	 *            The context of a crawler.
+	 */
+	void edgesFound(CrawlerContext context) {
+		useGraph(context.getSession().getStateFlowGraph());
+		if (listening) {
+			streamAddedEdges();
+		} else {
+			for (Eventable eventable : context.getCrawlPath()) {
+				edgeFound(eventable);
+			}
+		}
+	}
+
+	private void streamAddedEdges() {
+		Eventable eventable;
+		while ((eventable = addedEdges.poll()) != null) {
+			edgeFound(eventable);
+		}
+	}
+
+	private void edgeFound(Eventable eventable) {
+		Edge edge = cache.addEdge(eventable);
+		if (edge != null) {
+			append(edgesStream, edge);
+			stateChanged(edge.getFrom());
+			stateChanged(edge.getTo());
+		}
+	}
+
+	/**
+	 * Renders the page of the state in the background.
+	 *
+	 * @param context
+	 *            The context of the crawler that changed the state.
+	 * @param name
+	 *            The name of the state.
+	 */
+	void stateChanged(CrawlerContext context, String name) {
+		useGraph(context.getSession().getStateFlowGraph());
+		stateChanged(name);
+	}
+
+	private void stateChanged(final String name) {
+		if (stateWriter == null || !visitedStates.containsKey(name) || !queued.add(name)) {
+			return;
+		}
+		try {
+			renderer.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					queued.remove(name);
+					render(cache.getState(name));
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			queued.remove(name);
+		}
+	}
+
+	private void useGraph(StateFlowGraph graph) {
+		if (stateWriter != null) {
+			return;
+		}
+		synchronized (this) {
+			if (stateWriter == null) {
+				if (graph instanceof AbstractStateFlowGraph) {
+					((AbstractStateFlowGraph) graph).addListener(new EdgeListener());
+					addedEdges.addAll(graph.getAllEdges());
+					listening = true;
+				}
+				stateWriter = new StateWriter(outputBuilder, graph, visitedStates);
+			}
+		}
+	}
+
+	private void render(StateBuilder builder) {
+		long changes = builder.getChanges();
+		long contentChanges = builder.getContentChanges();
+		State state = builder.build();
+		Long streamed = streamedChanges.get(state.getName());
+		if (streamed == null || streamed != contentChanges) {
+			append(statesStream, state);
+			streamedChanges.put(state.getName(), contentChanges);
+		}
+		try {
+			stateWriter.writeHtmlForState(state);
+			renderedChanges.put(state.getName(), changes);
+		} catch (RuntimeException e) {
+			LOG.warn("Could not write state {} because {}", state.getName(), e.getMessage());
+			LOG.debug("Could not write state", e);
+		}
+	}
+
+	private void append(Writer stream, Object record) {
+		try {
+			String json = Serializer.toJson(record);
+			synchronized (stream) {
+				stream.write(json);
+				stream.write('\n');
+				stream.flush();
+			}
+		} catch (IOException e) {
+			LOG.warn("Could not stream {} because {}", record, e.getMessage());
+		}
+	}
+
+	/**
+	 * Streams the edges that weren't streamed yet, renders the states that changed since they were
+	 * rendered and makes the model from the counters of the cache.
+	 *
+	 * @param session
+	 *            The finished crawl.
+	 * @param exitStatus
+	 *            Why the crawl stopped.
+	 * @return The model of the crawl.
+	 */
+	OutPutModel finish(CrawlSession session, ExitStatus exitStatus) {
+		useGraph(session.getStateFlowGraph());
+		if (listening) {
+			streamAddedEdges();
+		} else {
+			for (Eventable eventable : session.getStateFlowGraph().getAllEdges()) {
+				edgeFound(eventable);
+			}
+		}
+		awaitRenderer();
+		int rendered = 0;
+		for (StateBuilder state : cache.getStates()) {
+			Long changes = renderedChanges.get(state.getName());
+			if (changes == null || changes != state.getChanges()) {
+				render(state);
+				rendered++;
+			}
+		}
+		LOG.debug("Rendered {} of {} states after the crawl", rendered, cache.getStates().size());
+		close(statesStream);
+		close(edgesStream);
+		return cache.close(session, exitStatus);
+	}
+
+	private void awaitRenderer() {
+		renderer.shutdown();
+		try {
+			while (!renderer.awaitTermination(1, TimeUnit.MINUTES)) {
+				LOG.info("Still rendering {} states", queued.size());
+			}
+		} catch (InterruptedException e) {
+			LOG.warn("Interrupted while rendering the states");
+			renderer.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void close(Writer stream) {
+		try {
+			synchronized (stream) {
+				stream.close();
+			}
+		} catch (IOException e) {
+			LOG.warn("Could not close a report stream because {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Queues the edges that are added to the graph, because the graph is locked while it tells.
+	 */
+	private class EdgeListener implements StateFlowGraphListener {
+
+		@Override
+		public void stateAdded(StateVertex state) {
+			// States are added to the report when they are visited.
+		}
+
+		@Override
+		public void edgeAdded(Eventable edge) {
+			addedEdges.add(edge);
+		}
+	}
+}
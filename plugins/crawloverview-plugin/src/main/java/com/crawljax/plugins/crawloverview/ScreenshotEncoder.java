@@ -0,0 +1,249 @@
+package com.crawljax.plugins.crawloverview;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.crawljax.core.CrawljaxException;
+import com.crawljax.metrics.MetricsModule;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Writes the screenshots of the states on threads of its own, so the crawler only has to take
+ * them. When all threads are busy and the queue is full, the crawler writes the screenshot
+ * itself, so no more than the queue's worth of screenshots is kept in memory.
+ * <p>
+ * Screenshots with the same content are written once. Every later one is linked to the files of
+ * the first, or copied where the file system has no links. When the screenshots are written to
+ * an {@link ArtifactPack}, the later ones are linked to the first in the pack.
+ * </p>
+ */
+@ThreadSafe
+class ScreenshotEncoder {
+
+	/**
+	 * The prefix of the metrics of the encoder.
+	 */
+	static final String METRICS_PREFIX = MetricsModule.PLUGINS_PREFIX + "crawloverview.";
+
+	static final int DEFAULT_THREADS = Math.max(1,
+	        Runtime.getRuntime().availableProcessors() / 2);
+	static final int DEFAULT_QUEUE_CAPACITY = 8;
+
+	private static final Logger LOG = LoggerFactory.getLogger(ScreenshotEncoder.class);
+
+	private final ThreadPoolExecutor executor;
+	@Nullable
+	private final ArtifactPack pack;
+	private final ConcurrentMap<HashCode, ListenableFuture<Screenshot>> written = Maps
+	        .newConcurrentMap();
+
+	private volatile Timer latency = new Timer();
+	private volatile Counter duplicates = new Counter();
+
+	ScreenshotEncoder() {
+		this(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY, null);
+	}
+
+	/**
+	 * @param pack
+	 *            The pack to write the screenshots to, or <code>null</code> to write them to
+	 *            files.
+	 */
+	ScreenshotEncoder(@Nullable ArtifactPack pack) {
+		this(DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY, pack);
+	}
+
+	ScreenshotEncoder(int threads, int queueCapacity) {
+		this(threads, queueCapacity, null);
+	}
+
+	/**
+	 * @param threads
+	 *            The number of threads that write screenshots.
+	 * @param queueCapacity
+	 *            The number of screenshots that may wait for a thread.
+	 * @param pack
+	 *            The pack to write the screenshots to, or <code>null</code> to write them to
+	 *            files.
+	 */
+	ScreenshotEncoder(int threads, int queueCapacity, @Nullable ArtifactPack pack) {
+		this.pack = pack;
+		executor =
+		        new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+		                new ArrayBlockingQueue<Runnable>(queueCapacity),
+		                new ThreadFactoryBuilder().setNameFormat("screenshot-encoder-%d")
+		                        .setDaemon(true).build(),
+		                new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	/**
+	 * @param registry
+	 *            The registry the queue depth, the time it takes to write a screenshot and the
+	 *            number of duplicate screenshots are reported to.
+	 */
+	void registerMetrics(MetricRegistry registry) {
+		latency = registry.timer(METRICS_PREFIX + "screenshot_encode_latency");
+		duplicates = registry.counter(METRICS_PREFIX + "screenshot_duplicates");
+		String queueDepth = METRICS_PREFIX + "screenshot_queue_depth";
+		registry.remove(queueDepth);
+		registry.register(queueDepth, new Gauge<Integer>() {
+
+			@Override
+			public Integer getValue() {
+				return executor.getQueue().size();
+			}
+		});
+	}
+
+	/**
+	 * Writes the screenshot as a JPEG and a thumbnail. When there is a pack, the files only
+	 * determine the paths of the screenshots in the pack.
+	 *
+	 * @param png
+	 *            The screenshot in PNG format.
+	 * @param full
+	 *            The file to write the JPEG to.
+	 * @param thumbnail
+	 *            The file to write the thumbnail to.
+	 */
+	void submit(final byte[] png, final File full, final File thumbnail) {
+		HashCode hash = Hashing.murmur3_128().hashBytes(png);
+		ListenableFutureTask<Screenshot> encode =
+		        ListenableFutureTask.create(new Callable<Screenshot>() {
+
+			        @Override
+			        public Screenshot call() {
+				        Timer.Context time = latency.time();
+				        try {
+					        write(png, full, thumbnail);
+					        return new Screenshot(full, thumbnail);
+				        } catch (CrawljaxException e) {
+					        LOG.warn("Could not write screenshot {} because {}", full,
+					                e.getMessage());
+					        throw e;
+				        } finally {
+					        time.stop();
+				        }
+			        }
+		        });
+		ListenableFuture<Screenshot> first = written.putIfAbsent(hash, encode);
+		if (first == null) {
+			executor.execute(encode);
+		} else {
+			duplicates.inc();
+			linkToFirst(first, full, thumbnail);
+		}
+	}
+
+	private void write(byte[] png, File full, File thumbnail) {
+		if (pack == null) {
+			ImageWriter.writeScreenShotAndThumbnail(png, full, thumbnail);
+			return;
+		}
+		ByteArrayOutputStream fullJpg = new ByteArrayOutputStream();
+		ByteArrayOutputStream thumbnailJpg = new ByteArrayOutputStream();
+		ImageWriter.writeScreenShotAndThumbnail(png, fullJpg, thumbnailJpg);
+		try {
+			pack.put(pack.pathOf(full), fullJpg.toByteArray());
+			pack.put(pack.pathOf(thumbnail), thumbnailJpg.toByteArray());
+		} catch (IOException e) {
+			throw new CrawljaxException("Could not write screenshots to the pack", e);
+		}
+	}
+
+	/**
+	 * Links the screenshot to the first one with the same content once that one is written. The
+	 * first one may not even be queued yet, so no thread waits for it. The link is made by the
+	 * thread that wrote the first one, or by the caller when it is already written.
+	 */
+	private void linkToFirst(ListenableFuture<Screenshot> first, final File full,
+	        final File thumbnail) {
+		Futures.addCallback(first, new FutureCallback<Screenshot>() {
+
+			@Override
+			public void onSuccess(Screenshot screenshot) {
+				try {
+					link(screenshot.full, full);
+					link(screenshot.thumbnail, thumbnail);
+				} catch (IOException e) {
+					LOG.warn("Could not write screenshot {} because {}", full, e.getMessage());
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				LOG.debug("Not writing {} because its original could not be written", full);
+			}
+		});
+	}
+
+	private void link(File existing, File link) throws IOException {
+		if (pack != null) {
+			pack.link(pack.pathOf(existing), pack.pathOf(link));
+			return;
+		}
+		try {
+			Files.createLink(link.toPath(), existing.toPath());
+		} catch (IOException | UnsupportedOperationException e) {
+			LOG.debug("Copying {} because it can't be linked: {}", existing, e.getMessage());
+			Files.copy(existing.toPath(), link.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * @return The number of distinct screenshots that were submitted.
+	 */
+	int getDistinctScreenshots() {
+		return written.size();
+	}
+
+	/**
+	 * Waits until all submitted screenshots are written. No screenshots can be submitted after
+	 * this.
+	 *
+	 * @throws InterruptedException
+	 *             when interrupted while waiting.
+	 */
+	void finish() throws InterruptedException {
+		executor.shutdown();
+		while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+			LOG.info("Still writing {} screenshots", executor.getQueue().size() + 1);
+		}
+	}
+
+	private static final class Screenshot {
+
+		private final File full;
+		private final File thumbnail;
+
+		Screenshot(File full, File thumbnail) {
+			this.full = full;
+			this.thumbnail = thumbnail;
+		}
+	}
+}
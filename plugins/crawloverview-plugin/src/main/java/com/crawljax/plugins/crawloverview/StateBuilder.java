@@ -1,26 +1,31 @@
 package com.crawljax.plugins.crawloverview;
 
 import java.util.Collection;
-import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.crawljax.core.state.Eventable;
 import com.crawljax.core.state.StateVertex;
 import com.crawljax.plugins.crawloverview.model.CandidateElementPosition;
 import com.crawljax.plugins.crawloverview.model.State;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Queues;
 
+/**
+ * Collects what is known about a state. It can be built any number of times while the crawl is
+ * running, and {@link #getChanges()} tells whether a state that was built before is outdated.
+ */
 class StateBuilder {
 
-	private final BlockingQueue<CandidateElementPosition> candidates = Queues
-	        .newLinkedBlockingQueue();
+	private final Queue<CandidateElementPosition> candidates = Queues
+	        .newConcurrentLinkedQueue();
 	private final StateVertex state;
 	private final AtomicInteger fanIn = new AtomicInteger();
 	private final AtomicInteger fanOut = new AtomicInteger();
-	private final ImmutableList.Builder<String> failedEvents = new ImmutableList.Builder<>();
+	private final Queue<String> failedEvents = Queues.newConcurrentLinkedQueue();
+	private final AtomicLong changes = new AtomicLong();
+	private final AtomicLong contentChanges = new AtomicLong();
 
 	public StateBuilder(StateVertex state) {
 		this.state = state;
@@ -31,31 +36,53 @@ class StateBuilder {
 	}
 
 	public boolean addCandidates(Collection<CandidateElementPosition> candidates) {
-		return this.candidates.addAll(candidates);
+		boolean added = this.candidates.addAll(candidates);
+		contentChanges.incrementAndGet();
+		changes.incrementAndGet();
+		return added;
 	}
 
 	public ImmutableList<CandidateElementPosition> getCandidates() {
-		List<CandidateElementPosition> buffer = Lists
-		        .newArrayListWithCapacity(candidates.size());
-		candidates.drainTo(buffer);
-		return ImmutableList.copyOf(buffer);
+		return ImmutableList.copyOf(candidates);
 	}
 
 	public int incrementFanOut() {
-		return fanOut.incrementAndGet();
+		int count = fanOut.incrementAndGet();
+		changes.incrementAndGet();
+		return count;
 	}
 
 	public int incrementFanIn() {
-		return fanIn.incrementAndGet();
+		int count = fanIn.incrementAndGet();
+		changes.incrementAndGet();
+		return count;
+	}
+
+	/**
+	 * @return The number of changes to the state so far. A state built after this call contains
+	 *         at least these changes, because every change is counted after it is made.
+	 */
+	public long getChanges() {
+		return changes.get();
+	}
+
+	/**
+	 * @return The number of changes to the candidates and failed events of the state so far. The
+	 *         fan in and fan out aren't counted.
+	 */
+	public long getContentChanges() {
+		return contentChanges.get();
 	}
 
 	public State build() {
 		return new State(state, fanIn.get(), fanOut.get(), getCandidates(),
-		        failedEvents.build());
+		        ImmutableList.copyOf(failedEvents));
 	}
 
 	public void eventFailed(Eventable eventable) {
 		failedEvents.add(eventable.getIdentification().toString());
+		contentChanges.incrementAndGet();
+		changes.incrementAndGet();
 	}
 
 }
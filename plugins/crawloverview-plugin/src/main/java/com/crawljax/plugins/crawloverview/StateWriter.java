@@ -106,6 +106,9 @@ class StateWriter {
 	private Eventable getEventableByCandidateElementInState(State state,
 	        CandidateElementPosition element) {
 		StateVertex vertex = visitedStates.get(state.getName());
+		if (vertex == null) {
+			return null;
+		}
 		for (Eventable eventable : sfg.getOutgoingClickables(vertex)) {
 			// TODO Check if element.getIdentification().getValue() is correct replacement for
 			// element.getXpath()
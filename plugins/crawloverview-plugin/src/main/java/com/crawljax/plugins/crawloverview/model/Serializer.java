@@ -71,6 +71,13 @@ public class Serializer {
 		}
 	}
 
+	/**
+	 * Serialize the object to JSON on a single line, so it can be one record of a stream.
+	 */
+	public static String toJson(Object o) throws JsonProcessingException {
+		return MAPPER.writeValueAsString(o);
+	}
+
 	public static <T> T deserialize(String value, TypeReference<T> clasz) throws IOException {
 		return MAPPER.readValue(value, clasz);
 	}
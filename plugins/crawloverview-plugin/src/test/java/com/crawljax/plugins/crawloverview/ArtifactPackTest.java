@@ -0,0 +1,108 @@
+package com.crawljax.plugins.crawloverview;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+
+public class ArtifactPackTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private ArtifactPack pack;
+
+	@Before
+	public void setup() throws IOException {
+		pack = ArtifactPack.create(folder.getRoot());
+	}
+
+	@After
+	public void close() throws IOException {
+		pack.close();
+	}
+
+	@Test
+	public void artifactsCanBeReadBack() throws IOException {
+		byte[] dom = bytes(Strings.repeat("<div>Some DOM</div>", 100));
+		byte[] random = { 12, -3, 44, 0, 7 };
+
+		pack.put("doms/index.html", dom);
+		pack.put("screenshots/index.jpg", random);
+
+		assertThat(pack.get("doms/index.html"), is(dom));
+		assertThat(pack.get("screenshots/index.jpg"), is(random));
+		assertThat(pack.get("doms/state1.html"), is(nullValue()));
+	}
+
+	@Test
+	public void identicalContentIsStoredOnce() throws IOException {
+		byte[] dom = bytes(Strings.repeat("<div>Some DOM</div>", 100));
+
+		assertThat(pack.put("doms/index.html", dom), is(true));
+		long size = new File(folder.getRoot(), ArtifactPack.PACK_NAME).length();
+		assertThat(pack.put("doms/state1.html", dom), is(false));
+
+		assertThat(pack.getDistinctContents(), is(1));
+		assertThat(new File(folder.getRoot(), ArtifactPack.PACK_NAME).length(), is(size));
+		assertThat(size < dom.length, is(true));
+		assertThat(pack.get("doms/state1.html"), is(dom));
+	}
+
+	@Test
+	public void linkedArtifactsShareTheirContent() throws IOException {
+		pack.put("screenshots/index.jpg", bytes("jpg"));
+
+		assertThat(pack.link("screenshots/index.jpg", "screenshots/state1.jpg"), is(true));
+		assertThat(pack.link("screenshots/state2.jpg", "screenshots/state3.jpg"), is(false));
+
+		assertThat(pack.getPaths(),
+		        is(ImmutableSet.of("screenshots/index.jpg", "screenshots/state1.jpg")));
+		assertThat(pack.get("screenshots/state1.jpg"), is(bytes("jpg")));
+	}
+
+	@Test
+	public void aPackCanBeReadWhileItIsWritten() throws IOException {
+		pack.put("doms/index.html", bytes("index"));
+		try (ArtifactPack reader = ArtifactPack.open(folder.getRoot())) {
+			assertThat(reader.get("doms/index.html"), is(bytes("index")));
+			pack.put("doms/state1.html", bytes("state1"));
+			assertThat(reader.contains("doms/state1.html"), is(false));
+
+			reader.refresh();
+
+			assertThat(reader.get("doms/state1.html"), is(bytes("state1")));
+		}
+	}
+
+	@Test
+	public void pathsAreRelativeToThePack() {
+		File screenshot = new File(new File(folder.getRoot(), "screenshots"), "index.jpg");
+
+		assertThat(pack.pathOf(screenshot), is("screenshots/index.jpg"));
+		assertThat(ArtifactPack.exists(folder.getRoot()), is(true));
+	}
+
+	@Test(expected = IOException.class)
+	public void aPackOpenedForReadingCannotBeWritten() throws IOException {
+		try (ArtifactPack reader = ArtifactPack.open(folder.getRoot())) {
+			reader.put("doms/index.html", bytes("index"));
+		}
+	}
+
+	private static byte[] bytes(String content) {
+		return content.getBytes(Charsets.UTF_8);
+	}
+}
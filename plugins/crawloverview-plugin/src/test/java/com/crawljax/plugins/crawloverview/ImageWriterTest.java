@@ -15,7 +15,7 @@ import com.google.common.io.Files;
 
 public class ImageWriterTest {
 
-	private static final String THUMB_HASH = "b0bd23b784b853ff760c8fb9becd25d8";
+	private static final String THUMB_HASH = "be64cbb23452245861b48d28d03d8433";
 	private static final String FULL_HASH = "df08f0343e11a92424099c8419856441";
 
 	@Rule
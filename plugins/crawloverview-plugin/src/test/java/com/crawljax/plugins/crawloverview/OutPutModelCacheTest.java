@@ -0,0 +1,93 @@
+package com.crawljax.plugins.crawloverview;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.crawljax.core.state.Element;
+import com.crawljax.core.state.Eventable;
+import com.crawljax.core.state.Eventable.EventType;
+import com.crawljax.core.state.Identification;
+import com.crawljax.core.state.Identification.How;
+import com.crawljax.core.state.StateVertex;
+import com.crawljax.plugins.crawloverview.model.CandidateElementPosition;
+import com.google.common.collect.ImmutableList;
+
+public class OutPutModelCacheTest {
+
+	private OutPutModelCache cache;
+	private StateVertex index;
+	private StateVertex state1;
+
+	@Before
+	public void setup() {
+		cache = new OutPutModelCache();
+		index = state(0, "index");
+		state1 = state(1, "state1");
+		cache.addStateIfAbsent(index);
+	}
+
+	@Test
+	public void anEdgeIsCountedOnce() {
+		Eventable click = eventable(index, state1, "/HTML/BODY/A");
+
+		assertThat(cache.addEdge(click), is(notNullValue()));
+		assertThat(cache.addEdge(click), is(nullValue()));
+
+		assertThat(cache.getState("index").build().getFanOut(), is(1));
+		assertThat(cache.getState("state1").build().getFanIn(), is(1));
+		assertThat(cache.getStates().size(), is(2));
+	}
+
+	@Test
+	public void edgesWithoutTargetAreSkipped() {
+		assertThat(cache.addEdge(eventable(index, null, "/HTML/BODY/A")), is(nullValue()));
+
+		assertThat(cache.getState("index").build().getFanOut(), is(0));
+	}
+
+	@Test
+	public void everyChangeOfAStateIsCounted() {
+		StateBuilder builder = cache.getState("index");
+		long before = builder.getChanges();
+
+		builder.addCandidates(ImmutableList.<CandidateElementPosition> of());
+		cache.addEdge(eventable(index, state1, "/HTML/BODY/A"));
+		cache.registerFailEvent(index, eventable(index, state1, "/HTML/BODY/B"));
+
+		assertThat(builder.getChanges(), is(before + 3));
+		assertThat(builder.build().getFailedEvents().size(), is(1));
+	}
+
+	@Test
+	public void buildingAStateKeepsItsContent() {
+		StateBuilder builder = cache.getState("index");
+		builder.eventFailed(eventable(index, state1, "/HTML/BODY/A"));
+
+		assertThat(builder.build(), is(builder.build()));
+	}
+
+	private static StateVertex state(int id, String name) {
+		StateVertex state = mock(StateVertex.class);
+		when(state.getId()).thenReturn(id);
+		when(state.getName()).thenReturn(name);
+		when(state.getUrl()).thenReturn("http://localhost/" + name);
+		return state;
+	}
+
+	private static Eventable eventable(StateVertex from, StateVertex to, String xpath) {
+		Eventable eventable = mock(Eventable.class);
+		when(eventable.getSourceStateVertex()).thenReturn(from);
+		when(eventable.getTargetStateVertex()).thenReturn(to);
+		when(eventable.getIdentification()).thenReturn(new Identification(How.xpath, xpath));
+		when(eventable.getElement()).thenReturn(mock(Element.class));
+		when(eventable.getEventType()).thenReturn(EventType.click);
+		return eventable;
+	}
+}
@@ -46,4 +46,18 @@ public class OutputBuilderTest {
 		assertThat(builder.getDom("test-state"), isEmptyString());
 	}
 
+	@Test
+	public void whenArtifactsArePackedTheDomIsReadFromThePack() throws IOException {
+		File packed = folder.newFolder("packed");
+		OutputBuilder packing = new OutputBuilder(packed, true);
+		String dom = "Some DOM string";
+
+		packing.persistDom("test-state", dom);
+
+		assertThat(packing.getDom("test-state"), is(dom));
+		assertThat(new File(packed, OutputBuilder.DOMS_OUTPUT_NAME).exists(), is(false));
+		assertThat(packing.getPack().contains("doms/test-state.html"), is(true));
+		packing.close();
+	}
+
 }
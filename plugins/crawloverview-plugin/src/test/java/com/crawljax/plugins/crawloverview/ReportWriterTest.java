@@ -0,0 +1,158 @@
+package com.crawljax.plugins.crawloverview;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+
+import com.crawljax.core.CrawlSession;
+import com.crawljax.core.CrawlerContext;
+import com.crawljax.core.ExitNotifier;
+import com.crawljax.core.ExitNotifier.ExitStatus;
+import com.crawljax.core.state.DefaultStateVertexFactory;
+import com.crawljax.core.state.Eventable;
+import com.crawljax.core.state.Eventable.EventType;
+import com.crawljax.core.state.InMemoryStateFlowGraph;
+import com.crawljax.core.state.StateVertex;
+import com.crawljax.core.state.StateVertexFactory;
+import com.crawljax.plugins.crawloverview.model.CandidateElementPosition;
+import com.crawljax.plugins.crawloverview.model.Edge;
+import com.crawljax.plugins.crawloverview.model.OutPutModel;
+import com.crawljax.plugins.crawloverview.model.Serializer;
+import com.crawljax.plugins.crawloverview.model.State;
+import com.crawljax.util.DomUtils;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+public class ReportWriterTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final StateVertexFactory factory = new DefaultStateVertexFactory();
+	private final StateVertex index = factory.newStateVertex(StateVertex.INDEX_ID,
+	        "http://localhost/", "index", "<html><body><a>Next</a></body></html>",
+	        "<html><body><a>Next</a></body></html>");
+	private final StateVertex state1 = factory.newStateVertex(1, "http://localhost/one",
+	        "state1", "<html><body>One</body></html>", "<html><body>One</body></html>");
+
+	private InMemoryStateFlowGraph graph;
+	private OutPutModelCache cache;
+	private Map<String, StateVertex> visitedStates;
+	private CrawlSession session;
+	private CrawlerContext context;
+	private ReportWriter writer;
+
+	@Before
+	public void setup() {
+		graph = new InMemoryStateFlowGraph(new ExitNotifier(0), factory);
+		graph.putIndex(index);
+		session = mock(CrawlSession.class);
+		when(session.getStateFlowGraph()).thenReturn(graph);
+		context = mock(CrawlerContext.class);
+		when(context.getSession()).thenReturn(session);
+		cache = new OutPutModelCache();
+		visitedStates = Maps.newConcurrentMap();
+		writer = new ReportWriter(new OutputBuilder(folder.getRoot()), cache, visitedStates);
+	}
+
+	@Test
+	public void theStreamsHoldTheStatesAndEdgesOfTheReport() throws IOException {
+		visit(index);
+		cache.getState("index").addCandidates(ImmutableList.of(candidate("/HTML/BODY/A")));
+		writer.stateChanged(context, "index");
+		graph.putIfAbsent(state1);
+		visit(state1);
+		graph.addEdge(index, state1, click("Next"));
+		writer.edgesFound(context);
+
+		OutPutModel model = writer.finish(session, ExitStatus.EXHAUSTED);
+
+		assertThat(model.getEdges().size(), is(1));
+		assertThat(model.getStates().get("index").getFanOut(), is(1));
+		assertThat(model.getStates().get("state1").getFanIn(), is(1));
+		assertThat(read(OutputBuilder.EDGES_STREAM_NAME, new TypeReference<Edge>() {
+		}), is((List<Edge>) model.getEdges()));
+		Map<String, State> streamed = lastRecords();
+		assertThat(streamed.keySet(), is((Set<String>) model.getStates().keySet()));
+		for (State state : model.getStates().values()) {
+			assertThat(streamed.get(state.getName()).getCandidateElements(),
+			        is(state.getCandidateElements()));
+		}
+	}
+
+	@Test
+	public void theLastRecordOfAStateWinsAndFansDontAddRecords() throws IOException {
+		visit(index);
+		graph.putIfAbsent(state1);
+		visit(state1);
+		graph.addEdge(index, state1, click("Next"));
+		writer.edgesFound(context);
+		Eventable failed = click("Failed");
+		cache.registerFailEvent(index, failed);
+		writer.stateChanged(context, "index");
+
+		OutPutModel model = writer.finish(session, ExitStatus.EXHAUSTED);
+
+		List<String> names = Lists.newArrayList();
+		for (State record : read(OutputBuilder.STATES_STREAM_NAME, new TypeReference<State>() {
+		})) {
+			names.add(record.getName());
+		}
+		assertThat(Collections.frequency(names, "state1"), is(1));
+		assertThat(lastRecords().get("index").getFailedEvents(),
+		        is(model.getStates().get("index").getFailedEvents()));
+		assertThat(model.getStates().get("index").getFailedEvents(),
+		        containsInAnyOrder(failed.getIdentification().toString()));
+	}
+
+	private void visit(StateVertex state) {
+		cache.addStateIfAbsent(state);
+		visitedStates.put(state.getName(), state);
+		writer.stateChanged(context, state.getName());
+	}
+
+	private Map<String, State> lastRecords() throws IOException {
+		Map<String, State> states = Maps.newHashMap();
+		for (State state : read(OutputBuilder.STATES_STREAM_NAME, new TypeReference<State>() {
+		})) {
+			states.put(state.getName(), state);
+		}
+		return states;
+	}
+
+	private <T> List<T> read(String stream, TypeReference<T> type) throws IOException {
+		List<T> records = Lists.newArrayList();
+		for (String line : Files.readLines(new File(folder.getRoot(), stream), Charsets.UTF_8)) {
+			records.add(Serializer.<T> deserialize(line, type));
+		}
+		return records;
+	}
+
+	private static CandidateElementPosition candidate(String xpath) {
+		return new CandidateElementPosition(10, 10, xpath, 20, 20);
+	}
+
+	private static Eventable click(String link) throws IOException {
+		Document dom = DomUtils.asDocument("<html><body><a>" + link + "</a></body></html>");
+		return new Eventable(dom.getElementsByTagName("A").item(0), EventType.click);
+	}
+}
@@ -0,0 +1,175 @@
+package com.crawljax.plugins.crawloverview;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.io.Files;
+
+public class ScreenshotEncoderTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private byte[] screenshot;
+	private MetricRegistry registry;
+
+	@Before
+	public void setup() throws Exception {
+		screenshot =
+		        Files.toByteArray(new File(ScreenshotEncoderTest.class.getResource(
+		                "/screenshot.png").toURI()));
+		registry = new MetricRegistry();
+	}
+
+	@Test
+	public void identicalScreenshotsAreWrittenOnce() throws Exception {
+		ScreenshotEncoder encoder = new ScreenshotEncoder(2, 2);
+		encoder.registerMetrics(registry);
+
+		encoder.submit(screenshot, file("a.jpg"), file("a_small.jpg"));
+		encoder.submit(screenshot, file("b.jpg"), file("b_small.jpg"));
+		encoder.finish();
+
+		assertThat(encoder.getDistinctScreenshots(), is(1));
+		assertThat(Files.equal(file("a.jpg"), file("b.jpg")), is(true));
+		assertThat(Files.equal(file("a_small.jpg"), file("b_small.jpg")), is(true));
+		assertThat(counter("screenshot_duplicates"), is(1L));
+		assertThat(registry.timer(ScreenshotEncoder.METRICS_PREFIX
+		        + "screenshot_encode_latency").getCount(), is(1L));
+	}
+
+	@Test(timeout = 60000)
+	public void concurrentIdenticalScreenshotsDoNotBlockTheOnlyThread() throws Exception {
+		final ScreenshotEncoder encoder = new ScreenshotEncoder(1, 1);
+		encoder.registerMetrics(registry);
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] crawlers = new Thread[2];
+		for (int i = 0; i < crawlers.length; i++) {
+			final String name = String.valueOf(i);
+			crawlers[i] = new Thread() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					encoder.submit(screenshot, file(name + ".jpg"), file(name + "_small.jpg"));
+				}
+			};
+			crawlers[i].start();
+		}
+
+		start.countDown();
+		for (Thread crawler : crawlers) {
+			crawler.join();
+		}
+		encoder.finish();
+
+		assertThat(encoder.getDistinctScreenshots(), is(1));
+		assertThat(counter("screenshot_duplicates"), is(1L));
+		assertThat(Files.equal(file("0.jpg"), file("1.jpg")), is(true));
+		assertThat(Files.equal(file("0_small.jpg"), file("1_small.jpg")), is(true));
+	}
+
+	@Test
+	public void theCrawlerWritesScreenshotsWhenTheQueueIsFull() throws Exception {
+		ScreenshotEncoder encoder = new ScreenshotEncoder(1, 1);
+		encoder.registerMetrics(registry);
+		byte[][] screenshots = new byte[4][];
+		for (int i = 0; i < screenshots.length; i++) {
+			screenshots[i] = screenshot.clone();
+			screenshots[i][screenshots[i].length - 1] = (byte) i;
+		}
+
+		for (int i = 0; i < screenshots.length; i++) {
+			encoder.submit(screenshots[i], file(i + ".jpg"), file(i + "_small.jpg"));
+		}
+		encoder.finish();
+
+		assertThat(encoder.getDistinctScreenshots(), is(4));
+		for (int i = 0; i < screenshots.length; i++) {
+			assertThat(file(i + ".jpg").exists(), is(true));
+			assertThat(file(i + "_small.jpg").exists(), is(true));
+		}
+		assertThat(registry.getGauges().get(
+		        ScreenshotEncoder.METRICS_PREFIX + "screenshot_queue_depth").getValue(),
+		        is((Object) 0));
+	}
+
+	@Test
+	public void brokenScreenshotsAreSkipped() throws Exception {
+		ScreenshotEncoder encoder = new ScreenshotEncoder(1, 1);
+		byte[] broken = { 1, 2, 3 };
+
+		encoder.submit(broken, file("a.jpg"), file("a_small.jpg"));
+		encoder.submit(broken, file("b.jpg"), file("b_small.jpg"));
+		encoder.submit(screenshot, file("c.jpg"), file("c_small.jpg"));
+		encoder.finish();
+
+		assertThat(file("a.jpg").exists(), is(false));
+		assertThat(file("b.jpg").exists(), is(false));
+		assertThat(file("c.jpg").exists(), is(true));
+	}
+
+	@Test
+	public void identicalScreenshotsAreLinkedInThePack() throws Exception {
+		ArtifactPack pack = ArtifactPack.create(folder.getRoot());
+		ScreenshotEncoder encoder = new ScreenshotEncoder(2, 2, pack);
+
+		encoder.submit(screenshot, file("a.jpg"), file("a_small.jpg"));
+		encoder.submit(screenshot, file("b.jpg"), file("b_small.jpg"));
+		encoder.finish();
+
+		assertThat(file("a.jpg").exists(), is(false));
+		assertThat(pack.getDistinctContents(), is(2));
+		assertThat(pack.get("b.jpg"), is(pack.get("a.jpg")));
+		assertThat(pack.get("b_small.jpg"), is(pack.get("a_small.jpg")));
+		assertThat(ImageIO.read(new ByteArrayInputStream(pack.get("a_small.jpg"))).getWidth(),
+		        is(200));
+		pack.close();
+	}
+
+	@Test
+	public void thumbnailsAreScaledInSteps() {
+		BufferedImage image = new BufferedImage(1280, 9000, BufferedImage.TYPE_INT_RGB);
+
+		BufferedImage thumbnail = ImageWriter.scale(image, 200, 200);
+
+		assertThat(thumbnail.getWidth(), is(200));
+		assertThat(thumbnail.getHeight(), is(200));
+		assertThat(ImageWriter.scale(new BufferedImage(50, 50, BufferedImage.TYPE_INT_RGB), 200,
+		        200).getWidth(), is(200));
+	}
+
+	@Test
+	public void writtenScreenshotsAreImages() throws Exception {
+		ScreenshotEncoder encoder = new ScreenshotEncoder();
+		encoder.submit(screenshot, file("a.jpg"), file("a_small.jpg"));
+		encoder.finish();
+
+		assertThat(ImageIO.read(file("a_small.jpg")).getWidth(), is(200));
+	}
+
+	private File file(String name) {
+		return new File(folder.getRoot(), name);
+	}
+
+	private long counter(String name) {
+		return registry.counter(ScreenshotEncoder.METRICS_PREFIX + name).getCount();
+	}
+}
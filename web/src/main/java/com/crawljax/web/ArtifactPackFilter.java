@@ -0,0 +1,155 @@
+package com.crawljax.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.crawljax.plugins.crawloverview.ArtifactPack;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves the files of the crawl output that are stored in an {@link ArtifactPack} instead of on
+ * disk. Requests for files that exist are passed on. The packs stay open between requests, and
+ * the ones whose folder was deleted are closed at most a minute later.
+ */
+public class ArtifactPackFilter implements Filter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ArtifactPackFilter.class);
+
+	private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+	private final File outputFolder;
+	private final ConcurrentMap<File, ArtifactPack> packs = Maps.newConcurrentMap();
+	private final AtomicLong nextSweep = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL);
+
+	public ArtifactPackFilter(File outputFolder) {
+		this.outputFolder = outputFolder.getAbsoluteFile();
+	}
+
+	@Override
+	public void init(FilterConfig filterConfig) {
+	}
+
+	@Override
+	public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain)
+	        throws IOException, ServletException {
+		HttpServletRequest request = (HttpServletRequest) req;
+		HttpServletResponse response = (HttpServletResponse) res;
+		sweepIfDue();
+		String method = request.getMethod();
+		if ("GET".equals(method) || "HEAD".equals(method)) {
+			String path = request.getServletPath() + Strings.nullToEmpty(request.getPathInfo());
+			File file = new File(outputFolder, path);
+			if (!file.exists() && serveFromPack(file, request, response)) {
+				return;
+			}
+		}
+		chain.doFilter(req, res);
+	}
+
+	private boolean serveFromPack(File requested, HttpServletRequest request,
+	        HttpServletResponse response) throws IOException {
+		File root = outputFolder.getCanonicalFile();
+		File file = requested.getCanonicalFile();
+		if (!file.getPath().startsWith(root.getPath() + File.separator)) {
+			return false;
+		}
+		for (File dir = file.getParentFile(); dir != null && !dir.equals(root); dir =
+		        dir.getParentFile()) {
+			if (!ArtifactPack.exists(dir)) {
+				close(dir);
+			} else {
+				ArtifactPack pack = getPack(dir);
+				pack.refresh();
+				byte[] content = pack.get(pack.pathOf(file));
+				if (content == null) {
+					return false;
+				}
+				String contentType = request.getServletContext().getMimeType(file.getName());
+				response.setContentType(Strings.isNullOrEmpty(contentType)
+				        ? "application/octet-stream" : contentType);
+				response.setContentLength(content.length);
+				if ("GET".equals(request.getMethod())) {
+					response.getOutputStream().write(content);
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private ArtifactPack getPack(File dir) throws IOException {
+		ArtifactPack pack = packs.get(dir);
+		if (pack == null) {
+			pack = ArtifactPack.open(dir);
+			ArtifactPack found = packs.putIfAbsent(dir, pack);
+			if (found != null) {
+				pack.close();
+				pack = found;
+			}
+			LOG.debug("Serving the artifacts in {} from their pack", dir);
+		}
+		return pack;
+	}
+
+	private void sweepIfDue() {
+		long due = nextSweep.get();
+		if (System.nanoTime() - due >= 0 && nextSweep.compareAndSet(due, due + SWEEP_INTERVAL)) {
+			closeDeletedPacks();
+		}
+	}
+
+	/**
+	 * Closes the packs whose folder was deleted.
+	 */
+	@VisibleForTesting
+	void closeDeletedPacks() {
+		for (File dir : packs.keySet()) {
+			if (!ArtifactPack.exists(dir)) {
+				close(dir);
+			}
+		}
+	}
+
+	/**
+	 * @return The number of packs that are open.
+	 */
+	@VisibleForTesting
+	int getOpenPacks() {
+		return packs.size();
+	}
+
+	private void close(File dir) {
+		ArtifactPack pack = packs.remove(dir);
+		if (pack != null) {
+			LOG.debug("Closing the pack in {}", dir);
+			try {
+				pack.close();
+			} catch (IOException e) {
+				LOG.warn("Could not close the pack in {} because {}", dir, e.getMessage());
+			}
+		}
+	}
+
+	@Override
+	public void destroy() {
+		for (File dir : packs.keySet()) {
+			close(dir);
+		}
+	}
+}
@@ -1,10 +1,13 @@
 package com.crawljax.web;
 
 import java.io.File;
+import java.util.EnumSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import javax.servlet.DispatcherType;
+
 import ch.qos.logback.classic.LoggerContext;
 import com.crawljax.web.di.CrawljaxWebModule;
 import com.google.inject.Guice;
@@ -14,6 +17,7 @@ import com.google.inject.servlet.GuiceServletContextListener;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.HandlerList;
+import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.webapp.WebAppContext;
 import org.slf4j.Logger;
@@ -123,6 +127,8 @@ public class CrawljaxServer implements Callable<Void> {
 		WebAppContext webAppContext = new WebAppContext();
 		webAppContext.setContextPath("/output");
 		webAppContext.setBaseResource(Resource.newResource(outputFolder));
+		webAppContext.addFilter(new FilterHolder(new ArtifactPackFilter(outputFolder)), "/*",
+		        EnumSet.of(DispatcherType.REQUEST));
 		return webAppContext;
 	}
 
@@ -0,0 +1,181 @@
+package com.crawljax.web;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.crawljax.plugins.crawloverview.ArtifactPack;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class ArtifactPackFilterTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private File output;
+	private ArtifactPackFilter filter;
+	private ServletContext servletContext;
+	private FilterChain chain;
+	private ByteArrayOutputStream written;
+	private HttpServletResponse response;
+
+	@Before
+	public void setup() throws IOException {
+		output = folder.newFolder("output");
+		filter = new ArtifactPackFilter(output);
+		servletContext = mock(ServletContext.class);
+		when(servletContext.getMimeType("state1.jpg")).thenReturn("image/jpeg");
+		chain = mock(FilterChain.class);
+		written = new ByteArrayOutputStream();
+		response = mock(HttpServletResponse.class);
+		when(response.getOutputStream()).thenReturn(new RecordingOutputStream(written));
+	}
+
+	@After
+	public void destroy() {
+		filter.destroy();
+	}
+
+	@Test
+	public void filesAreServedFromTheNearestPack() throws Exception {
+		File crawl = new File(output, "crawl1");
+		File plugin = new File(crawl, "plugins/0");
+		plugin.mkdirs();
+		try (ArtifactPack outer = ArtifactPack.create(crawl);
+		        ArtifactPack inner = ArtifactPack.create(plugin)) {
+			outer.put("plugins/0/screenshots/state1.jpg", bytes("outer"));
+			inner.put("screenshots/state1.jpg", bytes("inner"));
+
+			get("/crawl1/plugins/0/screenshots/state1.jpg");
+		}
+
+		assertThat(written.toString("UTF-8"), is("inner"));
+		verify(response).setContentType("image/jpeg");
+		verify(response).setContentLength(5);
+		verify(chain, never()).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+	}
+
+	@Test
+	public void filesOnDiskAndFilesNotInAPackArePassedOn() throws Exception {
+		File crawl = new File(output, "crawl1");
+		crawl.mkdirs();
+		Files.write("on disk", new File(crawl, "index.html"), Charsets.UTF_8);
+		try (ArtifactPack pack = ArtifactPack.create(crawl)) {
+			pack.put("index.html", bytes("packed"));
+
+			get("/crawl1/index.html");
+			get("/crawl1/missing.html");
+		}
+
+		assertThat(written.size(), is(0));
+		verify(chain, times(2)).doFilter(any(ServletRequest.class),
+		        any(ServletResponse.class));
+	}
+
+	@Test
+	public void packsOutsideTheOutputFolderAreNotServed() throws Exception {
+		File outside = folder.newFolder("outside");
+		try (ArtifactPack pack = ArtifactPack.create(outside)) {
+			pack.put("secret.txt", bytes("secret"));
+
+			get("/../outside/secret.txt");
+		}
+
+		assertThat(written.size(), is(0));
+		verify(chain).doFilter(any(ServletRequest.class), any(ServletResponse.class));
+	}
+
+	@Test
+	public void aPackThatIsStillWrittenIsRefreshed() throws Exception {
+		File crawl = new File(output, "crawl1");
+		crawl.mkdirs();
+		try (ArtifactPack pack = ArtifactPack.create(crawl)) {
+			pack.put("doms/index.html", bytes("index"));
+			get("/crawl1/doms/index.html");
+
+			pack.put("doms/state1.html", bytes("state1"));
+			get("/crawl1/doms/state1.html");
+		}
+
+		assertThat(written.toString("UTF-8"), is("indexstate1"));
+		assertThat(filter.getOpenPacks(), is(1));
+	}
+
+	@Test
+	public void packsOfDeletedFoldersAreClosed() throws Exception {
+		File crawl = new File(output, "crawl1");
+		crawl.mkdirs();
+		try (ArtifactPack pack = ArtifactPack.create(crawl)) {
+			pack.put("doms/index.html", bytes("index"));
+		}
+		get("/crawl1/doms/index.html");
+		assertThat(filter.getOpenPacks(), is(1));
+
+		new File(crawl, ArtifactPack.INDEX_NAME).delete();
+		new File(crawl, ArtifactPack.PACK_NAME).delete();
+		filter.closeDeletedPacks();
+
+		assertThat(filter.getOpenPacks(), is(0));
+	}
+
+	private void get(String path) throws IOException, ServletException {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getMethod()).thenReturn("GET");
+		when(request.getServletPath()).thenReturn(path);
+		when(request.getServletContext()).thenReturn(servletContext);
+		filter.doFilter(request, response, chain);
+	}
+
+	private static byte[] bytes(String content) {
+		return content.getBytes(Charsets.UTF_8);
+	}
+
+	private static class RecordingOutputStream extends ServletOutputStream {
+
+		private final ByteArrayOutputStream out;
+
+		RecordingOutputStream(ByteArrayOutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) {
+			out.write(b);
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+		}
+	}
+}